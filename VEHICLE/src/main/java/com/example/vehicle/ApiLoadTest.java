@@ -0,0 +1,105 @@
+package com.example.vehicle;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Load harness for RentalApiServer: N concurrent clients hammer one endpoint for a fixed time
+// and print requests per second and latency percentiles.
+//
+//   java ... com.example.vehicle.ApiLoadTest [baseUrl] [clients] [seconds] [available|book]
+//
+// With no baseUrl argument ("-") it starts an in-process server on a free port against the local database.
+public class ApiLoadTest {
+
+    public static void main(String[] args) throws Exception {
+        String baseUrl = args.length > 0 ? args[0] : "-";
+        int clients = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 30;
+        String mode = args.length > 3 ? args[3] : "available";
+
+        RentalApiServer localServer = null;
+        if ("-".equals(baseUrl)) {
+            localServer = new RentalApiServer(new DbConnector(), 0);
+            localServer.start();
+            baseUrl = "http://localhost:" + localServer.getPort();
+        }
+
+        List<Integer> vehicleIds = new ArrayList<>();
+        List<Integer> customerIds = new ArrayList<>();
+        if ("book".equals(mode)) {
+            DbConnector dbConnector = new DbConnector();
+            dbConnector.getAllVehicles().forEach(v -> vehicleIds.add(v.getId()));
+            dbConnector.getAllCustomers().forEach(c -> customerIds.add(c.getCustomerId()));
+            if (vehicleIds.isEmpty() || customerIds.isEmpty()) {
+                System.err.println("Booking mode needs at least one vehicle and one customer");
+                System.exit(1);
+            }
+        }
+
+        HttpClient client = HttpClient.newBuilder()
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        String target = baseUrl;
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        long startedAt = System.nanoTime();
+
+        LatencyRecorder total = new LatencyRecorder();
+        try (ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<LatencyRecorder>> results = new ArrayList<>();
+            for (int i = 0; i < clients; i++) {
+                results.add(workers.submit(() -> {
+                    LatencyRecorder recorder = new LatencyRecorder();
+                    while (System.nanoTime() < deadline) {
+                        HttpRequest request = "book".equals(mode)
+                                ? bookingRequest(target, vehicleIds, customerIds)
+                                : HttpRequest.newBuilder(URI.create(target + "/api/vehicles/available")).GET().build();
+                        long begin = System.nanoTime();
+                        try {
+                            HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                            // 409 is a correctly served "already booked" answer, not a failure
+                            if (response.statusCode() < 300 || response.statusCode() == 409) {
+                                recorder.record(System.nanoTime() - begin);
+                            } else {
+                                recorder.recordError();
+                            }
+                        } catch (Exception ex) {
+                            recorder.recordError();
+                        }
+                    }
+                    return recorder;
+                }));
+            }
+            for (Future<LatencyRecorder> result : results) {
+                total.merge(result.get());
+            }
+        }
+
+        System.out.println(total.summary(mode + " x" + clients, System.nanoTime() - startedAt));
+        if (localServer != null) {
+            localServer.stop();
+        }
+    }
+
+    private static HttpRequest bookingRequest(String baseUrl, List<Integer> vehicleIds, List<Integer> customerIds) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        LocalDate start = LocalDate.now().plusDays(random.nextInt(1, 365));
+        String body = "{\"vehicleId\":" + vehicleIds.get(random.nextInt(vehicleIds.size()))
+                + ",\"customerId\":" + customerIds.get(random.nextInt(customerIds.size()))
+                + ",\"startDate\":\"" + start + "\",\"endDate\":\"" + start.plusDays(random.nextInt(1, 8)) + "\"}";
+        return HttpRequest.newBuilder(URI.create(baseUrl + "/api/bookings"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+}
@@ -0,0 +1,613 @@
+package com.example.vehicle;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+// Append-only audit trail of who did what, kept in the terminal's audit directory.
+//
+// Events go into numbered segment files (segment-N.log). Each record is an int length followed by the
+// event: long timestamp (millis), user, action, the entities it touched ("vehicle:12", "customer:3") and
+// free-text details. Once the active segment reaches SEGMENT_BYTES it is sealed and gets an index file
+// (segment-N.idx) holding:
+//   - the segment's time range, so queries skip segments outside the requested period
+//   - a sparse time index, one (timestamp, offset) entry every TIME_INDEX_EVERY records, so a time-range
+//     query seeks close to its start instead of reading from the top
+//   - an inverted index from entity to the offsets of its records, so "vehicle:12" reads only its records
+// The active segment's index lives in memory and is rebuilt from the file on startup.
+//
+// Compaction merges sealed segments older than COMPACT_AFTER_DAYS into larger ones (dropping records past
+// the retention period, if one is set), so old history costs few files and few index loads. A merged
+// segment records the last segment id it covers; leftovers of a compaction interrupted half-way are
+// deleted on the next startup.
+class AuditLog {
+    static final long SEGMENT_BYTES = 4L * 1024 * 1024;
+    static final int COMPACT_AFTER_DAYS = 30;
+    private static final long COMPACTED_SEGMENT_BYTES = 64L * 1024 * 1024;
+    private static final int TIME_INDEX_EVERY = 64;
+    private static final int INDEX_MAGIC = 0x56524149; // "VRAI"
+    private static final int MAX_DETAILS = 4000;
+    private static final int CACHED_INDEXES = 16;
+
+    private final Path directory;
+    private final long retentionMillis; // 0 keeps everything
+    private final Object compactionLock = new Object();
+    private final TreeMap<Long, SealedSegment> sealed = new TreeMap<>();
+    private final Map<Long, SegmentIndex> indexCache = new LinkedHashMap<>(CACHED_INDEXES, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, SegmentIndex> eldest) {
+            return size() > CACHED_INDEXES;
+        }
+    };
+    private long activeId;
+    private FileChannel active;
+    private SegmentIndex activeIndex;
+    private long lastTimestamp;
+
+    private AuditLog(Path directory, long retentionMillis) {
+        this.directory = directory;
+        this.retentionMillis = retentionMillis;
+    }
+
+    // Opens (or creates) the audit trail in the given directory. A legacy actions_log.csv next to it is
+    // imported once, so its rows stay searchable.
+    static AuditLog open(Path directory, Path legacyCsv, int retentionDays) throws IOException {
+        AuditLog log = new AuditLog(directory, retentionDays * 86_400_000L);
+        Files.createDirectories(directory);
+        log.load();
+        if (log.sealed.isEmpty() && log.activeIndex.count == 0 && Files.isRegularFile(legacyCsv)) {
+            log.importLegacy(legacyCsv);
+        }
+        return log;
+    }
+
+    // Appends one event; the entities are the keys the event can be looked up by
+    synchronized void record(String user, String action, List<String> entities, String details) {
+        long timestamp = Math.max(System.currentTimeMillis(), lastTimestamp);
+        try {
+            append(new Event(timestamp, user, action, entities, details));
+        } catch (IOException ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    static String entity(String type, Object id) {
+        return type + ":" + id;
+    }
+
+    // Events in [from, to), oldest first, optionally only those filed under one entity; at most limit events
+    synchronized List<Event> query(String entity, long from, long to, int limit) throws IOException {
+        List<Event> events = new ArrayList<>();
+        for (SealedSegment segment : sealed.values()) {
+            if (segment.maxTimestamp >= from && segment.minTimestamp < to) {
+                search(segmentFile(segment.id, ".log"), sealedIndex(segment), Long.MAX_VALUE, entity, from, to, limit, events);
+            }
+            if (events.size() >= limit) {
+                return events;
+            }
+        }
+        if (activeIndex.count > 0 && activeIndex.maxTimestamp >= from && activeIndex.minTimestamp < to) {
+            search(segmentFile(activeId, ".log"), activeIndex, active.size(), entity, from, to, limit, events);
+        }
+        return events;
+    }
+
+    int getSegmentCount() {
+        synchronized (this) {
+            return sealed.size() + 1;
+        }
+    }
+
+    // Merges old sealed segments; returns how many segment files were folded into others. The merged files
+    // are written without holding the lock, so clerks can keep working while it runs.
+    int compact() throws IOException {
+        synchronized (compactionLock) {
+            return compactOldSegments();
+        }
+    }
+
+    private int compactOldSegments() throws IOException {
+        long cutoff = System.currentTimeMillis() - COMPACT_AFTER_DAYS * 86_400_000L;
+        List<List<SealedSegment>> runs = new ArrayList<>();
+        synchronized (this) {
+            List<SealedSegment> run = new ArrayList<>();
+            long runBytes = 0;
+            for (SealedSegment segment : sealed.values()) {
+                if (segment.maxTimestamp >= cutoff) {
+                    break;
+                }
+                if (!run.isEmpty() && runBytes + segment.bytes > COMPACTED_SEGMENT_BYTES) {
+                    runs.add(run);
+                    run = new ArrayList<>();
+                    runBytes = 0;
+                }
+                run.add(segment);
+                runBytes += segment.bytes;
+            }
+            runs.add(run);
+        }
+
+        int folded = 0;
+        long expiredBefore = retentionMillis == 0 ? Long.MIN_VALUE : System.currentTimeMillis() - retentionMillis;
+        for (List<SealedSegment> run : runs) {
+            boolean expires = retentionMillis != 0 && !run.isEmpty() && run.get(0).minTimestamp < expiredBefore;
+            if (run.size() < 2 && !expires) {
+                continue;
+            }
+            long firstId = run.get(0).id;
+            Path mergedLog = segmentFile(firstId, ".log.compact");
+            SegmentIndex mergedIndex = new SegmentIndex(run.get(run.size() - 1).coversThrough);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(mergedLog)))) {
+                long offset = 0;
+                for (SealedSegment segment : run) {
+                    try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(segmentFile(segment.id, ".log"))))) {
+                        byte[] record;
+                        while ((record = readRecord(in)) != null) {
+                            Event event = decode(record);
+                            if (event.timestamp < expiredBefore) {
+                                continue;
+                            }
+                            out.writeInt(record.length);
+                            out.write(record);
+                            mergedIndex.add(event, offset);
+                            offset += 4 + record.length;
+                        }
+                    }
+                }
+                mergedIndex.bytes = offset;
+            }
+            writeIndex(segmentFile(firstId, ".idx.compact"), mergedIndex);
+
+            synchronized (this) {
+                // Index first: if we stop before the log is in place, its length no longer matches and the
+                // old log's index is rebuilt on startup
+                Files.move(segmentFile(firstId, ".idx.compact"), segmentFile(firstId, ".idx"), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                Files.move(mergedLog, segmentFile(firstId, ".log"), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                for (SealedSegment segment : run) {
+                    indexCache.remove(segment.id);
+                    sealed.remove(segment.id);
+                    if (segment.id != firstId) {
+                        deleteSegment(segment.id);
+                    }
+                }
+                if (mergedIndex.count > 0) {
+                    sealed.put(firstId, new SealedSegment(firstId, mergedIndex));
+                } else {
+                    deleteSegment(firstId);
+                }
+                folded += run.size() - 1;
+            }
+        }
+        return folded;
+    }
+
+    synchronized void close() {
+        try {
+            active.close();
+        } catch (IOException ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    private void load() throws IOException {
+        List<Long> ids = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.forEach(file -> {
+                String name = file.getFileName().toString();
+                if (name.startsWith("segment-") && name.endsWith(".compact")) {
+                    // A compaction that stopped before its files were moved into place
+                    try {
+                        Files.delete(file);
+                    } catch (IOException ex) {
+                        ex.printStackTrace();
+                    }
+                } else if (name.startsWith("segment-") && name.endsWith(".log")) {
+                    ids.add(Long.parseLong(name.substring("segment-".length(), name.length() - ".log".length())));
+                }
+            });
+        }
+        ids.sort(null);
+
+        long coveredThrough = -1;
+        for (int i = 0; i < ids.size(); i++) {
+            long id = ids.get(i);
+            if (id <= coveredThrough) {
+                // Already merged into an earlier segment by a compaction that was interrupted before cleanup
+                deleteSegment(id);
+                continue;
+            }
+            boolean last = i == ids.size() - 1;
+            Path idx = segmentFile(id, ".idx");
+            SegmentIndex index = Files.isRegularFile(idx) ? readIndex(idx) : null;
+            long bytes = Files.size(segmentFile(id, ".log"));
+            if (last && index == null) {
+                openActive(id, scan(id));
+                return;
+            }
+            if (index == null || index.bytes != bytes) {
+                index = scan(id);
+                writeIndex(idx, index);
+            }
+            coveredThrough = index.coversThrough;
+            sealed.put(id, new SealedSegment(id, index));
+            lastTimestamp = Math.max(lastTimestamp, index.maxTimestamp);
+        }
+        openActive(sealed.isEmpty() ? 1 : Math.max(sealed.lastKey(), coveredThrough) + 1, new SegmentIndex(0));
+    }
+
+    private void openActive(long id, SegmentIndex index) throws IOException {
+        activeId = id;
+        activeIndex = index;
+        activeIndex.coversThrough = id;
+        active = FileChannel.open(segmentFile(id, ".log"), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        // A record cut short by a crash is dropped
+        active.truncate(index.bytes);
+        active.position(index.bytes);
+        lastTimestamp = Math.max(lastTimestamp, index.maxTimestamp);
+    }
+
+    private void append(Event event) throws IOException {
+        byte[] record = encode(event);
+        ByteBuffer buffer = ByteBuffer.allocate(4 + record.length);
+        buffer.putInt(record.length).put(record).flip();
+        long offset = active.position();
+        while (buffer.hasRemaining()) {
+            active.write(buffer);
+        }
+        activeIndex.add(event, offset);
+        activeIndex.bytes = active.position();
+        lastTimestamp = event.timestamp;
+
+        if (activeIndex.bytes >= SEGMENT_BYTES) {
+            active.force(false);
+            active.close();
+            writeIndex(segmentFile(activeId, ".idx"), activeIndex);
+            sealed.put(activeId, new SealedSegment(activeId, activeIndex));
+            openActive(activeId + 1, new SegmentIndex(0));
+        }
+    }
+
+    // Reads the matching records of one segment into events, up to limit
+    private void search(Path log, SegmentIndex index, long length, String entity, long from, long to, int limit,
+                        List<Event> events) throws IOException {
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.READ)) {
+            if (entity != null) {
+                List<Long> offsets = index.postings.get(entity);
+                if (offsets == null) {
+                    return;
+                }
+                for (long offset : offsets) {
+                    if (offset >= length) {
+                        break;
+                    }
+                    Event event = decode(readRecordAt(channel, offset));
+                    if (event.timestamp >= to) {
+                        return;
+                    }
+                    if (event.timestamp >= from) {
+                        events.add(event);
+                        if (events.size() >= limit) {
+                            return;
+                        }
+                    }
+                }
+                return;
+            }
+
+            long start = index.offsetBefore(from);
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                    Channels.newInputStream(channel.position(start))))) {
+                long position = start;
+                byte[] record;
+                while (position < length && (record = readRecord(in)) != null) {
+                    position += 4 + record.length;
+                    Event event = decode(record);
+                    if (event.timestamp >= to) {
+                        return;
+                    }
+                    if (event.timestamp >= from) {
+                        events.add(event);
+                        if (events.size() >= limit) {
+                            return;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private SegmentIndex sealedIndex(SealedSegment segment) throws IOException {
+        SegmentIndex index = indexCache.get(segment.id);
+        if (index == null) {
+            index = readIndex(segmentFile(segment.id, ".idx"));
+            indexCache.put(segment.id, index);
+        }
+        return index;
+    }
+
+    // Rebuilds a segment's index by reading it from the top; stops at a torn trailing record
+    private SegmentIndex scan(long id) throws IOException {
+        SegmentIndex index = new SegmentIndex(id);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(segmentFile(id, ".log"))))) {
+            long offset = 0;
+            byte[] record;
+            while ((record = readRecord(in)) != null) {
+                index.add(decode(record), offset);
+                offset += 4 + record.length;
+            }
+            index.bytes = offset;
+        }
+        return index;
+    }
+
+    // Legacy rows have no timestamp or user, so they are filed at the file's last-modified time
+    private void importLegacy(Path csv) throws IOException {
+        long timestamp = Files.getLastModifiedTime(csv).toMillis();
+        for (String line : Files.readAllLines(csv, StandardCharsets.UTF_8)) {
+            String[] fields = line.split(",", -1);
+            if (fields[0].isBlank()) {
+                continue;
+            }
+            List<String> entities = new ArrayList<>();
+            if ("Vehicle Booked".equals(fields[0]) && fields.length >= 3) {
+                entities.add(entity("vehicle", fields[1]));
+                entities.add(entity("customer", fields[2]));
+            } else if ("User Registration".equals(fields[0]) && fields.length >= 2) {
+                entities.add(entity("user", fields[1]));
+            }
+            String details = String.join(", ", Arrays.copyOfRange(fields, 1, fields.length));
+            append(new Event(timestamp, "", fields[0], entities, details + " (imported from " + csv.getFileName() + ")"));
+        }
+        Files.move(csv, csv.resolveSibling(csv.getFileName() + ".imported"), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private void deleteSegment(long id) throws IOException {
+        Files.deleteIfExists(segmentFile(id, ".log"));
+        Files.deleteIfExists(segmentFile(id, ".idx"));
+    }
+
+    private Path segmentFile(long id, String suffix) {
+        return directory.resolve(String.format("segment-%012d%s", id, suffix));
+    }
+
+    private static byte[] encode(Event event) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeLong(event.timestamp);
+        out.writeUTF(event.user);
+        out.writeUTF(event.action);
+        out.writeShort(event.entities.size());
+        for (String entity : event.entities) {
+            out.writeUTF(entity);
+        }
+        out.writeUTF(event.details.length() > MAX_DETAILS ? event.details.substring(0, MAX_DETAILS) : event.details);
+        return bytes.toByteArray();
+    }
+
+    private static Event decode(byte[] record) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+        long timestamp = in.readLong();
+        String user = in.readUTF();
+        String action = in.readUTF();
+        int entityCount = in.readUnsignedShort();
+        List<String> entities = new ArrayList<>(entityCount);
+        for (int i = 0; i < entityCount; i++) {
+            entities.add(in.readUTF());
+        }
+        return new Event(timestamp, user, action, entities, in.readUTF());
+    }
+
+    // Next length-prefixed record, or null at the end of the file or at a record cut short by a crash
+    private static byte[] readRecord(DataInputStream in) throws IOException {
+        try {
+            byte[] record = new byte[in.readInt()];
+            in.readFully(record);
+            return record;
+        } catch (EOFException ex) {
+            return null;
+        }
+    }
+
+    private static byte[] readRecordAt(FileChannel channel, long offset) throws IOException {
+        ByteBuffer length = ByteBuffer.allocate(4);
+        readFully(channel, length, offset);
+        ByteBuffer record = ByteBuffer.allocate(length.getInt(0));
+        readFully(channel, record, offset + 4);
+        return record.array();
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Audit segment ends inside a record");
+            }
+        }
+    }
+
+    // Index file: magic, covers-through id, log length, count, min/max timestamp, time entries, postings
+    private static void writeIndex(Path file, SegmentIndex index) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(INDEX_MAGIC);
+            out.writeLong(index.coversThrough);
+            out.writeLong(index.bytes);
+            out.writeInt(index.count);
+            out.writeLong(index.minTimestamp);
+            out.writeLong(index.maxTimestamp);
+            out.writeInt(index.timeStamps.size());
+            for (int i = 0; i < index.timeStamps.size(); i++) {
+                out.writeLong(index.timeStamps.get(i));
+                out.writeLong(index.timeOffsets.get(i));
+            }
+            out.writeInt(index.postings.size());
+            for (Map.Entry<String, List<Long>> posting : index.postings.entrySet()) {
+                out.writeUTF(posting.getKey());
+                out.writeInt(posting.getValue().size());
+                for (long offset : posting.getValue()) {
+                    out.writeLong(offset);
+                }
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Null when the file is not a complete index
+    private static SegmentIndex readIndex(Path file) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != INDEX_MAGIC) {
+                return null;
+            }
+            SegmentIndex index = new SegmentIndex(in.readLong());
+            index.bytes = in.readLong();
+            index.count = in.readInt();
+            index.minTimestamp = in.readLong();
+            index.maxTimestamp = in.readLong();
+            int timeEntries = in.readInt();
+            for (int i = 0; i < timeEntries; i++) {
+                index.timeStamps.add(in.readLong());
+                index.timeOffsets.add(in.readLong());
+            }
+            int postings = in.readInt();
+            for (int i = 0; i < postings; i++) {
+                String key = in.readUTF();
+                int size = in.readInt();
+                List<Long> offsets = new ArrayList<>(size);
+                for (int j = 0; j < size; j++) {
+                    offsets.add(in.readLong());
+                }
+                index.postings.put(key, offsets);
+            }
+            return index;
+        } catch (IOException ex) {
+            return null;
+        }
+    }
+
+    private static class SegmentIndex {
+        private long coversThrough;
+        private long bytes;
+        private int count;
+        private long minTimestamp = Long.MAX_VALUE;
+        private long maxTimestamp = Long.MIN_VALUE;
+        private final List<Long> timeStamps = new ArrayList<>();
+        private final List<Long> timeOffsets = new ArrayList<>();
+        private final Map<String, List<Long>> postings = new HashMap<>();
+
+        SegmentIndex(long coversThrough) {
+            this.coversThrough = coversThrough;
+        }
+
+        void add(Event event, long offset) {
+            if (count % TIME_INDEX_EVERY == 0) {
+                timeStamps.add(event.timestamp);
+                timeOffsets.add(offset);
+            }
+            count++;
+            minTimestamp = Math.min(minTimestamp, event.timestamp);
+            maxTimestamp = Math.max(maxTimestamp, event.timestamp);
+            for (String entity : event.entities) {
+                postings.computeIfAbsent(entity, key -> new ArrayList<>()).add(offset);
+            }
+        }
+
+        // Offset of the last sampled record before timestamp; reading from there finds every record >= it
+        long offsetBefore(long timestamp) {
+            int low = 0;
+            int high = timeStamps.size() - 1;
+            long offset = 0;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (timeStamps.get(mid) < timestamp) {
+                    offset = timeOffsets.get(mid);
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return offset;
+        }
+    }
+
+    private static class SealedSegment {
+        private final long id;
+        private final long coversThrough;
+        private final long bytes;
+        private final long minTimestamp;
+        private final long maxTimestamp;
+
+        SealedSegment(long id, SegmentIndex index) {
+            this.id = id;
+            this.coversThrough = index.coversThrough;
+            this.bytes = index.bytes;
+            this.minTimestamp = index.minTimestamp;
+            this.maxTimestamp = index.maxTimestamp;
+        }
+    }
+
+    static class Event {
+        private final long timestamp;
+        private final String user;
+        private final String action;
+        private final List<String> entities;
+        private final String details;
+
+        Event(long timestamp, String user, String action, List<String> entities, String details) {
+            this.timestamp = timestamp;
+            this.user = user == null ? "" : user;
+            this.action = action;
+            this.entities = entities;
+            this.details = details == null ? "" : details;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public String getUser() {
+            return user;
+        }
+
+        public String getAction() {
+            return action;
+        }
+
+        public List<String> getEntities() {
+            return entities;
+        }
+
+        public String getDetails() {
+            return details;
+        }
+
+        @Override
+        public String toString() {
+            LocalDateTime time = LocalDateTime.ofInstant(Instant.ofEpochMilli(timestamp), ZoneId.systemDefault());
+            return time.withNano(0) + "  " + (user.isEmpty() ? "-" : user) + "  " + action
+                    + (entities.isEmpty() ? "" : " " + entities) + (details.isEmpty() ? "" : ": " + details);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.vehicle;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+
+// Moves closed rentals out of the hot bookings/payments tables into bookings_archive/payments_archive,
+// and folds them into booking_month_summary so reports over old periods never scan the archive rows.
+// A booking is closed once its end_date is before the first day of the month N months back.
+class BookingArchiver {
+    private static final int BATCH_SIZE = 5000;
+
+    private final DbConnector dbConnector;
+
+    BookingArchiver(DbConnector dbConnector) {
+        this.dbConnector = dbConnector;
+    }
+
+    // Archives every closed booking in batches of BATCH_SIZE and returns how many were moved
+    int archiveOlderThan(int months) throws SQLException {
+        LocalDate cutoff = LocalDate.now().withDayOfMonth(1).minusMonths(months);
+        int archived = 0;
+        try (Connection connection = dbConnector.connect()) {
+            connection.setAutoCommit(false);
+            int batch;
+            do {
+                batch = archiveBatch(connection, cutoff);
+                connection.commit();
+                archived += batch;
+            } while (batch == BATCH_SIZE);
+
+            // Reports use the horizon to decide whether a period needs the summaries at all
+            try (PreparedStatement stmt = connection.prepareStatement("INSERT INTO archive_state (id, archived_before) VALUES (1, ?) ON DUPLICATE KEY UPDATE archived_before = GREATEST(archived_before, VALUES(archived_before))")) {
+                stmt.setDate(1, Date.valueOf(cutoff));
+                stmt.executeUpdate();
+            }
+            connection.commit();
+        }
+        return archived;
+    }
+
+    // One transaction: summarise, copy and delete up to BATCH_SIZE closed bookings (lowest ids first)
+    private int archiveBatch(Connection connection, LocalDate cutoff) throws SQLException {
+        int upperId;
+        int count;
+        try (PreparedStatement stmt = connection.prepareStatement(
+                "SELECT COUNT(*), MAX(booking_id) FROM (SELECT booking_id FROM bookings WHERE end_date < ? ORDER BY booking_id LIMIT ?) batch")) {
+            stmt.setDate(1, Date.valueOf(cutoff));
+            stmt.setInt(2, BATCH_SIZE);
+            ResultSet rs = stmt.executeQuery();
+            rs.next();
+            count = rs.getInt(1);
+            upperId = rs.getInt(2);
+        }
+        if (count == 0) {
+            return 0;
+        }
+
+        execute(connection, "INSERT INTO booking_month_summary (month, category, branch_id, booking_count, rental_days, revenue, payments_total) "
+                + "SELECT DATE_FORMAT(b.start_date, '%Y-%m-01'), v.category, b.branch_id, COUNT(*), SUM(DATEDIFF(b.end_date, b.start_date)), "
+                + "SUM(v.rental_price * DATEDIFF(b.end_date, b.start_date)), 0 "
+                + "FROM bookings b JOIN vehicles v ON v.vehicle_id = b.vehicle_id "
+                + "WHERE b.end_date < ? AND b.booking_id <= ? GROUP BY 1, 2, 3 "
+                + "ON DUPLICATE KEY UPDATE booking_count = booking_count + VALUES(booking_count), "
+                + "rental_days = rental_days + VALUES(rental_days), revenue = revenue + VALUES(revenue)", cutoff, upperId);
+        execute(connection, "INSERT INTO booking_month_summary (month, category, branch_id, booking_count, rental_days, revenue, payments_total) "
+                + "SELECT DATE_FORMAT(b.start_date, '%Y-%m-01'), v.category, b.branch_id, 0, 0, 0, SUM(p.amount) "
+                + "FROM payments p JOIN bookings b ON b.booking_id = p.booking_id JOIN vehicles v ON v.vehicle_id = b.vehicle_id "
+                + "WHERE b.end_date < ? AND b.booking_id <= ? AND p.payment_type = 'RENTAL' GROUP BY 1, 2, 3 "
+                + "ON DUPLICATE KEY UPDATE payments_total = payments_total + VALUES(payments_total)", cutoff, upperId);
+        execute(connection, "INSERT INTO payments_archive (payment_id, booking_id, amount, extras, payment_type, payment_date, fee_date) "
+                + "SELECT p.payment_id, p.booking_id, p.amount, p.extras, p.payment_type, p.payment_date, p.fee_date FROM payments p JOIN bookings b ON b.booking_id = p.booking_id "
+                + "WHERE b.end_date < ? AND b.booking_id <= ?", cutoff, upperId);
+        execute(connection, "INSERT INTO bookings_archive (booking_id, vehicle_id, customer_id, start_date, end_date, booking_date, branch_id) "
+                + "SELECT booking_id, vehicle_id, customer_id, start_date, end_date, booking_date, branch_id FROM bookings "
+                + "WHERE end_date < ? AND booking_id <= ?", cutoff, upperId);
+        // Terminals drop archived bookings from their lists through the change feed
+        execute(connection, "INSERT INTO change_log (table_name, entity_id, operation) "
+                + "SELECT 'bookings', booking_id, 'DELETE' FROM bookings WHERE end_date < ? AND booking_id <= ?", cutoff, upperId);
+        // Payments go with their bookings through ON DELETE CASCADE, which writes no outbox rows
+        execute(connection, "INSERT INTO change_log (table_name, entity_id, operation) "
+                + "SELECT 'payments', p.payment_id, 'DELETE' FROM payments p JOIN bookings b ON b.booking_id = p.booking_id "
+                + "WHERE b.end_date < ? AND b.booking_id <= ?", cutoff, upperId);
+        execute(connection, "DELETE FROM bookings WHERE end_date < ? AND booking_id <= ?", cutoff, upperId);
+        return count;
+    }
+
+    private void execute(Connection connection, String sql, LocalDate cutoff, int upperId) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setDate(1, Date.valueOf(cutoff));
+            stmt.setInt(2, upperId);
+            stmt.executeUpdate();
+        }
+    }
+}
@@ -0,0 +1,358 @@
+package com.example.vehicle;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javafx.application.Platform;
+import javafx.geometry.Orientation;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.control.Label;
+import javafx.scene.control.ScrollBar;
+import javafx.scene.layout.BorderPane;
+import javafx.scene.layout.Pane;
+import javafx.scene.layout.VBox;
+import javafx.scene.paint.Color;
+
+// Booking calendar: one row per vehicle, one column per day, bookings drawn as bars and overlapping bookings
+// of the same vehicle in red.
+//
+// It is a single Canvas redrawn from scratch, and only the visible rows and days are ever drawn, so the cost
+// of a frame depends on the window size, not on the fleet or the years of history. Bookings are fetched in
+// tiles of ROWS_PER_TILE vehicles by DAYS_PER_TILE days, each with one query for exactly the tile's vehicle
+// ids, on a background thread; tiles the user has already scrolled past are skipped, and the most recent
+// MAX_TILES stay cached so scrolling back is free. Rows are drawn empty until their tile arrives. The date
+// range of all bookings is also read on that thread: the calendar opens on a default range around today and
+// widens once it is known.
+class BookingTimeline extends BorderPane {
+    static final double ROW_HEIGHT = 22;
+    static final double DAY_WIDTH = 18;
+    static final double LABEL_WIDTH = 180;
+    static final double HEADER_HEIGHT = 36;
+    static final int ROWS_PER_TILE = 64;
+    static final int DAYS_PER_TILE = 64;
+    private static final int MAX_TILES = 512;
+
+    private final DbConnector dbConnector;
+    private final List<Vehicle> vehicles;
+    // Scrollable range; only touched on the FX thread
+    private long firstDay;
+    private long lastDay;
+    private final Canvas canvas = new Canvas();
+    private final ScrollBar vertical = new ScrollBar();
+    private final ScrollBar horizontal = new ScrollBar();
+    private final Label status = new Label();
+
+    // Tile key -> bookings per vehicle id; only touched on the FX thread
+    private final LinkedHashMap<Long, Map<Integer, List<Booking>>> tiles = new LinkedHashMap<>(64, 0.75f, true);
+    private final Set<Long> loading = new HashSet<>();
+    private final ExecutorService loader = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "timeline-loader");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private long generation; // Bumped by invalidate, so fetches started before it are dropped
+    private volatile int[] visibleTiles = new int[4]; // first/last row tile, first/last day tile
+    private boolean redrawPending;
+    private Booking selected; // Last booking clicked, shown under the chart
+
+    BookingTimeline(DbConnector dbConnector, List<Vehicle> vehicles) {
+        this.dbConnector = dbConnector;
+        this.vehicles = new ArrayList<>(vehicles);
+        this.vehicles.sort(Comparator.comparingInt(Vehicle::getId));
+
+        LocalDate today = LocalDate.now();
+        this.firstDay = today.minusDays(30).toEpochDay();
+        this.lastDay = today.plusDays(90).toEpochDay();
+
+        vertical.setOrientation(Orientation.VERTICAL);
+        vertical.setMin(0);
+        vertical.setUnitIncrement(ROW_HEIGHT);
+        horizontal.setMin(firstDay);
+        horizontal.setUnitIncrement(1);
+        horizontal.setBlockIncrement(7);
+        horizontal.setValue(today.minusDays(7).toEpochDay());
+        vertical.valueProperty().addListener((obs, oldValue, newValue) -> requestRedraw());
+        horizontal.valueProperty().addListener((obs, oldValue, newValue) -> requestRedraw());
+
+        Pane canvasHolder = new Pane(canvas);
+        canvas.widthProperty().bind(canvasHolder.widthProperty());
+        canvas.heightProperty().bind(canvasHolder.heightProperty());
+        canvas.widthProperty().addListener((obs, oldValue, newValue) -> requestRedraw());
+        canvas.heightProperty().addListener((obs, oldValue, newValue) -> requestRedraw());
+        canvas.setOnScroll(e -> {
+            if (e.isShiftDown() || Math.abs(e.getDeltaX()) > Math.abs(e.getDeltaY())) {
+                double delta = e.isShiftDown() ? e.getDeltaY() : e.getDeltaX();
+                horizontal.setValue(clamp(horizontal.getValue() - delta / DAY_WIDTH, firstDay, horizontal.getMax()));
+            } else {
+                vertical.setValue(clamp(vertical.getValue() - e.getDeltaY(), 0, vertical.getMax()));
+            }
+        });
+        canvas.setOnMouseClicked(e -> {
+            selected = bookingAt(e.getX(), e.getY());
+            requestRedraw();
+        });
+
+        setCenter(canvasHolder);
+        setRight(vertical);
+        setBottom(new VBox(2, horizontal, status));
+        loadDateRange();
+    }
+
+    // Drops every loaded tile, e.g. after the change feed reported new or changed bookings; only the tiles
+    // in view are fetched again
+    void invalidate() {
+        generation++;
+        tiles.clear();
+        loading.clear();
+        loadDateRange();
+        requestRedraw();
+    }
+
+    // The scrollable range covers every booking plus some room on either side of today; it only ever grows,
+    // so the view never jumps while the user is scrolling
+    private void loadDateRange() {
+        loader.submit(() -> {
+            LocalDate[] range = dbConnector.getBookingDateRange();
+            if (range == null) {
+                return;
+            }
+            Platform.runLater(() -> {
+                firstDay = Math.min(firstDay, range[0].toEpochDay());
+                lastDay = Math.max(lastDay, range[1].toEpochDay());
+                horizontal.setMin(firstDay);
+                requestRedraw();
+            });
+        });
+    }
+
+    void close() {
+        loader.shutdownNow();
+    }
+
+    // Coalesces the scroll and resize events of one pulse into a single redraw
+    private void requestRedraw() {
+        if (!redrawPending) {
+            redrawPending = true;
+            Platform.runLater(() -> {
+                redrawPending = false;
+                redraw();
+            });
+        }
+    }
+
+    private void redraw() {
+        double width = canvas.getWidth();
+        double height = canvas.getHeight();
+        double chartWidth = Math.max(0, width - LABEL_WIDTH);
+        double chartHeight = Math.max(0, height - HEADER_HEIGHT);
+        int visibleDays = (int) Math.ceil(chartWidth / DAY_WIDTH);
+
+        vertical.setMax(Math.max(0, vehicles.size() * ROW_HEIGHT - chartHeight));
+        vertical.setVisibleAmount(chartHeight);
+        horizontal.setMax(Math.max(firstDay, lastDay - visibleDays + 1));
+        horizontal.setVisibleAmount(visibleDays);
+
+        double top = vertical.getValue();
+        double left = horizontal.getValue();
+        int firstRow = (int) (top / ROW_HEIGHT);
+        int lastRow = Math.min(vehicles.size() - 1, (int) ((top + chartHeight) / ROW_HEIGHT));
+        long fromDay = (long) Math.floor(left);
+        long toDay = fromDay + visibleDays + 1; // Exclusive
+        visibleTiles = new int[]{firstRow / ROWS_PER_TILE, Math.max(0, lastRow) / ROWS_PER_TILE,
+                (int) Math.floorDiv(fromDay, DAYS_PER_TILE), (int) Math.floorDiv(toDay - 1, DAYS_PER_TILE)};
+
+        GraphicsContext gc = canvas.getGraphicsContext2D();
+        gc.setFill(Color.WHITE);
+        gc.fillRect(0, 0, width, height);
+
+        // Weekends behind the bars
+        for (long day = fromDay; day < toDay; day++) {
+            double x = dayX(day, left);
+            DayOfWeek dayOfWeek = LocalDate.ofEpochDay(day).getDayOfWeek();
+            if (dayOfWeek == DayOfWeek.SATURDAY || dayOfWeek == DayOfWeek.SUNDAY) {
+                gc.setFill(Color.GAINSBORO);
+                gc.fillRect(x, HEADER_HEIGHT, DAY_WIDTH, chartHeight);
+            }
+        }
+
+        int pending = 0;
+        int conflicts = 0;
+        gc.setLineWidth(1);
+        for (int row = firstRow; row <= lastRow; row++) {
+            double y = rowY(row, top);
+            gc.setStroke(Color.LIGHTGRAY);
+            gc.strokeLine(LABEL_WIDTH, y + ROW_HEIGHT, width, y + ROW_HEIGHT);
+
+            List<Booking> bookings = bookingsFor(row, fromDay, toDay);
+            if (bookings == null) {
+                pending++;
+                continue;
+            }
+            LocalDate latestEnd = null;
+            for (Booking booking : bookings) {
+                boolean overlaps = latestEnd != null && booking.getStartDate().isBefore(latestEnd);
+                if (overlaps) {
+                    conflicts++;
+                }
+                if (latestEnd == null || booking.getEndDate().isAfter(latestEnd)) {
+                    latestEnd = booking.getEndDate();
+                }
+                double x1 = Math.max(LABEL_WIDTH, dayX(booking.getStartDate().toEpochDay(), left));
+                double x2 = Math.min(width, dayX(booking.getEndDate().toEpochDay(), left));
+                if (x2 <= x1) {
+                    continue;
+                }
+                gc.setFill(overlaps ? Color.CRIMSON : Color.STEELBLUE);
+                gc.fillRect(x1, y + 3, x2 - x1, ROW_HEIGHT - 6);
+                if (x2 - x1 > 40) {
+                    gc.setFill(Color.WHITE);
+                    gc.fillText("#" + booking.getBookingId() + " C" + booking.getCustomerId(), x1 + 3, y + ROW_HEIGHT - 7);
+                }
+            }
+        }
+
+        long today = LocalDate.now().toEpochDay();
+        if (today >= fromDay && today < toDay) {
+            double x = dayX(today, left) + DAY_WIDTH / 2;
+            gc.setStroke(Color.ORANGE);
+            gc.setLineWidth(2);
+            gc.strokeLine(x, HEADER_HEIGHT, x, height);
+            gc.setLineWidth(1);
+        }
+
+        // Vehicle labels and the date header are drawn last, over any bar that scrolled underneath them
+        gc.setFill(Color.WHITE);
+        gc.fillRect(0, HEADER_HEIGHT, LABEL_WIDTH, chartHeight);
+        gc.setFill(Color.BLACK);
+        for (int row = firstRow; row <= lastRow; row++) {
+            Vehicle vehicle = vehicles.get(row);
+            gc.fillText(vehicle.getId() + "  " + vehicle.getBrand() + " " + vehicle.getModel(), 4, rowY(row, top) + ROW_HEIGHT - 7);
+        }
+        gc.setFill(Color.WHITE);
+        gc.fillRect(0, 0, width, HEADER_HEIGHT);
+        gc.setFill(Color.BLACK);
+        for (long day = fromDay; day < toDay; day++) {
+            LocalDate date = LocalDate.ofEpochDay(day);
+            double x = dayX(day, left);
+            if (x < LABEL_WIDTH) {
+                continue;
+            }
+            if (date.getDayOfMonth() == 1 || day == fromDay + 1) {
+                gc.fillText(date.getMonth() + " " + date.getYear(), x + 2, 14);
+            }
+            gc.fillText(String.valueOf(date.getDayOfMonth()), x + 2, HEADER_HEIGHT - 6);
+        }
+        gc.setStroke(Color.DARKGRAY);
+        gc.strokeLine(0, HEADER_HEIGHT, width, HEADER_HEIGHT);
+        gc.strokeLine(LABEL_WIDTH, 0, LABEL_WIDTH, height);
+
+        status.setText(vehicles.size() + " vehicles" + (pending > 0 ? ", loading " + pending + " row(s)..." : "")
+                + (conflicts > 0 ? ", " + conflicts + " overlapping booking(s) in view" : "")
+                + (selected != null ? "  |  Selected: " + selected : ""));
+    }
+
+    // The row's bookings overlapping [fromDay, toDay) in start order, or null while a tile is still loading
+    private List<Booking> bookingsFor(int row, long fromDay, long toDay) {
+        int vehicleId = vehicles.get(row).getId();
+        int rowTile = row / ROWS_PER_TILE;
+        Map<String, Booking> byId = new LinkedHashMap<>(); // A booking spanning two tiles is in both
+        boolean complete = true;
+        for (long dayTile = Math.floorDiv(fromDay, DAYS_PER_TILE); dayTile <= Math.floorDiv(toDay - 1, DAYS_PER_TILE); dayTile++) {
+            Map<Integer, List<Booking>> tile = tile(rowTile, (int) dayTile);
+            if (tile == null) {
+                complete = false;
+                continue;
+            }
+            for (Booking booking : tile.getOrDefault(vehicleId, List.of())) {
+                byId.putIfAbsent(booking.getBookingId(), booking);
+            }
+        }
+        if (!complete) {
+            return null;
+        }
+        List<Booking> bookings = new ArrayList<>(byId.values());
+        bookings.sort(Comparator.comparing(Booking::getStartDate));
+        return bookings;
+    }
+
+    // A loaded tile, or null after queueing its fetch
+    private Map<Integer, List<Booking>> tile(int rowTile, int dayTile) {
+        long key = ((long) rowTile << 32) | (dayTile & 0xffffffffL);
+        Map<Integer, List<Booking>> tile = tiles.get(key);
+        if (tile != null || !loading.add(key)) {
+            return tile;
+        }
+        long requestedIn = generation;
+        loader.submit(() -> {
+            Map<Integer, List<Booking>> loaded = null;
+            // Fast scrolling queues tiles that are out of view again before their turn comes
+            if (isVisible(rowTile, dayTile)) {
+                int firstRow = rowTile * ROWS_PER_TILE;
+                List<Integer> vehicleIds = new ArrayList<>();
+                for (Vehicle vehicle : vehicles.subList(firstRow, Math.min(vehicles.size(), firstRow + ROWS_PER_TILE))) {
+                    vehicleIds.add(vehicle.getId());
+                }
+                LocalDate from = LocalDate.ofEpochDay((long) dayTile * DAYS_PER_TILE);
+                loaded = new HashMap<>();
+                for (Booking booking : dbConnector.getBookingsForTimeline(vehicleIds, from, from.plusDays(DAYS_PER_TILE))) {
+                    loaded.computeIfAbsent(Integer.parseInt(booking.getVehicleId()), id -> new ArrayList<>()).add(booking);
+                }
+            }
+            Map<Integer, List<Booking>> result = loaded;
+            Platform.runLater(() -> {
+                if (requestedIn != generation) {
+                    return;
+                }
+                loading.remove(key);
+                if (result != null) {
+                    tiles.put(key, result);
+                    if (tiles.size() > MAX_TILES) {
+                        tiles.remove(tiles.keySet().iterator().next());
+                    }
+                    requestRedraw();
+                }
+            });
+        });
+        return null;
+    }
+
+    private boolean isVisible(int rowTile, int dayTile) {
+        int[] visible = visibleTiles;
+        return rowTile >= visible[0] && rowTile <= visible[1] && dayTile >= visible[2] && dayTile <= visible[3];
+    }
+
+    private Booking bookingAt(double x, double y) {
+        if (x < LABEL_WIDTH || y < HEADER_HEIGHT) {
+            return null;
+        }
+        int row = (int) ((y - HEADER_HEIGHT + vertical.getValue()) / ROW_HEIGHT);
+        long day = (long) Math.floor(horizontal.getValue() + (x - LABEL_WIDTH) / DAY_WIDTH);
+        if (row >= vehicles.size()) {
+            return null;
+        }
+        List<Booking> bookings = bookingsFor(row, day, day + 1);
+        return bookings == null || bookings.isEmpty() ? null : bookings.get(bookings.size() - 1);
+    }
+
+    private static double dayX(long day, double left) {
+        return LABEL_WIDTH + (day - left) * DAY_WIDTH;
+    }
+
+    private static double rowY(int row, double top) {
+        return HEADER_HEIGHT + row * ROW_HEIGHT - top;
+    }
+
+    private static double clamp(double value, double min, double max) {
+        return Math.max(min, Math.min(max, value));
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.vehicle;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Runs one query against several branches at once and collects the per-branch results in branch order.
+// Each branch's query is bounded by the statement timeout; a branch that fails is reported and left out,
+// so one unreachable depot does not block a company-wide view. With failingReads connectors (the headless
+// reports) a failed branch fails the whole run instead, since a total without it would be wrong.
+class BranchFanOut {
+
+    interface BranchQuery<T> {
+        T run(DbConnector branch) throws Exception;
+    }
+
+    static <T> List<T> run(List<DbConnector> branches, BranchQuery<T> query) {
+        List<T> results = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<T>> futures = new ArrayList<>();
+            for (DbConnector branch : branches) {
+                futures.add(executor.submit(() -> query.run(branch)));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    results.add(futures.get(i).get());
+                } catch (ExecutionException ex) {
+                    // A report must cover every branch or none
+                    if (branches.get(i).failsReads()) {
+                        throw new IllegalStateException("Branch " + branches.get(i).getBranchId() + " failed", ex.getCause());
+                    }
+                    System.err.println("Branch " + branches.get(i).getBranchId() + " left out of cross-branch query");
+                    ex.getCause().printStackTrace();
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        return results;
+    }
+
+    // Concatenates list results, e.g. vehicles from every branch
+    static <T> List<T> merge(List<DbConnector> branches, BranchQuery<? extends List<T>> query) {
+        List<T> merged = new ArrayList<>();
+        for (List<T> branchResult : run(branches, query)) {
+            merged.addAll(branchResult);
+        }
+        return merged;
+    }
+}
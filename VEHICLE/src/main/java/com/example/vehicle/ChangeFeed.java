@@ -0,0 +1,221 @@
+package com.example.vehicle;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Tails the change_log outbox written by DbConnector and pushes new rows to listeners.
+// One feed runs per terminal, so every open client sees every other client's mutations.
+//
+// change_id is taken when a row is inserted, not when its transaction commits, so a row can become visible
+// after rows with higher ids have already been read. Every id skipped over is therefore kept as a gap and
+// looked up again on each poll until its row appears or GAP_TIMEOUT_MILLIS passes; by then the transaction
+// was rolled back, or the id was never used (bulk inserts reserve more ids than they need). The resume id
+// stays below the oldest open gap, so a snapshot saved at it replays a late row instead of skipping it.
+// On a shard every session steps its AUTO_INCREMENT by BRANCH_ID_STRIDE (see DbConnector.openShard), so only
+// ids in the branch's residue class can ever appear; the ids between them are never gaps.
+class ChangeFeed {
+    private static final long POLL_INTERVAL_MILLIS = 250;
+    private static final int BATCH_SIZE = 500;
+    // Far longer than any transaction that writes the outbox
+    private static final long GAP_TIMEOUT_MILLIS = 120_000;
+    // Ids below the starting point that may still be in flight when the feed starts
+    private static final int START_WINDOW = 1_000;
+    // A jump larger than this is an AUTO_INCREMENT reset, not that many open transactions
+    private static final int MAX_GAP = 10_000;
+
+    private final DbConnector dbConnector;
+    private final int stride;
+    private final int offset;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService poller = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "change-feed");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile long lastSeenId = -1;
+    private volatile long resumeId = -1;
+    // Missing change id -> when it was first missed; only touched on the feed thread
+    private final TreeMap<Long, Long> gaps = new TreeMap<>();
+    private boolean primed;
+
+    ChangeFeed(DbConnector dbConnector) {
+        this.dbConnector = dbConnector;
+        this.stride = dbConnector.getChangeIdStride();
+        this.offset = dbConnector.getChangeIdOffset();
+    }
+
+    interface Listener {
+        // Called on the feed thread with the changes in commit order; see getResumeId
+        void onChanges(List<Change> changes);
+    }
+
+    void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    // Starts tailing from the current end of the outbox; earlier rows are covered by the initial load
+    void start() {
+        startFrom(dbConnector.getLatestChangeId());
+    }
+
+    // Starts tailing after the given change id, replaying everything committed since then
+    void startFrom(long changeId) {
+        lastSeenId = changeId;
+        resumeId = changeId;
+        poller.scheduleWithFixedDelay(this::poll, POLL_INTERVAL_MILLIS, POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    // Polls straight away instead of waiting for the next tick, e.g. right after a local mutation
+    void pollNow() {
+        poller.execute(this::poll);
+    }
+
+    void stop() {
+        poller.shutdownNow();
+    }
+
+    long getLastSeenId() {
+        return lastSeenId;
+    }
+
+    // Highest change id with nothing below it still outstanding. Within a listener call it already covers the
+    // batch being delivered, so it is the id to save a snapshot at and to pass to startFrom later.
+    long getResumeId() {
+        return resumeId;
+    }
+
+    // Open gaps; call it on the feed thread, i.e. from a listener
+    int getGapCount() {
+        return gaps.size();
+    }
+
+    private void poll() {
+        if (lastSeenId < 0) {
+            return;
+        }
+        try {
+            if (!primed) {
+                primeGaps();
+                primed = true;
+            }
+            deliver(fillGaps());
+            List<Change> changes;
+            do {
+                changes = dbConnector.getChangesSince(lastSeenId, BATCH_SIZE);
+                if (changes.isEmpty()) {
+                    return;
+                }
+                long previous = lastSeenId;
+                for (Change change : changes) {
+                    noteGaps(previous, change.getChangeId());
+                    previous = change.getChangeId();
+                }
+                lastSeenId = previous;
+                deliver(changes);
+            } while (changes.size() == BATCH_SIZE);
+        } catch (RuntimeException ex) {
+            // Never let one bad batch kill the scheduled task
+            ex.printStackTrace();
+        }
+    }
+
+    private void deliver(List<Change> changes) {
+        resumeId = gaps.isEmpty() ? lastSeenId : gaps.firstKey() - 1;
+        if (changes.isEmpty()) {
+            return;
+        }
+        for (Listener listener : listeners) {
+            listener.onChanges(changes);
+        }
+    }
+
+    // The ids just below the starting point that have no row yet may belong to transactions still running
+    private void primeGaps() {
+        long from = Math.max(0, lastSeenId - (long) START_WINDOW * stride);
+        long previous = from;
+        for (Change change : dbConnector.getChangesSince(from, START_WINDOW)) {
+            if (change.getChangeId() > lastSeenId) {
+                break;
+            }
+            noteGaps(previous, change.getChangeId());
+            previous = change.getChangeId();
+        }
+        noteGaps(previous, lastSeenId + 1);
+    }
+
+    private void noteGaps(long previous, long next) {
+        long now = System.currentTimeMillis();
+        long first = Math.max(previous + 1, next - (long) MAX_GAP * stride);
+        for (long id = first + Math.floorMod(offset - first, stride); id < next; id += stride) {
+            gaps.putIfAbsent(id, now);
+        }
+    }
+
+    // Rows that have appeared in earlier gaps since the last poll; gaps open for too long are given up on
+    private List<Change> fillGaps() {
+        if (gaps.isEmpty()) {
+            return List.of();
+        }
+        long now = System.currentTimeMillis();
+        gaps.values().removeIf(since -> now - since > GAP_TIMEOUT_MILLIS);
+        List<Change> filled = dbConnector.getChangesIn(new ArrayList<>(gaps.keySet()));
+        for (Change change : filled) {
+            gaps.remove(change.getChangeId());
+        }
+        return filled;
+    }
+
+    // One outbox row
+    static class Change {
+        private final long changeId;
+        private final String tableName;
+        private final int entityId;
+        private final String operation;
+
+        Change(long changeId, String tableName, int entityId, String operation) {
+            this.changeId = changeId;
+            this.tableName = tableName;
+            this.entityId = entityId;
+            this.operation = operation;
+        }
+
+        public long getChangeId() {
+            return changeId;
+        }
+
+        public String getTableName() {
+            return tableName;
+        }
+
+        public int getEntityId() {
+            return entityId;
+        }
+
+        public String getOperation() {
+            return operation;
+        }
+
+        public boolean isDelete() {
+            return "DELETE".equals(operation);
+        }
+
+        // Written by a database restore: every row may have changed, so listeners rebuild from scratch
+        public boolean isReset() {
+            return "RESET".equals(operation);
+        }
+
+        @Override
+        public String toString() {
+            return changeId + " " + operation + " " + tableName + "#" + entityId;
+        }
+    }
+}
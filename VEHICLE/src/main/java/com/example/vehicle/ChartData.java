@@ -0,0 +1,107 @@
+package com.example.vehicle;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+// Shrinks report data to what a chart can lay out quickly, before any JavaFX node is created.
+// Every chart is bounded: categorical data keeps its largest entries and folds the rest into one "Other"
+// entry, and time series are downsampled with Largest-Triangle-Three-Buckets, which keeps the peaks and
+// dips that a plain every-nth-point sample would drop. Nothing in here touches the toolkit, so it runs on
+// a background thread.
+class ChartData {
+    static final int MAX_SLICES = 8;
+    static final int MAX_BARS = 20;
+    static final int MAX_POINTS = 300;
+
+    // A labelled value, e.g. one pie slice or one bar
+    static class Entry {
+        private final String label;
+        private final double value;
+
+        Entry(String label, double value) {
+            this.label = label;
+            this.value = value;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        public double getValue() {
+            return value;
+        }
+    }
+
+    // The n largest values in descending order, plus one entry summing the rest when anything was left out
+    static List<Entry> topN(Map<String, ? extends Number> values, int n, String otherLabel) {
+        List<Entry> entries = new ArrayList<>(values.size());
+        values.forEach((label, value) -> entries.add(new Entry(label, value.doubleValue())));
+        entries.sort(Comparator.comparingDouble(Entry::getValue).reversed().thenComparing(Entry::getLabel));
+        if (entries.size() <= n) {
+            return entries;
+        }
+        List<Entry> top = new ArrayList<>(entries.subList(0, n - 1));
+        double other = 0;
+        for (Entry entry : entries.subList(n - 1, entries.size())) {
+            other += entry.getValue();
+        }
+        top.add(new Entry(otherLabel + " (" + (entries.size() - n + 1) + ")", other));
+        return top;
+    }
+
+    // Largest-Triangle-Three-Buckets: picks at most threshold points of (x, y), always keeping the first and
+    // last. x must be ascending. Returns {xs, ys}.
+    static double[][] lttb(double[] x, double[] y, int threshold) {
+        int length = x.length;
+        if (threshold >= length || threshold < 3) {
+            return new double[][]{x.clone(), y.clone()};
+        }
+        double[] sampledX = new double[threshold];
+        double[] sampledY = new double[threshold];
+        sampledX[0] = x[0];
+        sampledY[0] = y[0];
+        int selected = 0;
+        double bucketSize = (double) (length - 2) / (threshold - 2);
+
+        for (int bucket = 0; bucket < threshold - 2; bucket++) {
+            // Average of the next bucket is the third corner of the triangle
+            int nextStart = (int) Math.floor((bucket + 1) * bucketSize) + 1;
+            int nextEnd = Math.min((int) Math.floor((bucket + 2) * bucketSize) + 1, length);
+            double averageX = 0;
+            double averageY = 0;
+            for (int i = nextStart; i < nextEnd; i++) {
+                averageX += x[i];
+                averageY += y[i];
+            }
+            int nextCount = Math.max(1, nextEnd - nextStart);
+            averageX /= nextCount;
+            averageY /= nextCount;
+            if (nextEnd <= nextStart) {
+                averageX = x[length - 1];
+                averageY = y[length - 1];
+            }
+
+            // Keep the point of this bucket that spans the largest triangle with the previous pick
+            int start = (int) Math.floor(bucket * bucketSize) + 1;
+            int end = (int) Math.floor((bucket + 1) * bucketSize) + 1;
+            double maxArea = -1;
+            int chosen = start;
+            for (int i = start; i < end; i++) {
+                double area = Math.abs((x[selected] - averageX) * (y[i] - y[selected])
+                        - (x[selected] - x[i]) * (averageY - y[selected]));
+                if (area > maxArea) {
+                    maxArea = area;
+                    chosen = i;
+                }
+            }
+            sampledX[bucket + 1] = x[chosen];
+            sampledY[bucket + 1] = y[chosen];
+            selected = chosen;
+        }
+        sampledX[threshold - 1] = x[length - 1];
+        sampledY[threshold - 1] = y[length - 1];
+        return new double[][]{sampledX, sampledY};
+    }
+}
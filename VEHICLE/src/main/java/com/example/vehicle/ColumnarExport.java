@@ -0,0 +1,485 @@
+package com.example.vehicle;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+// Analytics export: writes bookings, payments, vehicles and customers to one typed, compressed columnar file
+// per table (<table>.vrsc), for analysts who load the data into other tools. Each table is streamed from
+// JDBC and cut into row groups of ROW_GROUP_SIZE rows, so memory stays bounded however large the table is.
+// All tables are read on one connection inside START TRANSACTION WITH CONSISTENT SNAPSHOT, so the files
+// agree with each other: no payment whose booking is missing from bookings.vrsc.
+//
+// File layout (all integers big-endian; the layout follows Parquet's, without its dependencies):
+//   "VRSC" version:u8
+//   row groups, each one column chunk per column: Deflate-compressed chunk bytes
+//   footer: table:utf, columns:i32, { name:utf type:u8 nullable:bool }*,
+//           rowGroups:i32, { rows:i32, { offset:i64 compressed:i32 raw:i32 encoding:u8 nulls:i32 min:i64 max:i64 }* }*
+//   footerLength:i32 "VRSC"
+//
+// An uncompressed chunk is a null bitmap (only when the column is nullable; bit set = null) followed by the
+// non-null values. Every type is held as a long: INT as is, DATE as epoch days, TIMESTAMP as epoch millis,
+// DECIMAL as cents; STRING as UTF-8. Values are encoded as
+//   DELTA     zig-zag varint of the difference to the previous value; sorted ids and dates shrink to a byte
+//   DICTIONARY distinct values (ascending and delta-coded for numbers, first-seen order for strings) followed
+//             by one varint index per value; used for category, status, payment type and repeating ids
+//   PLAIN     strings only: varint byte length followed by the bytes
+// min/max in the footer cover the non-null values of numeric chunks, so a reader can skip row groups.
+//
+// ColumnarReader reads the files back (ReportCli columnar-csv converts one to CSV).
+class ColumnarExport {
+    static final byte[] MAGIC = {'V', 'R', 'S', 'C'};
+    static final int VERSION = 1;
+    static final String EXTENSION = ".vrsc";
+    static final int ROW_GROUP_SIZE = 65_536;
+    static final int MAX_DICTIONARY = 65_536;
+
+    enum Type { INT, DATE, TIMESTAMP, DECIMAL, STRING }
+
+    enum Encoding { DELTA, DICTIONARY, PLAIN }
+
+    static final List<Table> TABLES = List.of(
+            new Table("vehicles",
+                    "SELECT vehicle_id, brand, model, category, rental_price, availability_status, version, branch_id FROM vehicles ORDER BY vehicle_id",
+                    new Column("vehicle_id", Type.INT, false), new Column("brand", Type.STRING, false),
+                    new Column("model", Type.STRING, false), new Column("category", Type.STRING, false),
+                    new Column("rental_price", Type.DECIMAL, false), new Column("availability_status", Type.STRING, false),
+                    new Column("version", Type.INT, false), new Column("branch_id", Type.INT, false)),
+            new Table("customers",
+                    "SELECT customer_id, customer_name, contact_info, license_number, version FROM customers ORDER BY customer_id",
+                    new Column("customer_id", Type.INT, false), new Column("customer_name", Type.STRING, false),
+                    new Column("contact_info", Type.STRING, false), new Column("license_number", Type.STRING, false),
+                    new Column("version", Type.INT, false)),
+            // The vehicle's category rides along so bookings can be grouped without a join in the analyst's tool
+            new Table("bookings",
+                    "SELECT b.booking_id, b.vehicle_id, b.customer_id, v.category, b.start_date, b.end_date, b.booking_date, b.returned_date, b.branch_id "
+                            + "FROM bookings b LEFT JOIN vehicles v ON v.vehicle_id = b.vehicle_id ORDER BY b.booking_id",
+                    new Column("booking_id", Type.INT, false), new Column("vehicle_id", Type.INT, false),
+                    new Column("customer_id", Type.INT, false), new Column("category", Type.STRING, true),
+                    new Column("start_date", Type.DATE, false), new Column("end_date", Type.DATE, false),
+                    new Column("booking_date", Type.TIMESTAMP, true), new Column("returned_date", Type.DATE, true),
+                    new Column("branch_id", Type.INT, false)),
+            new Table("payments",
+                    "SELECT payment_id, booking_id, amount, extras, payment_type, payment_date, fee_date FROM payments ORDER BY payment_id",
+                    new Column("payment_id", Type.INT, false), new Column("booking_id", Type.INT, false),
+                    new Column("amount", Type.DECIMAL, false), new Column("extras", Type.DECIMAL, false),
+                    new Column("payment_type", Type.STRING, false), new Column("payment_date", Type.TIMESTAMP, true),
+                    new Column("fee_date", Type.DATE, true))
+    );
+
+    private final DbConnector dbConnector;
+
+    ColumnarExport(DbConnector dbConnector) {
+        this.dbConnector = dbConnector;
+    }
+
+    // Writes every table into the directory; returns one line per table with its row count and file size.
+    // Each file is written to a temporary sibling and only moved into place once every table has been read,
+    // so a failed export never leaves half a file or a mix of old and new files.
+    List<String> exportAll(Path directory) throws IOException, SQLException {
+        Files.createDirectories(directory);
+        List<String> summary = new ArrayList<>();
+        List<Path> temps = new ArrayList<>();
+        try {
+            try (Connection connection = dbConnector.connectForRead()) {
+                connection.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+                connection.setAutoCommit(false);
+                try (Statement stmt = connection.createStatement()) {
+                    stmt.execute("START TRANSACTION WITH CONSISTENT SNAPSHOT, READ ONLY");
+                }
+                for (Table table : TABLES) {
+                    long startedAt = System.nanoTime();
+                    Path temp = directory.resolve(table.name + EXTENSION + ".tmp");
+                    temps.add(temp);
+                    long rows = export(connection, table, temp);
+                    summary.add(String.format("%s: %d rows, %.1f KB in %.1fs", directory.resolve(table.name + EXTENSION), rows,
+                            Files.size(temp) / 1024.0, (System.nanoTime() - startedAt) / 1e9));
+                }
+                connection.commit();
+            }
+        } catch (IOException | SQLException e) {
+            for (Path temp : temps) {
+                Files.deleteIfExists(temp);
+            }
+            throw e;
+        }
+        for (int i = 0; i < TABLES.size(); i++) {
+            Files.move(temps.get(i), directory.resolve(TABLES.get(i).name + EXTENSION),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        return summary;
+    }
+
+    // Streams one table into the file on the caller's connection, so it reads from the caller's snapshot
+    private static long export(Connection connection, Table table, Path file) throws IOException, SQLException {
+        try (PreparedStatement stmt = streaming(connection, table.query);
+             ResultSet rs = stmt.executeQuery();
+             OutputStream out = new BufferedOutputStream(Files.newOutputStream(file), 1 << 16)) {
+            return write(table, rs, out);
+        }
+    }
+
+    // Same as PaymentReconciler: Connector/J streams a forward-only result with this fetch size row by row
+    private static PreparedStatement streaming(Connection connection, String sql) throws SQLException {
+        PreparedStatement stmt = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        stmt.setFetchSize(Integer.MIN_VALUE);
+        stmt.setQueryTimeout(0);
+        return stmt;
+    }
+
+    static long write(Table table, ResultSet rs, OutputStream stream) throws IOException, SQLException {
+        ColumnarFileWriter writer = new ColumnarFileWriter(table, stream);
+        while (rs.next()) {
+            writer.add(rs);
+        }
+        return writer.finish();
+    }
+
+    // Buffers one row group and writes it out column by column
+    static class ColumnarFileWriter {
+        private final Table table;
+        private final DataOutputStream out;
+        private final ChunkBuffer[] buffers;
+        private final ByteArrayOutputStream footer = new ByteArrayOutputStream();
+        private final DataOutputStream footerOut = new DataOutputStream(footer);
+        private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        private byte[] compressed = new byte[1 << 16];
+        private long position;
+        private int rowGroups;
+        private long rows;
+
+        ColumnarFileWriter(Table table, OutputStream stream) throws IOException {
+            this.table = table;
+            this.out = new DataOutputStream(stream);
+            this.buffers = new ChunkBuffer[table.columns.size()];
+            for (int i = 0; i < buffers.length; i++) {
+                buffers[i] = new ChunkBuffer(table.columns.get(i));
+            }
+            out.write(MAGIC);
+            out.writeByte(VERSION);
+            position = MAGIC.length + 1;
+        }
+
+        void add(ResultSet rs) throws IOException, SQLException {
+            for (int i = 0; i < buffers.length; i++) {
+                buffers[i].add(rs, i + 1);
+            }
+            rows++;
+            if (buffers[0].size == ROW_GROUP_SIZE) {
+                flushRowGroup();
+            }
+        }
+
+        // Writes the last row group and the footer; returns the number of rows written
+        long finish() throws IOException {
+            if (buffers[0].size > 0) {
+                flushRowGroup();
+            }
+            ByteArrayOutputStream header = new ByteArrayOutputStream();
+            DataOutputStream headerOut = new DataOutputStream(header);
+            headerOut.writeUTF(table.name);
+            headerOut.writeInt(table.columns.size());
+            for (Column column : table.columns) {
+                headerOut.writeUTF(column.name);
+                headerOut.writeByte(column.type.ordinal());
+                headerOut.writeBoolean(column.nullable);
+            }
+            headerOut.writeInt(rowGroups);
+            headerOut.flush();
+            footerOut.flush();
+            out.write(header.toByteArray());
+            footer.writeTo(out);
+            out.writeInt(header.size() + footer.size());
+            out.write(MAGIC);
+            out.flush();
+            deflater.end();
+            return rows;
+        }
+
+        private void flushRowGroup() throws IOException {
+            footerOut.writeInt(buffers[0].size);
+            for (ChunkBuffer buffer : buffers) {
+                Chunk chunk = buffer.encode();
+                int length = deflate(chunk.bytes);
+                out.write(compressed, 0, length);
+                footerOut.writeLong(position);
+                footerOut.writeInt(length);
+                footerOut.writeInt(chunk.bytes.length);
+                footerOut.writeByte(chunk.encoding.ordinal());
+                footerOut.writeInt(buffer.nulls);
+                footerOut.writeLong(buffer.min);
+                footerOut.writeLong(buffer.max);
+                position += length;
+                buffer.clear();
+            }
+            rowGroups++;
+        }
+
+        private int deflate(byte[] raw) {
+            deflater.reset();
+            deflater.setInput(raw);
+            deflater.finish();
+            int length = 0;
+            while (!deflater.finished()) {
+                if (length == compressed.length) {
+                    compressed = Arrays.copyOf(compressed, compressed.length * 2);
+                }
+                length += deflater.deflate(compressed, length, compressed.length - length);
+            }
+            return length;
+        }
+    }
+
+    // The values of one column within the current row group
+    private static class ChunkBuffer {
+        private final Column column;
+        private final long[] values;
+        private final String[] strings;
+        private final boolean[] isNull;
+        private int size;
+        private int nulls;
+        private long min;
+        private long max;
+
+        ChunkBuffer(Column column) {
+            this.column = column;
+            this.values = column.type == Type.STRING ? null : new long[ROW_GROUP_SIZE];
+            this.strings = column.type == Type.STRING ? new String[ROW_GROUP_SIZE] : null;
+            this.isNull = column.nullable ? new boolean[ROW_GROUP_SIZE] : null;
+            clear();
+        }
+
+        void clear() {
+            if (strings != null) {
+                Arrays.fill(strings, 0, size, null);
+            }
+            size = 0;
+            nulls = 0;
+            min = Long.MAX_VALUE;
+            max = Long.MIN_VALUE;
+        }
+
+        void add(ResultSet rs, int index) throws SQLException {
+            boolean missing;
+            if (column.type == Type.STRING) {
+                String value = rs.getString(index);
+                missing = value == null;
+                strings[size] = missing ? "" : value;
+            } else {
+                Long value = read(rs, index);
+                missing = value == null;
+                long v = missing ? 0 : value;
+                values[size] = v;
+                if (!missing) {
+                    min = Math.min(min, v);
+                    max = Math.max(max, v);
+                }
+            }
+            if (missing) {
+                if (!column.nullable) {
+                    throw new SQLException("Unexpected NULL in " + column.name);
+                }
+                isNull[size] = true;
+                nulls++;
+            } else if (column.nullable) {
+                isNull[size] = false;
+            }
+            size++;
+        }
+
+        private Long read(ResultSet rs, int index) throws SQLException {
+            switch (column.type) {
+                case INT -> {
+                    long value = rs.getLong(index);
+                    return rs.wasNull() ? null : value;
+                }
+                case DATE -> {
+                    Date value = rs.getDate(index);
+                    return value == null ? null : value.toLocalDate().toEpochDay();
+                }
+                case TIMESTAMP -> {
+                    Timestamp value = rs.getTimestamp(index);
+                    return value == null ? null : value.getTime();
+                }
+                case DECIMAL -> {
+                    BigDecimal value = rs.getBigDecimal(index);
+                    return value == null ? null : value.movePointRight(2).longValue();
+                }
+                default -> throw new IllegalStateException(column.type.name());
+            }
+        }
+
+        Chunk encode() {
+            ByteArrayOutputStream raw = new ByteArrayOutputStream(size * 2 + 64);
+            if (column.nullable) {
+                byte[] bitmap = new byte[(size + 7) / 8];
+                for (int i = 0; i < size; i++) {
+                    if (isNull[i]) {
+                        bitmap[i >> 3] |= (byte) (1 << (i & 7));
+                    }
+                }
+                raw.writeBytes(bitmap);
+            }
+            Encoding encoding = column.type == Type.STRING ? encodeStrings(raw) : encodeNumbers(raw);
+            return new Chunk(encoding, raw.toByteArray());
+        }
+
+        private boolean present(int i) {
+            return isNull == null || !isNull[i];
+        }
+
+        // Dictionary when the values repeat (category, status, brand), plain for names and contact details
+        private Encoding encodeStrings(ByteArrayOutputStream raw) {
+            Map<String, Integer> dictionary = new HashMap<>();
+            List<String> order = new ArrayList<>();
+            int limit = Math.min(MAX_DICTIONARY, (size - nulls) / 2);
+            for (int i = 0; i < size && dictionary.size() <= limit; i++) {
+                if (present(i) && dictionary.putIfAbsent(strings[i], order.size()) == null) {
+                    order.add(strings[i]);
+                }
+            }
+            if (order.isEmpty() || dictionary.size() > limit) {
+                for (int i = 0; i < size; i++) {
+                    if (present(i)) {
+                        writeString(raw, strings[i]);
+                    }
+                }
+                return Encoding.PLAIN;
+            }
+            writeVarLong(raw, order.size());
+            for (String value : order) {
+                writeString(raw, value);
+            }
+            for (int i = 0; i < size; i++) {
+                if (present(i)) {
+                    writeVarLong(raw, dictionary.get(strings[i]));
+                }
+            }
+            return Encoding.DICTIONARY;
+        }
+
+        // Dictionary when few distinct values repeat often (vehicle and customer ids on bookings, prices),
+        // delta otherwise (primary keys, dates, timestamps)
+        private Encoding encodeNumbers(ByteArrayOutputStream raw) {
+            int present = size - nulls;
+            int limit = Math.min(MAX_DICTIONARY, present / 4);
+            Map<Long, Integer> dictionary = new HashMap<>();
+            for (int i = 0; i < size && dictionary.size() <= limit; i++) {
+                if (present(i)) {
+                    dictionary.putIfAbsent(values[i], 0);
+                }
+            }
+            if (present == 0 || dictionary.size() > limit) {
+                long previous = 0;
+                for (int i = 0; i < size; i++) {
+                    if (present(i)) {
+                        writeVarLong(raw, zigZag(values[i] - previous));
+                        previous = values[i];
+                    }
+                }
+                return Encoding.DELTA;
+            }
+            long[] sorted = new long[dictionary.size()];
+            int n = 0;
+            for (long value : dictionary.keySet()) {
+                sorted[n++] = value;
+            }
+            Arrays.sort(sorted);
+            writeVarLong(raw, sorted.length);
+            long previous = 0;
+            for (int i = 0; i < sorted.length; i++) {
+                writeVarLong(raw, zigZag(sorted[i] - previous));
+                previous = sorted[i];
+                dictionary.put(sorted[i], i);
+            }
+            for (int i = 0; i < size; i++) {
+                if (present(i)) {
+                    writeVarLong(raw, dictionary.get(values[i]));
+                }
+            }
+            return Encoding.DICTIONARY;
+        }
+    }
+
+    private static void writeString(ByteArrayOutputStream raw, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(raw, bytes.length);
+        raw.writeBytes(bytes);
+    }
+
+    static void writeVarLong(ByteArrayOutputStream raw, long value) {
+        while ((value & ~0x7FL) != 0) {
+            raw.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        raw.write((int) value);
+    }
+
+    static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static class Chunk {
+        private final Encoding encoding;
+        private final byte[] bytes;
+
+        Chunk(Encoding encoding, byte[] bytes) {
+            this.encoding = encoding;
+            this.bytes = bytes;
+        }
+    }
+
+    static class Column {
+        final String name;
+        final Type type;
+        final boolean nullable;
+
+        Column(String name, Type type, boolean nullable) {
+            this.name = name;
+            this.type = type;
+            this.nullable = nullable;
+        }
+    }
+
+    static class Table {
+        final String name;
+        final String query;
+        final List<Column> columns;
+
+        Table(String name, String query, Column... columns) {
+            this.name = name;
+            this.query = query;
+            this.columns = List.of(columns);
+        }
+
+        Table(String name, List<Column> columns) {
+            this.name = name;
+            this.query = null;
+            this.columns = List.copyOf(columns);
+        }
+    }
+}
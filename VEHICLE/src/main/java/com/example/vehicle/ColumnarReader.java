@@ -0,0 +1,304 @@
+package com.example.vehicle;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+// Reads a file written by ColumnarExport one row group at a time. Values come back as Long (INT),
+// LocalDate (DATE), LocalDateTime (TIMESTAMP), BigDecimal (DECIMAL) or String, and null for SQL NULL.
+class ColumnarReader implements Closeable {
+    private final FileChannel channel;
+    private final ColumnarExport.Table table;
+    private final List<RowGroup> rowGroups = new ArrayList<>();
+    private final Inflater inflater = new Inflater();
+
+    interface RowHandler {
+        void row(Object[] values) throws IOException;
+    }
+
+    ColumnarReader(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            ByteBuffer header = read(0, ColumnarExport.MAGIC.length + 1);
+            ByteBuffer trailer = read(size - 8, 8);
+            int footerLength = trailer.getInt();
+            if (!hasMagic(header) || !hasMagic(trailer) || footerLength < 0 || footerLength > size - 13) {
+                throw new IOException(file + " is not a columnar export");
+            }
+            if (header.get() != ColumnarExport.VERSION) {
+                throw new IOException(file + " was written by an unsupported version");
+            }
+            ByteBuffer footer = read(size - 8 - footerLength, footerLength);
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(footer.array()));
+            String name = in.readUTF();
+            List<ColumnarExport.Column> columns = new ArrayList<>();
+            int columnCount = in.readInt();
+            for (int i = 0; i < columnCount; i++) {
+                columns.add(new ColumnarExport.Column(in.readUTF(), ColumnarExport.Type.values()[in.readUnsignedByte()], in.readBoolean()));
+            }
+            table = new ColumnarExport.Table(name, columns);
+            int groupCount = in.readInt();
+            for (int g = 0; g < groupCount; g++) {
+                RowGroup group = new RowGroup(in.readInt(), columnCount);
+                for (int c = 0; c < columnCount; c++) {
+                    group.chunks[c] = new ChunkInfo(in.readLong(), in.readInt(), in.readInt(),
+                            ColumnarExport.Encoding.values()[in.readUnsignedByte()], in.readInt(), in.readLong(), in.readLong());
+                }
+                rowGroups.add(group);
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    String tableName() {
+        return table.name;
+    }
+
+    List<ColumnarExport.Column> columns() {
+        return table.columns;
+    }
+
+    long rowCount() {
+        long rows = 0;
+        for (RowGroup group : rowGroups) {
+            rows += group.rows;
+        }
+        return rows;
+    }
+
+    void forEachRow(RowHandler handler) throws IOException {
+        int columnCount = table.columns.size();
+        for (RowGroup group : rowGroups) {
+            Object[][] columns = new Object[columnCount][];
+            for (int c = 0; c < columnCount; c++) {
+                columns[c] = decode(table.columns.get(c), group.chunks[c], group.rows);
+            }
+            Object[] row = new Object[columnCount];
+            for (int r = 0; r < group.rows; r++) {
+                for (int c = 0; c < columnCount; c++) {
+                    row[c] = columns[c][r];
+                }
+                handler.row(row);
+            }
+        }
+    }
+
+    // Per column: compressed size, encodings used, nulls and the value range from the footer statistics
+    void describe(Writer out) throws IOException {
+        out.write(String.format("%s: %d rows in %d row group(s)%n", table.name, rowCount(), rowGroups.size()));
+        for (int c = 0; c < table.columns.size(); c++) {
+            ColumnarExport.Column column = table.columns.get(c);
+            long compressed = 0;
+            long raw = 0;
+            long nulls = 0;
+            long min = Long.MAX_VALUE;
+            long max = Long.MIN_VALUE;
+            EnumSet<ColumnarExport.Encoding> encodings = EnumSet.noneOf(ColumnarExport.Encoding.class);
+            for (RowGroup group : rowGroups) {
+                ChunkInfo chunk = group.chunks[c];
+                compressed += chunk.compressedLength;
+                raw += chunk.rawLength;
+                nulls += chunk.nulls;
+                min = Math.min(min, chunk.min);
+                max = Math.max(max, chunk.max);
+                encodings.add(chunk.encoding);
+            }
+            String range = column.type == ColumnarExport.Type.STRING || min > max ? ""
+                    : "  " + toValue(column.type, min) + " .. " + toValue(column.type, max);
+            out.write(String.format("  %-20s %-9s %10d bytes (%d raw) %-22s %d null(s)%s%n", column.name, column.type,
+                    compressed, raw, encodings, nulls, range));
+        }
+        out.flush();
+    }
+
+    // Converts the whole file to CSV with a header row, for tools without a reader for this format
+    static long toCsv(Path file, Writer out) throws IOException {
+        try (ColumnarReader reader = new ColumnarReader(file)) {
+            List<String> names = new ArrayList<>();
+            for (ColumnarExport.Column column : reader.columns()) {
+                names.add(column.name);
+            }
+            out.write(String.join(",", names) + "\n");
+            StringBuilder line = new StringBuilder();
+            reader.forEachRow(row -> {
+                line.setLength(0);
+                for (int i = 0; i < row.length; i++) {
+                    if (i > 0) {
+                        line.append(',');
+                    }
+                    if (row[i] instanceof String text) {
+                        line.append('"').append(text.replace("\"", "\"\"")).append('"');
+                    } else if (row[i] != null) {
+                        line.append(row[i]);
+                    }
+                }
+                out.write(line.append('\n').toString());
+            });
+            out.flush();
+            return reader.rowCount();
+        }
+    }
+
+    private Object[] decode(ColumnarExport.Column column, ChunkInfo chunk, int rows) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(inflate(chunk));
+        boolean[] isNull = new boolean[rows];
+        if (column.nullable) {
+            byte[] bitmap = new byte[(rows + 7) / 8];
+            buffer.get(bitmap);
+            for (int i = 0; i < rows; i++) {
+                isNull[i] = (bitmap[i >> 3] & (1 << (i & 7))) != 0;
+            }
+        }
+        Object[] values = new Object[rows];
+        Object[] dictionary = null;
+        if (chunk.encoding == ColumnarExport.Encoding.DICTIONARY) {
+            dictionary = new Object[(int) readVarLong(buffer)];
+            long previous = 0;
+            for (int i = 0; i < dictionary.length; i++) {
+                if (column.type == ColumnarExport.Type.STRING) {
+                    dictionary[i] = readString(buffer);
+                } else {
+                    previous += ColumnarExport.unZigZag(readVarLong(buffer));
+                    dictionary[i] = toValue(column.type, previous);
+                }
+            }
+        }
+        long previous = 0;
+        for (int i = 0; i < rows; i++) {
+            if (isNull[i]) {
+                continue;
+            }
+            switch (chunk.encoding) {
+                case DICTIONARY -> values[i] = dictionary[(int) readVarLong(buffer)];
+                case PLAIN -> values[i] = readString(buffer);
+                case DELTA -> {
+                    previous += ColumnarExport.unZigZag(readVarLong(buffer));
+                    values[i] = toValue(column.type, previous);
+                }
+            }
+        }
+        return values;
+    }
+
+    private static Object toValue(ColumnarExport.Type type, long value) {
+        return switch (type) {
+            case INT -> value;
+            case DATE -> LocalDate.ofEpochDay(value);
+            case TIMESTAMP -> new Timestamp(value).toLocalDateTime();
+            case DECIMAL -> BigDecimal.valueOf(value, 2);
+            case STRING -> throw new IllegalStateException("STRING is not numeric");
+        };
+    }
+
+    private byte[] inflate(ChunkInfo chunk) throws IOException {
+        byte[] raw = new byte[chunk.rawLength];
+        inflater.reset();
+        inflater.setInput(read(chunk.offset, chunk.compressedLength).array());
+        try {
+            int length = 0;
+            while (length < raw.length && !inflater.finished()) {
+                int n = inflater.inflate(raw, length, raw.length - length);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                length += n;
+            }
+            if (length != raw.length) {
+                throw new IOException("Truncated column chunk at offset " + chunk.offset);
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt column chunk at offset " + chunk.offset, e);
+        }
+        return raw;
+    }
+
+    private ByteBuffer read(long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of file at " + (position + buffer.position()));
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static boolean hasMagic(ByteBuffer buffer) {
+        byte[] magic = new byte[ColumnarExport.MAGIC.length];
+        buffer.get(magic);
+        return Arrays.equals(magic, ColumnarExport.MAGIC);
+    }
+
+    private static long readVarLong(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = (int) readVarLong(buffer);
+        String value = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    @Override
+    public void close() throws IOException {
+        inflater.end();
+        channel.close();
+    }
+
+    private static class RowGroup {
+        private final int rows;
+        private final ChunkInfo[] chunks;
+
+        RowGroup(int rows, int columns) {
+            this.rows = rows;
+            this.chunks = new ChunkInfo[columns];
+        }
+    }
+
+    private static class ChunkInfo {
+        private final long offset;
+        private final int compressedLength;
+        private final int rawLength;
+        private final ColumnarExport.Encoding encoding;
+        private final int nulls;
+        private final long min;
+        private final long max;
+
+        ChunkInfo(long offset, int compressedLength, int rawLength, ColumnarExport.Encoding encoding, int nulls, long min, long max) {
+            this.offset = offset;
+            this.compressedLength = compressedLength;
+            this.rawLength = rawLength;
+            this.encoding = encoding;
+            this.nulls = nulls;
+            this.min = min;
+            this.max = max;
+        }
+    }
+}
@@ -0,0 +1,529 @@
+package com.example.vehicle;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Fuzzy customer lookup, so repeat walk-ins are found even when their name or contact details are typed a
+// little differently. Every customer is indexed in memory under:
+//   - the trigrams of their normalised name ("  thabo mokoena ")
+//   - the Soundex code of each name part, so "Jonson" finds "Johnson"
+//   - their normalised contact: an e-mail in lower case, or the last 9 digits of a phone number, so
+//     "+27 82 555 1234" and "082-555-1234" are the same key
+// Lookups only score customers that share a key with the query; keys held by more than MAX_POSTING customers
+// (trigrams like "an ") are too common to narrow anything down and are skipped. Trigrams are packed into
+// longs and the posting lists are plain int arrays, so the index stays small enough to hold the whole table.
+// It is loaded once and then patched from the change feed.
+//
+// findDuplicates groups the whole table in near-linear time: customers are only compared within blocks that
+// share their full Soundex name key, contact key or licence number, and blocks larger than MAX_BLOCK are
+// skipped the same way. Names are scored by edit distance; Soundex only picks the candidates and breaks ties,
+// since unrelated names share codes far too often ("Robert"/"Rupert"). A name alone never reaches
+// DUPLICATE_THRESHOLD: the pair also needs a matching contact or licence, and two different licence numbers
+// rule a pair out whatever else matches.
+class CustomerMatcher implements ChangeFeed.Listener {
+    static final double SUGGEST_THRESHOLD = 0.45;
+    static final double DUPLICATE_THRESHOLD = 0.85; // With an identical contact, names must be at least 75% alike
+    private static final int MAX_POSTING = 5000;
+    private static final int MAX_BLOCK = 200;
+    private static final double NAME_WEIGHT = 0.6;
+    private static final double CONTACT_WEIGHT = 0.4;
+
+    private final DbConnector dbConnector;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Integer, Indexed> byId = new HashMap<>();
+    private final Map<Long, Postings> gramPostings = new HashMap<>();
+    private final Map<String, Postings> keyPostings = new HashMap<>(); // "p:" name part, "n:" full name, "c:" contact, "l:" licence
+
+    CustomerMatcher(DbConnector dbConnector) {
+        this.dbConnector = dbConnector;
+    }
+
+    void reload() {
+        List<Customer> customers = dbConnector.getAllCustomers();
+        lock.writeLock().lock();
+        try {
+            byId.clear();
+            gramPostings.clear();
+            keyPostings.clear();
+            for (Customer customer : customers) {
+                put(customer);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Incremental refresh: only the changed customers are fetched and re-indexed
+    @Override
+    public void onChanges(List<ChangeFeed.Change> changes) {
+        if (changes.stream().anyMatch(ChangeFeed.Change::isReset)) {
+            reload();
+            return;
+        }
+        for (ChangeFeed.Change change : changes) {
+            if (!"customers".equals(change.getTableName())) {
+                continue;
+            }
+            Customer customer = change.isDelete() ? null : dbConnector.getCustomerById(change.getEntityId());
+            lock.writeLock().lock();
+            try {
+                remove(change.getEntityId());
+                if (customer != null) {
+                    put(customer);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    // Existing customers resembling what the clerk has typed so far, best match first. The typed text is
+    // treated as a prefix, so "thab" already finds "Thabo Mokoena".
+    List<Match> suggest(String name, String contact, int limit) {
+        Indexed query = new Indexed(new Customer(0, name == null ? "" : name, contact == null ? "" : contact, ""));
+        long[] typedName = prefixTrigrams(normaliseName(query.customer.getCustomerName()));
+        long[] typedContact = prefixTrigrams(query.contactKey);
+        lock.readLock().lock();
+        try {
+            Set<Integer> candidates = new HashSet<>();
+            for (long gram : typedName) {
+                collect(gramPostings.get(gram), candidates);
+            }
+            for (String key : query.keys()) {
+                collect(keyPostings.get(key), candidates);
+            }
+            List<Match> matches = new ArrayList<>();
+            for (int id : candidates) {
+                Indexed candidate = byId.get(id);
+                double nameScore = Math.max(nameSimilarity(query, candidate), containment(typedName, candidate.trigrams));
+                double score = nameScore;
+                if (!query.contactKey.isEmpty() && !candidate.contactKey.isEmpty()) {
+                    double contactScore = Math.max(contactSimilarity(query, candidate), containment(typedContact, candidate.contactTrigrams));
+                    score = typedName.length == 0 ? contactScore : NAME_WEIGHT * nameScore + CONTACT_WEIGHT * contactScore;
+                }
+                if (score >= SUGGEST_THRESHOLD) {
+                    matches.add(new Match(candidate.customer, score, soundsAlike(query, candidate)));
+                }
+            }
+            matches.sort(Comparator.comparingDouble(Match::getScore).reversed()
+                    .thenComparing(Match::soundsAlike, Comparator.reverseOrder())
+                    .thenComparingInt(match -> match.getCustomer().getCustomerId()));
+            return matches.size() > limit ? new ArrayList<>(matches.subList(0, limit)) : matches;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Groups of customers that are probably the same person; each group is ordered by customer id, so the
+    // first one is the original record
+    List<List<Customer>> findDuplicates(double threshold) {
+        lock.readLock().lock();
+        try {
+            Map<Integer, Integer> parent = new HashMap<>();
+            for (Map.Entry<String, Postings> block : keyPostings.entrySet()) {
+                // Single name parts ("p:") are for lookups; blocking on them would compare far too many pairs
+                Postings ids = block.getValue();
+                if (block.getKey().startsWith("p:") || ids.size < 2 || ids.size > MAX_BLOCK) {
+                    continue;
+                }
+                for (int i = 0; i < ids.size; i++) {
+                    for (int j = i + 1; j < ids.size; j++) {
+                        int a = ids.ids[i];
+                        int b = ids.ids[j];
+                        if (find(parent, a) != find(parent, b) && score(byId.get(a), byId.get(b)) >= threshold) {
+                            union(parent, a, b);
+                        }
+                    }
+                }
+            }
+
+            Map<Integer, List<Customer>> groups = new HashMap<>();
+            for (int id : new ArrayList<>(parent.keySet())) {
+                groups.computeIfAbsent(find(parent, id), root -> new ArrayList<>()).add(byId.get(id).customer);
+            }
+            List<List<Customer>> duplicates = new ArrayList<>();
+            for (List<Customer> group : groups.values()) {
+                if (group.size() > 1) {
+                    group.sort(Comparator.comparingInt(Customer::getCustomerId));
+                    duplicates.add(group);
+                }
+            }
+            duplicates.sort(Comparator.comparingInt(group -> group.get(0).getCustomerId()));
+            return duplicates;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    int size() {
+        lock.readLock().lock();
+        try {
+            return byId.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // 0..1: name similarity weighted with the best supporting evidence, an agreeing contact or the same licence
+    // number. Missing details count as no evidence, so a name match alone stays at NAME_WEIGHT; different
+    // licence numbers score 0.
+    static double score(Indexed a, Indexed b) {
+        if (!a.licenceKey.isEmpty() && !b.licenceKey.isEmpty() && !a.licenceKey.equals(b.licenceKey)) {
+            return 0;
+        }
+        double evidence = identifies(a.contactKey) && identifies(b.contactKey) ? contactSimilarity(a, b) : 0;
+        if (!a.licenceKey.isEmpty() && a.licenceKey.equals(b.licenceKey)) {
+            evidence = 1;
+        }
+        return NAME_WEIGHT * nameSimilarity(a, b) + CONTACT_WEIGHT * evidence;
+    }
+
+    // 1 - edit distance / longer length, on the name as typed or with its parts sorted, so "Mokoena Thabo"
+    // still matches "Thabo Mokoena"
+    private static double nameSimilarity(Indexed a, Indexed b) {
+        return Math.max(editSimilarity(a.name, b.name), editSimilarity(a.sortedName, b.sortedName));
+    }
+
+    private static boolean soundsAlike(Indexed a, Indexed b) {
+        return !a.phonetic.isEmpty() && a.phonetic.equals(b.phonetic);
+    }
+
+    private static double contactSimilarity(Indexed a, Indexed b) {
+        return a.contactKey.equals(b.contactKey) ? 1 : jaccard(a.contactTrigrams, b.contactTrigrams);
+    }
+
+    private void put(Customer customer) {
+        Indexed indexed = new Indexed(customer);
+        int id = customer.getCustomerId();
+        byId.put(id, indexed);
+        for (long gram : indexed.trigrams) {
+            gramPostings.computeIfAbsent(gram, k -> new Postings()).add(id);
+        }
+        for (String key : indexed.keys()) {
+            keyPostings.computeIfAbsent(key, k -> new Postings()).add(id);
+        }
+    }
+
+    private void remove(int customerId) {
+        Indexed indexed = byId.remove(customerId);
+        if (indexed == null) {
+            return;
+        }
+        for (long gram : indexed.trigrams) {
+            Postings ids = gramPostings.get(gram);
+            if (ids != null && ids.remove(customerId) && ids.size == 0) {
+                gramPostings.remove(gram);
+            }
+        }
+        for (String key : indexed.keys()) {
+            Postings ids = keyPostings.get(key);
+            if (ids != null && ids.remove(customerId) && ids.size == 0) {
+                keyPostings.remove(key);
+            }
+        }
+    }
+
+    private static void collect(Postings ids, Set<Integer> candidates) {
+        if (ids != null && ids.size <= MAX_POSTING) {
+            for (int i = 0; i < ids.size; i++) {
+                candidates.add(ids.ids[i]);
+            }
+        }
+    }
+
+    private static int find(Map<Integer, Integer> parent, int id) {
+        int root = id;
+        while (parent.getOrDefault(root, root) != root) {
+            root = parent.get(root);
+        }
+        // Path compression keeps later finds close to O(1)
+        while (id != root) {
+            int next = parent.getOrDefault(id, id);
+            parent.put(id, root);
+            id = next;
+        }
+        parent.putIfAbsent(root, root);
+        return root;
+    }
+
+    private static void union(Map<Integer, Integer> parent, int a, int b) {
+        int rootA = find(parent, a);
+        int rootB = find(parent, b);
+        // The smaller id becomes the root, so the group's original record is its representative
+        parent.put(Math.max(rootA, rootB), Math.min(rootA, rootB));
+    }
+
+    // Lower case letters separated by single spaces; digits and punctuation are dropped
+    static String normaliseName(String name) {
+        StringBuilder normalised = new StringBuilder(name.length());
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (Character.isLetter(c)) {
+                normalised.append(Character.toLowerCase(c));
+            } else if (normalised.length() > 0 && normalised.charAt(normalised.length() - 1) != ' ') {
+                normalised.append(' ');
+            }
+        }
+        int end = normalised.length();
+        return end > 0 && normalised.charAt(end - 1) == ' ' ? normalised.substring(0, end - 1) : normalised.toString();
+    }
+
+    // E-mail addresses compare case-insensitively; phone numbers by their last 9 digits, which drops the
+    // country code or trunk prefix
+    static String normaliseContact(String contact) {
+        String trimmed = contact.trim().toLowerCase(Locale.ROOT);
+        if (trimmed.indexOf('@') >= 0) {
+            return trimmed.replace(" ", "");
+        }
+        StringBuilder digits = new StringBuilder(trimmed.length());
+        for (int i = 0; i < trimmed.length(); i++) {
+            if (Character.isDigit(trimmed.charAt(i))) {
+                digits.append(trimmed.charAt(i));
+            }
+        }
+        if (digits.length() >= 7) {
+            return digits.length() > 9 ? digits.substring(digits.length() - 9) : digits.toString();
+        }
+        return trimmed;
+    }
+
+    // Only an e-mail address or a full phone number says who someone is; "-" or "walk-in" says nothing
+    static boolean identifies(String contactKey) {
+        return contactKey.indexOf('@') > 0 || (contactKey.length() >= 7 && contactKey.chars().allMatch(Character::isDigit));
+    }
+
+    // Licence numbers compare without spaces, dashes or case; placeholders like "-" count as missing
+    static String normaliseLicence(String licence) {
+        if (licence == null) {
+            return "";
+        }
+        StringBuilder normalised = new StringBuilder(licence.length());
+        for (int i = 0; i < licence.length(); i++) {
+            char c = licence.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                normalised.append(Character.toUpperCase(c));
+            }
+        }
+        return normalised.toString();
+    }
+
+    static double editSimilarity(String a, String b) {
+        int longer = Math.max(a.length(), b.length());
+        return longer == 0 ? 0 : 1 - (double) editDistance(a, b) / longer;
+    }
+
+    // Levenshtein distance with two rolling rows
+    static int editDistance(String a, String b) {
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            for (int j = 1; j <= b.length(); j++) {
+                int substitute = previous[j - 1] + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1);
+                current[j] = Math.min(substitute, Math.min(previous[j], current[j - 1]) + 1);
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[b.length()];
+    }
+
+    // Sorted, distinct trigrams of "  text ", each packed as three 16-bit chars
+    static long[] trigrams(String text) {
+        return text.isEmpty() ? new long[0] : grams("  " + text + " ");
+    }
+
+    // Without the closing pad, so a half-typed word is not penalised for not ending yet
+    static long[] prefixTrigrams(String text) {
+        return text.isEmpty() ? new long[0] : grams("  " + text);
+    }
+
+    private static long[] grams(String padded) {
+        long[] grams = new long[padded.length() - 2];
+        for (int i = 0; i < grams.length; i++) {
+            grams[i] = ((long) padded.charAt(i) << 32) | ((long) padded.charAt(i + 1) << 16) | padded.charAt(i + 2);
+        }
+        Arrays.sort(grams);
+        int distinct = 0;
+        for (int i = 0; i < grams.length; i++) {
+            if (i == 0 || grams[i] != grams[i - 1]) {
+                grams[distinct++] = grams[i];
+            }
+        }
+        return Arrays.copyOf(grams, distinct);
+    }
+
+    private static int shared(long[] a, long[] b) {
+        int shared = 0;
+        for (int i = 0, j = 0; i < a.length && j < b.length; ) {
+            if (a[i] == b[j]) {
+                shared++;
+                i++;
+                j++;
+            } else if (a[i] < b[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return shared;
+    }
+
+    static double jaccard(long[] a, long[] b) {
+        if (a.length == 0 || b.length == 0) {
+            return 0;
+        }
+        int shared = shared(a, b);
+        return (double) shared / (a.length + b.length - shared);
+    }
+
+    // Share of the typed trigrams found in the candidate
+    static double containment(long[] typed, long[] candidate) {
+        return typed.length == 0 ? 0 : (double) shared(typed, candidate) / typed.length;
+    }
+
+    // American Soundex: first letter plus three digits for the following consonant groups
+    static String soundex(String word) {
+        String codes = "01230120022455012623010202"; // A..Z
+        StringBuilder code = new StringBuilder(4);
+        char previous = 0;
+        for (int i = 0; i < word.length() && code.length() < 4; i++) {
+            char letter = Character.toUpperCase(word.charAt(i));
+            if (letter < 'A' || letter > 'Z') {
+                continue;
+            }
+            char digit = codes.charAt(letter - 'A');
+            if (code.length() == 0) {
+                code.append(letter);
+            } else if (digit != '0' && digit != previous) {
+                code.append(digit);
+            }
+            // H and W do not separate equal codes; vowels do
+            if (letter != 'H' && letter != 'W') {
+                previous = digit;
+            }
+        }
+        if (code.length() == 0) {
+            return "";
+        }
+        while (code.length() < 4) {
+            code.append('0');
+        }
+        return code.toString();
+    }
+
+    // A customer with its match keys worked out once
+    static class Indexed {
+        private final Customer customer;
+        private final String name;
+        private final String sortedName;
+        private final long[] trigrams;
+        private final List<String> phoneticParts = new ArrayList<>();
+        private final String phonetic; // The parts' codes sorted, so word order does not matter
+        private final String contactKey;
+        private final long[] contactTrigrams;
+        private final String licenceKey;
+
+        Indexed(Customer customer) {
+            this.customer = customer;
+            this.name = normaliseName(customer.getCustomerName());
+            String[] parts = name.split(" ");
+            Arrays.sort(parts);
+            this.sortedName = String.join(" ", parts);
+            this.trigrams = trigrams(name);
+            for (String part : name.split(" ")) {
+                String code = soundex(part);
+                if (!code.isEmpty() && !phoneticParts.contains(code)) {
+                    phoneticParts.add(code);
+                }
+            }
+            List<String> codes = new ArrayList<>(phoneticParts);
+            codes.sort(null);
+            this.phonetic = String.join(" ", codes);
+            this.contactKey = normaliseContact(customer.getContactInfo());
+            this.contactTrigrams = trigrams(contactKey);
+            this.licenceKey = normaliseLicence(customer.getLicenseNumber());
+        }
+
+        List<String> keys() {
+            List<String> keys = new ArrayList<>(phoneticParts.size() + 3);
+            for (String code : phoneticParts) {
+                keys.add("p:" + code);
+            }
+            if (!phonetic.isEmpty()) {
+                keys.add("n:" + phonetic);
+            }
+            if (identifies(contactKey)) {
+                keys.add("c:" + contactKey);
+            }
+            if (!licenceKey.isEmpty()) {
+                keys.add("l:" + licenceKey);
+            }
+            return keys;
+        }
+    }
+
+    // Ids of the customers holding one key; unordered, since lookups only ever scan them whole
+    private static class Postings {
+        private int[] ids = new int[2];
+        private int size;
+
+        void add(int id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+
+        boolean remove(int id) {
+            for (int i = 0; i < size; i++) {
+                if (ids[i] == id) {
+                    ids[i] = ids[--size];
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    static class Match {
+        private final Customer customer;
+        private final double score;
+        private final boolean soundsAlike;
+
+        Match(Customer customer, double score, boolean soundsAlike) {
+            this.customer = customer;
+            this.score = score;
+            this.soundsAlike = soundsAlike;
+        }
+
+        public Customer getCustomer() {
+            return customer;
+        }
+
+        public double getScore() {
+            return score;
+        }
+
+        boolean soundsAlike() {
+            return soundsAlike;
+        }
+
+        @Override
+        public String toString() {
+            return customer.getCustomerId() + " - " + customer + String.format(" [%.0f%% match]", score * 100);
+        }
+    }
+}
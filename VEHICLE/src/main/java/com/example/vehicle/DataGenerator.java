@@ -0,0 +1,281 @@
+package com.example.vehicle;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// Fills vehicles, customers, bookings and payments with a synthetic fleet so performance problems can be
+// reproduced on a developer machine. Sizes scale with the booking count (one vehicle per 200 bookings, one
+// customer per 10) and the distributions follow what the real data looks like:
+//   - categories are weighted towards cars, with per-category price bands
+//   - bookings per vehicle follow its popularity; most rentals are 1-4 days with a long tail to a month,
+//     busier in December and mid-year, and never overlap on one vehicle
+//   - customers are skewed so a minority of regulars accounts for most bookings
+//   - most finished rentals are paid, some in two instalments
+//
+//   java ... com.example.vehicle.DataGenerator [bookings] [seed]
+//
+// Rows go in as multi-row INSERTs of ROWS_PER_STATEMENT rows, committed every COMMIT_EVERY rows, with
+// explicit ids after the current maximum so related rows never need a read-back. Rather than one change_log
+// row per generated row, a single RESET row is written at the end: running terminals and their reference
+// snapshots reload everything when their feed reaches it, exactly as after a restore.
+public class DataGenerator {
+    private static final int ROWS_PER_STATEMENT = 1000;
+    private static final int COMMIT_EVERY = 50_000;
+    // The categories the vehicle form offers, so generated vehicles can be edited and have late fee rates
+    private static final String[] CATEGORIES = {"Car", "Bike", "Van", "Truck"};
+    private static final double[] CATEGORY_WEIGHTS = {0.60, 0.15, 0.15, 0.10};
+    private static final double[][] PRICE_BANDS = {{350, 900}, {150, 400}, {700, 1200}, {900, 1600}};
+    private static final String[][] MODELS = {
+            {"Toyota Corolla", "VW Polo", "Hyundai i20", "Kia Rio", "Suzuki Swift", "Renault Clio", "Toyota Fortuner", "Kia Sportage"},
+            {"Honda PCX", "Yamaha NMAX", "BMW G310R", "Kawasaki Z400", "Suzuki Burgman"},
+            {"Toyota Quantum", "VW Transporter", "Hyundai H1", "Mercedes Vito"},
+            {"Toyota Hilux", "Ford Ranger", "Isuzu D-Max", "Nissan Navara"}
+    };
+    private static final String[] FIRST_NAMES = {"Thabo", "Lerato", "Sipho", "Naledi", "Johan", "Anika", "Pieter", "Zanele",
+            "Kagiso", "Ayesha", "Mandla", "Lindiwe", "David", "Sarah", "Tshepo", "Palesa"};
+    private static final String[] LAST_NAMES = {"Mokoena", "Nkosi", "Dlamini", "van der Merwe", "Botha", "Naidoo", "Khumalo",
+            "Smith", "Mahlangu", "Pillay", "Molefe", "Jacobs", "Ndlovu", "Pretorius"};
+
+    private final DbConnector dbConnector;
+    private final Random random;
+
+    DataGenerator(DbConnector dbConnector, long seed) {
+        this.dbConnector = dbConnector;
+        this.random = new Random(seed);
+    }
+
+    public static void main(String[] args) throws SQLException {
+        long bookings = args.length > 0 ? Long.parseLong(args[0].replace("_", "")) : 10_000;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 42;
+        if (bookings < 1 || bookings > 10_000_000) {
+            System.err.println("bookings must be between 1 and 10000000");
+            System.exit(2);
+        }
+        DbConnector dbConnector = new DbConnector();
+        dbConnector.initializeDatabase();
+        long startedAt = System.nanoTime();
+        new DataGenerator(dbConnector, seed).generate(bookings);
+        System.out.printf("Generated %d bookings in %.1fs%n", bookings, (System.nanoTime() - startedAt) / 1_000_000_000.0);
+    }
+
+    void generate(long bookingCount) throws SQLException {
+        int vehicleCount = (int) Math.max(20, bookingCount / 200);
+        int customerCount = (int) Math.max(50, bookingCount / 10);
+        try (Connection connection = dbConnector.connect()) {
+            connection.setAutoCommit(false);
+            try (Statement stmt = connection.createStatement()) {
+                // Ids are generated here and known to be consistent, so skip the per-row checks for this session
+                stmt.execute("SET unique_checks = 0");
+                stmt.execute("SET foreign_key_checks = 0");
+            }
+            int firstVehicle = maxId(connection, "vehicles", "vehicle_id") + 1;
+            int firstCustomer = maxId(connection, "customers", "customer_id") + 1;
+            int firstBooking = maxId(connection, "bookings", "booking_id") + 1;
+            int firstPayment = maxId(connection, "payments", "payment_id") + 1;
+
+            double[] prices = new double[vehicleCount];
+            double[] popularity = new double[vehicleCount];
+            double totalPopularity = 0;
+            try (BatchInsert vehicles = new BatchInsert(connection, "vehicles",
+                    "vehicle_id", "brand", "model", "category", "rental_price", "availability_status")) {
+                for (int i = 0; i < vehicleCount; i++) {
+                    int category = pick(CATEGORY_WEIGHTS);
+                    String[] brandModel = MODELS[category][random.nextInt(MODELS[category].length)].split(" ", 2);
+                    double[] band = PRICE_BANDS[category];
+                    prices[i] = Math.round((band[0] + random.nextDouble() * (band[1] - band[0])) / 10) * 10;
+                    // Log-normal popularity: a few vehicles are in constant demand, most are average
+                    popularity[i] = Math.exp(random.nextGaussian() * 0.5);
+                    totalPopularity += popularity[i];
+                    vehicles.add(firstVehicle + i, brandModel[0], brandModel[1], CATEGORIES[category], prices[i],
+                            random.nextDouble() < 0.95 ? "Available" : "Not Available");
+                }
+            }
+            System.out.println("Vehicles: " + vehicleCount);
+
+            try (BatchInsert customers = new BatchInsert(connection, "customers",
+                    "customer_id", "customer_name", "contact_info", "license_number")) {
+                for (int i = 0; i < customerCount; i++) {
+                    int id = firstCustomer + i;
+                    String name = FIRST_NAMES[random.nextInt(FIRST_NAMES.length)] + " " + LAST_NAMES[random.nextInt(LAST_NAMES.length)];
+                    customers.add(id, name, String.format("07%d %03d %04d", 1 + random.nextInt(9), random.nextInt(1000), random.nextInt(10000)),
+                            String.format("GEN%09d", id));
+                }
+            }
+            System.out.println("Customers: " + customerCount);
+
+            LocalDate today = LocalDate.now();
+            int bookingId = firstBooking;
+            int paymentId = firstPayment;
+            long remaining = bookingCount;
+            long reported = 0;
+            try (BatchInsert bookings = new BatchInsert(connection, "bookings",
+                    "booking_id", "vehicle_id", "customer_id", "start_date", "end_date", "booking_date");
+                 BatchInsert payments = new BatchInsert(connection, "payments",
+                         "payment_id", "booking_id", "amount", "extras", "payment_date")) {
+                for (int v = 0; v < vehicleCount && remaining > 0; v++) {
+                    long count = v == vehicleCount - 1 ? remaining
+                            : Math.min(remaining, Math.round(bookingCount * popularity[v] / totalPopularity));
+                    remaining -= count;
+                    // Lay the vehicle's rentals out backwards from a point in the next two months
+                    LocalDate end = today.plusDays(random.nextInt(60));
+                    for (long n = 0; n < count; n++) {
+                        int days = rentalDays();
+                        LocalDate start = end.minusDays(days);
+                        int customerId = firstCustomer + skewedIndex(customerCount);
+                        LocalDate bookedOn = start.minusDays(random.nextInt(30));
+                        bookings.add(bookingId, firstVehicle + v, customerId, Date.valueOf(start), Date.valueOf(end),
+                                Timestamp.valueOf(bookedOn.atTime(8 + random.nextInt(10), random.nextInt(60))));
+
+                        if (end.isBefore(today) && random.nextDouble() < 0.9) {
+                            double extras = (random.nextDouble() < 0.2 ? 50 : 0) + (random.nextDouble() < 0.1 ? 30 : 0);
+                            double amount = days * prices[v] + extras;
+                            if (random.nextDouble() < 0.15) {
+                                double deposit = Math.round(amount * 0.3);
+                                payments.add(paymentId++, bookingId, deposit, 0, Timestamp.valueOf(bookedOn.atTime(12, 0)));
+                                amount -= deposit;
+                            }
+                            payments.add(paymentId++, bookingId, amount, extras, Timestamp.valueOf(end.atTime(17, 0)));
+                        }
+                        bookingId++;
+                        end = start.minusDays(gapDays(start));
+                    }
+                    if (bookings.getRows() - reported >= COMMIT_EVERY * 10L) {
+                        reported = bookings.getRows();
+                        System.out.println("Bookings: " + reported);
+                    }
+                }
+            }
+            try (Statement stmt = connection.createStatement()) {
+                stmt.executeUpdate("INSERT INTO change_log (table_name, entity_id, operation) VALUES ('*', 0, 'RESET')");
+            }
+            connection.commit();
+        }
+    }
+
+    // Rental length: mostly 1-4 days, with a tail of week and month-long rentals
+    private int rentalDays() {
+        double r = random.nextDouble();
+        if (r < 0.70) {
+            return 1 + random.nextInt(4);
+        }
+        if (r < 0.95) {
+            return 5 + random.nextInt(10);
+        }
+        return 15 + random.nextInt(16);
+    }
+
+    // Idle days before a rental; shorter in the December and June/July peaks
+    private int gapDays(LocalDate start) {
+        double mean = switch (start.getMonthValue()) {
+            case 12, 6, 7 -> 1.0;
+            case 1, 2 -> 4.0;
+            default -> 2.5;
+        };
+        return (int) Math.round(-Math.log(1 - random.nextDouble()) * mean);
+    }
+
+    // Index in [0, size) with low indexes far more likely: about 20% of customers make 60% of the bookings
+    private int skewedIndex(int size) {
+        double u = random.nextDouble();
+        return (int) Math.min(size - 1, size * u * u * u);
+    }
+
+    private int pick(double[] weights) {
+        double r = random.nextDouble();
+        for (int i = 0; i < weights.length - 1; i++) {
+            r -= weights[i];
+            if (r < 0) {
+                return i;
+            }
+        }
+        return weights.length - 1;
+    }
+
+    private static int maxId(Connection connection, String table, String column) throws SQLException {
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(" + column + "), 0) FROM " + table)) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    // Buffers rows and writes them as INSERT ... VALUES (...), (...), ... statements. Multi-row statements
+    // work with any driver settings, unlike relying on the driver to rewrite JDBC batches.
+    private static class BatchInsert implements AutoCloseable {
+        private final Connection connection;
+        private final String prefix;
+        private final String rowPlaceholders;
+        private final int columns;
+        private final List<Object> pending = new ArrayList<>();
+        private PreparedStatement fullStatement;
+        private long rows;
+
+        BatchInsert(Connection connection, String table, String... columnNames) {
+            this.connection = connection;
+            this.columns = columnNames.length;
+            this.prefix = "INSERT INTO " + table + " (" + String.join(", ", columnNames) + ") VALUES ";
+            this.rowPlaceholders = "(" + "?, ".repeat(columns - 1) + "?)";
+        }
+
+        long getRows() {
+            return rows;
+        }
+
+        void add(Object... values) throws SQLException {
+            for (Object value : values) {
+                pending.add(value);
+            }
+            rows++;
+            if (pending.size() == ROWS_PER_STATEMENT * columns) {
+                if (fullStatement == null) {
+                    fullStatement = connection.prepareStatement(sql(ROWS_PER_STATEMENT));
+                }
+                execute(fullStatement);
+            }
+            if (rows % COMMIT_EVERY == 0) {
+                connection.commit();
+            }
+        }
+
+        private String sql(int rowCount) {
+            StringBuilder sql = new StringBuilder(prefix);
+            for (int i = 0; i < rowCount; i++) {
+                sql.append(i == 0 ? "" : ", ").append(rowPlaceholders);
+            }
+            return sql.toString();
+        }
+
+        private void execute(PreparedStatement stmt) throws SQLException {
+            for (int i = 0; i < pending.size(); i++) {
+                stmt.setObject(i + 1, pending.get(i));
+            }
+            stmt.executeUpdate();
+            pending.clear();
+        }
+
+        @Override
+        public void close() throws SQLException {
+            try {
+                if (!pending.isEmpty()) {
+                    try (PreparedStatement stmt = connection.prepareStatement(sql(pending.size() / columns))) {
+                        execute(stmt);
+                    }
+                }
+                connection.commit();
+            } finally {
+                if (fullStatement != null) {
+                    fullStatement.close();
+                }
+            }
+        }
+    }
+}
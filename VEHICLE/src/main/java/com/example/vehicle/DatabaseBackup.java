@@ -0,0 +1,560 @@
+package com.example.vehicle;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Backup and restore of every table in the database to a local directory (ReportCli backup --dir backup /
+// restore --dir backup). Only the migration bookkeeping (schema_version, which a restore target must already
+// match, and schema_migration_progress) and change_log are left out: change ids have to keep growing on the
+// target, or running terminals' feeds would skip new rows.
+//
+// Backup: the tables and their columns are read from information_schema, so new tables are covered without
+// touching this class. A table with a single integer primary key is split into key ranges of CHUNK_KEYS ids;
+// any other table (the summaries and small settings tables) is one chunk. Each chunk is streamed into its own
+// file <table>.<n>.vrsc in the ColumnarExport format. Several connections scan in parallel, each inside a
+// START TRANSACTION WITH CONSISTENT SNAPSHOT. The snapshots are all started while one connection holds
+// LOCK TABLES ... READ on every table, so they see the same committed state: the backup is consistent across
+// tables (no payment without its booking) without blocking the counters for longer than it takes to open the
+// connections. backup.properties is written last and lists the tables and chunks; a directory without it is an
+// unfinished backup.
+//
+// Restore: the target must have the same schema version and therefore the same tables. With replace every
+// table is cleared first, so nothing is left pointing at rows that are gone; without it the tables must be
+// empty, apart from the SEEDED ones that migrations fill and the backup simply replaces. Secondary indexes are
+// dropped first and rebuilt with one ALTER TABLE per table once the rows are in, which is far cheaper than
+// maintaining them row by row; indexes a foreign key depends on cannot be dropped and stay. The chunks are
+// loaded by parallel connections with foreign key and unique checks off (chunks arrive in any order) as
+// multi-row INSERTs of BATCH_ROWS rows, one transaction per chunk. Finally a RESET row goes into change_log:
+// running terminals reload everything when their feed reaches it, and so does a warm start from a snapshot
+// saved before the restore.
+class DatabaseBackup {
+    static final String MANIFEST = "backup.properties";
+    static final int FORMAT = 2;
+    static final long CHUNK_KEYS = 250_000;
+    static final int BATCH_ROWS = 1_000;
+    private static final Set<String> SKIPPED = Set.of("schema_version", "schema_migration_progress", "change_log");
+    private static final Set<String> SEEDED = Set.of("branches", "late_fee_rates", "late_fee_settings");
+
+    private final DbConnector dbConnector;
+    private final int threads;
+
+    DatabaseBackup(DbConnector dbConnector, int threads) {
+        this.dbConnector = dbConnector;
+        this.threads = Math.max(1, threads);
+    }
+
+    // Every table to back up with its columns in table order, by name
+    static Map<String, Source> tables(Connection connection) throws SQLException {
+        Map<String, List<ColumnarExport.Column>> columns = new TreeMap<>();
+        Map<String, List<String>> keys = new HashMap<>();
+        Map<String, String> keyTypes = new HashMap<>();
+        try (PreparedStatement stmt = connection.prepareStatement(
+                "SELECT c.TABLE_NAME, c.COLUMN_NAME, c.DATA_TYPE, c.NUMERIC_SCALE, c.IS_NULLABLE, c.COLUMN_KEY "
+                        + "FROM information_schema.COLUMNS c JOIN information_schema.TABLES t "
+                        + "ON t.TABLE_SCHEMA = c.TABLE_SCHEMA AND t.TABLE_NAME = c.TABLE_NAME AND t.TABLE_TYPE = 'BASE TABLE' "
+                        + "WHERE c.TABLE_SCHEMA = DATABASE() ORDER BY c.TABLE_NAME, c.ORDINAL_POSITION")) {
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                String table = rs.getString("TABLE_NAME");
+                if (SKIPPED.contains(table)) {
+                    continue;
+                }
+                String name = rs.getString("COLUMN_NAME");
+                String dataType = rs.getString("DATA_TYPE").toLowerCase(Locale.ROOT);
+                columns.computeIfAbsent(table, t -> new ArrayList<>()).add(new ColumnarExport.Column(name,
+                        columnType(dataType, rs.getInt("NUMERIC_SCALE")), "YES".equals(rs.getString("IS_NULLABLE"))));
+                if ("PRI".equals(rs.getString("COLUMN_KEY"))) {
+                    keys.computeIfAbsent(table, t -> new ArrayList<>()).add(name);
+                    keyTypes.put(table, dataType);
+                }
+            }
+        }
+        Map<String, Source> tables = new LinkedHashMap<>();
+        for (Map.Entry<String, List<ColumnarExport.Column>> entry : columns.entrySet()) {
+            List<String> key = keys.getOrDefault(entry.getKey(), List.of());
+            boolean ranged = key.size() == 1 && columnType(keyTypes.get(entry.getKey()), 0) == ColumnarExport.Type.INT;
+            tables.put(entry.getKey(), new Source(entry.getKey(), entry.getValue(), ranged ? key.get(0) : null));
+        }
+        return tables;
+    }
+
+    // DECIMAL columns are stored with two decimals; any other scale is kept exactly as text
+    private static ColumnarExport.Type columnType(String dataType, int scale) {
+        return switch (dataType) {
+            case "tinyint", "smallint", "mediumint", "int", "bigint" -> ColumnarExport.Type.INT;
+            case "date" -> ColumnarExport.Type.DATE;
+            case "datetime", "timestamp" -> ColumnarExport.Type.TIMESTAMP;
+            case "decimal" -> scale == 2 ? ColumnarExport.Type.DECIMAL : ColumnarExport.Type.STRING;
+            default -> ColumnarExport.Type.STRING;
+        };
+    }
+
+    // Returns rows per table
+    Map<String, Long> backup(Path directory) throws IOException, SQLException {
+        Files.createDirectories(directory);
+        Files.deleteIfExists(directory.resolve(MANIFEST));
+        List<Connection> connections = new ArrayList<>();
+        ConcurrentLinkedQueue<Chunk> chunks = new ConcurrentLinkedQueue<>();
+        Map<String, Integer> chunkCounts = new LinkedHashMap<>();
+        Map<String, Source> tables;
+        int schemaVersion;
+        try {
+            try (Connection coordinator = dbConnector.connect(); Statement lock = coordinator.createStatement()) {
+                tables = tables(coordinator);
+                List<String> locks = new ArrayList<>();
+                for (String table : tables.keySet()) {
+                    locks.add("`" + table + "` READ");
+                }
+                lock.execute("LOCK TABLES " + String.join(", ", locks));
+                try {
+                    for (int i = 0; i < threads; i++) {
+                        connections.add(snapshot());
+                    }
+                } finally {
+                    lock.execute("UNLOCK TABLES");
+                }
+            }
+            // Key ranges and the schema version come from inside the snapshot, so they match what is scanned
+            Connection first = connections.get(0);
+            schemaVersion = schemaVersion(first);
+            for (Source source : tables.values()) {
+                if (source.key == null) {
+                    chunks.add(new Chunk(source, 0, 0, 0));
+                    chunkCounts.put(source.table.name, 1);
+                    continue;
+                }
+                try (Statement stmt = first.createStatement();
+                     ResultSet rs = stmt.executeQuery("SELECT MIN(`" + source.key + "`), MAX(`" + source.key + "`) FROM `" + source.table.name + "`")) {
+                    rs.next();
+                    long min = rs.getLong(1);
+                    long max = rs.getLong(2);
+                    int n = 0;
+                    if (!rs.wasNull()) {
+                        for (long from = min; from <= max; from += CHUNK_KEYS) {
+                            chunks.add(new Chunk(source, n++, from, Math.min(max, from + CHUNK_KEYS - 1)));
+                        }
+                    }
+                    chunkCounts.put(source.table.name, n);
+                }
+            }
+
+            Map<String, AtomicLong> rows = rowCounters(tables.keySet());
+            runWorkers(connections, chunks, (connection, chunk) ->
+                    rows.get(chunk.source.table.name).addAndGet(dump(connection, chunk, directory)));
+
+            Properties manifest = new Properties();
+            manifest.setProperty("format", String.valueOf(FORMAT));
+            manifest.setProperty("schemaVersion", String.valueOf(schemaVersion));
+            manifest.setProperty("createdAt", java.time.LocalDateTime.now().toString());
+            manifest.setProperty("tables", String.join(",", tables.keySet()));
+            Map<String, Long> result = new LinkedHashMap<>();
+            for (String table : tables.keySet()) {
+                manifest.setProperty(table + ".chunks", String.valueOf(chunkCounts.get(table)));
+                manifest.setProperty(table + ".rows", String.valueOf(rows.get(table).get()));
+                result.put(table, rows.get(table).get());
+            }
+            Path temp = directory.resolve(MANIFEST + ".tmp");
+            try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                manifest.store(writer, "Vehicle rental database backup");
+            }
+            Files.move(temp, directory.resolve(MANIFEST), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return result;
+        } finally {
+            for (Connection connection : connections) {
+                try {
+                    connection.rollback();
+                    connection.close();
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    private Connection snapshot() throws SQLException {
+        Connection connection = dbConnector.connect();
+        try (Statement stmt = connection.createStatement()) {
+            connection.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+            connection.setAutoCommit(false);
+            stmt.execute("START TRANSACTION WITH CONSISTENT SNAPSHOT, READ ONLY");
+        } catch (SQLException e) {
+            connection.close();
+            throw e;
+        }
+        return connection;
+    }
+
+    private static long dump(Connection connection, Chunk chunk, Path directory) throws IOException, SQLException {
+        ColumnarExport.Table table = chunk.source.table;
+        Path file = directory.resolve(chunkFile(table.name, chunk.index));
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        long rows;
+        try (PreparedStatement stmt = connection.prepareStatement(table.query, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            stmt.setFetchSize(Integer.MIN_VALUE);
+            stmt.setQueryTimeout(0);
+            if (chunk.source.key != null) {
+                stmt.setLong(1, chunk.from);
+                stmt.setLong(2, chunk.to);
+            }
+            try (ResultSet rs = stmt.executeQuery();
+                 OutputStream out = new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16)) {
+                rows = ColumnarExport.write(table, rs, out);
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return rows;
+    }
+
+    static String chunkFile(String table, int index) {
+        return String.format("%s.%05d%s", table, index, ColumnarExport.EXTENSION);
+    }
+
+    // Returns rows per table. replace clears every table first; otherwise they must be empty.
+    Map<String, Long> restore(Path directory, boolean replace) throws IOException, SQLException {
+        Properties manifest = new Properties();
+        Path manifestFile = directory.resolve(MANIFEST);
+        if (!Files.exists(manifestFile)) {
+            throw new IOException(directory + " holds no finished backup (" + MANIFEST + " is missing)");
+        }
+        try (Reader reader = Files.newBufferedReader(manifestFile, StandardCharsets.UTF_8)) {
+            manifest.load(reader);
+        }
+        if (Integer.parseInt(manifest.getProperty("format", "0")) != FORMAT) {
+            throw new IOException("Unsupported backup format " + manifest.getProperty("format"));
+        }
+
+        ConcurrentLinkedQueue<Chunk> chunks = new ConcurrentLinkedQueue<>();
+        List<Index> dropped = new ArrayList<>();
+        Map<String, Source> tables;
+        try (Connection connection = dbConnector.connect(); Statement stmt = connection.createStatement()) {
+            stmt.setQueryTimeout(0);
+            int target = schemaVersion(connection);
+            int source = Integer.parseInt(manifest.getProperty("schemaVersion"));
+            if (target != source) {
+                throw new SQLException("Backup has schema version " + source + " but the database has " + target);
+            }
+            tables = tables(connection);
+            Set<String> backedUp = new TreeSet<>(Arrays.asList(manifest.getProperty("tables", "").split(",")));
+            if (!backedUp.equals(tables.keySet())) {
+                throw new SQLException("Backup holds tables " + backedUp + " but the database has " + tables.keySet());
+            }
+            stmt.execute("SET SESSION foreign_key_checks = 0");
+            for (Source table : tables.values()) {
+                String name = table.table.name;
+                if (replace || SEEDED.contains(name)) {
+                    stmt.executeUpdate("TRUNCATE TABLE `" + name + "`");
+                } else {
+                    try (ResultSet rs = stmt.executeQuery("SELECT 1 FROM `" + name + "` LIMIT 1")) {
+                        if (rs.next()) {
+                            throw new SQLException("Table " + name + " is not empty; restore into an empty database or replace it");
+                        }
+                    }
+                }
+                int count = Integer.parseInt(manifest.getProperty(name + ".chunks", "0"));
+                for (int i = 0; i < count; i++) {
+                    chunks.add(new Chunk(table, i, 0, 0));
+                }
+            }
+        }
+
+        Map<String, AtomicLong> rows = rowCounters(tables.keySet());
+        try {
+            // Inside the try, so whatever was dropped before a failure is rebuilt
+            try (Connection connection = dbConnector.connect(); Statement stmt = connection.createStatement()) {
+                stmt.setQueryTimeout(0);
+                for (String table : tables.keySet()) {
+                    for (Index index : secondaryIndexes(connection, table)) {
+                        try {
+                            stmt.execute("ALTER TABLE `" + table + "` DROP INDEX `" + index.name + "`");
+                            dropped.add(index);
+                        } catch (SQLException e) {
+                            // A foreign key needs it; it stays and is maintained during the load
+                        }
+                    }
+                }
+            }
+            List<Connection> connections = new ArrayList<>();
+            try {
+                for (int i = 0; i < threads; i++) {
+                    Connection connection = dbConnector.connect();
+                    connections.add(connection);
+                    try (Statement stmt = connection.createStatement()) {
+                        stmt.execute("SET SESSION foreign_key_checks = 0, unique_checks = 0");
+                    }
+                    connection.setAutoCommit(false);
+                }
+                runWorkers(connections, chunks, (connection, chunk) ->
+                        rows.get(chunk.source.table.name).addAndGet(load(connection, chunk, directory)));
+            } finally {
+                for (Connection connection : connections) {
+                    try {
+                        connection.close();
+                    } catch (SQLException e) {
+                        e.printStackTrace();
+                    }
+                }
+            }
+        } finally {
+            rebuildIndexes(dropped);
+        }
+
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (String table : tables.keySet()) {
+            long expected = Long.parseLong(manifest.getProperty(table + ".rows", "0"));
+            if (rows.get(table).get() != expected) {
+                throw new IOException("Restored " + rows.get(table).get() + " rows into " + table + " but the backup has " + expected);
+            }
+            result.put(table, expected);
+        }
+        // Every cache, list and snapshot built from the old rows is now wrong; the RESET row tells them so
+        try (Connection connection = dbConnector.connect(); Statement stmt = connection.createStatement()) {
+            stmt.executeUpdate("INSERT INTO change_log (table_name, entity_id, operation) VALUES ('*', 0, 'RESET')");
+        }
+        return result;
+    }
+
+    private static long load(Connection connection, Chunk chunk, Path directory) throws IOException, SQLException {
+        ColumnarExport.Table table = chunk.source.table;
+        List<ColumnarExport.Column> columns = table.columns;
+        List<Object[]> batch = new ArrayList<>(BATCH_ROWS);
+        long[] rows = {0};
+        try (ColumnarReader reader = new ColumnarReader(directory.resolve(chunkFile(table.name, chunk.index)));
+             PreparedStatement full = connection.prepareStatement(insert(table, BATCH_ROWS))) {
+            if (reader.columns().size() != columns.size()) {
+                throw new IOException(chunkFile(table.name, chunk.index) + " has " + reader.columns().size() + " columns but "
+                        + table.name + " has " + columns.size());
+            }
+            full.setQueryTimeout(0);
+            reader.forEachRow(row -> {
+                batch.add(row.clone());
+                if (batch.size() == BATCH_ROWS) {
+                    rows[0] += insert(full, batch, columns.size());
+                    batch.clear();
+                }
+            });
+            if (!batch.isEmpty()) {
+                try (PreparedStatement rest = connection.prepareStatement(insert(table, batch.size()))) {
+                    rest.setQueryTimeout(0);
+                    rows[0] += insert(rest, batch, columns.size());
+                }
+            }
+            connection.commit();
+        } catch (IOException | SQLException | RuntimeException e) {
+            connection.rollback();
+            throw e;
+        }
+        return rows[0];
+    }
+
+    private static String insert(ColumnarExport.Table table, int rows) {
+        List<String> names = new ArrayList<>();
+        for (ColumnarExport.Column column : table.columns) {
+            names.add("`" + column.name + "`");
+        }
+        String values = "(" + "?, ".repeat(names.size() - 1) + "?)";
+        StringBuilder sql = new StringBuilder("INSERT INTO `").append(table.name).append('`')
+                .append(" (").append(String.join(", ", names)).append(") VALUES ").append(values);
+        for (int i = 1; i < rows; i++) {
+            sql.append(", ").append(values);
+        }
+        return sql.toString();
+    }
+
+    // Runs from inside ColumnarReader's row callback, so SQL errors travel as IOException
+    private static int insert(PreparedStatement stmt, List<Object[]> batch, int columns) throws IOException {
+        try {
+            int parameter = 1;
+            for (Object[] row : batch) {
+                for (int c = 0; c < columns; c++) {
+                    stmt.setObject(parameter++, row[c]);
+                }
+            }
+            stmt.executeUpdate();
+            return batch.size();
+        } catch (SQLException e) {
+            throw new IOException(e);
+        }
+    }
+
+    // Non-primary indexes of a table with their columns in index order
+    private static List<Index> secondaryIndexes(Connection connection, String table) throws SQLException {
+        Map<String, Index> indexes = new LinkedHashMap<>();
+        try (PreparedStatement stmt = connection.prepareStatement(
+                "SELECT INDEX_NAME, NON_UNIQUE, COLUMN_NAME, SUB_PART FROM information_schema.STATISTICS "
+                        + "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND INDEX_NAME <> 'PRIMARY' ORDER BY INDEX_NAME, SEQ_IN_INDEX")) {
+            stmt.setString(1, table);
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                Index index = indexes.computeIfAbsent(rs.getString("INDEX_NAME"), name -> new Index(table, name));
+                index.unique = rs.getInt("NON_UNIQUE") == 0;
+                int prefix = rs.getInt("SUB_PART");
+                index.columns.add("`" + rs.getString("COLUMN_NAME") + "`" + (rs.wasNull() ? "" : "(" + prefix + ")"));
+            }
+        }
+        return new ArrayList<>(indexes.values());
+    }
+
+    // One ALTER TABLE per table builds all of its indexes in a single pass; tables are rebuilt in parallel
+    private void rebuildIndexes(List<Index> dropped) throws SQLException {
+        Map<String, List<Index>> byTable = new LinkedHashMap<>();
+        for (Index index : dropped) {
+            byTable.computeIfAbsent(index.table, t -> new ArrayList<>()).add(index);
+        }
+        ConcurrentLinkedQueue<Map.Entry<String, List<Index>>> work = new ConcurrentLinkedQueue<>(byTable.entrySet());
+        List<Connection> connections = new ArrayList<>();
+        try {
+            for (int i = 0; i < Math.min(threads, byTable.size()); i++) {
+                connections.add(dbConnector.connect());
+            }
+            runWorkers(connections, work, (connection, entry) -> {
+                List<String> clauses = new ArrayList<>();
+                for (Index index : entry.getValue()) {
+                    clauses.add("ADD " + (index.unique ? "UNIQUE " : "") + "INDEX `" + index.name + "` (" + String.join(", ", index.columns) + ")");
+                }
+                String sql = "ALTER TABLE `" + entry.getKey() + "` " + String.join(", ", clauses);
+                try (Statement stmt = connection.createStatement()) {
+                    stmt.setQueryTimeout(0);
+                    stmt.execute(sql);
+                } catch (SQLException e) {
+                    System.err.println("Rebuilding indexes failed; run by hand: " + sql);
+                    throw e;
+                }
+            });
+        } catch (IOException e) {
+            throw new SQLException(e);
+        } finally {
+            for (Connection connection : connections) {
+                connection.close();
+            }
+        }
+    }
+
+    private static int schemaVersion(Connection connection) throws SQLException {
+        try (Statement stmt = connection.createStatement(); ResultSet rs = stmt.executeQuery("SELECT MAX(version) FROM schema_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    private static Map<String, AtomicLong> rowCounters(Set<String> tables) {
+        Map<String, AtomicLong> rows = new LinkedHashMap<>();
+        for (String table : tables) {
+            rows.put(table, new AtomicLong());
+        }
+        return rows;
+    }
+
+    private interface Worker<T> {
+        void run(Connection connection, T item) throws IOException, SQLException;
+    }
+
+    // One worker per connection, each taking items off the shared queue until it is empty. A failure empties
+    // the queue so the other workers stop after their current item; the first failure is then rethrown.
+    private static <T> void runWorkers(List<Connection> connections, ConcurrentLinkedQueue<T> queue, Worker<T> worker)
+            throws IOException, SQLException {
+        List<Future<Void>> futures = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (Connection connection : connections) {
+                futures.add(executor.submit(() -> {
+                    T item;
+                    while ((item = queue.poll()) != null) {
+                        try {
+                            worker.run(connection, item);
+                        } catch (IOException | SQLException | RuntimeException e) {
+                            queue.clear();
+                            throw e;
+                        }
+                    }
+                    return null;
+                }));
+            }
+        }
+        for (Future<Void> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException io) {
+                    throw io;
+                }
+                if (e.getCause() instanceof SQLException sql) {
+                    throw sql;
+                }
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+    }
+
+    // A table to back up; key is its integer primary key when it is cut into ranges, else null
+    static class Source {
+        private final ColumnarExport.Table table;
+        private final String key;
+
+        Source(String name, List<ColumnarExport.Column> columns, String key) {
+            List<String> names = new ArrayList<>();
+            for (ColumnarExport.Column column : columns) {
+                names.add("`" + column.name + "`");
+            }
+            String query = "SELECT " + String.join(", ", names) + " FROM `" + name + "`"
+                    + (key == null ? "" : " WHERE `" + key + "` BETWEEN ? AND ? ORDER BY `" + key + "`");
+            this.table = new ColumnarExport.Table(name, query, columns.toArray(new ColumnarExport.Column[0]));
+            this.key = key;
+        }
+    }
+
+    private static class Chunk {
+        private final Source source;
+        private final int index;
+        private final long from;
+        private final long to;
+
+        Chunk(Source source, int index, long from, long to) {
+            this.source = source;
+            this.index = index;
+            this.from = from;
+            this.to = to;
+        }
+    }
+
+    private static class Index {
+        private final String table;
+        private final String name;
+        private final List<String> columns = new ArrayList<>();
+        private boolean unique;
+
+        Index(String table, String name) {
+            this.table = table;
+            this.name = name;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.vehicle;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// Where DbConnector connects. Defaults match the single local database; every value can be overridden with
+// a system property, e.g. to point report and list reads at a replica:
+//
+//   -Dvrs.db.url=jdbc:mysql://primary:3306/vehicle_rental_system
+//   -Dvrs.db.replicaUrl=jdbc:mysql://localhost:3307/vehicle_rental_system
+//   -Dvrs.db.user=... -Dvrs.db.password=... -Dvrs.db.readYourWritesMillis=5000
+//
+// A terminal belongs to one branch (depot) and only works with that branch's fleet. Branches without a
+// shard of their own share the home database (vrs.db.url) and are told apart by branch_id:
+//
+//   -Dvrs.branch=3                                           this terminal's branch; 0 = every branch
+//   -Dvrs.db.shard.3=jdbc:mysql://depot3:3306/vehicle_rental_system   branch 3 has its own database
+class DbConfig {
+    // Shards interleave auto-increment ids so that id % BRANCH_ID_STRIDE is the branch, keeping shards apart
+    // from each other; branch ids therefore run from 1 to BRANCH_ID_STRIDE - 1. The home database keeps its
+    // plain sequence (its existing ids already cover every residue), so company-wide reports key rows by
+    // (branch, id) rather than id alone.
+    static final int BRANCH_ID_STRIDE = 64;
+
+    private static final String DEFAULT_URL = "jdbc:mysql://localhost:3306/vehicle_rental_system?useSSL=false&connectTimeout=2000";
+    private static final String DEFAULT_USERNAME = "root"; // Update with your DB username
+    private static final String DEFAULT_PASSWORD = "Katleho@0210"; // Update with your DB password
+    private static final long DEFAULT_READ_YOUR_WRITES_MILLIS = 5000;
+
+    private final String primaryUrl;
+    private final String replicaUrl;
+    private final String username;
+    private final String password;
+    private final long readYourWritesMillis;
+    private final int branchId;
+    private final Map<Integer, String> shardUrls;
+
+    DbConfig(String primaryUrl, String replicaUrl, String username, String password, long readYourWritesMillis,
+             int branchId, Map<Integer, String> shardUrls) {
+        if (branchId < 0 || branchId >= BRANCH_ID_STRIDE) {
+            throw new IllegalArgumentException("Branch id must be between 0 and " + (BRANCH_ID_STRIDE - 1));
+        }
+        this.primaryUrl = primaryUrl;
+        this.replicaUrl = replicaUrl;
+        this.username = username;
+        this.password = password;
+        this.readYourWritesMillis = readYourWritesMillis;
+        this.branchId = branchId;
+        this.shardUrls = shardUrls;
+    }
+
+    static DbConfig fromSystemProperties() {
+        String replicaUrl = System.getProperty("vrs.db.replicaUrl", "").trim();
+        Map<Integer, String> shardUrls = new HashMap<>();
+        for (String name : System.getProperties().stringPropertyNames()) {
+            if (name.startsWith("vrs.db.shard.")) {
+                shardUrls.put(Integer.parseInt(name.substring("vrs.db.shard.".length())), System.getProperty(name));
+            }
+        }
+        return new DbConfig(
+                System.getProperty("vrs.db.url", DEFAULT_URL),
+                replicaUrl.isEmpty() ? null : replicaUrl,
+                System.getProperty("vrs.db.user", DEFAULT_USERNAME),
+                System.getProperty("vrs.db.password", DEFAULT_PASSWORD),
+                Long.getLong("vrs.db.readYourWritesMillis", DEFAULT_READ_YOUR_WRITES_MILLIS),
+                Integer.getInteger("vrs.branch", 0),
+                shardUrls);
+    }
+
+    // The same settings for a terminal of another branch
+    DbConfig withBranch(int otherBranchId) {
+        return new DbConfig(primaryUrl, replicaUrl, username, password, readYourWritesMillis, otherBranchId, shardUrls);
+    }
+
+    int getBranchId() {
+        return branchId;
+    }
+
+    // This branch's own database, or null when it lives in the home database
+    String getShardUrl() {
+        return branchId == 0 ? null : shardUrls.get(branchId);
+    }
+
+    String getPrimaryUrl() {
+        return primaryUrl;
+    }
+
+    // Null when there is no replica and every read goes to the primary
+    String getReplicaUrl() {
+        return replicaUrl;
+    }
+
+    String getUsername() {
+        return username;
+    }
+
+    String getPassword() {
+        return password;
+    }
+
+    // How long after this terminal's own write its reads stay on the primary
+    long getReadYourWritesMillis() {
+        return readYourWritesMillis;
+    }
+}
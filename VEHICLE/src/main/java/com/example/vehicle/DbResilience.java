@@ -0,0 +1,332 @@
+package com.example.vehicle;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.SQLTransientException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Keeps DbConnector responsive while MySQL is slow or restarting:
+//   - every statement gets a query timeout, so one stuck query cannot hang a clerk's screen
+//   - opening a connection is retried a few times with jittered backoff, within a fixed time budget
+//   - a circuit breaker opens after repeated failures and makes calls fail immediately; after a cool-down
+//     one trial call is let through and closes it again on success
+//   - a bounded write-behind queue holds counter-side writes (payments, returns) that could not even get a
+//     connection, and replays them in order once the database answers again. A replay can fail after its
+//     COMMIT reached the server (a reset connection), so it is retried, and every queued write has to be
+//     idempotent: a payment carries a request id and is skipped when that id is already in the table.
+//   - the queue lives in memory only; flushOnExit() drains it before exit, within a time limit, and reports
+//     what had to be dropped. The first queued write also registers a shutdown hook that does the same, so
+//     every process that can queue (desktop, API server, CLI tools) drains it however it exits.
+//
+// Worst case a call costs one query timeout; while the breaker is open it costs nothing.
+class DbResilience {
+    static final int QUERY_TIMEOUT_SECONDS = 5;
+    private static final int CONNECT_ATTEMPTS = 3;
+    private static final long CONNECT_BUDGET_MILLIS = 1500;
+    private static final long BASE_BACKOFF_MILLIS = 100;
+    private static final int FAILURE_THRESHOLD = 5;
+    private static final long OPEN_MILLIS = 10_000;
+    private static final int WRITE_BEHIND_CAPACITY = 500;
+    private static final long DRAIN_INTERVAL_MILLIS = 1000;
+    private static final long EXIT_FLUSH_MILLIS = 10_000;
+
+    interface ConnectionFactory {
+        Connection open() throws SQLException;
+    }
+
+    // A write that is safe to replay later, even after an attempt that may already have committed
+    interface Write {
+        void apply(Connection connection) throws SQLException;
+    }
+
+    private enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final ConnectionFactory factory;
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    private final Deque<PendingWrite> writeBehind = new ArrayDeque<>();
+    private final Object drainLock = new Object(); // One drain at a time, so a write is never replayed concurrently
+    private ScheduledExecutorService drainer;
+
+    DbResilience(ConnectionFactory factory) {
+        this.factory = factory;
+    }
+
+    // Opens a connection whose statements time out, or fails fast while the breaker is open
+    Connection connect() throws SQLException {
+        Profiling.DbCallEvent event = new Profiling.DbCallEvent();
+        event.begin();
+        try {
+            return connectWithRetry();
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.operation = "connect";
+                event.sql = "";
+                event.commit();
+            }
+        }
+    }
+
+    private Connection connectWithRetry() throws SQLException {
+        long deadline = System.currentTimeMillis() + CONNECT_BUDGET_MILLIS;
+        for (int attempt = 1; ; attempt++) {
+            if (!allowCall()) {
+                throw new SQLTransientConnectionException("Database unavailable (circuit open)", "08001");
+            }
+            try {
+                Connection connection = factory.open();
+                recordConnected();
+                return wrap(connection);
+            } catch (SQLException ex) {
+                recordFailure();
+                long backoff = ThreadLocalRandom.current().nextLong(BASE_BACKOFF_MILLIS << attempt);
+                if (!isTransient(ex) || attempt >= CONNECT_ATTEMPTS || System.currentTimeMillis() + backoff > deadline) {
+                    throw ex;
+                }
+                sleep(backoff);
+            }
+        }
+    }
+
+    boolean isAvailable() {
+        synchronized (this) {
+            return state != State.OPEN || System.currentTimeMillis() - openedAt >= OPEN_MILLIS;
+        }
+    }
+
+    int getPendingWrites() {
+        synchronized (writeBehind) {
+            return writeBehind.size();
+        }
+    }
+
+    List<String> getPendingDescriptions() {
+        List<String> descriptions = new ArrayList<>();
+        synchronized (writeBehind) {
+            for (PendingWrite write : writeBehind) {
+                descriptions.add(write.description);
+            }
+        }
+        return descriptions;
+    }
+
+    // Keeps replaying the queue until it is empty or the time is up; returns the writes still waiting
+    int flush(long timeoutMillis) {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (getPendingWrites() > 0 && System.currentTimeMillis() < deadline) {
+            drain();
+            if (getPendingWrites() > 0) {
+                sleep(Math.min(DRAIN_INTERVAL_MILLIS, Math.max(0, deadline - System.currentTimeMillis())));
+            }
+        }
+        return getPendingWrites();
+    }
+
+    // Last chance for queued writes before exit. Whatever is still queued afterwards is dropped, since the queue
+    // is not persisted: each write is reported on stderr, followed by a count. Returns the number dropped.
+    int flushOnExit(long timeoutMillis) {
+        int queued = getPendingWrites();
+        if (queued == 0) {
+            return 0;
+        }
+        flush(timeoutMillis);
+        List<String> dropped;
+        synchronized (drainLock) {
+            dropped = getPendingDescriptions();
+            synchronized (writeBehind) {
+                writeBehind.clear();
+            }
+        }
+        for (String description : dropped) {
+            System.err.println("Not saved, database still unavailable at exit: " + description);
+        }
+        System.err.println("Exit: " + (queued - dropped.size()) + " of " + queued + " queued write(s) saved, "
+                + dropped.size() + " dropped");
+        return dropped.size();
+    }
+
+    // Queues a write for replay; false when the queue is full and the caller has to report the failure
+    boolean enqueue(String description, Write write) {
+        synchronized (writeBehind) {
+            if (writeBehind.size() >= WRITE_BEHIND_CAPACITY) {
+                return false;
+            }
+            writeBehind.addLast(new PendingWrite(description, write));
+            if (drainer == null) {
+                drainer = Executors.newSingleThreadScheduledExecutor(r -> {
+                    Thread thread = new Thread(r, "write-behind");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                drainer.scheduleWithFixedDelay(this::drain, DRAIN_INTERVAL_MILLIS, DRAIN_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> flushOnExit(EXIT_FLUSH_MILLIS), "write-behind-exit"));
+            }
+        }
+        System.err.println("Database unavailable, queued for later: " + description);
+        return true;
+    }
+
+    // Replays queued writes in order; stops at the first one that still cannot reach the database
+    private void drain() {
+        synchronized (drainLock) {
+            drainQueue();
+        }
+    }
+
+    private void drainQueue() {
+        while (isAvailable()) {
+            PendingWrite next;
+            synchronized (writeBehind) {
+                next = writeBehind.peekFirst();
+            }
+            if (next == null) {
+                return;
+            }
+            try (Connection connection = connect()) {
+                next.write.apply(connection);
+            } catch (SQLException ex) {
+                if (isTransient(ex)) {
+                    return;
+                }
+                // The database rejected it outright (e.g. the booking was deleted meanwhile); retrying won't help
+                System.err.println("Dropped queued write " + next.description);
+                ex.printStackTrace();
+            }
+            synchronized (writeBehind) {
+                writeBehind.pollFirst();
+            }
+        }
+    }
+
+    // Connection refused/reset, timeouts, deadlocks and lock waits are worth another try; bad SQL is not
+    static boolean isTransient(SQLException ex) {
+        if (ex instanceof SQLTransientException || ex instanceof SQLRecoverableException) {
+            return true;
+        }
+        String sqlState = ex.getSQLState();
+        return (sqlState != null && (sqlState.startsWith("08") || sqlState.equals("40001")))
+                || ex.getErrorCode() == 1205 || ex.getErrorCode() == 1213;
+    }
+
+    private synchronized boolean allowCall() {
+        if (state == State.OPEN) {
+            if (System.currentTimeMillis() - openedAt < OPEN_MILLIS) {
+                return false;
+            }
+            state = State.HALF_OPEN;
+            return true;
+        }
+        // While half open only the single trial call is in flight
+        return state == State.CLOSED;
+    }
+
+    private synchronized void recordSuccess() {
+        consecutiveFailures = 0;
+        if (state != State.CLOSED) {
+            System.err.println("Database reachable again, circuit closed");
+        }
+        state = State.CLOSED;
+    }
+
+    // A successful connect is enough to end the trial, but not to forgive a run of query timeouts
+    private synchronized void recordConnected() {
+        if (state == State.HALF_OPEN) {
+            recordSuccess();
+        }
+    }
+
+    private synchronized void recordFailure() {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || (state == State.CLOSED && consecutiveFailures >= FAILURE_THRESHOLD)) {
+            state = State.OPEN;
+            openedAt = System.currentTimeMillis();
+            System.err.println("Database failing, circuit open for " + OPEN_MILLIS / 1000 + "s");
+        }
+    }
+
+    // Statements created through the connection get the query timeout, and their outcome feeds the breaker
+    private Connection wrap(Connection connection) {
+        InvocationHandler handler = (proxy, method, args) -> {
+            Object result = invoke(connection, method, args);
+            if (result instanceof Statement statement) {
+                statement.setQueryTimeout(QUERY_TIMEOUT_SECONDS);
+                // prepareStatement/prepareCall take the SQL up front; plain statements get it per execute
+                String sql = args != null && args.length > 0 && args[0] instanceof String text ? text : null;
+                return wrapStatement(statement, method.getReturnType(), sql);
+            }
+            return result;
+        };
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class}, handler);
+    }
+
+    // Each execute is also a DbCall event for profiling
+    private Object wrapStatement(Statement statement, Class<?> type, String preparedSql) {
+        InvocationHandler handler = (proxy, method, args) -> {
+            if (!method.getName().startsWith("execute")) {
+                return invoke(statement, method, args);
+            }
+            Profiling.DbCallEvent event = new Profiling.DbCallEvent();
+            event.begin();
+            try {
+                Object result = invoke(statement, method, args);
+                recordSuccess();
+                return result;
+            } catch (SQLException ex) {
+                if (isTransient(ex)) {
+                    recordFailure();
+                }
+                throw ex;
+            } finally {
+                event.end();
+                if (event.shouldCommit()) {
+                    event.operation = method.getName();
+                    event.sql = preparedSql != null ? preparedSql : args != null && args.length > 0 ? String.valueOf(args[0]) : "";
+                    event.commit();
+                }
+            }
+        };
+        return Proxy.newProxyInstance(Statement.class.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class PendingWrite {
+        private final String description;
+        private final Write write;
+
+        PendingWrite(String description, Write write) {
+            this.description = description;
+            this.write = write;
+        }
+    }
+}
@@ -0,0 +1,491 @@
+package com.example.vehicle;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Demand forecast per vehicle category. The demand series of a category is how many of its vehicles were out
+// on rent each day over the last HISTORY_DAYS completed days. Each series has an additive Holt-Winters model
+// (level, damped trend and a weekly season) that forecasts the next HORIZON_DAYS days.
+//
+// Everything is built once by reload, which also picks each category's smoothing parameters by a small grid
+// search over the one-step-ahead error. After that the model is only ever advanced: a new day adds one
+// observation, and a booking that changes a past day rewinds the model to the checkpoint taken before that
+// day (one per day for the last CHECKPOINT_DAYS) and replays the days since. Bookings that only touch today
+// or later change the already-booked counts and leave the model alone.
+class DemandForecaster implements ChangeFeed.Listener {
+    static final int HISTORY_DAYS = 364;
+    static final int HORIZON_DAYS = 28;
+    static final int SEASON = 7;
+    static final int CHECKPOINT_DAYS = 56;
+    private static final double[] ALPHAS = {0.1, 0.2, 0.3, 0.5};
+    private static final double[] BETAS = {0.01, 0.05, 0.1};
+    private static final double[] GAMMAS = {0.05, 0.1, 0.2, 0.3};
+    private static final double PHI = 0.95; // Trend damping, so a short rise is not extrapolated for weeks
+
+    private final DbConnector dbConnector;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Series> seriesByCategory = new TreeMap<>();
+    private final Map<Integer, String> categoryByVehicle = new HashMap<>();
+    private final Map<Integer, RentedSpan> spansByBooking = new HashMap<>();
+    private LocalDate today;
+    private long base; // Epoch day of index 0 in the counts, HISTORY_DAYS before today
+
+    DemandForecaster(DbConnector dbConnector) {
+        this.dbConnector = dbConnector;
+    }
+
+    // Full (re)build from the database, fitting every model from scratch
+    void reload() {
+        LocalDate now = LocalDate.now();
+        List<Vehicle> vehicles = dbConnector.getAllVehicles();
+        List<Booking> bookings = dbConnector.getBookingsOverlapping(now.minusDays(HISTORY_DAYS), now.plusYears(10));
+        lock.writeLock().lock();
+        try {
+            today = now;
+            base = now.toEpochDay() - HISTORY_DAYS;
+            seriesByCategory.clear();
+            categoryByVehicle.clear();
+            spansByBooking.clear();
+            for (Vehicle vehicle : vehicles) {
+                putVehicle(vehicle.getId(), vehicle.getCategory());
+            }
+            for (Booking booking : bookings) {
+                putBooking(booking);
+            }
+            for (Series series : seriesByCategory.values()) {
+                // The grid search only picks the parameters; the replay on epoch days also lays the checkpoints
+                series.model = fit(series.counts).restart();
+                series.refit(base);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void onChanges(List<ChangeFeed.Change> changes) {
+        if (changes.stream().anyMatch(ChangeFeed.Change::isReset)) {
+            reload();
+            return;
+        }
+        rollOver();
+        for (ChangeFeed.Change change : changes) {
+            int id = change.getEntityId();
+            if ("vehicles".equals(change.getTableName())) {
+                Vehicle vehicle = change.isDelete() ? null : dbConnector.getVehicleById(id);
+                lock.writeLock().lock();
+                String known;
+                try {
+                    known = categoryByVehicle.get(id);
+                    if (known == null && vehicle != null) {
+                        putVehicle(id, vehicle.getCategory());
+                        seriesByCategory.get(vehicle.getCategory()).ensureModel(base);
+                        continue;
+                    }
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                // A category change moves the vehicle's whole history, and a delete takes its bookings with it (their
+                // DELETE rows may come in a later batch); both are rare enough to rebuild for
+                if (known != null && (vehicle == null || !known.equals(vehicle.getCategory()))) {
+                    reload();
+                    return;
+                }
+            } else if ("bookings".equals(change.getTableName())) {
+                Booking booking = change.isDelete() ? null : dbConnector.getBookingById(id);
+                lock.writeLock().lock();
+                try {
+                    removeBooking(id);
+                    if (booking != null) {
+                        putBooking(booking);
+                    }
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+        }
+        lock.writeLock().lock();
+        try {
+            for (Series series : seriesByCategory.values()) {
+                series.refit(base);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Moves the window forward when the date has changed: the completed days become observations
+    private void rollOver() {
+        LocalDate now = LocalDate.now();
+        lock.writeLock().lock();
+        try {
+            if (today == null || now.equals(today)) {
+                return;
+            }
+            long shift = ChronoUnit.DAYS.between(today, now);
+            if (shift > 0 && shift < HISTORY_DAYS) {
+                advance(now, (int) shift);
+                return;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        // The clock went back, or nothing ran for most of the history: start over
+        reload();
+    }
+
+    private void advance(LocalDate now, int days) {
+        long oldEnd = base + HISTORY_DAYS + HORIZON_DAYS;
+        today = now;
+        base += days;
+        spansByBooking.values().removeIf(span -> span.to <= base);
+        for (Series series : seriesByCategory.values()) {
+            series.shift(days);
+        }
+        // Days that just entered the horizon are counted from the bookings held in memory
+        for (RentedSpan span : spansByBooking.values()) {
+            addCounts(span, oldEnd, 1);
+        }
+        for (Series series : seriesByCategory.values()) {
+            series.refit(base);
+        }
+    }
+
+    List<String> getCategories() {
+        lock.readLock().lock();
+        try {
+            return new ArrayList<>(seriesByCategory.keySet());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // The last showDays days of demand and the forecast for the next HORIZON_DAYS, or null for an unknown category
+    Forecast forecast(String category, int showDays) {
+        rollOver();
+        lock.readLock().lock();
+        try {
+            Series series = seriesByCategory.get(category);
+            if (series == null || series.model == null) {
+                return null;
+            }
+            showDays = Math.min(showDays, HISTORY_DAYS);
+            double[] actual = new double[showDays];
+            for (int i = 0; i < showDays; i++) {
+                actual[i] = series.counts[HISTORY_DAYS - showDays + i];
+            }
+            double[] predicted = new double[HORIZON_DAYS];
+            int[] booked = new int[HORIZON_DAYS];
+            for (int h = 0; h < HORIZON_DAYS; h++) {
+                booked[h] = series.counts[HISTORY_DAYS + h];
+                // Rentals already on the books are demand that is certain, so the forecast never drops below them
+                predicted[h] = Math.max(booked[h], Math.max(0, series.model.forecast(base + HISTORY_DAYS + h)));
+            }
+            return new Forecast(category, series.fleetSize, today, actual, predicted, booked, series.model.meanAbsoluteError());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void putVehicle(int vehicleId, String category) {
+        categoryByVehicle.put(vehicleId, category);
+        seriesByCategory.computeIfAbsent(category, c -> new Series()).fleetSize++;
+    }
+
+    private void putBooking(Booking booking) {
+        String category = categoryByVehicle.get(Integer.parseInt(booking.getVehicleId()));
+        long from = booking.getStartDate().toEpochDay();
+        long to = booking.getEndDate().toEpochDay();
+        if (category == null || to <= base || from >= to) {
+            return;
+        }
+        RentedSpan span = new RentedSpan(category, from, to);
+        spansByBooking.put(Integer.parseInt(booking.getBookingId()), span);
+        addCounts(span, base, 1);
+    }
+
+    private void removeBooking(int bookingId) {
+        RentedSpan span = spansByBooking.remove(bookingId);
+        if (span != null) {
+            addCounts(span, base, -1);
+        }
+    }
+
+    // Adds delta to the span's days from the given epoch day on, within the window; past days dirty the model
+    private void addCounts(RentedSpan span, long fromDay, int delta) {
+        Series series = seriesByCategory.get(span.category);
+        int from = (int) (Math.max(span.from, fromDay) - base);
+        int to = (int) Math.min(span.to - base, HISTORY_DAYS + HORIZON_DAYS);
+        for (int i = Math.max(0, from); i < to; i++) {
+            series.counts[i] += delta;
+        }
+        if (from < HISTORY_DAYS && from < to) {
+            series.dirtyFrom = Math.min(series.dirtyFrom, base + Math.max(0, from));
+        }
+    }
+
+    // Picks the smoothing parameters with the lowest one-step-ahead squared error over the history. Days are
+    // counted from 0 here, which shifts the weekly slots uniformly and so does not change the ranking.
+    static HoltWinters fit(int[] counts) {
+        HoltWinters best = null;
+        double bestError = Double.MAX_VALUE;
+        for (double alpha : ALPHAS) {
+            for (double beta : BETAS) {
+                for (double gamma : GAMMAS) {
+                    HoltWinters model = new HoltWinters(alpha, beta, gamma);
+                    model.start(counts, 0);
+                    for (int i = SEASON; i < HISTORY_DAYS; i++) {
+                        model.update(i, counts[i]);
+                    }
+                    if (model.squaredError < bestError) {
+                        bestError = model.squaredError;
+                        best = model;
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    // One category: daily on-rent counts for [base, base + HISTORY_DAYS + HORIZON_DAYS), history then the
+    // already-booked future, and the model fitted to the history with its recent checkpoints
+    private static class Series {
+        private final int[] counts = new int[HISTORY_DAYS + HORIZON_DAYS];
+        private final ArrayDeque<HoltWinters> checkpoints = new ArrayDeque<>();
+        private HoltWinters model;
+        private long dirtyFrom = Long.MAX_VALUE;
+        private int fleetSize;
+
+        // For a category that appears after reload: default parameters until the next reload fits them
+        void ensureModel(long base) {
+            if (model == null) {
+                model = new HoltWinters(ALPHAS[1], BETAS[1], GAMMAS[1]);
+                dirtyFrom = base;
+            }
+        }
+
+        void shift(int days) {
+            System.arraycopy(counts, days, counts, 0, counts.length - days);
+            Arrays.fill(counts, counts.length - days, counts.length, 0);
+        }
+
+        // Brings the model up to date with the history: rewinds to the last checkpoint before the earliest
+        // changed day (or starts over when it is older than every checkpoint), then observes the days since
+        void refit(long base) {
+            if (model == null) {
+                return;
+            }
+            long lastComplete = base + HISTORY_DAYS - 1;
+            if (dirtyFrom <= model.lastDay) {
+                while (!checkpoints.isEmpty() && checkpoints.peekLast().lastDay >= dirtyFrom) {
+                    checkpoints.pollLast();
+                }
+                if (checkpoints.isEmpty() || checkpoints.peekLast().lastDay < base + SEASON - 1) {
+                    model = model.restart();
+                } else {
+                    model = checkpoints.peekLast().copy();
+                }
+            }
+            dirtyFrom = Long.MAX_VALUE;
+            if (model.lastDay < base + SEASON - 1) {
+                model = model.restart();
+                checkpoints.clear();
+                model.start(counts, base);
+            }
+            for (long day = model.lastDay + 1; day <= lastComplete; day++) {
+                model.update(day, counts[(int) (day - base)]);
+                if (lastComplete - day < CHECKPOINT_DAYS) {
+                    checkpoints.addLast(model.copy());
+                }
+            }
+            while (checkpoints.size() > CHECKPOINT_DAYS) {
+                checkpoints.pollFirst();
+            }
+        }
+    }
+
+    // Additive Holt-Winters with a damped trend; the season is indexed by day of the week
+    static class HoltWinters {
+        private final double alpha;
+        private final double beta;
+        private final double gamma;
+        private double level;
+        private double trend;
+        private double[] season = new double[SEASON];
+        private long lastDay = Long.MIN_VALUE; // Epoch day (or index) of the last observation
+        private double squaredError;
+        private double absoluteError;
+        private int errors;
+
+        HoltWinters(double alpha, double beta, double gamma) {
+            this.alpha = alpha;
+            this.beta = beta;
+            this.gamma = gamma;
+        }
+
+        // Initial state from the first two weeks starting at day first: level and season from the first week,
+        // trend from the difference between the weeks
+        void start(int[] counts, long first) {
+            double week1 = 0;
+            double week2 = 0;
+            for (int i = 0; i < SEASON; i++) {
+                week1 += counts[i];
+                week2 += counts[SEASON + i];
+            }
+            level = week1 / SEASON;
+            trend = (week2 - week1) / SEASON / SEASON;
+            for (int i = 0; i < SEASON; i++) {
+                season[slot(first + i)] = counts[i] - level;
+            }
+            lastDay = first + SEASON - 1;
+        }
+
+        void update(long day, double observed) {
+            double predicted = forecast(day);
+            if (day - lastDay == 1) {
+                double error = observed - predicted;
+                squaredError += error * error;
+                absoluteError += Math.abs(error);
+                errors++;
+            }
+            int k = slot(day);
+            double previousLevel = level;
+            level = alpha * (observed - season[k]) + (1 - alpha) * (level + PHI * trend);
+            trend = beta * (level - previousLevel) + (1 - beta) * PHI * trend;
+            season[k] = gamma * (observed - level) + (1 - gamma) * season[k];
+            lastDay = day;
+        }
+
+        double forecast(long day) {
+            long steps = day - lastDay;
+            double damped = 0;
+            double factor = 1;
+            for (long h = 1; h <= steps; h++) {
+                factor *= PHI;
+                damped += factor;
+            }
+            return level + damped * trend + season[slot(day)];
+        }
+
+        double meanAbsoluteError() {
+            return errors == 0 ? 0 : absoluteError / errors;
+        }
+
+        HoltWinters copy() {
+            HoltWinters copy = new HoltWinters(alpha, beta, gamma);
+            copy.level = level;
+            copy.trend = trend;
+            copy.season = season.clone();
+            copy.lastDay = lastDay;
+            copy.squaredError = squaredError;
+            copy.absoluteError = absoluteError;
+            copy.errors = errors;
+            return copy;
+        }
+
+        // Same parameters, no state
+        HoltWinters restart() {
+            return new HoltWinters(alpha, beta, gamma);
+        }
+
+        private static int slot(long day) {
+            return (int) Math.floorMod(day, (long) SEASON);
+        }
+    }
+
+    private static class RentedSpan {
+        private final String category;
+        private final long from; // Epoch day, inclusive
+        private final long to;   // Epoch day, exclusive
+
+        RentedSpan(String category, long from, long to) {
+            this.category = category;
+            this.from = from;
+            this.to = to;
+        }
+    }
+
+    static class Forecast {
+        private final String category;
+        private final int fleetSize;
+        private final LocalDate today;
+        private final double[] actual;
+        private final double[] predicted;
+        private final int[] booked;
+        private final double meanAbsoluteError;
+
+        Forecast(String category, int fleetSize, LocalDate today, double[] actual, double[] predicted, int[] booked, double meanAbsoluteError) {
+            this.category = category;
+            this.fleetSize = fleetSize;
+            this.today = today;
+            this.actual = actual;
+            this.predicted = predicted;
+            this.booked = booked;
+            this.meanAbsoluteError = meanAbsoluteError;
+        }
+
+        public String getCategory() {
+            return category;
+        }
+
+        public int getFleetSize() {
+            return fleetSize;
+        }
+
+        // actual[i] is the demand on today - actual.length + i
+        public LocalDate getToday() {
+            return today;
+        }
+
+        public double[] getActual() {
+            return actual;
+        }
+
+        // predicted[h] and booked[h] are for today + h
+        public double[] getPredicted() {
+            return predicted;
+        }
+
+        public int[] getBooked() {
+            return booked;
+        }
+
+        public double getMeanAbsoluteError() {
+            return meanAbsoluteError;
+        }
+
+        public double getPeak() {
+            double peak = 0;
+            for (double value : predicted) {
+                peak = Math.max(peak, value);
+            }
+            return peak;
+        }
+
+        // Days in the horizon on which forecast demand exceeds the fleet
+        public int getShortDays() {
+            int days = 0;
+            for (double value : predicted) {
+                if (value > fleetSize) {
+                    days++;
+                }
+            }
+            return days;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %d vehicles, forecast peak %.1f on rent (%.0f%% of fleet), %d of %d days short, typical error +/-%.1f",
+                    category, fleetSize, getPeak(), fleetSize == 0 ? 0 : getPeak() * 100 / fleetSize, getShortDays(),
+                    HORIZON_DAYS, meanAbsoluteError);
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package com.example.vehicle;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Per-vehicle occupancy bitmaps over a date window: bit d of a vehicle is set when the
+// vehicle was rented on windowStart + d. Category answers are bitwise ops over those bitmaps.
+class FleetUtilisation {
+    private final LocalDate windowStart;
+    private final int days;
+    private final int words;
+    private final Map<Integer, long[]> bitmaps = new HashMap<>();
+    private final Map<String, List<Integer>> vehiclesByCategory = new LinkedHashMap<>();
+
+    FleetUtilisation(LocalDate windowStart, LocalDate windowEnd) {
+        this.windowStart = windowStart;
+        this.days = (int) ChronoUnit.DAYS.between(windowStart, windowEnd);
+        this.words = (days + 63) / 64;
+    }
+
+    // Builds the bitmaps for [from, to) from the vehicles and the bookings overlapping that window
+    static FleetUtilisation build(List<Vehicle> vehicles, List<Booking> bookings, LocalDate from, LocalDate to) {
+        FleetUtilisation utilisation = new FleetUtilisation(from, to);
+        for (Vehicle vehicle : vehicles) {
+            utilisation.addVehicle(vehicle.getId(), vehicle.getCategory());
+        }
+        for (Booking booking : bookings) {
+            utilisation.markRented(Integer.parseInt(booking.getVehicleId()), booking.getStartDate(), booking.getEndDate());
+        }
+        return utilisation;
+    }
+
+    void addVehicle(int vehicleId, String category) {
+        bitmaps.put(vehicleId, new long[words]);
+        vehiclesByCategory.computeIfAbsent(category, c -> new ArrayList<>()).add(vehicleId);
+    }
+
+    // Sets the days from startDate (inclusive) to endDate (exclusive), clipped to the window
+    void markRented(int vehicleId, LocalDate startDate, LocalDate endDate) {
+        long[] bitmap = bitmaps.get(vehicleId);
+        if (bitmap == null) {
+            return;
+        }
+        int from = (int) Math.max(0, ChronoUnit.DAYS.between(windowStart, startDate));
+        int to = (int) Math.min(days, ChronoUnit.DAYS.between(windowStart, endDate));
+        if (from >= to) {
+            return;
+        }
+        int firstWord = from >>> 6;
+        int lastWord = (to - 1) >>> 6;
+        long firstMask = -1L << (from & 63);
+        long lastMask = -1L >>> (63 - ((to - 1) & 63));
+        if (firstWord == lastWord) {
+            bitmap[firstWord] |= firstMask & lastMask;
+            return;
+        }
+        bitmap[firstWord] |= firstMask;
+        for (int w = firstWord + 1; w < lastWord; w++) {
+            bitmap[w] = -1L;
+        }
+        bitmap[lastWord] |= lastMask;
+    }
+
+    int getDays() {
+        return days;
+    }
+
+    // Rough heap size, for ReportCache
+    long estimatedBytes() {
+        return 256 + bitmaps.size() * (64 + 8L * words);
+    }
+
+    List<String> getCategories() {
+        return new ArrayList<>(vehiclesByCategory.keySet());
+    }
+
+    int getFleetSize(String category) {
+        return vehiclesByCategory.getOrDefault(category, List.of()).size();
+    }
+
+    int rentedDays(int vehicleId) {
+        long[] bitmap = bitmaps.get(vehicleId);
+        if (bitmap == null) {
+            return 0;
+        }
+        int total = 0;
+        for (long word : bitmap) {
+            total += Long.bitCount(word);
+        }
+        return total;
+    }
+
+    // Fraction of the window the vehicle was rented (0..1)
+    double occupancy(int vehicleId) {
+        return days == 0 ? 0 : (double) rentedDays(vehicleId) / days;
+    }
+
+    // Longest run of consecutive days on which the vehicle was not rented
+    int longestIdleStreak(int vehicleId) {
+        long[] bitmap = bitmaps.get(vehicleId);
+        if (bitmap == null) {
+            return days;
+        }
+        int longest = 0;
+        int day = 0;
+        while (day < days) {
+            int nextRented = nextSetDay(bitmap, day);
+            longest = Math.max(longest, nextRented - day);
+            day = nextClearDay(bitmap, nextRented);
+        }
+        return longest;
+    }
+
+    // Fraction of all vehicle-days in the category that were rented
+    double categoryOccupancy(String category) {
+        List<Integer> vehicleIds = vehiclesByCategory.getOrDefault(category, List.of());
+        if (vehicleIds.isEmpty() || days == 0) {
+            return 0;
+        }
+        long rented = 0;
+        for (int vehicleId : vehicleIds) {
+            rented += rentedDays(vehicleId);
+        }
+        return (double) rented / ((long) vehicleIds.size() * days);
+    }
+
+    // Days on which every vehicle of the category was out (AND of the bitmaps): demand we could not serve
+    int fullyBookedDays(String category) {
+        List<Integer> vehicleIds = vehiclesByCategory.getOrDefault(category, List.of());
+        if (vehicleIds.isEmpty()) {
+            return 0;
+        }
+        int total = 0;
+        for (int w = 0; w < words; w++) {
+            long all = -1L;
+            for (int vehicleId : vehicleIds) {
+                all &= bitmaps.get(vehicleId)[w];
+                if (all == 0) {
+                    break;
+                }
+            }
+            total += Long.bitCount(all & validMask(w));
+        }
+        return total;
+    }
+
+    // Days on which no vehicle of the category was out (complement of the OR of the bitmaps)
+    int idleDays(String category) {
+        int total = 0;
+        for (int w = 0; w < words; w++) {
+            long any = 0;
+            for (int vehicleId : vehiclesByCategory.getOrDefault(category, List.of())) {
+                any |= bitmaps.get(vehicleId)[w];
+            }
+            total += Long.bitCount(~any & validMask(w));
+        }
+        return total;
+    }
+
+    // Highest number of the category's vehicles rented on a single day. The per-day counts are kept
+    // bit-sliced (plane k holds bit k of every day's count) so each vehicle is added 64 days at a time.
+    int peakDemand(String category) {
+        List<Integer> vehicleIds = vehiclesByCategory.getOrDefault(category, List.of());
+        int planes = 32 - Integer.numberOfLeadingZeros(Math.max(1, vehicleIds.size()));
+        int peak = 0;
+        for (int w = 0; w < words; w++) {
+            long[] counter = new long[planes];
+            for (int vehicleId : vehicleIds) {
+                long carry = bitmaps.get(vehicleId)[w];
+                for (int k = 0; k < planes && carry != 0; k++) {
+                    long nextCarry = counter[k] & carry;
+                    counter[k] ^= carry;
+                    carry = nextCarry;
+                }
+            }
+            // Narrow the candidate days from the top plane down to find the maximum count
+            long candidates = validMask(w);
+            int best = 0;
+            for (int k = planes - 1; k >= 0; k--) {
+                long withBit = candidates & counter[k];
+                if (withBit != 0) {
+                    candidates = withBit;
+                    best |= 1 << k;
+                }
+            }
+            peak = Math.max(peak, best);
+        }
+        return peak;
+    }
+
+    private long validMask(int word) {
+        int remaining = days - word * 64;
+        return remaining >= 64 ? -1L : (1L << remaining) - 1;
+    }
+
+    private int nextSetDay(long[] bitmap, int from) {
+        int w = from >>> 6;
+        if (w >= words) {
+            return days;
+        }
+        long word = bitmap[w] & (-1L << (from & 63));
+        while (word == 0) {
+            if (++w == words) {
+                return days;
+            }
+            word = bitmap[w];
+        }
+        return Math.min(days, w * 64 + Long.numberOfTrailingZeros(word));
+    }
+
+    private int nextClearDay(long[] bitmap, int from) {
+        int w = from >>> 6;
+        if (w >= words) {
+            return days;
+        }
+        long word = ~bitmap[w] & (-1L << (from & 63));
+        while (word == 0) {
+            if (++w == words) {
+                return days;
+            }
+            word = ~bitmap[w];
+        }
+        return Math.min(days, w * 64 + Long.numberOfTrailingZeros(word));
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.vehicle;
+
+import java.util.HashMap;
+import java.util.Map;
+import javafx.application.Platform;
+
+// Detects freezes of the JavaFX Application Thread. Every SAMPLE_MILLIS it posts a heartbeat with
+// Platform.runLater; while a heartbeat has been waiting longer than the threshold the FX thread is stuck,
+// and its stack is sampled on every tick. The first sample is logged to stderr straight away. Once the
+// heartbeat finally runs, one FxStall event records how long the thread was blocked and the application
+// frame seen in most samples, which is where the time went.
+//
+// Modal dialogs do not count as stalls: showAndWait keeps processing runLater calls while it waits.
+class FxWatchdog {
+    private static final long SAMPLE_MILLIS = 50;
+    private static final int MAX_FRAMES = 40;
+
+    private final long thresholdMillis;
+    private volatile Thread fxThread;
+    private volatile boolean running;
+    private Thread sampler;
+
+    FxWatchdog(long thresholdMillis) {
+        this.thresholdMillis = thresholdMillis;
+    }
+
+    void start() {
+        running = true;
+        sampler = new Thread(this::run, "fx-watchdog");
+        sampler.setDaemon(true);
+        sampler.start();
+    }
+
+    void stop() {
+        running = false;
+        if (sampler != null) {
+            sampler.interrupt();
+        }
+    }
+
+    private void run() {
+        Heartbeat pending = null;
+        while (running) {
+            if (pending == null) {
+                pending = new Heartbeat();
+                Platform.runLater(pending::answer);
+            } else if (pending.answered) {
+                pending.finish();
+                pending = null;
+                continue;
+            } else if (fxThread != null && pending.waitedMillis() >= thresholdMillis) {
+                pending.sample(fxThread.getStackTrace());
+            }
+            try {
+                Thread.sleep(SAMPLE_MILLIS);
+            } catch (InterruptedException ex) {
+                return;
+            }
+        }
+    }
+
+    static String format(StackTraceElement[] stack) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < stack.length && i < MAX_FRAMES; i++) {
+            text.append(stack[i].getClassName()).append('.').append(stack[i].getMethodName())
+                    .append(':').append(stack[i].getLineNumber()).append('\n');
+        }
+        return text.toString();
+    }
+
+    // The first frame in this application's code, else the top frame. The resilience proxy and the profiling
+    // helpers wrap other code, so the frame that called them says more.
+    static String topFrame(StackTraceElement[] stack) {
+        for (StackTraceElement frame : stack) {
+            String type = frame.getClassName();
+            if (type.startsWith("com.example.vehicle.") && !type.startsWith("com.example.vehicle.DbResilience")
+                    && !type.startsWith("com.example.vehicle.Profiling")) {
+                return frame.getClassName() + "." + frame.getMethodName() + ":" + frame.getLineNumber();
+            }
+        }
+        return stack.length == 0 ? "unknown" : stack[0].getClassName() + "." + stack[0].getMethodName();
+    }
+
+    private class Heartbeat {
+        private final long postedAt = System.nanoTime();
+        private final Profiling.FxStallEvent event = new Profiling.FxStallEvent();
+        private final Map<String, Integer> hits = new HashMap<>(); // Samples per top frame
+        private final Map<String, String> stacks = new HashMap<>(); // First sampled stack per top frame
+        private int samples;
+        private volatile boolean answered;
+
+        Heartbeat() {
+            event.begin();
+        }
+
+        void answer() {
+            fxThread = Thread.currentThread();
+            answered = true;
+        }
+
+        long waitedMillis() {
+            return (System.nanoTime() - postedAt) / 1_000_000;
+        }
+
+        void sample(StackTraceElement[] stack) {
+            String text = format(stack);
+            if (samples++ == 0) {
+                System.err.println("FX thread blocked for " + waitedMillis() + " ms at:\n" + text);
+            }
+            String top = topFrame(stack);
+            hits.merge(top, 1, Integer::sum);
+            stacks.putIfAbsent(top, text);
+        }
+
+        void finish() {
+            if (samples == 0) {
+                return;
+            }
+            event.end();
+            String top = null;
+            for (Map.Entry<String, Integer> entry : hits.entrySet()) {
+                if (top == null || entry.getValue() > hits.get(top)) {
+                    top = entry.getKey();
+                }
+            }
+            long blocked = waitedMillis();
+            System.err.println("FX thread unblocked after " + blocked + " ms (" + top + ")");
+            if (event.shouldCommit()) {
+                event.blockedMillis = blocked;
+                event.topFrame = top;
+                event.stack = stacks.get(top);
+                event.samples = samples;
+                event.commit();
+            }
+        }
+    }
+}
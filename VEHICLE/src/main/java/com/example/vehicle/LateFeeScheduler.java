@@ -0,0 +1,133 @@
+package com.example.vehicle;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Charges late fees without a clerk having to remember them. Every RUN_INTERVAL_MINUTES the scheduler asks
+// DbConnector.chargeLateFees for rentals whose end_date passed more than GRACE_DAYS ago without a return.
+// Each overdue day gets its own LATE_FEE row in payments at the category's daily rate from late_fee_rates,
+// so the fee keeps growing for as long as the vehicle stays out; a run charges the days since the booking's
+// last charged day. That day is kept on the booking (late_fees_through, indexed), so a run only reads the
+// open bookings that still owe a day rather than every overdue rental since charging began.
+//
+// The day is part of the row's key: a unique index on payments (booking_id, fee_date) means terminals running
+// the scheduler at the same time, whatever branch they serve, can never charge the same day twice. Bookings
+// that ended before late_fee_settings.charge_from (when automatic fees were switched on) are never charged.
+class LateFeeScheduler {
+    static final int GRACE_DAYS = 1;
+    static final double DEFAULT_DAILY_RATE = 100; // Categories without a row in late_fee_rates
+    private static final long RUN_INTERVAL_MINUTES = 15;
+
+    private final DbConnector dbConnector;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "late-fee-scheduler");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    LateFeeScheduler(DbConnector dbConnector) {
+        this.dbConnector = dbConnector;
+    }
+
+    interface Listener {
+        // Called on the scheduler thread after a run that charged at least one late fee
+        void onCharged(List<LateFee> fees);
+    }
+
+    void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    void start() {
+        executor.scheduleWithFixedDelay(this::runOnce, 0, RUN_INTERVAL_MINUTES, TimeUnit.MINUTES);
+    }
+
+    void stop() {
+        executor.shutdownNow();
+    }
+
+    private void runOnce() {
+        try {
+            List<LateFee> fees = dbConnector.chargeLateFees(LocalDate.now());
+            if (!fees.isEmpty()) {
+                for (Listener listener : listeners) {
+                    listener.onCharged(fees);
+                }
+            }
+        } catch (RuntimeException ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    static class LateFee {
+        private final int bookingId;
+        private final int customerId;
+        private final int vehicleId;
+        private final LocalDate endDate;
+        private final LocalDate firstDay; // First and last overdue day charged by this run
+        private final LocalDate lastDay;
+        private final double dailyRate;
+
+        LateFee(int bookingId, int customerId, int vehicleId, LocalDate endDate, LocalDate firstDay, LocalDate lastDay, double dailyRate) {
+            this.bookingId = bookingId;
+            this.customerId = customerId;
+            this.vehicleId = vehicleId;
+            this.endDate = endDate;
+            this.firstDay = firstDay;
+            this.lastDay = lastDay;
+            this.dailyRate = dailyRate;
+        }
+
+        public int getBookingId() {
+            return bookingId;
+        }
+
+        public int getCustomerId() {
+            return customerId;
+        }
+
+        public int getVehicleId() {
+            return vehicleId;
+        }
+
+        public LocalDate getEndDate() {
+            return endDate;
+        }
+
+        public LocalDate getFirstDay() {
+            return firstDay;
+        }
+
+        public LocalDate getLastDay() {
+            return lastDay;
+        }
+
+        public double getDailyRate() {
+            return dailyRate;
+        }
+
+        public int getDaysOverdue() {
+            return (int) ChronoUnit.DAYS.between(endDate, lastDay);
+        }
+
+        public int getDaysCharged() {
+            return (int) ChronoUnit.DAYS.between(firstDay, lastDay) + 1;
+        }
+
+        public double getAmount() {
+            return dailyRate * getDaysCharged();
+        }
+
+        @Override
+        public String toString() {
+            return "Booking " + bookingId + " (Customer " + customerId + ", Vehicle " + vehicleId + "): due " + endDate
+                    + ", " + getDaysOverdue() + " day(s) overdue, R" + getAmount() + " for " + getDaysCharged() + " more day(s)";
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.vehicle;
+
+import java.util.Arrays;
+
+// Collects request latencies for the load harnesses. Each worker owns one recorder
+// (no locking on the hot path) and the results are merged once the run is over.
+class LatencyRecorder {
+    private long[] latencies = new long[1024];
+    private int count;
+    private long errors;
+
+    void record(long nanos) {
+        if (count == latencies.length) {
+            latencies = Arrays.copyOf(latencies, count * 2);
+        }
+        latencies[count++] = nanos;
+    }
+
+    void recordError() {
+        errors++;
+    }
+
+    void merge(LatencyRecorder other) {
+        for (int i = 0; i < other.count; i++) {
+            record(other.latencies[i]);
+        }
+        errors += other.errors;
+    }
+
+    int getCount() {
+        return count;
+    }
+
+    long getErrors() {
+        return errors;
+    }
+
+    // Latency at the given percentile (0-100) in milliseconds
+    double percentileMillis(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf(latencies, count);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100.0 * count) - 1;
+        return sorted[Math.max(0, Math.min(count - 1, index))] / 1_000_000.0;
+    }
+
+    // One line summary: throughput over the elapsed wall time plus the usual percentiles
+    String summary(String label, long elapsedNanos) {
+        double seconds = elapsedNanos / 1_000_000_000.0;
+        return String.format("%s: %d ok, %d errors in %.1fs = %.1f req/s | p50 %.2f ms | p99 %.2f ms | max %.2f ms",
+                label, count, errors, seconds, count / seconds,
+                percentileMillis(50), percentileMillis(99), percentileMillis(100));
+    }
+}
@@ -0,0 +1,150 @@
+package com.example.vehicle;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Replays concurrent clerk workflows straight against DbConnector (no UI, no HTTP) and prints throughput
+// and latency per step. Each simulated clerk loops over one of three scripts:
+//   book   (60%)  look up a customer and a vehicle, then book it for a few days
+//   pay    (30%)  look up a current rental and take a payment for it
+//   report (10%)  current month's revenue report, as the dashboard does
+// with an optional think time between scripts. Run DataGenerator first for realistic table sizes.
+//
+//   java ... com.example.vehicle.LoadDriver [clerks] [seconds] [thinkMillis]
+public class LoadDriver {
+    private static final String[] STEPS = {"getCustomerById", "getVehicleById", "bookVehicle", "getBookingById", "processPayment", "revenueReport"};
+
+    public static void main(String[] args) throws Exception {
+        int clerks = args.length > 0 ? Integer.parseInt(args[0]) : 32;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 60;
+        long thinkMillis = args.length > 2 ? Long.parseLong(args[2]) : 0;
+
+        DbConnector dbConnector = new DbConnector();
+        dbConnector.initializeDatabase();
+        ReportEngine reportEngine = new ReportEngine(dbConnector);
+        List<Integer> vehicleIds = new ArrayList<>();
+        List<Integer> customerIds = new ArrayList<>();
+        List<Integer> currentBookingIds = new ArrayList<>();
+        dbConnector.getAvailableVehicles().forEach(v -> vehicleIds.add(v.getId()));
+        dbConnector.getAllCustomers().forEach(c -> customerIds.add(c.getCustomerId()));
+        dbConnector.getBookingsOverlapping(LocalDate.now().minusDays(30), LocalDate.now().plusDays(30))
+                .forEach(b -> currentBookingIds.add(Integer.parseInt(b.getBookingId())));
+        if (vehicleIds.isEmpty() || customerIds.isEmpty() || currentBookingIds.isEmpty()) {
+            System.err.println("Needs available vehicles, customers and current bookings; run DataGenerator first");
+            System.exit(1);
+        }
+
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        long startedAt = System.nanoTime();
+        Map<String, LatencyRecorder> totals = newRecorders();
+        LatencyRecorder scripts = new LatencyRecorder();
+        try (ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<Map<String, LatencyRecorder>>> results = new ArrayList<>();
+            for (int i = 0; i < clerks; i++) {
+                results.add(workers.submit(() -> {
+                    Map<String, LatencyRecorder> recorders = newRecorders();
+                    recorders.put("script", new LatencyRecorder());
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    while (System.nanoTime() < deadline) {
+                        long begin = System.nanoTime();
+                        double r = random.nextDouble();
+                        boolean ok;
+                        if (r < 0.6) {
+                            ok = book(dbConnector, recorders, vehicleIds, customerIds);
+                        } else if (r < 0.9) {
+                            ok = pay(dbConnector, recorders, currentBookingIds.get(random.nextInt(currentBookingIds.size())));
+                        } else {
+                            ok = report(reportEngine, recorders);
+                        }
+                        if (ok) {
+                            recorders.get("script").record(System.nanoTime() - begin);
+                        } else {
+                            recorders.get("script").recordError();
+                        }
+                        if (thinkMillis > 0) {
+                            Thread.sleep(thinkMillis);
+                        }
+                    }
+                    return recorders;
+                }));
+            }
+            for (Future<Map<String, LatencyRecorder>> result : results) {
+                Map<String, LatencyRecorder> recorders = result.get();
+                scripts.merge(recorders.remove("script"));
+                recorders.forEach((step, recorder) -> totals.get(step).merge(recorder));
+            }
+        }
+
+        long elapsed = System.nanoTime() - startedAt;
+        System.out.println(scripts.summary("scripts x" + clerks, elapsed));
+        totals.forEach((step, recorder) -> System.out.println(recorder.summary("  " + step, elapsed)));
+    }
+
+    private static boolean book(DbConnector dbConnector, Map<String, LatencyRecorder> recorders,
+                                List<Integer> vehicleIds, List<Integer> customerIds) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int customerId = customerIds.get(random.nextInt(customerIds.size()));
+        int vehicleId = vehicleIds.get(random.nextInt(vehicleIds.size()));
+        long begin = System.nanoTime();
+        Customer customer = dbConnector.getCustomerById(customerId);
+        begin = step(recorders, "getCustomerById", begin, customer != null);
+        Vehicle vehicle = dbConnector.getVehicleById(vehicleId);
+        begin = step(recorders, "getVehicleById", begin, vehicle != null);
+        LocalDate start = LocalDate.now().plusDays(random.nextInt(1, 365));
+        BookingResult result = dbConnector.bookVehicle(vehicleId, customerId, start, start.plusDays(random.nextInt(1, 8)));
+        // An UNAVAILABLE answer is the clerk being told the car is taken, not a failure of the system
+        step(recorders, "bookVehicle", begin, result != BookingResult.FAILED);
+        return result != BookingResult.FAILED;
+    }
+
+    private static boolean pay(DbConnector dbConnector, Map<String, LatencyRecorder> recorders, int bookingId) {
+        long begin = System.nanoTime();
+        Booking booking = dbConnector.getBookingById(bookingId);
+        begin = step(recorders, "getBookingById", begin, true);
+        if (booking == null) {
+            return true; // Cancelled or archived since the driver started
+        }
+        boolean paid = dbConnector.processPayment(bookingId, 100 + ThreadLocalRandom.current().nextInt(2000)) != WriteResult.FAILED;
+        step(recorders, "processPayment", begin, paid);
+        return paid;
+    }
+
+    private static boolean report(ReportEngine reportEngine, Map<String, LatencyRecorder> recorders) {
+        long begin = System.nanoTime();
+        try {
+            LocalDate today = LocalDate.now();
+            reportEngine.revenueByMonth(today.withDayOfMonth(1), today, 1);
+            step(recorders, "revenueReport", begin, true);
+            return true;
+        } catch (Exception ex) {
+            step(recorders, "revenueReport", begin, false);
+            return false;
+        }
+    }
+
+    // Records one step and returns the start time of the next
+    private static long step(Map<String, LatencyRecorder> recorders, String name, long begin, boolean ok) {
+        long now = System.nanoTime();
+        if (ok) {
+            recorders.get(name).record(now - begin);
+        } else {
+            recorders.get(name).recordError();
+        }
+        return now;
+    }
+
+    private static Map<String, LatencyRecorder> newRecorders() {
+        Map<String, LatencyRecorder> recorders = new LinkedHashMap<>();
+        for (String step : STEPS) {
+            recorders.put(step, new LatencyRecorder());
+        }
+        return recorders;
+    }
+}
@@ -0,0 +1,245 @@
+package com.example.vehicle;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Checks every payment against what its booking should cost: the vehicle's rental_price times the rented
+// days, plus the extras (GPS, child seat) recorded on the booking's payments, plus any late fees charged by
+// LateFeeScheduler. LATE_FEE rows are charges, not money received, so they count towards the cost.
+//
+// Everything is read on one connection inside START TRANSACTION WITH CONSISTENT SNAPSHOT, so prices,
+// bookings and payments are all from the same moment: a payment committed between two reads can never show
+// up as ORPHANED or a booking as MISSING its payment. The vehicle price table (one entry per vehicle) is read
+// first. Then bookings LEFT JOIN payments is streamed in booking_id order (a primary key scan with index
+// lookups, no sort), so memory holds one booking's payments at a time; payments whose booking is gone come
+// last, from an anti-join. Findings go to the exceptions CSV as they are found:
+//   UNDERPAID / OVERPAID  the booking's payments do not add up to its cost
+//   MISSING               a finished rental has no payment at all
+//   DUPLICATE             the same amount was paid twice for one booking within DUPLICATE_WINDOW_MINUTES
+//   ORPHANED              a payment whose booking no longer exists
+// Rentals that have not ended by the as-of date are only checked for overpayment and duplicates, since
+// they may legitimately still be waiting for their final payment.
+class PaymentReconciler {
+    static final int DUPLICATE_WINDOW_MINUTES = 10;
+
+    enum Finding { UNDERPAID, OVERPAID, MISSING, DUPLICATE, ORPHANED }
+
+    private final DbConnector dbConnector;
+
+    PaymentReconciler(DbConnector dbConnector) {
+        this.dbConnector = dbConnector;
+    }
+
+    // Writes one CSV line per finding and returns the totals
+    Summary reconcile(Writer exceptions, LocalDate asOf) throws SQLException, IOException {
+        long startedAt = System.nanoTime();
+        Summary summary = new Summary();
+        exceptions.write("finding,booking_id,payment_id,expected,paid,difference,detail\n");
+
+        try (Connection connection = dbConnector.connectForRead()) {
+            connection.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+            connection.setAutoCommit(false);
+            try (Statement stmt = connection.createStatement()) {
+                stmt.execute("START TRANSACTION WITH CONSISTENT SNAPSHOT, READ ONLY");
+            }
+            Map<Integer, Long> priceCents = loadPrices(connection);
+
+            try (PreparedStatement stmt = streaming(connection,
+                    "SELECT b.booking_id, b.vehicle_id, b.start_date, b.end_date, p.payment_id, p.amount, p.extras, p.payment_type, p.payment_date "
+                            + "FROM bookings b LEFT JOIN payments p ON p.booking_id = b.booking_id ORDER BY b.booking_id");
+                 ResultSet rows = stmt.executeQuery()) {
+                boolean more = rows.next();
+                List<Payment> bookingPayments = new ArrayList<>();
+                while (more) {
+                    int bookingId = rows.getInt("booking_id");
+                    int vehicleId = rows.getInt("vehicle_id");
+                    LocalDate start = rows.getDate("start_date").toLocalDate();
+                    LocalDate end = rows.getDate("end_date").toLocalDate();
+                    bookingPayments.clear();
+                    while (more && rows.getInt("booking_id") == bookingId) {
+                        // A booking without payments comes back once, with NULL payment columns
+                        if (rows.getObject("payment_id") != null) {
+                            bookingPayments.add(new Payment(rows, bookingId));
+                        }
+                        more = rows.next();
+                    }
+                    // The join returns a booking's payments in any order; the duplicate check needs them by date
+                    bookingPayments.sort(Comparator.comparing((Payment p) -> p.paidAt).thenComparingInt(p -> p.paymentId));
+                    checkBooking(exceptions, summary, bookingId, priceCents.get(vehicleId), start, end, !end.isAfter(asOf), bookingPayments);
+                }
+            }
+
+            try (PreparedStatement stmt = streaming(connection,
+                    "SELECT p.payment_id, p.booking_id, p.amount, p.extras, p.payment_type, p.payment_date "
+                            + "FROM payments p LEFT JOIN bookings b ON b.booking_id = p.booking_id WHERE b.booking_id IS NULL "
+                            + "ORDER BY p.booking_id, p.payment_date, p.payment_id");
+                 ResultSet orphans = stmt.executeQuery()) {
+                while (orphans.next()) {
+                    reportOrphan(exceptions, summary, new Payment(orphans, orphans.getInt("booking_id")));
+                }
+            }
+            connection.commit();
+        }
+        summary.elapsedMillis = (System.nanoTime() - startedAt) / 1_000_000;
+        return summary;
+    }
+
+    private void checkBooking(Writer exceptions, Summary summary, int bookingId, Long dailyCents, LocalDate start,
+                              LocalDate end, boolean finished, List<Payment> payments) throws IOException {
+        long paidCents = 0;
+        long extrasCents = 0;
+        int received = 0;
+        for (int i = 0; i < payments.size(); i++) {
+            Payment payment = payments.get(i);
+            if (payment.lateFee) {
+                extrasCents += payment.amountCents;
+                continue;
+            }
+            received++;
+            paidCents += payment.amountCents;
+            extrasCents += payment.extrasCents;
+            // Payments are in date order, so only the ones just before can be within the window
+            for (int j = i - 1; j >= 0; j--) {
+                Payment earlier = payments.get(j);
+                if (ChronoUnit.MINUTES.between(earlier.paidAt, payment.paidAt) > DUPLICATE_WINDOW_MINUTES) {
+                    break;
+                }
+                if (!earlier.lateFee && earlier.amountCents == payment.amountCents) {
+                    report(exceptions, summary, Finding.DUPLICATE, bookingId, payment.paymentId, 0, payment.amountCents,
+                            "same amount as payment " + earlier.paymentId);
+                    break;
+                }
+            }
+        }
+
+        long expectedCents = (dailyCents == null ? 0 : dailyCents * ChronoUnit.DAYS.between(start, end)) + extrasCents;
+        summary.bookings++;
+        summary.payments += received;
+        summary.expectedCents += expectedCents;
+        summary.paidCents += paidCents;
+
+        if (received == 0) {
+            if (finished) {
+                report(exceptions, summary, Finding.MISSING, bookingId, 0, expectedCents, 0, "ended " + end);
+            }
+        } else if (paidCents > expectedCents) {
+            report(exceptions, summary, Finding.OVERPAID, bookingId, 0, expectedCents, paidCents,
+                    received + " payment(s)");
+        } else if (paidCents < expectedCents && finished) {
+            report(exceptions, summary, Finding.UNDERPAID, bookingId, 0, expectedCents, paidCents,
+                    received + " payment(s)");
+        }
+    }
+
+    private void reportOrphan(Writer exceptions, Summary summary, Payment orphan) throws IOException {
+        if (orphan.lateFee) {
+            report(exceptions, summary, Finding.ORPHANED, orphan.bookingId, orphan.paymentId, orphan.amountCents, 0,
+                    "late fee for missing booking " + orphan.bookingId);
+            return;
+        }
+        summary.payments++;
+        summary.paidCents += orphan.amountCents;
+        report(exceptions, summary, Finding.ORPHANED, orphan.bookingId, orphan.paymentId, 0, orphan.amountCents,
+                "no booking " + orphan.bookingId);
+    }
+
+    private void report(Writer exceptions, Summary summary, Finding finding, int bookingId, int paymentId,
+                        long expectedCents, long paidCents, String detail) throws IOException {
+        summary.count.merge(finding, 1L, Long::sum);
+        summary.differenceCents.merge(finding, Math.abs(paidCents - expectedCents), Long::sum);
+        exceptions.write(finding + "," + bookingId + "," + (paymentId == 0 ? "" : paymentId) + ","
+                + money(expectedCents) + "," + money(paidCents) + "," + money(paidCents - expectedCents) + "," + detail + "\n");
+    }
+
+    // Daily price in cents per vehicle; the fleet is small next to bookings and payments
+    private static Map<Integer, Long> loadPrices(Connection connection) throws SQLException {
+        Map<Integer, Long> prices = new HashMap<>();
+        try (PreparedStatement stmt = streaming(connection, "SELECT vehicle_id, rental_price FROM vehicles ORDER BY vehicle_id");
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                prices.put(rs.getInt("vehicle_id"), cents(rs.getBigDecimal("rental_price")));
+            }
+        }
+        return prices;
+    }
+
+    // A forward-only statement that Connector/J streams row by row instead of buffering the whole result.
+    // The scans run for minutes on a large database, so the interactive query timeout is lifted.
+    private static PreparedStatement streaming(Connection connection, String sql) throws SQLException {
+        PreparedStatement stmt = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        stmt.setFetchSize(Integer.MIN_VALUE);
+        stmt.setQueryTimeout(0);
+        return stmt;
+    }
+
+    // Amounts are compared in whole cents so sums of DECIMAL columns never pick up rounding errors
+    private static long cents(BigDecimal amount) {
+        return amount.movePointRight(2).longValue();
+    }
+
+    static String money(long cents) {
+        return (cents < 0 ? "-" : "") + Math.abs(cents) / 100 + "." + String.format("%02d", Math.abs(cents) % 100);
+    }
+
+    private static class Payment {
+        private final int paymentId;
+        private final int bookingId;
+        private final long amountCents;
+        private final long extrasCents;
+        private final boolean lateFee;
+        private final LocalDateTime paidAt;
+
+        Payment(ResultSet rs, int bookingId) throws SQLException {
+            this.paymentId = rs.getInt("payment_id");
+            this.bookingId = bookingId;
+            this.amountCents = cents(rs.getBigDecimal("amount"));
+            this.extrasCents = cents(rs.getBigDecimal("extras"));
+            this.lateFee = "LATE_FEE".equals(rs.getString("payment_type"));
+            Timestamp paymentDate = rs.getTimestamp("payment_date");
+            this.paidAt = paymentDate == null ? LocalDateTime.MIN : paymentDate.toLocalDateTime();
+        }
+    }
+
+    static class Summary {
+        private long bookings;
+        private long payments;
+        private long expectedCents;
+        private long paidCents;
+        private long elapsedMillis;
+        private final Map<Finding, Long> count = new EnumMap<>(Finding.class);
+        private final Map<Finding, Long> differenceCents = new EnumMap<>(Finding.class);
+
+        long getCount(Finding finding) {
+            return count.getOrDefault(finding, 0L);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder();
+            text.append(String.format("Reconciled %d bookings and %d payments in %.1fs%n", bookings, payments, elapsedMillis / 1000.0));
+            text.append("Expected: R").append(money(expectedCents)).append("\n");
+            text.append("Paid:     R").append(money(paidCents)).append("\n");
+            text.append("Balance:  R").append(money(paidCents - expectedCents)).append("\n");
+            for (Finding finding : Finding.values()) {
+                text.append(String.format("%-10s %8d  R%s%n", finding, getCount(finding), money(differenceCents.getOrDefault(finding, 0L))));
+            }
+            return text.toString();
+        }
+    }
+}
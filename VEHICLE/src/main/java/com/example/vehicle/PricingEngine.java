@@ -0,0 +1,233 @@
+package com.example.vehicle;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Dynamic daily rates. The demand model holds, per category, how many vehicles are booked on each of the
+// next HORIZON_DAYS days in a pair of Fenwick trees, so adding or removing a booking and averaging demand
+// over any booking window are both O(log n). The model is loaded once and then patched from the change feed.
+class PricingEngine implements ChangeFeed.Listener {
+    static final int HORIZON_DAYS = 366;
+
+    private final DbConnector dbConnector;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, DemandCurve> demandByCategory = new HashMap<>();
+    private final Map<Integer, String> categoryByVehicle = new HashMap<>();
+    private final Map<Integer, BookedSpan> spansByBooking = new HashMap<>();
+    private LocalDate today;
+
+    PricingEngine(DbConnector dbConnector) {
+        this.dbConnector = dbConnector;
+    }
+
+    // Full (re)build from the database; also used when the date rolls over
+    void reload() {
+        LocalDate now = LocalDate.now();
+        List<Vehicle> vehicles = dbConnector.getAllVehicles();
+        List<Booking> bookings = dbConnector.getBookingsOverlapping(now, now.plusDays(HORIZON_DAYS));
+        lock.writeLock().lock();
+        try {
+            today = now;
+            demandByCategory.clear();
+            categoryByVehicle.clear();
+            spansByBooking.clear();
+            for (Vehicle vehicle : vehicles) {
+                putVehicle(vehicle.getId(), vehicle.getCategory());
+            }
+            for (Booking booking : bookings) {
+                putBooking(booking);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Incremental refresh: only the changed vehicles and bookings are fetched and re-applied
+    @Override
+    public void onChanges(List<ChangeFeed.Change> changes) {
+        if (!LocalDate.now().equals(today) || changes.stream().anyMatch(ChangeFeed.Change::isReset)) {
+            reload();
+            return;
+        }
+        for (ChangeFeed.Change change : changes) {
+            int id = change.getEntityId();
+            if ("vehicles".equals(change.getTableName())) {
+                Vehicle vehicle = change.isDelete() ? null : dbConnector.getVehicleById(id);
+                lock.writeLock().lock();
+                try {
+                    // The vehicle's bookings move with it to its new category, or go with it when deleted
+                    List<Integer> bookingIds = new ArrayList<>();
+                    spansByBooking.forEach((bookingId, span) -> {
+                        if (span.vehicleId == id) {
+                            bookingIds.add(bookingId);
+                        }
+                    });
+                    List<BookedSpan> spans = new ArrayList<>();
+                    for (int bookingId : bookingIds) {
+                        spans.add(spansByBooking.get(bookingId));
+                        removeBooking(bookingId);
+                    }
+                    removeVehicle(id);
+                    if (vehicle != null) {
+                        putVehicle(id, vehicle.getCategory());
+                        for (int i = 0; i < spans.size(); i++) {
+                            BookedSpan span = spans.get(i);
+                            putSpan(bookingIds.get(i), new BookedSpan(id, vehicle.getCategory(), span.from, span.to));
+                        }
+                    }
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            } else if ("bookings".equals(change.getTableName())) {
+                Booking booking = change.isDelete() ? null : dbConnector.getBookingById(id);
+                lock.writeLock().lock();
+                try {
+                    removeBooking(id);
+                    if (booking != null) {
+                        putBooking(booking);
+                    }
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+        }
+    }
+
+    // Daily rate for renting the vehicle from startDate to endDate, given current demand
+    double quote(Vehicle vehicle, LocalDate startDate, LocalDate endDate) {
+        lock.readLock().lock();
+        try {
+            DemandCurve curve = demandByCategory.get(vehicle.getCategory());
+            if (curve == null || curve.fleetSize == 0 || today == null) {
+                return vehicle.getRentalPrice();
+            }
+            int from = (int) ChronoUnit.DAYS.between(today, startDate);
+            int to = (int) ChronoUnit.DAYS.between(today, endDate);
+            double windowDemand = curve.averageBooked(from, to) / curve.fleetSize;
+            double currentDemand = curve.averageBooked(0, 1) / curve.fleetSize;
+            return Math.round(vehicle.getRentalPrice() * multiplier(windowDemand, currentDemand, from) * 100) / 100.0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Window demand dominates; current category utilisation and lead time nudge the rate up or down
+    static double multiplier(double windowDemand, double currentDemand, int leadDays) {
+        double demandFactor = 0.85 + 0.6 * Math.min(1, windowDemand);
+        double currentFactor = 1 + 0.1 * Math.min(1, currentDemand);
+        double leadFactor = leadDays <= 2 ? 1.15 : leadDays <= 7 ? 1.05 : leadDays >= 60 ? 0.95 : 1.0;
+        return Math.max(0.8, Math.min(1.6, demandFactor * currentFactor * leadFactor));
+    }
+
+    // Share of the category booked on the given day (0..1), for display
+    double utilisation(String category, LocalDate day) {
+        lock.readLock().lock();
+        try {
+            DemandCurve curve = demandByCategory.get(category);
+            if (curve == null || curve.fleetSize == 0 || today == null) {
+                return 0;
+            }
+            int offset = (int) ChronoUnit.DAYS.between(today, day);
+            return curve.averageBooked(offset, offset + 1) / curve.fleetSize;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void putVehicle(int vehicleId, String category) {
+        categoryByVehicle.put(vehicleId, category);
+        demandByCategory.computeIfAbsent(category, c -> new DemandCurve()).fleetSize++;
+    }
+
+    private void removeVehicle(int vehicleId) {
+        String category = categoryByVehicle.remove(vehicleId);
+        if (category != null) {
+            demandByCategory.get(category).fleetSize--;
+        }
+    }
+
+    private void putBooking(Booking booking) {
+        String category = categoryByVehicle.get(Integer.parseInt(booking.getVehicleId()));
+        if (category == null) {
+            return;
+        }
+        int from = (int) Math.max(0, ChronoUnit.DAYS.between(today, booking.getStartDate()));
+        int to = (int) Math.min(HORIZON_DAYS, ChronoUnit.DAYS.between(today, booking.getEndDate()));
+        if (from >= to) {
+            return;
+        }
+        putSpan(Integer.parseInt(booking.getBookingId()), new BookedSpan(Integer.parseInt(booking.getVehicleId()), category, from, to));
+    }
+
+    private void putSpan(int bookingId, BookedSpan span) {
+        demandByCategory.get(span.category).add(span.from, span.to, 1);
+        spansByBooking.put(bookingId, span);
+    }
+
+    private void removeBooking(int bookingId) {
+        BookedSpan span = spansByBooking.remove(bookingId);
+        if (span != null) {
+            demandByCategory.get(span.category).add(span.from, span.to, -1);
+        }
+    }
+
+    // Booked-vehicle count per day offset, with range add and range sum in O(log n)
+    private static class DemandCurve {
+        private final long[] b1 = new long[HORIZON_DAYS + 2];
+        private final long[] b2 = new long[HORIZON_DAYS + 2];
+        private int fleetSize;
+
+        // Adds delta to every day in [from, to)
+        void add(int from, int to, long delta) {
+            update(from + 1, delta);
+            update(to + 1, -delta);
+        }
+
+        // Average booked count per day over [from, to), clipped to the horizon
+        double averageBooked(int from, int to) {
+            from = Math.max(0, from);
+            to = Math.min(HORIZON_DAYS, to);
+            if (from >= to) {
+                return 0;
+            }
+            return (double) (prefixSum(to) - prefixSum(from)) / (to - from);
+        }
+
+        private void update(int index, long delta) {
+            for (int i = index; i < b1.length; i += i & -i) {
+                b1[i] += delta;
+                b2[i] += delta * (index - 1);
+            }
+        }
+
+        // Sum of the first n days
+        private long prefixSum(int n) {
+            long sum1 = 0;
+            long sum2 = 0;
+            for (int i = n; i > 0; i -= i & -i) {
+                sum1 += b1[i];
+                sum2 += b2[i];
+            }
+            return sum1 * n - sum2;
+        }
+    }
+
+    private static class BookedSpan {
+        private final int vehicleId;
+        private final String category;
+        private final int from;
+        private final int to;
+
+        BookedSpan(int vehicleId, String category, int from, int to) {
+            this.vehicleId = vehicleId;
+            this.category = category;
+            this.from = from;
+            this.to = to;
+        }
+    }
+}
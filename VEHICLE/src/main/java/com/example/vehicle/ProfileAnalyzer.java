@@ -0,0 +1,145 @@
+package com.example.vehicle;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordedThread;
+import jdk.jfr.consumer.RecordingFile;
+
+// Summarises a recording made with -Dvrs.profile (ReportCli profile --in vrs.jfr):
+//   - FX thread stalls by cause (database, chart layout, file I/O, dialog, other) and by the application
+//     frame they were stuck in
+//   - time the FX thread itself spent in database calls, scene switches, report steps, CSV writes and
+//     dialogs, per call site, since those are what a clerk waits for
+//   - the slowest database call sites on any thread
+class ProfileAnalyzer {
+    private static final int TOP = 10;
+
+    static void analyze(Path recording, Writer out) throws IOException {
+        Map<String, Stat> stallsByCause = new LinkedHashMap<>();
+        Map<String, Stat> stallsByFrame = new LinkedHashMap<>();
+        Map<String, Stat> fxThreadWork = new LinkedHashMap<>();
+        Map<String, Stat> dbCalls = new LinkedHashMap<>();
+        long events = 0;
+
+        try (RecordingFile file = new RecordingFile(recording)) {
+            while (file.hasMoreEvents()) {
+                RecordedEvent event = file.readEvent();
+                String type = event.getEventType().getName();
+                if (!type.startsWith(Profiling.EVENT_PREFIX)) {
+                    continue;
+                }
+                events++;
+                String name = type.substring(Profiling.EVENT_PREFIX.length());
+                double millis = event.getDuration().toNanos() / 1e6;
+
+                if (name.equals("FxStall")) {
+                    double blocked = event.getLong("blockedMillis");
+                    String stack = event.getString("stack");
+                    stallsByCause.computeIfAbsent(cause(stack), k -> new Stat()).add(blocked);
+                    stallsByFrame.computeIfAbsent(event.getString("topFrame"), k -> new Stat()).add(blocked);
+                    continue;
+                }
+                String site = callSite(event.getStackTrace());
+                if (name.equals("DbCall")) {
+                    dbCalls.computeIfAbsent(site, k -> new Stat()).add(millis);
+                }
+                RecordedThread thread = event.getThread();
+                if (thread != null && Profiling.FX_THREAD.equals(thread.getJavaName())) {
+                    fxThreadWork.computeIfAbsent(name + "  " + detail(event, name, site), k -> new Stat()).add(millis);
+                }
+            }
+        }
+
+        out.write("Profile of " + recording + ": " + events + " events\n");
+        write(out, "FX thread stalls by cause", stallsByCause);
+        write(out, "FX thread stalls by frame", stallsByFrame);
+        write(out, "Work done on the FX thread", fxThreadWork);
+        write(out, "Database calls by call site (all threads)", dbCalls);
+    }
+
+    // What the stalled thread was doing, from the frames of its sampled stack
+    static String cause(String stack) {
+        if (stack == null) {
+            return "Unknown";
+        }
+        for (String frame : stack.split("\n")) {
+            if (frame.startsWith("java.sql.") || frame.startsWith("com.mysql.") || frame.startsWith("com.example.vehicle.DbConnector.")) {
+                return "Database";
+            }
+            if (frame.startsWith("javafx.scene.chart.") || frame.contains(".layoutChildren:") || frame.startsWith("javafx.scene.Parent.layout")) {
+                return "Chart/layout";
+            }
+            if (frame.startsWith("java.io.") || frame.startsWith("java.nio.") || frame.startsWith("sun.nio.")) {
+                return "File I/O";
+            }
+            if (frame.startsWith("javafx.scene.control.Dialog.") || frame.contains(".showAlert:")) {
+                return "Dialog";
+            }
+        }
+        return "Other";
+    }
+
+    private static String detail(RecordedEvent event, String name, String site) {
+        return switch (name) {
+            case "SceneSwitch" -> event.getString("scene");
+            case "Report" -> event.getString("report") + " (" + event.getString("phase") + ")";
+            case "CsvWrite" -> event.getString("file");
+            default -> site;
+        };
+    }
+
+    // The first frame in this application's code outside the resilience proxy and the profiling helpers
+    private static String callSite(RecordedStackTrace stackTrace) {
+        if (stackTrace == null) {
+            return "unknown";
+        }
+        for (RecordedFrame frame : stackTrace.getFrames()) {
+            if (!frame.isJavaFrame()) {
+                continue;
+            }
+            String type = frame.getMethod().getType().getName();
+            if (type.startsWith("com.example.vehicle.") && !type.startsWith("com.example.vehicle.DbResilience")
+                    && !type.startsWith("com.example.vehicle.Profiling")) {
+                return type.substring("com.example.vehicle.".length()) + "." + frame.getMethod().getName()
+                        + ":" + frame.getLineNumber();
+            }
+        }
+        return "unknown";
+    }
+
+    private static void write(Writer out, String title, Map<String, Stat> stats) throws IOException {
+        out.write("\n" + title + "\n");
+        if (stats.isEmpty()) {
+            out.write("  (none)\n");
+            return;
+        }
+        out.write(String.format("  %10s %7s %9s  %s%n", "total ms", "count", "max ms", "source"));
+        List<Map.Entry<String, Stat>> sorted = new ArrayList<>(stats.entrySet());
+        sorted.sort(Comparator.comparingDouble((Map.Entry<String, Stat> e) -> e.getValue().total).reversed());
+        for (Map.Entry<String, Stat> entry : sorted.subList(0, Math.min(TOP, sorted.size()))) {
+            Stat stat = entry.getValue();
+            out.write(String.format("  %10.1f %7d %9.1f  %s%n", stat.total, stat.count, stat.max, entry.getKey()));
+        }
+    }
+
+    private static class Stat {
+        private long count;
+        private double total;
+        private double max;
+
+        void add(double millis) {
+            count++;
+            total += millis;
+            max = Math.max(max, millis);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.vehicle;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.List;
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Recording;
+import jdk.jfr.Timespan;
+
+// Profiling mode: with -Dvrs.profile=vrs.jfr the application records a Flight Recorder file with one event
+// per database statement, scene switch, report step, CSV write and dialog, each with the stack that caused
+// it, plus an FxStall event whenever FxWatchdog finds the JavaFX Application Thread blocked for longer than
+// vrs.profile.stallMillis (default 250). ReportCli profile --in vrs.jfr summarises a recording.
+//
+// The events are always compiled in; without a recording running, JFR makes them a no-op. They can also be
+// captured with an ordinary -XX:StartFlightRecording or jcmd JFR.start, without vrs.profile.
+class Profiling {
+    static final String EVENT_PREFIX = "com.example.vehicle.";
+    static final String FX_THREAD = "JavaFX Application Thread";
+    static final long DEFAULT_STALL_MILLIS = 250;
+    private static final List<String> EVENTS = List.of("DbCall", "SceneSwitch", "Report", "CsvWrite", "Dialog", "FxStall");
+
+    private static Recording recording;
+    private static FxWatchdog watchdog;
+
+    static synchronized void start() {
+        String file = System.getProperty("vrs.profile", "").trim();
+        if (file.isEmpty() || recording != null) {
+            return;
+        }
+        try {
+            recording = new Recording();
+            recording.setName("vrs-profile");
+            recording.setToDisk(true);
+            recording.setDestination(Paths.get(file));
+            for (String event : EVENTS) {
+                recording.enable(EVENT_PREFIX + event).withStackTrace().withThreshold(Duration.ZERO);
+            }
+            // Method samples show what the FX thread was doing between our own events
+            recording.enable("jdk.ExecutionSample").withPeriod(Duration.ofMillis(20));
+            recording.start();
+            System.err.println("Profiling to " + file);
+        } catch (IOException e) {
+            e.printStackTrace();
+            recording = null;
+            return;
+        }
+        watchdog = new FxWatchdog(Long.getLong("vrs.profile.stallMillis", DEFAULT_STALL_MILLIS));
+        watchdog.start();
+    }
+
+    // Writes the recording to the vrs.profile file
+    static synchronized void stop() {
+        if (watchdog != null) {
+            watchdog.stop();
+            watchdog = null;
+        }
+        if (recording != null) {
+            recording.stop();
+            recording.close();
+            recording = null;
+        }
+    }
+
+    // Runs one step of a report as a Report event; phase is "compute" (background) or "render" (FX thread)
+    static void report(String report, String phase, Runnable step) {
+        ReportEvent event = new ReportEvent();
+        event.begin();
+        try {
+            step.run();
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.report = report;
+                event.phase = phase;
+                event.commit();
+            }
+        }
+    }
+
+    @Name(EVENT_PREFIX + "DbCall")
+    @Label("Database Call")
+    @Category({"Vehicle Rental", "Database"})
+    static class DbCallEvent extends Event {
+        @Label("Operation")
+        String operation; // connect, executeQuery, executeUpdate, ...
+
+        @Label("SQL")
+        String sql;
+    }
+
+    @Name(EVENT_PREFIX + "SceneSwitch")
+    @Label("Scene Switch")
+    @Category({"Vehicle Rental", "UI"})
+    static class SceneSwitchEvent extends Event {
+        @Label("Scene")
+        String scene;
+    }
+
+    @Name(EVENT_PREFIX + "Report")
+    @Label("Report")
+    @Category({"Vehicle Rental", "UI"})
+    static class ReportEvent extends Event {
+        @Label("Report")
+        String report;
+
+        @Label("Phase")
+        String phase;
+    }
+
+    @Name(EVENT_PREFIX + "CsvWrite")
+    @Label("CSV Write")
+    @Category({"Vehicle Rental", "I/O"})
+    static class CsvWriteEvent extends Event {
+        @Label("File")
+        String file;
+    }
+
+    @Name(EVENT_PREFIX + "Dialog")
+    @Label("Dialog")
+    @Category({"Vehicle Rental", "UI"})
+    static class DialogEvent extends Event {
+        @Label("Message")
+        String message;
+    }
+
+    @Name(EVENT_PREFIX + "FxStall")
+    @Label("FX Thread Stall")
+    @Category({"Vehicle Rental", "UI"})
+    static class FxStallEvent extends Event {
+        @Label("Blocked For")
+        @Timespan(Timespan.MILLISECONDS)
+        long blockedMillis;
+
+        @Label("Top Frame")
+        String topFrame; // First frame of our own code in the most common sampled stack
+
+        @Label("Stack")
+        String stack;
+
+        @Label("Samples")
+        int samples;
+    }
+}
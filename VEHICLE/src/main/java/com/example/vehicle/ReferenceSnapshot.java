@@ -0,0 +1,216 @@
+package com.example.vehicle;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+// Local binary copy of the vehicles and customers tables so the lists can be shown before MySQL answers.
+//
+// Layout (big-endian):
+//   header    magic "VRS1", int format version, long change id the snapshot is current up to,
+//             int vehicle count, int customer count
+//   vehicles  fixed 32-byte records: int id, int brand, int model, int category, double price, byte available,
+//             int version, 3 pad
+//   customers fixed 20-byte records: int id, int name, int contact, int license, int version
+//   strings   u2 length + UTF-8 bytes; the int fields above are offsets into this area
+class ReferenceSnapshot {
+    private static final int MAGIC = 0x56525331; // "VRS1"
+    private static final int FORMAT_VERSION = 2;
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 4 + 4;
+    private static final int VEHICLE_RECORD_SIZE = 32;
+    private static final int CUSTOMER_RECORD_SIZE = 20;
+
+    private final long changeId;
+    private final List<Vehicle> vehicles;
+    private final List<Customer> customers;
+
+    ReferenceSnapshot(long changeId, List<Vehicle> vehicles, List<Customer> customers) {
+        this.changeId = changeId;
+        this.vehicles = vehicles;
+        this.customers = customers;
+    }
+
+    long getChangeId() {
+        return changeId;
+    }
+
+    List<Vehicle> getVehicles() {
+        return vehicles;
+    }
+
+    List<Customer> getCustomers() {
+        return customers;
+    }
+
+    // Maps the file and decodes it; returns null when there is no usable snapshot
+    static ReferenceSnapshot load(Path file) {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != FORMAT_VERSION) {
+                return null;
+            }
+            long changeId = buffer.getLong(8);
+            int vehicleCount = buffer.getInt(16);
+            int customerCount = buffer.getInt(20);
+            int vehicleBase = HEADER_SIZE;
+            int customerBase = vehicleBase + vehicleCount * VEHICLE_RECORD_SIZE;
+            int stringBase = customerBase + customerCount * CUSTOMER_RECORD_SIZE;
+
+            List<Vehicle> vehicles = new ArrayList<>(vehicleCount);
+            for (int i = 0; i < vehicleCount; i++) {
+                int record = vehicleBase + i * VEHICLE_RECORD_SIZE;
+                vehicles.add(new Vehicle(
+                        buffer.getInt(record),
+                        readString(buffer, stringBase + buffer.getInt(record + 4)),
+                        readString(buffer, stringBase + buffer.getInt(record + 8)),
+                        readString(buffer, stringBase + buffer.getInt(record + 12)),
+                        buffer.getDouble(record + 16),
+                        buffer.get(record + 24) == 1 ? "Available" : "Not Available",
+                        buffer.getInt(record + 25)
+                ));
+            }
+
+            List<Customer> customers = new ArrayList<>(customerCount);
+            for (int i = 0; i < customerCount; i++) {
+                int record = customerBase + i * CUSTOMER_RECORD_SIZE;
+                customers.add(new Customer(
+                        buffer.getInt(record),
+                        readString(buffer, stringBase + buffer.getInt(record + 4)),
+                        readString(buffer, stringBase + buffer.getInt(record + 8)),
+                        readString(buffer, stringBase + buffer.getInt(record + 12)),
+                        buffer.getInt(record + 16)
+                ));
+            }
+            return new ReferenceSnapshot(changeId, vehicles, customers);
+        } catch (IOException | IndexOutOfBoundsException ex) {
+            // A truncated or foreign file is treated as no snapshot; the caller falls back to a full load
+            ex.printStackTrace();
+            return null;
+        }
+    }
+
+    // Writes to a temporary file first and moves it into place so a crash never leaves half a snapshot
+    static void save(Path file, long changeId, List<Vehicle> vehicles, List<Customer> customers) throws IOException {
+        StringArea strings = new StringArea();
+        ByteBuffer records = ByteBuffer.allocate(HEADER_SIZE + vehicles.size() * VEHICLE_RECORD_SIZE + customers.size() * CUSTOMER_RECORD_SIZE);
+        records.putInt(MAGIC).putInt(FORMAT_VERSION).putLong(changeId).putInt(vehicles.size()).putInt(customers.size());
+        for (Vehicle vehicle : vehicles) {
+            records.putInt(vehicle.getId())
+                    .putInt(strings.add(vehicle.getBrand()))
+                    .putInt(strings.add(vehicle.getModel()))
+                    .putInt(strings.add(vehicle.getCategory()))
+                    .putDouble(vehicle.getRentalPrice())
+                    .put((byte) (vehicle.isAvailable() ? 1 : 0))
+                    .putInt(vehicle.getVersion())
+                    .put(new byte[3]);
+        }
+        for (Customer customer : customers) {
+            records.putInt(customer.getCustomerId())
+                    .putInt(strings.add(customer.getCustomerName()))
+                    .putInt(strings.add(customer.getContactInfo()))
+                    .putInt(strings.add(customer.getLicenseNumber()))
+                    .putInt(customer.getVersion());
+        }
+        records.flip();
+
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.write(records);
+            channel.write(strings.toBuffer());
+            channel.force(false);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Row counts plus an XOR of CRC32("id:version") per row. Every update bumps the version, so a missed
+    // insert, update or delete changes it; DbConnector.getReferenceChecksum computes the same in SQL.
+    static Checksum checksum(List<Vehicle> vehicles, List<Customer> customers) {
+        long vehicleHash = 0;
+        for (Vehicle vehicle : vehicles) {
+            vehicleHash ^= crc(vehicle.getId(), vehicle.getVersion());
+        }
+        long customerHash = 0;
+        for (Customer customer : customers) {
+            customerHash ^= crc(customer.getCustomerId(), customer.getVersion());
+        }
+        return new Checksum(vehicles.size(), vehicleHash, customers.size(), customerHash);
+    }
+
+    private static long crc(int id, int version) {
+        CRC32 crc = new CRC32();
+        crc.update((id + ":" + version).getBytes(StandardCharsets.US_ASCII));
+        return crc.getValue();
+    }
+
+    private static String readString(ByteBuffer buffer, int offset) {
+        int length = Short.toUnsignedInt(buffer.getShort(offset));
+        byte[] bytes = new byte[length];
+        buffer.get(offset + 2, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static class Checksum {
+        private final long vehicles;
+        private final long vehicleHash;
+        private final long customers;
+        private final long customerHash;
+
+        Checksum(long vehicles, long vehicleHash, long customers, long customerHash) {
+            this.vehicles = vehicles;
+            this.vehicleHash = vehicleHash;
+            this.customers = customers;
+            this.customerHash = customerHash;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Checksum that && vehicles == that.vehicles && vehicleHash == that.vehicleHash
+                    && customers == that.customers && customerHash == that.customerHash;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(vehicleHash ^ customerHash);
+        }
+
+        @Override
+        public String toString() {
+            return vehicles + " vehicles (" + Long.toHexString(vehicleHash) + "), " + customers + " customers (" + Long.toHexString(customerHash) + ")";
+        }
+    }
+
+    // Growable string area with u2-length-prefixed UTF-8 entries
+    private static class StringArea {
+        private ByteBuffer buffer = ByteBuffer.allocate(4096);
+
+        int add(String value) {
+            byte[] bytes = (value == null ? "" : value).getBytes(StandardCharsets.UTF_8);
+            int length = Math.min(bytes.length, 0xFFFF);
+            if (buffer.remaining() < length + 2) {
+                ByteBuffer bigger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + length + 2));
+                buffer.flip();
+                bigger.put(buffer);
+                buffer = bigger;
+            }
+            int offset = buffer.position();
+            buffer.putShort((short) length).put(bytes, 0, length);
+            return offset;
+        }
+
+        ByteBuffer toBuffer() {
+            return buffer.duplicate().flip();
+        }
+    }
+}
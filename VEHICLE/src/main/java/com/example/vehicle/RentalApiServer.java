@@ -0,0 +1,330 @@
+package com.example.vehicle;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Embedded JSON API for the web booking partner, serving the same DbConnector operations as the desktop UI.
+// Every request runs on its own virtual thread, so blocking JDBC calls do not tie up platform threads.
+//
+//   GET  /api/vehicles/available
+//   GET  /api/quotes?startDate=2025-05-01&endDate=2025-05-04
+//   POST /api/bookings   {"vehicleId": 1, "customerId": 2, "startDate": "2025-05-01", "endDate": "2025-05-04"}
+//   POST /api/payments   {"bookingId": 7, "amount": 1500.00, "extras": 80.00}   (extras optional)
+public class RentalApiServer {
+    private static final long PENDING_WRITE_FLUSH_MILLIS = 10_000; // How long stop waits for queued payments
+
+    private final DbConnector dbConnector;
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final ChangeFeed changeFeed;
+    private final PricingEngine pricingEngine;
+    private boolean stopped;
+
+    RentalApiServer(DbConnector dbConnector, int port) throws IOException {
+        this.dbConnector = dbConnector;
+        this.changeFeed = new ChangeFeed(dbConnector);
+        this.pricingEngine = new PricingEngine(dbConnector);
+        changeFeed.addListener(pricingEngine);
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.createContext("/api/vehicles/available", this::handleAvailableVehicles);
+        server.createContext("/api/quotes", this::handleQuotes);
+        server.createContext("/api/bookings", this::handleBooking);
+        server.createContext("/api/payments", this::handlePayment);
+        server.setExecutor(executor);
+    }
+
+    void start() {
+        changeFeed.start();
+        pricingEngine.reload();
+        server.start();
+    }
+
+    // Payments answered with 202 "queued" were acknowledged to the partner, so they get a last chance to be
+    // saved once no new requests come in. Safe to call twice (stop and then the shutdown hook).
+    synchronized void stop() {
+        if (stopped) {
+            return;
+        }
+        stopped = true;
+        server.stop(1);
+        executor.shutdown();
+        changeFeed.stop();
+        dbConnector.flushPendingWrites(PENDING_WRITE_FLUSH_MILLIS);
+    }
+
+    int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    private void handleAvailableVehicles(HttpExchange exchange) throws IOException {
+        if (!"GET".equals(exchange.getRequestMethod())) {
+            send(exchange, 405, error("Use GET"));
+            return;
+        }
+        List<Vehicle> vehicles = dbConnector.getAvailableVehicles();
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < vehicles.size(); i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append(toJson(vehicles.get(i)));
+        }
+        send(exchange, 200, json.append(']').toString());
+    }
+
+    private void handleQuotes(HttpExchange exchange) throws IOException {
+        if (!"GET".equals(exchange.getRequestMethod())) {
+            send(exchange, 405, error("Use GET"));
+            return;
+        }
+        try {
+            Map<String, String> params = parseQuery(exchange.getRequestURI().getRawQuery());
+            LocalDate startDate = LocalDate.parse(required(params, "startDate"));
+            LocalDate endDate = LocalDate.parse(required(params, "endDate"));
+            StringBuilder json = new StringBuilder("[");
+            for (Vehicle vehicle : dbConnector.getAvailableVehicles()) {
+                if (json.length() > 1) {
+                    json.append(',');
+                }
+                String vehicleJson = toJson(vehicle);
+                json.append(vehicleJson, 0, vehicleJson.length() - 1)
+                        .append(",\"quotedPrice\":").append(pricingEngine.quote(vehicle, startDate, endDate)).append('}');
+            }
+            send(exchange, 200, json.append(']').toString());
+        } catch (IllegalArgumentException | DateTimeParseException ex) {
+            send(exchange, 400, error(ex.getMessage()));
+        }
+    }
+
+    private void handleBooking(HttpExchange exchange) throws IOException {
+        if (!"POST".equals(exchange.getRequestMethod())) {
+            send(exchange, 405, error("Use POST"));
+            return;
+        }
+        try {
+            Map<String, String> body = parseBody(exchange);
+            int vehicleId = Integer.parseInt(required(body, "vehicleId"));
+            int customerId = Integer.parseInt(required(body, "customerId"));
+            LocalDate startDate = LocalDate.parse(required(body, "startDate"));
+            LocalDate endDate = LocalDate.parse(required(body, "endDate"));
+            if (!endDate.isAfter(startDate)) {
+                send(exchange, 400, error("endDate must be after startDate"));
+                return;
+            }
+            BookingResult result = dbConnector.bookVehicle(vehicleId, customerId, startDate, endDate);
+            if (result == BookingResult.BOOKED) {
+                send(exchange, 201, "{\"status\":\"booked\"}");
+            } else if (result == BookingResult.UNAVAILABLE) {
+                send(exchange, 409, error("Vehicle is not available for those dates"));
+            } else if (!dbConnector.isDatabaseAvailable()) {
+                send(exchange, 503, error("Database unavailable"));
+            } else {
+                send(exchange, 500, error("Booking failed"));
+            }
+        } catch (IllegalArgumentException | DateTimeParseException ex) {
+            send(exchange, 400, error(ex.getMessage()));
+        }
+    }
+
+    private void handlePayment(HttpExchange exchange) throws IOException {
+        if (!"POST".equals(exchange.getRequestMethod())) {
+            send(exchange, 405, error("Use POST"));
+            return;
+        }
+        try {
+            Map<String, String> body = parseBody(exchange);
+            int bookingId = Integer.parseInt(required(body, "bookingId"));
+            double amount = Double.parseDouble(required(body, "amount"));
+            double extras = Double.parseDouble(body.getOrDefault("extras", "0"));
+            WriteResult result = dbConnector.processPayment(bookingId, amount, extras);
+            if (result == WriteResult.SAVED) {
+                send(exchange, 201, "{\"status\":\"paid\"}");
+            } else if (result == WriteResult.QUEUED) {
+                send(exchange, 202, "{\"status\":\"queued\"}");
+            } else {
+                send(exchange, 500, error("Payment failed"));
+            }
+        } catch (IllegalArgumentException ex) {
+            send(exchange, 400, error(ex.getMessage()));
+        }
+    }
+
+    private static String toJson(Vehicle vehicle) {
+        return "{\"id\":" + vehicle.getId()
+                + ",\"brandModel\":\"" + escape(vehicle.getBrandModel())
+                + "\",\"category\":\"" + escape(vehicle.getCategory())
+                + "\",\"rentalPrice\":" + vehicle.getRentalPrice()
+                + ",\"available\":" + vehicle.isAvailable() + "}";
+    }
+
+    private static String error(String message) {
+        return "{\"error\":\"" + escape(message == null ? "Bad request" : message) + "\"}";
+    }
+
+    static String escape(String value) {
+        StringBuilder escaped = new StringBuilder(value.length() + 8);
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> escaped.append("\\\"");
+                case '\\' -> escaped.append("\\\\");
+                case '\n' -> escaped.append("\\n");
+                case '\r' -> escaped.append("\\r");
+                case '\t' -> escaped.append("\\t");
+                case '\b' -> escaped.append("\\b");
+                case '\f' -> escaped.append("\\f");
+                default -> {
+                    if (c < 0x20) {
+                        escaped.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        escaped.append(c);
+                    }
+                }
+            }
+        }
+        return escaped.toString();
+    }
+
+    private static String required(Map<String, String> body, String key) {
+        String value = body.get(key);
+        if (value == null || value.isEmpty()) {
+            throw new IllegalArgumentException("Missing field: " + key);
+        }
+        return value;
+    }
+
+    // Any malformed body is the client's fault and must come back as a 400, never as a dropped connection
+    private static Map<String, String> parseBody(HttpExchange exchange) throws IOException {
+        String json = readBody(exchange);
+        try {
+            return parseObject(json);
+        } catch (IllegalArgumentException ex) {
+            throw ex;
+        } catch (RuntimeException ex) {
+            throw new IllegalArgumentException("Malformed JSON body");
+        }
+    }
+
+    // Parses a flat JSON object of string, number and boolean values; that is all the endpoints accept.
+    // Every scan is bounded by the closing brace, so malformed input fails fast instead of looping.
+    static Map<String, String> parseObject(String json) {
+        Map<String, String> values = new HashMap<>();
+        String body = json.trim();
+        if (!body.startsWith("{") || !body.endsWith("}")) {
+            throw new IllegalArgumentException("Expected a JSON object");
+        }
+        int i = 1;
+        int end = body.length() - 1;
+        while (i < end) {
+            char c = body.charAt(i);
+            if (Character.isWhitespace(c) || c == ',') {
+                i++;
+                continue;
+            }
+            if (c != '"') {
+                throw new IllegalArgumentException("Expected a field name at " + i);
+            }
+            int keyEnd = body.indexOf('"', i + 1);
+            if (keyEnd < 0 || keyEnd >= end) {
+                throw new IllegalArgumentException("Unterminated field name at " + i);
+            }
+            String key = body.substring(i + 1, keyEnd);
+            i = skipWhitespace(body, keyEnd + 1, end);
+            if (i >= end || body.charAt(i) != ':') {
+                throw new IllegalArgumentException("Expected ':' after field " + key);
+            }
+            i = skipWhitespace(body, i + 1, end);
+            if (i >= end) {
+                throw new IllegalArgumentException("Missing value for field " + key);
+            }
+            String value;
+            if (body.charAt(i) == '"') {
+                StringBuilder text = new StringBuilder();
+                i++;
+                while (i < end && body.charAt(i) != '"') {
+                    if (body.charAt(i) == '\\') {
+                        i++;
+                    }
+                    if (i < end) {
+                        text.append(body.charAt(i++));
+                    }
+                }
+                if (i >= end) {
+                    throw new IllegalArgumentException("Unterminated string for field " + key);
+                }
+                value = text.toString();
+                i++;
+            } else {
+                int valueEnd = i;
+                while (valueEnd < end && body.charAt(valueEnd) != ',' && !Character.isWhitespace(body.charAt(valueEnd))) {
+                    valueEnd++;
+                }
+                value = body.substring(i, valueEnd);
+                i = valueEnd;
+            }
+            values.put(key, value);
+        }
+        return values;
+    }
+
+    private static int skipWhitespace(String body, int i, int end) {
+        while (i < end && Character.isWhitespace(body.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static Map<String, String> parseQuery(String query) {
+        Map<String, String> params = new HashMap<>();
+        if (query != null) {
+            for (String pair : query.split("&")) {
+                int eq = pair.indexOf('=');
+                if (eq > 0) {
+                    params.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                            URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+                }
+            }
+        }
+        return params;
+    }
+
+    private static String readBody(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static void send(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    // Runs the API on its own: java ... com.example.vehicle.RentalApiServer [port]
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+        DbConnector dbConnector = new DbConnector();
+        dbConnector.initializeDatabase();
+        RentalApiServer apiServer = new RentalApiServer(dbConnector, port);
+        Runtime.getRuntime().addShutdownHook(new Thread(apiServer::stop, "api-shutdown"));
+        apiServer.start();
+        System.out.println("Rental API listening on port " + apiServer.getPort());
+    }
+}
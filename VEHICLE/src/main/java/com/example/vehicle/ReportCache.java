@@ -0,0 +1,185 @@
+package com.example.vehicle;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+// Remembers finished report results so that opening the same report again is instant. An entry is keyed by
+// the report and its parameters (e.g. the date range) and tagged with the tables it was computed from;
+// invalidate drops exactly the entries tagged with a changed table, so a new payment leaves the customer
+// history cached while a new booking clears it.
+//
+// Results are computed outside the cache, so a change can land while one is being worked out. Every table
+// has a generation counter: a Lookup remembers the generations of its tables when it misses, and store
+// throws the result away if any of them moved in the meantime, rather than caching data that is already
+// out of date.
+//
+// The cache is bounded by the estimated size of its results and evicts the least recently used entries
+// first. All methods are synchronized; entries are small and the lock is never held while computing.
+class ReportCache {
+    static final long DEFAULT_MAX_BYTES = 32L * 1024 * 1024;
+
+    private final long maxBytes;
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, Long> generations = new HashMap<>();
+    private long bytes;
+    private long hits;
+    private long misses;
+    private long invalidations;
+    private long evictions;
+    private long discarded;
+
+    ReportCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    static Key key(String report, List<?> params, String... tables) {
+        return new Key(report, params, Set.of(tables));
+    }
+
+    synchronized <T> Lookup<T> lookup(Key key) {
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            hits++;
+            @SuppressWarnings("unchecked")
+            T value = (T) entry.value;
+            return new Lookup<>(this, key, value, null);
+        }
+        misses++;
+        return new Lookup<>(this, key, null, generationsOf(key));
+    }
+
+    // Drops every entry that depends on one of the tables
+    synchronized void invalidate(Collection<String> tables) {
+        for (String table : tables) {
+            generations.merge(table, 1L, Long::sum);
+        }
+        Iterator<Entry> it = entries.values().iterator();
+        while (it.hasNext()) {
+            Entry entry = it.next();
+            for (String table : tables) {
+                if (entry.key.tables.contains(table)) {
+                    it.remove();
+                    bytes -= entry.bytes;
+                    invalidations++;
+                    break;
+                }
+            }
+        }
+    }
+
+    private synchronized void store(Key key, long[] seen, Object value, long size) {
+        if (!Arrays.equals(seen, generationsOf(key))) {
+            discarded++;
+            return;
+        }
+        if (size > maxBytes) {
+            return;
+        }
+        Entry previous = entries.put(key, new Entry(key, value, size));
+        if (previous != null) {
+            bytes -= previous.bytes;
+        }
+        bytes += size;
+        Iterator<Entry> it = entries.values().iterator();
+        while (bytes > maxBytes && it.hasNext()) {
+            Entry eldest = it.next();
+            it.remove();
+            bytes -= eldest.bytes;
+            evictions++;
+        }
+    }
+
+    private long[] generationsOf(Key key) {
+        long[] seen = new long[key.sortedTables.length];
+        for (int i = 0; i < seen.length; i++) {
+            seen[i] = generations.getOrDefault(key.sortedTables[i], 0L);
+        }
+        return seen;
+    }
+
+    synchronized String stats() {
+        long lookups = hits + misses;
+        return String.format("Report cache: %d entries, %.1f of %.1f MB, %d hits / %d misses (%.0f%% hit rate), "
+                        + "%d invalidated, %d evicted, %d discarded as stale",
+                entries.size(), bytes / 1048576.0, maxBytes / 1048576.0, hits, misses,
+                lookups == 0 ? 0 : hits * 100.0 / lookups, invalidations, evictions, discarded);
+    }
+
+    static class Key {
+        private final String report;
+        private final List<?> params;
+        private final Set<String> tables;
+        private final String[] sortedTables;
+
+        private Key(String report, List<?> params, Set<String> tables) {
+            this.report = report;
+            this.params = List.copyOf(params);
+            this.tables = tables;
+            this.sortedTables = tables.stream().sorted().toArray(String[]::new);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Key key && report.equals(key.report) && params.equals(key.params);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(report, params);
+        }
+
+        @Override
+        public String toString() {
+            return report + params;
+        }
+    }
+
+    // The outcome of one lookup: the cached value on a hit, otherwise the means to store the computed one
+    static class Lookup<T> {
+        private final ReportCache cache;
+        private final Key key;
+        private final T value;
+        private final long[] seen;
+
+        private Lookup(ReportCache cache, Key key, T value, long[] seen) {
+            this.cache = cache;
+            this.key = key;
+            this.value = value;
+            this.seen = seen;
+        }
+
+        boolean isHit() {
+            return seen == null;
+        }
+
+        T getValue() {
+            return value;
+        }
+
+        // Caches a result computed after a miss; estimatedBytes counts towards the cache's memory bound
+        void store(T result, long estimatedBytes) {
+            if (seen != null) {
+                cache.store(key, seen, result, estimatedBytes);
+            }
+        }
+    }
+
+    private static class Entry {
+        private final Key key;
+        private final Object value;
+        private final long bytes;
+
+        Entry(Key key, Object value, long bytes) {
+            this.key = key;
+            this.value = value;
+            this.bytes = bytes;
+        }
+    }
+}
@@ -0,0 +1,356 @@
+package com.example.vehicle;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Headless entry point for cron jobs; never starts the JavaFX toolkit.
+//
+//   java -cp ... com.example.vehicle.ReportCli revenue --from 2024-01-01 --to 2024-12-31 --out revenue.csv --threads 8
+//   java -cp ... com.example.vehicle.ReportCli available --out available.csv
+//   java -cp ... com.example.vehicle.ReportCli export --out report.csv
+//   java -cp ... com.example.vehicle.ReportCli archive --months 12
+//   java -cp ... com.example.vehicle.ReportCli reconcile --out exceptions.csv --as-of 2024-12-31
+//   java -cp ... com.example.vehicle.ReportCli dedupe --out duplicates.csv --threshold 0.85
+//   java -cp ... com.example.vehicle.ReportCli dedupe --apply duplicates.csv
+//   java -cp ... com.example.vehicle.ReportCli profile --in vrs.jfr
+//   java -cp ... com.example.vehicle.ReportCli columnar --dir analytics
+//   java -cp ... com.example.vehicle.ReportCli columnar-info --in analytics/bookings.vrsc
+//   java -cp ... com.example.vehicle.ReportCli columnar-csv --in analytics/bookings.vrsc --out bookings.csv
+//   java -cp ... com.example.vehicle.ReportCli forecast --out forecast.csv
+//   java -cp ... com.example.vehicle.ReportCli backup --dir backup --threads 8
+//   java -cp ... com.example.vehicle.ReportCli restore --dir backup --threads 8 --replace true
+//   java -cp ... com.example.vehicle.ReportCli branch-add --id 3 --name "Durban Depot"
+//
+// reconcile writes the payment exceptions to --out and prints the summary totals to stderr, so they never mix
+// with the CSV when --out is left at stdout.
+// dedupe lists groups of customer records that look like the same person, proposing to merge each group into
+// its oldest record (the lowest customer_id). Nothing is merged until someone has reviewed that file: set the
+// action of each row to KEEP, MERGE or SKIP, then pass it back with --apply. Only the rows marked MERGE are
+// folded into their group's single KEEP row, bookings and waitlist requests included; the groups are not
+// worked out again.
+// profile summarises a recording made with -Dvrs.profile=vrs.jfr: where the FX thread stalled and why.
+// columnar streams bookings, payments, vehicles and customers into typed, compressed files in --dir (see
+// ColumnarExport); columnar-info shows a file's columns, encodings and sizes, columnar-csv converts it back.
+// forecast writes the expected vehicles on rent per category for the next four weeks (see DemandForecaster) and
+// prints one summary line per category to stderr.
+// backup takes a consistent parallel snapshot of every table except schema_version and change_log into --dir;
+// restore loads one into a database with the same schema version (see DatabaseBackup). Without --replace true
+// restore refuses to touch tables that already hold rows. Running terminals reload their lists once it is done.
+//
+// --branch n limits revenue, available and export to one branch; --branch all runs them on every branch in
+// parallel and merges the results, labelling every row with its branch. Without it the report covers whatever
+// vrs.branch selects. branch-add registers a branch (or renames it) so that --branch all and the cross-branch
+// availability lookup include it; a terminal started with -Dvrs.branch=n also registers its branch itself.
+//
+// Any failed database read, on any branch, stops the command with exit status 1 rather than writing a report
+// that silently leaves rows out; bad usage exits with 2.
+//
+// VehicleRentalSystem also forwards here when started with --batch as its first argument.
+public class ReportCli {
+
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            printUsage();
+            System.exit(2);
+        }
+
+        Map<String, String> options = parseOptions(args);
+        DbConnector dbConnector = new DbConnector().failingReads();
+        String branch = options.get("branch");
+        boolean allBranches = "all".equals(branch);
+        if (branch != null && !allBranches) {
+            dbConnector = dbConnector.forBranch(Integer.parseInt(branch));
+        }
+        List<DbConnector> branches = allBranches ? dbConnector.allBranches() : List.of(dbConnector);
+        ReportEngine engine = new ReportEngine(dbConnector);
+        Profiling.CsvWriteEvent event = new Profiling.CsvWriteEvent();
+        event.begin();
+        try (Writer writer = openOutput(options.get("out"))) {
+            switch (args[0]) {
+                case "revenue" -> {
+                    LocalDate to = options.containsKey("to") ? LocalDate.parse(options.get("to")) : LocalDate.now();
+                    LocalDate from = options.containsKey("from") ? LocalDate.parse(options.get("from")) : to.withDayOfYear(1);
+                    int threads = Integer.parseInt(options.getOrDefault("threads", String.valueOf(Runtime.getRuntime().availableProcessors())));
+                    if (allBranches) {
+                        ReportEngine.writeRevenueReport(writer, ReportEngine.revenueByMonth(branches, from, to, threads));
+                    } else {
+                        engine.writeRevenueReport(writer, from, to, threads);
+                    }
+                }
+                case "available" -> {
+                    if (allBranches) {
+                        ReportEngine.writeCompanyAvailableVehiclesReport(writer, branches);
+                    } else {
+                        engine.writeAvailableVehiclesReport(writer);
+                    }
+                }
+                case "export" -> {
+                    if (allBranches) {
+                        ReportEngine.writeCompanyExport(writer, branches);
+                    } else {
+                        engine.writeExport(writer);
+                    }
+                }
+                case "branch-add" -> {
+                    if (!options.containsKey("id") || !options.containsKey("name")) {
+                        printUsage();
+                        System.exit(2);
+                    }
+                    int id = Integer.parseInt(options.get("id"));
+                    if (!dbConnector.registerBranch(id, options.get("name"))) {
+                        throw new IllegalStateException("Branch " + id + " could not be registered");
+                    }
+                    writer.write("Registered branch " + id + " (" + options.get("name") + ")\n");
+                }
+                case "archive" -> {
+                    int months = Integer.parseInt(options.getOrDefault("months", "12"));
+                    int archived = new BookingArchiver(dbConnector).archiveOlderThan(months);
+                    writer.write("Archived " + archived + " bookings closed more than " + months + " months ago\n");
+                }
+                case "reconcile" -> {
+                    LocalDate asOf = options.containsKey("as-of") ? LocalDate.parse(options.get("as-of")) : LocalDate.now();
+                    PaymentReconciler.Summary summary = new PaymentReconciler(dbConnector).reconcile(writer, asOf);
+                    writer.flush();
+                    System.err.print(summary);
+                }
+                case "dedupe" -> {
+                    if (options.containsKey("apply")) {
+                        applyDedupe(writer, dbConnector, Paths.get(options.get("apply")));
+                    } else {
+                        double threshold = Double.parseDouble(options.getOrDefault("threshold", String.valueOf(CustomerMatcher.DUPLICATE_THRESHOLD)));
+                        dedupe(writer, dbConnector, threshold);
+                    }
+                }
+                case "profile" -> {
+                    if (!options.containsKey("in")) {
+                        printUsage();
+                        System.exit(2);
+                    }
+                    ProfileAnalyzer.analyze(Paths.get(options.get("in")), writer);
+                }
+                case "columnar" -> {
+                    for (String line : new ColumnarExport(dbConnector).exportAll(Paths.get(options.getOrDefault("dir", "analytics")))) {
+                        writer.write(line + "\n");
+                    }
+                }
+                case "forecast" -> {
+                    DemandForecaster forecaster = new DemandForecaster(dbConnector);
+                    forecaster.reload();
+                    writer.write("category,date,forecast,already_booked,fleet_size\n");
+                    for (String category : forecaster.getCategories()) {
+                        DemandForecaster.Forecast forecast = forecaster.forecast(category, 0);
+                        for (int h = 0; h < forecast.getPredicted().length; h++) {
+                            writer.write(String.format("%s,%s,%.1f,%d,%d%n", quote(category), forecast.getToday().plusDays(h),
+                                    forecast.getPredicted()[h], forecast.getBooked()[h], forecast.getFleetSize()));
+                        }
+                        System.err.println(forecast);
+                    }
+                }
+                case "backup", "restore" -> {
+                    int threads = Integer.parseInt(options.getOrDefault("threads", String.valueOf(Runtime.getRuntime().availableProcessors())));
+                    DatabaseBackup backup = new DatabaseBackup(dbConnector, threads);
+                    Path dir = Paths.get(options.getOrDefault("dir", "backup"));
+                    long startedAt = System.nanoTime();
+                    Map<String, Long> rows = args[0].equals("backup") ? backup.backup(dir)
+                            : backup.restore(dir, Boolean.parseBoolean(options.getOrDefault("replace", "false")));
+                    for (Map.Entry<String, Long> entry : rows.entrySet()) {
+                        writer.write(entry.getKey() + ": " + entry.getValue() + " rows\n");
+                    }
+                    writer.write(String.format("%s %s in %.1fs with %d thread(s)%n", args[0].equals("backup") ? "Backed up to" : "Restored from",
+                            dir, (System.nanoTime() - startedAt) / 1e9, threads));
+                }
+                case "columnar-info", "columnar-csv" -> {
+                    if (!options.containsKey("in")) {
+                        printUsage();
+                        System.exit(2);
+                    }
+                    Path in = Paths.get(options.get("in"));
+                    if (args[0].equals("columnar-info")) {
+                        try (ColumnarReader reader = new ColumnarReader(in)) {
+                            reader.describe(writer);
+                        }
+                    } else {
+                        ColumnarReader.toCsv(in, writer);
+                    }
+                }
+                default -> {
+                    printUsage();
+                    System.exit(2);
+                }
+            }
+        } catch (IOException | SQLException | RuntimeException ex) {
+            ex.printStackTrace();
+            System.exit(1);
+        }
+        event.end();
+        if (options.containsKey("out") && event.shouldCommit()) {
+            event.file = options.get("out");
+            event.commit();
+        }
+    }
+
+    private static void dedupe(Writer writer, DbConnector dbConnector, double threshold) throws IOException {
+        long startedAt = System.nanoTime();
+        CustomerMatcher matcher = new CustomerMatcher(dbConnector);
+        matcher.reload();
+        List<List<Customer>> groups = matcher.findDuplicates(threshold);
+
+        writer.write("group,customer_id,customer_name,contact_info,license_number,action\n");
+        int duplicates = 0;
+        for (int group = 0; group < groups.size(); group++) {
+            List<Customer> customers = groups.get(group);
+            for (Customer customer : customers) {
+                boolean keep = customer == customers.get(0);
+                writer.write((group + 1) + "," + customer.getCustomerId() + "," + quote(customer.getCustomerName()) + ","
+                        + quote(customer.getContactInfo()) + "," + quote(customer.getLicenseNumber()) + ","
+                        + (keep ? "KEEP" : "MERGE") + "\n");
+            }
+            duplicates += customers.size() - 1;
+        }
+        writer.flush();
+        System.err.printf("Checked %d customers in %.1fs: %d group(s), %d duplicate record(s) proposed; review the actions, then pass the file to --apply%n",
+                matcher.size(), (System.nanoTime() - startedAt) / 1e9, groups.size(), duplicates);
+    }
+
+    // Merges exactly what a reviewed dedupe file says. Every group is checked before anything is merged: it
+    // needs one KEEP row, and each id must still exist with no licence number that contradicts the kept one.
+    private static void applyDedupe(Writer writer, DbConnector dbConnector, Path reviewed) throws IOException {
+        Map<String, Integer> keepIds = new LinkedHashMap<>();
+        Map<String, List<Integer>> mergeIds = new LinkedHashMap<>();
+        List<String> lines = Files.readAllLines(reviewed, StandardCharsets.UTF_8);
+        for (int n = 1; n < lines.size(); n++) {
+            if (lines.get(n).isBlank()) {
+                continue;
+            }
+            List<String> fields = parseCsvLine(lines.get(n));
+            if (fields.size() < 6) {
+                throw new IllegalArgumentException(reviewed + " line " + (n + 1) + ": expected 6 fields");
+            }
+            String group = fields.get(0);
+            int customerId = Integer.parseInt(fields.get(1).trim());
+            switch (fields.get(5).trim().toUpperCase()) {
+                case "KEEP" -> {
+                    if (keepIds.putIfAbsent(group, customerId) != null) {
+                        throw new IllegalArgumentException(reviewed + " line " + (n + 1) + ": group " + group + " has more than one KEEP");
+                    }
+                }
+                case "MERGE" -> mergeIds.computeIfAbsent(group, g -> new ArrayList<>()).add(customerId);
+                case "SKIP", "" -> {
+                }
+                default -> throw new IllegalArgumentException(reviewed + " line " + (n + 1) + ": unknown action " + fields.get(5));
+            }
+        }
+        for (Map.Entry<String, List<Integer>> group : mergeIds.entrySet()) {
+            Integer keepId = keepIds.get(group.getKey());
+            if (keepId == null) {
+                throw new IllegalArgumentException("Group " + group.getKey() + " has MERGE rows but no KEEP row");
+            }
+            Customer keep = requireCustomer(dbConnector, keepId);
+            for (int duplicateId : group.getValue()) {
+                Customer duplicate = requireCustomer(dbConnector, duplicateId);
+                String keepLicence = CustomerMatcher.normaliseLicence(keep.getLicenseNumber());
+                String duplicateLicence = CustomerMatcher.normaliseLicence(duplicate.getLicenseNumber());
+                if (!keepLicence.isEmpty() && !duplicateLicence.isEmpty() && !keepLicence.equals(duplicateLicence)) {
+                    throw new IllegalArgumentException("Customers " + keepId + " and " + duplicateId + " hold different licence numbers");
+                }
+            }
+        }
+
+        int merged = 0;
+        int bookingsMoved = 0;
+        for (Map.Entry<String, List<Integer>> group : mergeIds.entrySet()) {
+            int keepId = keepIds.get(group.getKey());
+            int moved = dbConnector.mergeCustomers(keepId, group.getValue());
+            if (moved < 0) {
+                throw new IllegalStateException("Merging into customer " + keepId + " failed; groups before it were merged");
+            }
+            writer.write("Merged " + group.getValue() + " into " + keepId + ", " + moved + " booking(s) moved\n");
+            merged += group.getValue().size();
+            bookingsMoved += moved;
+        }
+        writer.flush();
+        System.err.printf("Merged %d customer record(s) in %d group(s), %d booking(s) moved%n", merged, mergeIds.size(), bookingsMoved);
+    }
+
+    private static Customer requireCustomer(DbConnector dbConnector, int customerId) {
+        Customer customer = dbConnector.getCustomerById(customerId);
+        if (customer == null) {
+            throw new IllegalStateException("Customer " + customerId + " no longer exists; run dedupe again and review the new file");
+        }
+        return customer;
+    }
+
+    // One line as written by quote(): fields may be wrapped in double quotes, with "" for a quote inside
+    private static List<String> parseCsvLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private static String quote(String value) {
+        return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+
+    // --name value pairs after the command
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 1; i + 1 < args.length; i += 2) {
+            if (args[i].startsWith("--")) {
+                options.put(args[i].substring(2), args[i + 1]);
+            }
+        }
+        return options;
+    }
+
+    // Streams to the given file, or to stdout when no --out is given
+    private static Writer openOutput(String path) throws IOException {
+        if (path == null) {
+            return new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8)) {
+                @Override
+                public void close() throws IOException {
+                    flush();
+                }
+            };
+        }
+        return Files.newBufferedWriter(Paths.get(path), StandardCharsets.UTF_8);
+    }
+
+    private static void printUsage() {
+        System.err.println("Usage: ReportCli <revenue|available|export|archive|reconcile|dedupe|profile|columnar|columnar-info|columnar-csv|forecast|backup|restore|branch-add> [--out file] [--in file] [--dir directory] [--replace true] [--from yyyy-mm-dd] [--to yyyy-mm-dd] [--threads n] [--months n] [--as-of yyyy-mm-dd] [--threshold 0..1] [--apply reviewed.csv] [--branch n|all] [--id n --name text]");
+    }
+}
@@ -0,0 +1,351 @@
+package com.example.vehicle;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Report calculations shared by the report scene and the headless ReportCli.
+// Nothing in here touches the JavaFX toolkit, so it runs fine without a display.
+class ReportEngine {
+    private final DbConnector dbConnector;
+
+    ReportEngine(DbConnector dbConnector) {
+        this.dbConnector = dbConnector;
+    }
+
+    // Revenue of one booking: daily rental price times the number of rented days
+    static double bookingRevenue(Booking booking, Map<Integer, Double> vehiclePrices) {
+        Double price = vehiclePrices.get(Integer.parseInt(booking.getVehicleId()));
+        if (price == null) {
+            return 0;
+        }
+        return price * ChronoUnit.DAYS.between(booking.getStartDate(), booking.getEndDate());
+    }
+
+    // Revenue of the given active bookings plus everything already archived
+    double totalRevenue(List<Booking> bookings) {
+        Map<Integer, Double> vehiclePrices = dbConnector.getVehiclePrices();
+        double total = 0;
+        for (Booking booking : bookings) {
+            total += bookingRevenue(booking, vehiclePrices);
+        }
+        for (double archived : archivedRevenue().values()) {
+            total += archived;
+        }
+        return total;
+    }
+
+    // Revenue per calendar month (index 0 = January) of the booking's start date, summed over all years
+    double[] revenueByMonthOfYear(List<Booking> bookings) {
+        Map<Integer, Double> vehiclePrices = dbConnector.getVehiclePrices();
+        double[] revenue = new double[12];
+        for (Booking booking : bookings) {
+            revenue[booking.getStartDate().getMonthValue() - 1] += bookingRevenue(booking, vehiclePrices);
+        }
+        for (Map.Entry<YearMonth, Double> archived : archivedRevenue().entrySet()) {
+            revenue[archived.getKey().getMonthValue() - 1] += archived.getValue();
+        }
+        return revenue;
+    }
+
+    // Revenue per start date of the given bookings, in date order; archived bookings only survive as
+    // monthly summaries, so they are not part of the daily series
+    TreeMap<LocalDate, Double> revenueByDay(List<Booking> bookings) {
+        Map<Integer, Double> vehiclePrices = dbConnector.getVehiclePrices();
+        TreeMap<LocalDate, Double> revenue = new TreeMap<>();
+        for (Booking booking : bookings) {
+            revenue.merge(booking.getStartDate(), bookingRevenue(booking, vehiclePrices), Double::sum);
+        }
+        return revenue;
+    }
+
+    // Everything the revenue report window shows, already reduced for the charts
+    RevenueSummary revenueSummary(List<Booking> bookings) {
+        // Years of bookings are thousands of days; LTTB keeps the series' shape in MAX_POINTS points
+        TreeMap<LocalDate, Double> daily = revenueByDay(bookings);
+        double[] days = new double[daily.size()];
+        double[] amounts = new double[daily.size()];
+        int i = 0;
+        for (Map.Entry<LocalDate, Double> day : daily.entrySet()) {
+            days[i] = day.getKey().toEpochDay();
+            amounts[i++] = day.getValue();
+        }
+        return new RevenueSummary(totalRevenue(bookings), revenueByMonthOfYear(bookings),
+                ChartData.lttb(days, amounts, ChartData.MAX_POINTS));
+    }
+
+    // Rentals per customer for the history chart: the busiest customers, the rest summed into one bar
+    static List<ChartData.Entry> rentalsByCustomer(List<Customer> customers, List<Booking> bookings, Map<String, Integer> archivedCounts) {
+        // One pass over the bookings instead of one per customer, starting from the archived counts
+        Map<String, Integer> rentalCounts = new HashMap<>(archivedCounts);
+        for (Booking booking : bookings) {
+            rentalCounts.merge(booking.getCustomerId(), 1, Integer::sum);
+        }
+        // The id keeps two customers with the same name on separate bars
+        Map<String, Integer> byCustomer = new HashMap<>();
+        for (Customer customer : customers) {
+            String id = String.valueOf(customer.getCustomerId());
+            byCustomer.put(customer.getCustomerName() + " (" + id + ")", rentalCounts.getOrDefault(id, 0));
+        }
+        return ChartData.topN(byCustomer, ChartData.MAX_BARS, "Other customers");
+    }
+
+    // Rough heap size of a list of chart entries, for ReportCache
+    static long estimatedBytes(List<ChartData.Entry> entries) {
+        long bytes = 64;
+        for (ChartData.Entry entry : entries) {
+            bytes += 64 + 2L * entry.getLabel().length();
+        }
+        return bytes;
+    }
+
+    // All archived revenue per month; empty when nothing has been archived yet
+    private Map<YearMonth, Double> archivedRevenue() {
+        LocalDate horizon = dbConnector.getArchiveHorizon();
+        if (horizon == null) {
+            return Map.of();
+        }
+        return dbConnector.getArchivedRevenueByMonth(LocalDate.of(1970, 1, 1), horizon);
+    }
+
+    // Revenue per month between from and to (inclusive); each month is queried and summed on its own thread
+    Map<YearMonth, Double> revenueByMonth(LocalDate from, LocalDate to, int threads) throws IOException {
+        Map<Integer, Double> vehiclePrices = dbConnector.getVehiclePrices();
+        List<YearMonth> months = new ArrayList<>();
+        for (YearMonth month = YearMonth.from(from); !month.isAfter(YearMonth.from(to)); month = month.plusMonths(1)) {
+            months.add(month);
+        }
+
+        // Periods before the archive horizon also count their archived bookings: whole months from the
+        // monthly summaries, a month the range only partly covers from the archived rows inside the range
+        LocalDate horizon = dbConnector.getArchiveHorizon();
+        boolean hasArchive = horizon != null && from.isBefore(horizon);
+        Map<YearMonth, Double> archived = hasArchive ? dbConnector.getArchivedRevenueByMonth(from, to) : Map.of();
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, months.size())));
+        try {
+            List<Future<Double>> results = new ArrayList<>();
+            for (YearMonth month : months) {
+                LocalDate start = month.atDay(1).isBefore(from) ? from : month.atDay(1);
+                LocalDate end = month.atEndOfMonth().isAfter(to) ? to : month.atEndOfMonth();
+                boolean partial = !start.equals(month.atDay(1)) || !end.equals(month.atEndOfMonth());
+                results.add(executor.submit(() -> {
+                    double sum = 0;
+                    for (Booking booking : dbConnector.getBookingsStartingBetween(start, end)) {
+                        sum += bookingRevenue(booking, vehiclePrices);
+                    }
+                    if (!hasArchive || !start.isBefore(horizon)) {
+                        return sum;
+                    }
+                    if (!partial) {
+                        return sum + archived.getOrDefault(month, 0.0);
+                    }
+                    for (Booking booking : dbConnector.getArchivedBookingsStartingBetween(start, end)) {
+                        sum += bookingRevenue(booking, vehiclePrices);
+                    }
+                    return sum;
+                }));
+            }
+
+            Map<YearMonth, Double> revenue = new TreeMap<>();
+            for (int i = 0; i < months.size(); i++) {
+                revenue.put(months.get(i), results.get(i).get());
+            }
+            return revenue;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Revenue report interrupted", ex);
+        } catch (ExecutionException ex) {
+            throw new IOException("Revenue report failed", ex.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    // Company-wide revenue: every branch works out its own months in parallel and the results are summed
+    static Map<YearMonth, Double> revenueByMonth(List<DbConnector> branches, LocalDate from, LocalDate to, int threads) {
+        Map<YearMonth, Double> total = new TreeMap<>();
+        for (Map<YearMonth, Double> branch : BranchFanOut.run(branches, b -> new ReportEngine(b).revenueByMonth(from, to, threads))) {
+            branch.forEach((month, revenue) -> total.merge(month, revenue, Double::sum));
+        }
+        return total;
+    }
+
+    void writeRevenueReport(Writer writer, LocalDate from, LocalDate to, int threads) throws IOException {
+        writeRevenueReport(writer, revenueByMonth(from, to, threads));
+    }
+
+    static void writeRevenueReport(Writer writer, Map<YearMonth, Double> revenue) throws IOException {
+        double total = 0;
+        writer.write("Month,Revenue\n");
+        for (Map.Entry<YearMonth, Double> entry : revenue.entrySet()) {
+            writer.write(entry.getKey() + "," + entry.getValue() + "\n");
+            total += entry.getValue();
+        }
+        writer.write("Total," + total + "\n");
+    }
+
+    void writeAvailableVehiclesReport(Writer writer) throws IOException {
+        writeAvailableVehiclesReport(writer, dbConnector.getAvailableVehicles());
+    }
+
+    static void writeAvailableVehiclesReport(Writer writer, List<Vehicle> vehicles) throws IOException {
+        writer.write("Available Vehicles\n");
+        for (Vehicle vehicle : vehicles) {
+            writer.write(vehicle.toString() + "\n");
+        }
+    }
+
+    // Company-wide listing. A branch with its own database numbers its vehicles independently, so an id is
+    // only unique together with the branch, and every row says which branch it belongs to.
+    static void writeCompanyAvailableVehiclesReport(Writer writer, List<DbConnector> branches) throws IOException {
+        writer.write("Available Vehicles\n");
+        List<BranchRows> rows = BranchFanOut.run(branches, branch -> new BranchRows(branch, branch.getAvailableVehicles(), List.of(), List.of()));
+        for (BranchRows branch : rows) {
+            for (Vehicle vehicle : branch.vehicles) {
+                writer.write("Branch " + branch.branchId + ": " + vehicle + "\n");
+            }
+        }
+    }
+
+    // Available vehicles per category for the pie chart, and the same counts as text for the alert shown next
+    // to it. The alert stays a few lines long however big the fleet is; the per-vehicle listing is in the CSV export.
+    static AvailabilitySummary availabilitySummary(List<Vehicle> availableVehicles) {
+        Map<String, Integer> byCategory = new HashMap<>();
+        for (Vehicle vehicle : availableVehicles) {
+            byCategory.merge(vehicle.getCategory(), 1, Integer::sum);
+        }
+        List<ChartData.Entry> slices = ChartData.topN(byCategory, ChartData.MAX_SLICES, "Other");
+        StringBuilder report = new StringBuilder("Available Vehicles: " + availableVehicles.size() + "\n");
+        for (ChartData.Entry slice : slices) {
+            report.append(slice.getLabel()).append(": ").append(Math.round(slice.getValue())).append("\n");
+        }
+        report.append("Use \"Export Report to CSV\" for the full list of vehicles.");
+        return new AvailabilitySummary(slices, report.toString());
+    }
+
+    // Same layout as the "Export Report to CSV" button
+    static void writeExport(Writer writer, List<Vehicle> vehicles, List<Customer> customers, List<Booking> bookings) throws IOException {
+        writer.write("Report,Details\n");
+        for (Vehicle vehicle : vehicles) {
+            writer.write("Vehicle Added," + vehicle.toString() + "\n");
+        }
+        for (Customer customer : customers) {
+            writer.write("Customer Added," + customer.toString() + "\n");
+        }
+        for (Booking booking : bookings) {
+            writer.write("Vehicle Booked," + booking.toString() + "\n");
+        }
+    }
+
+    // Company-wide export with a Branch column, keyed by (branch, id) for the same reason as above. Customers
+    // belong to a database rather than a branch: branches sharing the home database list the same customers,
+    // which are written once, under the first of those branches.
+    static void writeCompanyExport(Writer writer, List<DbConnector> branches) throws IOException {
+        List<BranchRows> rows = BranchFanOut.run(branches, branch -> new BranchRows(branch, branch.getAllVehicles(),
+                branch.getAllCustomers(), branch.getAllBookings()));
+        writer.write("Branch,Report,Details\n");
+        for (BranchRows branch : rows) {
+            for (Vehicle vehicle : branch.vehicles) {
+                writer.write(branch.branchId + ",Vehicle Added," + vehicle + "\n");
+            }
+        }
+        Set<String> customersWritten = new HashSet<>();
+        for (BranchRows branch : rows) {
+            for (Customer customer : branch.customers) {
+                if (customersWritten.add(branch.databaseUrl + "#" + customer.getCustomerId())) {
+                    writer.write(branch.branchId + ",Customer Added," + customer + "\n");
+                }
+            }
+        }
+        for (BranchRows branch : rows) {
+            for (Booking booking : branch.bookings) {
+                writer.write(branch.branchId + ",Vehicle Booked," + booking + "\n");
+            }
+        }
+    }
+
+    void writeExport(Writer writer) throws IOException {
+        writeExport(writer, dbConnector.getAllVehicles(), dbConnector.getAllCustomers(), dbConnector.getAllBookings());
+    }
+
+    // One branch's rows in a company-wide report
+    private static class BranchRows {
+        private final int branchId;
+        private final String databaseUrl;
+        private final List<Vehicle> vehicles;
+        private final List<Customer> customers;
+        private final List<Booking> bookings;
+
+        BranchRows(DbConnector branch, List<Vehicle> vehicles, List<Customer> customers, List<Booking> bookings) {
+            this.branchId = branch.getBranchId();
+            this.databaseUrl = branch.getDatabaseUrl();
+            this.vehicles = vehicles;
+            this.customers = customers;
+            this.bookings = bookings;
+        }
+    }
+
+    static class RevenueSummary {
+        private final double total;
+        private final double[] monthly; // Index 0 = January
+        private final double[][] daily; // {epoch days, amounts}, downsampled
+
+        RevenueSummary(double total, double[] monthly, double[][] daily) {
+            this.total = total;
+            this.monthly = monthly;
+            this.daily = daily;
+        }
+
+        public double getTotal() {
+            return total;
+        }
+
+        public double[] getMonthly() {
+            return monthly;
+        }
+
+        public double[][] getDaily() {
+            return daily;
+        }
+
+        long estimatedBytes() {
+            return 128 + 8L * monthly.length + 16L * daily[0].length;
+        }
+    }
+
+    static class AvailabilitySummary {
+        private final List<ChartData.Entry> slices;
+        private final String report;
+
+        AvailabilitySummary(List<ChartData.Entry> slices, String report) {
+            this.slices = slices;
+            this.report = report;
+        }
+
+        public List<ChartData.Entry> getSlices() {
+            return slices;
+        }
+
+        public String getReport() {
+            return report;
+        }
+
+        long estimatedBytes() {
+            return ReportEngine.estimatedBytes(slices) + 2L * report.length();
+        }
+    }
+}
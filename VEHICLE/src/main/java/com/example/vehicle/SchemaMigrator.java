@@ -0,0 +1,191 @@
+package com.example.vehicle;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+// Versioned schema changes. Each migration runs once per database and is recorded in schema_version;
+// new changes are appended to MIGRATIONS with the next version number, never edited in place.
+//
+// MySQL commits every DDL statement on its own, so a migration cannot be rolled back as a whole. Progress is
+// recorded in schema_migration_progress after each statement instead, and a migration interrupted half way
+// (crash, lost connection, killed terminal) resumes at the statement it stopped at. The one statement that may
+// have run without its progress being recorded is retried, and an "already exists" / "already gone" error
+// from it counts as done.
+class SchemaMigrator {
+    // Table/column/index already exists, or the column/index to drop is already gone
+    private static final Set<Integer> ALREADY_APPLIED = Set.of(1050, 1060, 1061, 1091);
+
+    static final List<Migration> MIGRATIONS = List.of(
+            new Migration(1, "Baseline tables",
+                    "CREATE TABLE IF NOT EXISTS users (id INT AUTO_INCREMENT PRIMARY KEY, username VARCHAR(50) NOT NULL UNIQUE, password VARCHAR(255) NOT NULL, role ENUM('Admin', 'Employee') NOT NULL)",
+                    "CREATE TABLE IF NOT EXISTS vehicles (vehicle_id INT AUTO_INCREMENT PRIMARY KEY, brand VARCHAR(50) NOT NULL, model VARCHAR(50) NOT NULL, category VARCHAR(50) NOT NULL, rental_price DECIMAL(10, 2) NOT NULL, availability_status ENUM('Available', 'Not Available') NOT NULL)",
+                    "CREATE TABLE IF NOT EXISTS customers (customer_id INT AUTO_INCREMENT PRIMARY KEY, customer_name VARCHAR(100) NOT NULL, contact_info VARCHAR(150) NOT NULL, license_number VARCHAR(50) NOT NULL UNIQUE)",
+                    "CREATE TABLE IF NOT EXISTS bookings (booking_id INT AUTO_INCREMENT PRIMARY KEY, vehicle_id INT NOT NULL, customer_id INT NOT NULL, start_date DATE NOT NULL, end_date DATE NOT NULL, booking_date DATETIME DEFAULT CURRENT_TIMESTAMP, FOREIGN KEY (vehicle_id) REFERENCES vehicles(vehicle_id) ON DELETE CASCADE, FOREIGN KEY (customer_id) REFERENCES customers(customer_id) ON DELETE CASCADE)",
+                    "CREATE TABLE IF NOT EXISTS payments (payment_id INT AUTO_INCREMENT PRIMARY KEY, booking_id INT NOT NULL, amount DECIMAL(10, 2) NOT NULL, payment_date DATETIME DEFAULT CURRENT_TIMESTAMP, FOREIGN KEY (booking_id) REFERENCES bookings(booking_id) ON DELETE CASCADE)",
+                    "CREATE TABLE IF NOT EXISTS change_log (change_id BIGINT AUTO_INCREMENT PRIMARY KEY, table_name VARCHAR(30) NOT NULL, entity_id INT NOT NULL, operation ENUM('INSERT', 'UPDATE', 'DELETE') NOT NULL, changed_at DATETIME(3) DEFAULT CURRENT_TIMESTAMP(3))"),
+            new Migration(2, "Secondary indexes for hot queries",
+                    "CREATE INDEX idx_bookings_customer ON bookings (customer_id)",
+                    "CREATE INDEX idx_bookings_vehicle_start ON bookings (vehicle_id, start_date)",
+                    "CREATE INDEX idx_bookings_start ON bookings (start_date)",
+                    "CREATE INDEX idx_bookings_end ON bookings (end_date)",
+                    "CREATE INDEX idx_payments_booking_date ON payments (booking_id, payment_date)",
+                    "CREATE INDEX idx_vehicles_status_category ON vehicles (availability_status, category)"),
+            new Migration(3, "Archive tables and monthly summaries for closed rentals",
+                    "CREATE TABLE IF NOT EXISTS bookings_archive (booking_id INT PRIMARY KEY, vehicle_id INT NOT NULL, customer_id INT NOT NULL, start_date DATE NOT NULL, end_date DATE NOT NULL, booking_date DATETIME, archived_at DATETIME DEFAULT CURRENT_TIMESTAMP, INDEX idx_bookings_archive_start (start_date), INDEX idx_bookings_archive_customer (customer_id))",
+                    "CREATE TABLE IF NOT EXISTS payments_archive (payment_id INT PRIMARY KEY, booking_id INT NOT NULL, amount DECIMAL(10, 2) NOT NULL, payment_date DATETIME, INDEX idx_payments_archive_booking (booking_id, payment_date))",
+                    "CREATE TABLE IF NOT EXISTS booking_month_summary (month DATE NOT NULL, category VARCHAR(50) NOT NULL, booking_count INT NOT NULL, rental_days INT NOT NULL, revenue DECIMAL(14, 2) NOT NULL, payments_total DECIMAL(14, 2) NOT NULL, PRIMARY KEY (month, category))",
+                    "CREATE TABLE IF NOT EXISTS archive_state (id INT PRIMARY KEY, archived_before DATE NOT NULL)"),
+            new Migration(4, "Row versions for optimistic concurrency",
+                    "ALTER TABLE vehicles ADD COLUMN version INT NOT NULL DEFAULT 0",
+                    "ALTER TABLE customers ADD COLUMN version INT NOT NULL DEFAULT 0"),
+            new Migration(5, "Reservation waitlist and early returns",
+                    "CREATE TABLE IF NOT EXISTS waitlist (request_id INT AUTO_INCREMENT PRIMARY KEY, customer_id INT NOT NULL, category VARCHAR(50) NOT NULL, start_date DATE NOT NULL, end_date DATE NOT NULL, priority INT NOT NULL DEFAULT 0, requested_at DATETIME(3) DEFAULT CURRENT_TIMESTAMP(3), status ENUM('WAITING', 'ASSIGNED', 'CANCELLED') NOT NULL DEFAULT 'WAITING', booking_id INT NULL, INDEX idx_waitlist_status_category (status, category, priority), FOREIGN KEY (customer_id) REFERENCES customers(customer_id) ON DELETE CASCADE)",
+                    "ALTER TABLE bookings ADD COLUMN returned_date DATE NULL"),
+            // Everything archived so far predates branches and so belongs to the single branch 1
+            new Migration(6, "Branches: branch_id on vehicles, bookings, archived bookings, waitlist and monthly summaries",
+                    "CREATE TABLE IF NOT EXISTS branches (branch_id INT PRIMARY KEY, name VARCHAR(100) NOT NULL)",
+                    "INSERT IGNORE INTO branches (branch_id, name) VALUES (1, 'Main')",
+                    "ALTER TABLE vehicles ADD COLUMN branch_id INT NOT NULL DEFAULT 1",
+                    "ALTER TABLE bookings ADD COLUMN branch_id INT NOT NULL DEFAULT 1",
+                    "ALTER TABLE bookings_archive ADD COLUMN branch_id INT NOT NULL DEFAULT 1",
+                    "ALTER TABLE waitlist ADD COLUMN branch_id INT NOT NULL DEFAULT 1",
+                    "ALTER TABLE booking_month_summary ADD COLUMN branch_id INT NOT NULL DEFAULT 1, DROP PRIMARY KEY, ADD PRIMARY KEY (month, category, branch_id)",
+                    "CREATE INDEX idx_vehicles_branch_status_category ON vehicles (branch_id, availability_status, category)",
+                    "CREATE INDEX idx_bookings_branch_start ON bookings (branch_id, start_date)",
+                    "CREATE INDEX idx_bookings_branch_end ON bookings (branch_id, end_date)",
+                    "CREATE INDEX idx_bookings_archive_branch_start ON bookings_archive (branch_id, start_date)",
+                    "CREATE INDEX idx_bookings_archive_branch_customer ON bookings_archive (branch_id, customer_id)",
+                    "CREATE INDEX idx_waitlist_branch_status ON waitlist (branch_id, status, category, priority)"),
+            new Migration(7, "Extras (additional services) on payments for reconciliation",
+                    "ALTER TABLE payments ADD COLUMN extras DECIMAL(10, 2) NOT NULL DEFAULT 0",
+                    "ALTER TABLE payments_archive ADD COLUMN extras DECIMAL(10, 2) NOT NULL DEFAULT 0"),
+            // Fees were folded into a rental payment's amount before this, so no LATE_FEE rows exist yet and
+            // bookings that are already overdue are charged from the day the migration runs
+            new Migration(8, "Automatic late fees: one payment row per overdue day, rate table and per-booking high-water mark",
+                    "ALTER TABLE payments ADD COLUMN payment_type ENUM('RENTAL', 'LATE_FEE') NOT NULL DEFAULT 'RENTAL'",
+                    "ALTER TABLE payments_archive ADD COLUMN payment_type ENUM('RENTAL', 'LATE_FEE') NOT NULL DEFAULT 'RENTAL'",
+                    "ALTER TABLE payments ADD COLUMN fee_date DATE NULL",
+                    "ALTER TABLE payments_archive ADD COLUMN fee_date DATE NULL",
+                    "CREATE UNIQUE INDEX idx_payments_fee_date ON payments (booking_id, fee_date)",
+                    "ALTER TABLE bookings ADD COLUMN late_fees_through DATE NULL",
+                    "CREATE INDEX idx_bookings_late_fees ON bookings (returned_date, late_fees_through, end_date)",
+                    "CREATE TABLE IF NOT EXISTS late_fee_rates (category VARCHAR(50) PRIMARY KEY, daily_rate DECIMAL(10, 2) NOT NULL)",
+                    "INSERT IGNORE INTO late_fee_rates (category, daily_rate) VALUES ('Car', 100), ('Bike', 60), ('Van', 150), ('Truck', 200)",
+                    "CREATE TABLE IF NOT EXISTS late_fee_settings (id TINYINT PRIMARY KEY, charge_from DATE NOT NULL)",
+                    "INSERT IGNORE INTO late_fee_settings (id, charge_from) VALUES (1, CURDATE())"),
+            new Migration(9, "Request ids so a replayed payment is applied once",
+                    "ALTER TABLE payments ADD COLUMN request_id CHAR(36) NULL",
+                    "CREATE UNIQUE INDEX idx_payments_request ON payments (request_id)"),
+            new Migration(10, "Reset marker written to the outbox by a restore",
+                    "ALTER TABLE change_log MODIFY operation ENUM('INSERT', 'UPDATE', 'DELETE', 'RESET') NOT NULL"),
+            new Migration(11, "Booking calendar tiles read per vehicle by end date",
+                    "CREATE INDEX idx_bookings_vehicle_end ON bookings (vehicle_id, end_date)")
+    );
+
+    // Applies every migration the database has not seen yet, in version order
+    static void migrate(Connection connection) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.executeUpdate("CREATE TABLE IF NOT EXISTS schema_version (version INT PRIMARY KEY, description VARCHAR(200) NOT NULL, applied_at DATETIME DEFAULT CURRENT_TIMESTAMP)");
+            stmt.executeUpdate("CREATE TABLE IF NOT EXISTS schema_migration_progress (version INT PRIMARY KEY, next_statement INT NOT NULL)");
+        }
+
+        Set<Integer> applied = new HashSet<>();
+        try (Statement stmt = connection.createStatement(); ResultSet rs = stmt.executeQuery("SELECT version FROM schema_version")) {
+            while (rs.next()) {
+                applied.add(rs.getInt("version"));
+            }
+        }
+
+        for (Migration migration : MIGRATIONS) {
+            if (applied.contains(migration.getVersion())) {
+                continue;
+            }
+            int next = progress(connection, migration.getVersion());
+            boolean resumed = next >= 0;
+            if (!resumed) {
+                next = 0;
+                setProgress(connection, "INSERT INTO schema_migration_progress (next_statement, version) VALUES (?, ?)", 0, migration.getVersion());
+            }
+            String[] statements = migration.getStatements();
+            try (Statement stmt = connection.createStatement()) {
+                for (int i = next; i < statements.length; i++) {
+                    try {
+                        stmt.executeUpdate(statements[i]);
+                    } catch (SQLException e) {
+                        if (!(resumed && i == next && ALREADY_APPLIED.contains(e.getErrorCode()))) {
+                            throw e;
+                        }
+                    }
+                    setProgress(connection, "UPDATE schema_migration_progress SET next_statement = ? WHERE version = ?", i + 1, migration.getVersion());
+                }
+            }
+            connection.setAutoCommit(false);
+            try {
+                try (PreparedStatement stmt = connection.prepareStatement("INSERT INTO schema_version (version, description) VALUES (?, ?)")) {
+                    stmt.setInt(1, migration.getVersion());
+                    stmt.setString(2, migration.getDescription());
+                    stmt.executeUpdate();
+                }
+                try (PreparedStatement stmt = connection.prepareStatement("DELETE FROM schema_migration_progress WHERE version = ?")) {
+                    stmt.setInt(1, migration.getVersion());
+                    stmt.executeUpdate();
+                }
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+            System.err.println("Applied schema migration " + migration.getVersion() + ": " + migration.getDescription()
+                    + (resumed ? " (resumed at statement " + (next + 1) + ")" : ""));
+        }
+    }
+
+    // Index of the first statement not yet run for a started migration, or -1 if it was never started
+    private static int progress(Connection connection, int version) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement("SELECT next_statement FROM schema_migration_progress WHERE version = ?")) {
+            stmt.setInt(1, version);
+            ResultSet rs = stmt.executeQuery();
+            return rs.next() ? rs.getInt(1) : -1;
+        }
+    }
+
+    private static void setProgress(Connection connection, String sql, int nextStatement, int version) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setInt(1, nextStatement);
+            stmt.setInt(2, version);
+            stmt.executeUpdate();
+        }
+    }
+
+    static class Migration {
+        private final int version;
+        private final String description;
+        private final String[] statements;
+
+        Migration(int version, String description, String... statements) {
+            this.version = version;
+            this.description = description;
+            this.statements = statements;
+        }
+
+        public int getVersion() {
+            return version;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+
+        public String[] getStatements() {
+            return statements;
+        }
+    }
+}
@@ -1,20 +1,42 @@
 package com.example.vehicle;
 
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.geometry.Insets;
 import javafx.scene.Scene;
 import javafx.scene.chart.*;
 import javafx.scene.control.*;
 import javafx.scene.layout.*;
 import javafx.stage.Stage;
+import javafx.util.StringConverter;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import java.io.BufferedWriter;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.sql.*;
 import java.time.LocalDate;
-import java.time.temporal.ChronoUnit;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
 
 public class VehicleRentalSystem extends Application {
 
@@ -34,25 +56,272 @@ public class VehicleRentalSystem extends Application {
     private ObservableList<Booking> bookingList = FXCollections.observableArrayList();
 
     private String currentRole = "";
+    private String currentUser = "";
     private ListView<Vehicle> vehicleListView;
     private ListView<Customer> customerListView;
     private ListView<Booking> bookingListView;
     private DbConnector dbConnector = new DbConnector();
+    private ChangeFeed changeFeed = new ChangeFeed(dbConnector);
+    private ReportEngine reportEngine = new ReportEngine(dbConnector);
+    private PricingEngine pricingEngine = new PricingEngine(dbConnector);
+    private DemandForecaster demandForecaster = new DemandForecaster(dbConnector);
+    private CustomerMatcher customerMatcher = new CustomerMatcher(dbConnector);
+    private ReportCache reportCache = new ReportCache(Long.getLong("vrs.reportCache.bytes", ReportCache.DEFAULT_MAX_BYTES));
+    private Label reportCacheLabel;
+    private WaitlistScheduler waitlistScheduler = new WaitlistScheduler(dbConnector.primaryOnly());
+    private LateFeeScheduler lateFeeScheduler = new LateFeeScheduler(dbConnector);
+    private final Path snapshotFile = Paths.get(dbConnector.getBranchId() == 0 ? "reference_snapshot.bin" : "reference_snapshot_branch" + dbConnector.getBranchId() + ".bin");
+    // Change id the lists are current up to; -1 until the initial load is on screen
+    private volatile long appliedChangeId = -1;
+    private final ScheduledExecutorService reconciler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "reference-reconcile");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private AuditLog auditLog;
+    private static final int AUDIT_VIEW_LIMIT = 1000;
+    private static final int MAX_CUSTOMER_SUGGESTIONS = 5;
+    private static final int FORECAST_HISTORY_DAYS = 56; // Days of actual demand shown before the forecast
+    private static final int LEAST_USED_SHOWN = 10; // Vehicles listed by name in the utilisation alert
+    private static final long PENDING_WRITE_FLUSH_MILLIS = 10_000; // How long exit waits for queued writes
+    private static final long RECONCILE_FIRST_DELAY_SECONDS = 30;
+    private static final long RECONCILE_INTERVAL_SECONDS = 15 * 60;
+    private static final long RECONCILE_RECHECK_MILLIS = 5_000; // Long enough for the feed to catch up
 
     @Override
     public void start(Stage primaryStage) {
         this.primaryStage = primaryStage;
+        Profiling.start();
+        dbConnector.initializeDatabase();
+        openAuditLog();
+        startLiveUpdates();
         createMainScene();
         createVehicleScene();
         createCustomerScene();
         createBookingScene();
         createPaymentScene();
         createReportScene();
-        primaryStage.setTitle("Vehicle Rental System");
-        primaryStage.setScene(mainScene);
+        primaryStage.setOnCloseRequest(e -> {
+            if (dbConnector.getPendingWrites() > 0 && !confirmCloseWithPendingWrites()) {
+                e.consume();
+            }
+        });
+        primaryStage.setTitle(dbConnector.getBranchId() == 0 ? "Vehicle Rental System" : "Vehicle Rental System - Branch " + dbConnector.getBranchId());
+        switchScene(mainScene, "main");
         primaryStage.show();
     }
 
+    @Override
+    public void stop() {
+        changeFeed.stop();
+        reconciler.shutdownNow();
+        waitlistScheduler.stop();
+        lateFeeScheduler.stop();
+        dbConnector.flushPendingWrites(PENDING_WRITE_FLUSH_MILLIS);
+        if (auditLog != null) {
+            auditLog.close();
+        }
+        // Closed before the initial load finished: the lists are not current up to any change id, so the
+        // previous snapshot is kept rather than overwritten with a wrong one
+        if (appliedChangeId >= 0) {
+            try {
+                ReferenceSnapshot.save(snapshotFile, appliedChangeId, new ArrayList<>(vehicleList), new ArrayList<>(customerList));
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        Profiling.stop();
+    }
+
+    // Shows vehicles and customers from the local snapshot straight away, then loads the rest in the
+    // background and keeps every list current from the change feed instead of reloading
+    private void startLiveUpdates() {
+        changeFeed.addListener(this::applyChanges);
+        changeFeed.addListener(pricingEngine);
+        changeFeed.addListener(demandForecaster);
+        changeFeed.addListener(customerMatcher);
+        changeFeed.addListener(waitlistScheduler);
+        waitlistScheduler.addListener(assignments -> {
+            changeFeed.pollNow();
+            StringBuilder message = new StringBuilder("Waitlisted requests assigned:\n");
+            for (WaitlistScheduler.Assignment assignment : assignments) {
+                message.append(assignment).append("\n");
+            }
+            Platform.runLater(() -> showAlert(message.toString()));
+        });
+        lateFeeScheduler.addListener(fees -> {
+            StringBuilder message = new StringBuilder("Late fees charged for overdue rentals:\n");
+            for (LateFeeScheduler.LateFee fee : fees) {
+                message.append(fee).append("\n");
+            }
+            Platform.runLater(() -> showAlert(message.toString()));
+        });
+
+        ReferenceSnapshot snapshot = ReferenceSnapshot.load(snapshotFile);
+        if (snapshot != null) {
+            vehicleList.setAll(snapshot.getVehicles());
+            customerList.setAll(snapshot.getCustomers());
+        }
+
+        Thread loader = new Thread(() -> {
+            // With a snapshot, the feed replays every change made since it was written (the delta sync)
+            long fromChangeId = snapshot != null ? snapshot.getChangeId() : dbConnector.getLatestChangeId();
+            List<Vehicle> vehicles = snapshot == null ? dbConnector.getAllVehicles() : null;
+            List<Customer> customers = snapshot == null ? dbConnector.getAllCustomers() : null;
+            List<Booking> bookings = dbConnector.getAllBookings();
+            pricingEngine.reload();
+            demandForecaster.reload();
+            customerMatcher.reload();
+            Platform.runLater(() -> {
+                if (vehicles != null) {
+                    vehicleList.setAll(vehicles);
+                    customerList.setAll(customers);
+                }
+                bookingList.setAll(bookings);
+                appliedChangeId = fromChangeId;
+            });
+            changeFeed.startFrom(fromChangeId);
+            // Vehicles may have been freed while no terminal was running
+            waitlistScheduler.requestRun();
+            lateFeeScheduler.start();
+            // A snapshot can be wrong in ways the feed cannot repair (rows changed without an outbox row), so
+            // the lists are checked against the database once they are up and then every few minutes
+            reconciler.scheduleWithFixedDelay(this::reconcileReferenceLists, RECONCILE_FIRST_DELAY_SECONDS,
+                    RECONCILE_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        }, "initial-load");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    // Compares the vehicle and customer lists with the database by count and checksum. The feed may be
+    // between polls, so a mismatch is checked again a little later before both lists are reloaded.
+    private void reconcileReferenceLists() {
+        try {
+            for (int attempt = 0; ; attempt++) {
+                ReferenceSnapshot.Checksum expected = dbConnector.getReferenceChecksum();
+                if (expected == null) {
+                    return;
+                }
+                CompletableFuture<ReferenceSnapshot.Checksum> actual = new CompletableFuture<>();
+                Platform.runLater(() -> actual.complete(ReferenceSnapshot.checksum(vehicleList, customerList)));
+                if (expected.equals(actual.get())) {
+                    return;
+                }
+                if (attempt == 1) {
+                    System.err.println("Vehicle and customer lists are out of step with the database (" + actual.get()
+                            + " here, " + expected + " there); reloading them");
+                    break;
+                }
+                Thread.sleep(RECONCILE_RECHECK_MILLIS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (ExecutionException e) {
+            e.printStackTrace();
+            return;
+        }
+        long resumeId = changeFeed.getResumeId();
+        ReferenceSnapshot reference = dbConnector.readReference();
+        if (reference == null) {
+            return;
+        }
+        Platform.runLater(() -> {
+            vehicleList.setAll(reference.getVehicles());
+            customerList.setAll(reference.getCustomers());
+            appliedChangeId = Math.min(appliedChangeId, resumeId);
+            reportCache.invalidate(List.of("vehicles", "customers"));
+        });
+    }
+
+    // Runs on the change feed thread: fetches the changed rows, then patches the lists on the FX thread
+    private void applyChanges(List<ChangeFeed.Change> changes) {
+        if (changes.stream().anyMatch(ChangeFeed.Change::isReset)) {
+            // The database was restored: nothing in the lists can be patched, so they are loaded again
+            List<Vehicle> vehicles = dbConnector.getAllVehicles();
+            List<Customer> customers = dbConnector.getAllCustomers();
+            List<Booking> bookings = dbConnector.getAllBookings();
+            long resumeId = changeFeed.getResumeId();
+            Platform.runLater(() -> {
+                vehicleList.setAll(vehicles);
+                customerList.setAll(customers);
+                bookingList.setAll(bookings);
+                appliedChangeId = resumeId;
+                reportCache.invalidate(List.of("vehicles", "customers", "bookings", "payments"));
+            });
+            return;
+        }
+
+        Map<String, ChangeFeed.Change> latest = new LinkedHashMap<>();
+        for (ChangeFeed.Change change : changes) {
+            latest.put(change.getTableName() + "#" + change.getEntityId(), change);
+        }
+
+        List<Runnable> updates = new ArrayList<>();
+        for (ChangeFeed.Change change : latest.values()) {
+            int id = change.getEntityId();
+            String idText = String.valueOf(id);
+            switch (change.getTableName()) {
+                case "vehicles" -> {
+                    Vehicle vehicle = change.isDelete() ? null : dbConnector.getVehicleById(id);
+                    updates.add(() -> {
+                        replaceOrRemove(vehicleList, vehicle, v -> v.getId() == id);
+                        if (vehicle == null) {
+                            // Its bookings have DELETE rows of their own, possibly in a later batch
+                            bookingList.removeIf(b -> b.getVehicleId().equals(idText));
+                        }
+                    });
+                }
+                case "customers" -> {
+                    Customer customer = change.isDelete() ? null : dbConnector.getCustomerById(id);
+                    updates.add(() -> {
+                        replaceOrRemove(customerList, customer, c -> c.getCustomerId() == id);
+                        if (customer == null) {
+                            bookingList.removeIf(b -> b.getCustomerId().equals(idText));
+                        }
+                    });
+                }
+                case "bookings" -> {
+                    Booking booking = change.isDelete() ? null : dbConnector.getBookingById(id);
+                    updates.add(() -> replaceOrRemove(bookingList, booking, b -> b.getBookingId().equals(idText)));
+                }
+                default -> {
+                    // Payments are not shown in any list
+                }
+            }
+        }
+
+        Set<String> tables = new HashSet<>();
+        for (ChangeFeed.Change change : changes) {
+            tables.add(change.getTableName());
+        }
+        long resumeId = changeFeed.getResumeId();
+        Platform.runLater(() -> {
+            updates.forEach(Runnable::run);
+            appliedChangeId = resumeId;
+            // Reports snapshot the lists on this thread, so cached results are dropped in the same step as
+            // the lists change; a report can never cache a snapshot taken before a change it missed
+            reportCache.invalidate(tables);
+        });
+    }
+
+    // Replaces the matching element in place, appends it when new, or removes it when the row is gone
+    private <T> void replaceOrRemove(ObservableList<T> list, T item, Predicate<T> sameId) {
+        for (int i = 0; i < list.size(); i++) {
+            if (sameId.test(list.get(i))) {
+                if (item == null) {
+                    list.remove(i);
+                } else {
+                    list.set(i, item);
+                }
+                return;
+            }
+        }
+        if (item != null) {
+            list.add(item);
+        }
+    }
+
     // Main scene setup
     private void createMainScene() {
         VBox layout = new VBox(10);
@@ -94,7 +363,7 @@ public class VehicleRentalSystem extends Application {
 
         if (dbConnector.isUsernameAvailable(username)) {
             dbConnector.registerUser(username, password, selectedRole);
-            saveToCSV("User Registration", username, selectedRole);
+            audit("User Registration", List.of(AuditLog.entity("user", username)), selectedRole);
             showAlert("Registration successful! You can log in now.");
         } else {
             showAlert("Username is already taken.");
@@ -114,8 +383,10 @@ public class VehicleRentalSystem extends Application {
 
         if (dbConnector.validateUser(username, password)) {
             currentRole = selectedRole;
+            currentUser = username;
+            audit("Login", List.of(AuditLog.entity("user", username)), selectedRole);
             createDashboardScene();
-            primaryStage.setScene(dashboardScene);
+            switchScene(dashboardScene, "dashboard");
         } else {
             showAlert("Login failed: Incorrect username or password.");
         }
@@ -130,42 +401,35 @@ public class VehicleRentalSystem extends Application {
 
         if ("Admin".equals(currentRole)) {
             Button vehicleButton = new Button("Vehicle Management");
-            vehicleButton.setOnAction(e -> {
-                refreshVehicleList();
-                primaryStage.setScene(vehicleScene);
-            });
+            vehicleButton.setOnAction(e -> switchScene(vehicleScene, "vehicle"));
 
             Button customerButton = new Button("Customer Management");
-            customerButton.setOnAction(e -> {
-                refreshCustomerList();
-                primaryStage.setScene(customerScene);
-            });
+            customerButton.setOnAction(e -> switchScene(customerScene, "customer"));
 
             Button paymentButton = new Button("Payments & Billing");
-            paymentButton.setOnAction(e -> primaryStage.setScene(paymentScene));
+            paymentButton.setOnAction(e -> switchScene(paymentScene, "payment"));
 
             Button reportButton = new Button("Reports & Data");
-            reportButton.setOnAction(e -> primaryStage.setScene(reportScene));
+            reportButton.setOnAction(e -> switchScene(reportScene, "report"));
 
             layout.getChildren().addAll(title, vehicleButton, customerButton, paymentButton, reportButton);
         } else if ("Employee".equals(currentRole)) {
             Button bookingButton = new Button("Booking System");
-            bookingButton.setOnAction(e -> {
-                refreshBookingList();
-                primaryStage.setScene(bookingScene);
-            });
+            bookingButton.setOnAction(e -> switchScene(bookingScene, "booking"));
 
             Button paymentButton = new Button("Payments & Billing");
-            paymentButton.setOnAction(e -> primaryStage.setScene(paymentScene));
+            paymentButton.setOnAction(e -> switchScene(paymentScene, "payment"));
 
             layout.getChildren().addAll(title, bookingButton, paymentButton);
         }
 
         Button logoutButton = new Button("Logout");
         logoutButton.setOnAction(e -> {
+            audit("Logout", List.of(AuditLog.entity("user", currentUser)));
             currentRole = "";
+            currentUser = "";
             createMainScene();
-            primaryStage.setScene(mainScene);
+            switchScene(mainScene, "main");
         });
 
         layout.getChildren().add(logoutButton);
@@ -205,10 +469,14 @@ public class VehicleRentalSystem extends Application {
                     double pricePerDay = Double.parseDouble(rentalPriceString);
                     boolean availability = availabilityCheckBox.isSelected();
 
-                    dbConnector.addVehicle(brandModel, pricePerDay, availability, category);
-                    saveToCSV("Vehicle Added", brandModel, String.valueOf(pricePerDay), String.valueOf(availability), category);
+                    int vehicleId = dbConnector.addVehicle(brandModel, pricePerDay, availability, category);
+                    if (vehicleId == 0) {
+                        showAlert("The vehicle could not be saved. Please try again.");
+                        return;
+                    }
+                    audit("Vehicle Added", List.of(AuditLog.entity("vehicle", vehicleId)), brandModel, "R" + pricePerDay, availability ? "Available" : "Not Available", category);
                     clearVehicleFields();
-                    refreshVehicleList();
+                    changeFeed.pollNow();
                     showAlert("Vehicle added successfully!");
                 } else {
                     showAlert("Please fill all fields.");
@@ -240,11 +508,33 @@ public class VehicleRentalSystem extends Application {
                         double pricePerDay = Double.parseDouble(rentalPriceString);
                         boolean availability = availabilityCheckBox.isSelected();
 
-                        // Correctly referencing the ID
-                        dbConnector.updateVehicle(selectedVehicle.getId(), brandModel, pricePerDay, availability, category);
-                        clearVehicleFields();
-                        refreshVehicleList();
-                        showAlert("Vehicle updated successfully!");
+                        // Only succeeds if nobody saved the vehicle since it was loaded into the list
+                        UpdateResult result = dbConnector.updateVehicle(selectedVehicle.getId(), selectedVehicle.getVersion(), brandModel, pricePerDay, availability, category);
+                        if (result == UpdateResult.CONFLICT) {
+                            Vehicle saved = dbConnector.getVehicleById(selectedVehicle.getId());
+                            changeFeed.pollNow();
+                            if (saved == null) {
+                                showAlert("This vehicle was deleted by someone else.");
+                                return;
+                            }
+                            String edited = brandModel + " - " + category + " - R" + pricePerDay + (availability ? " (Available)" : " (Not Available)");
+                            if (!confirmOverwrite("Vehicle " + saved.getId(), saved.toString(), edited)) {
+                                fillVehicleForm(saved);
+                                return;
+                            }
+                            result = dbConnector.updateVehicle(saved.getId(), saved.getVersion(), brandModel, pricePerDay, availability, category);
+                        }
+                        if (result == UpdateResult.UPDATED) {
+                            audit("Vehicle Updated", List.of(AuditLog.entity("vehicle", selectedVehicle.getId())),
+                                    brandModel, "R" + pricePerDay, availability ? "Available" : "Not Available", category);
+                            clearVehicleFields();
+                            changeFeed.pollNow();
+                            showAlert("Vehicle updated successfully!");
+                        } else if (result == UpdateResult.CONFLICT) {
+                            showAlert("The vehicle changed again while you were deciding. Please review it and try again.");
+                        } else {
+                            showAlert("The vehicle could not be updated.");
+                        }
                     } else {
                         showAlert("Please fill all fields.");
                     }
@@ -260,9 +550,13 @@ public class VehicleRentalSystem extends Application {
         deleteButton.setOnAction(e -> {
             Vehicle selectedVehicle = vehicleListView.getSelectionModel().getSelectedItem();
             if (selectedVehicle != null) {
-                dbConnector.deleteVehicle(selectedVehicle);
+                if (!dbConnector.deleteVehicle(selectedVehicle)) {
+                    showAlert("The vehicle could not be deleted; it may already have been removed.");
+                    return;
+                }
+                audit("Vehicle Deleted", List.of(AuditLog.entity("vehicle", selectedVehicle.getId())), selectedVehicle.getBrandModel());
                 clearVehicleFields();
-                refreshVehicleList();
+                changeFeed.pollNow();
                 showAlert("Vehicle deleted successfully!");
             } else {
                 showAlert("Please select a vehicle to delete.");
@@ -270,7 +564,7 @@ public class VehicleRentalSystem extends Application {
         });
 
         Button backButton = new Button("Back to Dashboard");
-        backButton.setOnAction(e -> primaryStage.setScene(dashboardScene));
+        backButton.setOnAction(e -> switchScene(dashboardScene, "dashboard"));
 
         layout.getChildren().addAll(title, vehicleIdField, brandModelField, categoryComboBox, rentalPriceField, availabilityCheckBox, addButton, updateButton, deleteButton, vehicleListView, backButton);
         vehicleScene = new Scene(layout, 400, 450);
@@ -306,15 +600,47 @@ public class VehicleRentalSystem extends Application {
         licenseNumberField = new TextField();
         licenseNumberField.setPromptText("Enter Driving License Number");
 
+        // Existing customers that look like the one being typed, so repeat walk-ins are not registered twice
+        Label suggestionLabel = new Label("Possible existing customers:");
+        ListView<CustomerMatcher.Match> suggestionListView = new ListView<>();
+        suggestionListView.setPrefHeight(90);
+        customerNameField.textProperty().addListener((obs, oldText, newText) ->
+                suggestionListView.getItems().setAll(suggestCustomers()));
+        contactInfoField.textProperty().addListener((obs, oldText, newText) ->
+                suggestionListView.getItems().setAll(suggestCustomers()));
+        suggestionListView.setOnMouseClicked(e -> {
+            CustomerMatcher.Match match = suggestionListView.getSelectionModel().getSelectedItem();
+            if (match != null) {
+                Customer existing = match.getCustomer();
+                for (Customer customer : customerList) {
+                    if (customer.getCustomerId() == existing.getCustomerId()) {
+                        customerListView.getSelectionModel().select(customer);
+                    }
+                }
+                customerNameField.setText(existing.getCustomerName());
+                contactInfoField.setText(existing.getContactInfo());
+                licenseNumberField.setText(existing.getLicenseNumber());
+            }
+        });
+
         Button addCustomerButton = new Button("Register Customer");
         addCustomerButton.setOnAction(e -> {
             if (!customerNameField.getText().isEmpty() &&
                     !contactInfoField.getText().isEmpty() &&
                     !licenseNumberField.getText().isEmpty()) {
-                dbConnector.addCustomer(customerNameField.getText(), contactInfoField.getText(), licenseNumberField.getText());
-                saveToCSV("Customer Added", customerNameField.getText(), contactInfoField.getText(), licenseNumberField.getText());
+                List<CustomerMatcher.Match> matches = customerMatcher.suggest(customerNameField.getText(), contactInfoField.getText(), 1);
+                if (!matches.isEmpty() && matches.get(0).getScore() >= CustomerMatcher.DUPLICATE_THRESHOLD
+                        && !confirmNewCustomer(matches.get(0))) {
+                    return;
+                }
+                int customerId = dbConnector.addCustomer(customerNameField.getText(), contactInfoField.getText(), licenseNumberField.getText());
+                if (customerId == 0) {
+                    showAlert("The customer could not be saved. The licence number may already be registered.");
+                    return;
+                }
+                audit("Customer Added", List.of(AuditLog.entity("customer", customerId)), customerNameField.getText(), contactInfoField.getText(), licenseNumberField.getText());
                 clearCustomerFields();
-                refreshCustomerList();
+                changeFeed.pollNow();
             } else {
                 showAlert("Please fill all fields.");
             }
@@ -324,12 +650,37 @@ public class VehicleRentalSystem extends Application {
         updateCustomerButton.setOnAction(e -> {
             Customer selectedCustomer = customerListView.getSelectionModel().getSelectedItem();
             if (selectedCustomer != null) {
-                dbConnector.updateCustomer(selectedCustomer.getCustomerId(),
-                        customerNameField.getText(),
-                        contactInfoField.getText(),
-                        licenseNumberField.getText());
-                refreshCustomerList();
-                clearCustomerFields();
+                String customerName = customerNameField.getText();
+                String contactInfo = contactInfoField.getText();
+                String licenseNumber = licenseNumberField.getText();
+                UpdateResult result = dbConnector.updateCustomer(selectedCustomer.getCustomerId(), selectedCustomer.getVersion(),
+                        customerName, contactInfo, licenseNumber);
+                if (result == UpdateResult.CONFLICT) {
+                    Customer saved = dbConnector.getCustomerById(selectedCustomer.getCustomerId());
+                    changeFeed.pollNow();
+                    if (saved == null) {
+                        showAlert("This customer was deleted by someone else.");
+                        return;
+                    }
+                    String edited = customerName + " - " + contactInfo + " (License: " + licenseNumber + ")";
+                    if (!confirmOverwrite("Customer " + saved.getCustomerName(), saved.toString(), edited)) {
+                        customerNameField.setText(saved.getCustomerName());
+                        contactInfoField.setText(saved.getContactInfo());
+                        licenseNumberField.setText(saved.getLicenseNumber());
+                        return;
+                    }
+                    result = dbConnector.updateCustomer(saved.getCustomerId(), saved.getVersion(), customerName, contactInfo, licenseNumber);
+                }
+                if (result == UpdateResult.UPDATED) {
+                    audit("Customer Updated", List.of(AuditLog.entity("customer", selectedCustomer.getCustomerId())),
+                            customerName, contactInfo, licenseNumber);
+                    changeFeed.pollNow();
+                    clearCustomerFields();
+                } else if (result == UpdateResult.CONFLICT) {
+                    showAlert("The customer changed again while you were deciding. Please review it and try again.");
+                } else {
+                    showAlert("The customer could not be updated.");
+                }
             } else {
                 showAlert("Please select a customer to update.");
             }
@@ -350,18 +701,22 @@ public class VehicleRentalSystem extends Application {
         deleteCustomerButton.setOnAction(e -> {
             Customer selectedCustomer = customerListView.getSelectionModel().getSelectedItem();
             if (selectedCustomer != null) {
-                dbConnector.deleteCustomer(selectedCustomer);
-                refreshCustomerList();
+                if (!dbConnector.deleteCustomer(selectedCustomer)) {
+                    showAlert("The customer could not be deleted; they may already have been removed.");
+                    return;
+                }
+                audit("Customer Deleted", List.of(AuditLog.entity("customer", selectedCustomer.getCustomerId())), selectedCustomer.getCustomerName());
+                changeFeed.pollNow();
             } else {
                 showAlert("Please select a customer to delete.");
             }
         });
 
         Button backButton = new Button("Back to Dashboard");
-        backButton.setOnAction(e -> primaryStage.setScene(dashboardScene));
+        backButton.setOnAction(e -> switchScene(dashboardScene, "dashboard"));
 
         layout.getChildren().addAll(title, customerNameField, contactInfoField,
-                licenseNumberField, addCustomerButton,
+                licenseNumberField, suggestionLabel, suggestionListView, addCustomerButton,
                 updateCustomerButton, customerListView, deleteCustomerButton, backButton);
 
         customerScene = new Scene(layout, 400, 500);
@@ -370,6 +725,42 @@ public class VehicleRentalSystem extends Application {
 
     }
 
+    // Matches for the name and contact being typed, leaving out the customer already selected for editing
+    private List<CustomerMatcher.Match> suggestCustomers() {
+        String name = customerNameField.getText();
+        String contact = contactInfoField.getText();
+        if (name.trim().length() < 3 && contact.trim().length() < 3) {
+            return List.of();
+        }
+        Customer selected = customerListView == null ? null : customerListView.getSelectionModel().getSelectedItem();
+        List<CustomerMatcher.Match> matches = new ArrayList<>();
+        for (CustomerMatcher.Match match : customerMatcher.suggest(name, contact, MAX_CUSTOMER_SUGGESTIONS + 1)) {
+            if (selected == null || match.getCustomer().getCustomerId() != selected.getCustomerId()) {
+                matches.add(match);
+            }
+        }
+        return matches.size() > MAX_CUSTOMER_SUGGESTIONS ? matches.subList(0, MAX_CUSTOMER_SUGGESTIONS) : matches;
+    }
+
+    // Queued payments and returns exist only in memory; closing while the database is still down loses them
+    private boolean confirmCloseWithPendingWrites() {
+        ButtonType close = new ButtonType("Close Anyway");
+        Alert alert = new Alert(Alert.AlertType.CONFIRMATION, "", close, ButtonType.CANCEL);
+        alert.setTitle("Unsaved Work");
+        alert.setHeaderText(dbConnector.getPendingWrites() + " queued payment(s) or return(s) have not reached the database yet.");
+        alert.setContentText("Closing waits a few seconds for the database; anything still queued then is lost and has to be entered again.");
+        return alert.showAndWait().orElse(ButtonType.CANCEL) == close;
+    }
+
+    private boolean confirmNewCustomer(CustomerMatcher.Match match) {
+        ButtonType register = new ButtonType("Register Anyway");
+        Alert alert = new Alert(Alert.AlertType.CONFIRMATION, "", register, ButtonType.CANCEL);
+        alert.setTitle("Possible Duplicate");
+        alert.setHeaderText("This looks like an existing customer:\n" + match);
+        alert.setContentText("Select them from the suggestions instead, or register a new customer anyway?");
+        return alert.showAndWait().orElse(ButtonType.CANCEL) == register;
+    }
+
     private void clearCustomerFields() {
         customerNameField.clear();
         contactInfoField.clear();
@@ -401,11 +792,20 @@ public class VehicleRentalSystem extends Application {
                 LocalDate endDate = endDatePicker.getValue();
                 if (!vehicleId.isEmpty() && !customerId.isEmpty() && startDate != null && endDate != null) {
                     if (endDate.isAfter(startDate)) {
-                        dbConnector.bookVehicle(vehicleId, customerId, startDate, endDate);
-                        saveToCSV("Vehicle Booked", vehicleId, customerId, startDate.toString(), endDate.toString());
+                        BookingResult result = dbConnector.bookVehicle(Integer.parseInt(vehicleId), Integer.parseInt(customerId), startDate, endDate);
+                        if (result == BookingResult.UNAVAILABLE) {
+                            offerAlternatives(Integer.parseInt(vehicleId), Integer.parseInt(customerId), startDate, endDate);
+                            return;
+                        }
+                        if (result != BookingResult.BOOKED) {
+                            showAlert(failureMessage("The booking could not be saved."));
+                            return;
+                        }
+                        audit("Vehicle Booked", List.of(AuditLog.entity("vehicle", vehicleId), AuditLog.entity("customer", customerId)),
+                                startDate.toString(), endDate.toString());
                         showAlert("Vehicle booked successfully!");
                         clearBookingFields(startDatePicker, endDatePicker);
-                        refreshBookingList();
+                        changeFeed.pollNow();
                     } else {
                         showAlert("End date must be after the start date.");
                     }
@@ -417,6 +817,17 @@ public class VehicleRentalSystem extends Application {
             }
         });
 
+        Button quoteButton = new Button("Show Prices");
+        quoteButton.setOnAction(e -> {
+            LocalDate startDate = startDatePicker.getValue();
+            LocalDate endDate = endDatePicker.getValue();
+            if (startDate == null || endDate == null || !endDate.isAfter(startDate)) {
+                showAlert("Select a start date and a later end date to see prices.");
+                return;
+            }
+            showQuotes(startDate, endDate);
+        });
+
         bookingListView = new ListView<>();
         bookingListView.setItems(bookingList);
         bookingListView.setOnMouseClicked(e -> {
@@ -436,9 +847,22 @@ public class VehicleRentalSystem extends Application {
                 LocalDate startDate = startDatePicker.getValue();
                 LocalDate endDate = endDatePicker.getValue();
                 if (endDate.isAfter(startDate)) {
-                    dbConnector.updateBooking(selectedBooking.getBookingId(), startDate, endDate);
+                    BookingResult result = dbConnector.updateBooking(Integer.parseInt(selectedBooking.getBookingId()), startDate, endDate);
+                    if (result == BookingResult.NOT_FOUND) {
+                        showAlert("The booking no longer exists; it may have been cancelled or archived.");
+                        return;
+                    }
+                    if (result == BookingResult.UNAVAILABLE) {
+                        showAlert("The vehicle is already booked for part of those dates.");
+                        return;
+                    }
+                    if (result != BookingResult.BOOKED) {
+                        showAlert(failureMessage("The booking could not be updated."));
+                        return;
+                    }
+                    audit("Booking Updated", bookingEntities(selectedBooking), startDate.toString(), endDate.toString());
                     showAlert("Booking updated successfully!");
-                    refreshBookingList();
+                    changeFeed.pollNow();
                 } else {
                     showAlert("End date must be after the start date.");
                 }
@@ -451,19 +875,59 @@ public class VehicleRentalSystem extends Application {
         deleteBookingButton.setOnAction(e -> {
             Booking selectedBooking = bookingListView.getSelectionModel().getSelectedItem();
             if (selectedBooking != null) {
-                dbConnector.deleteBooking(selectedBooking);
-                refreshBookingList();
+                if (!dbConnector.deleteBooking(selectedBooking)) {
+                    showAlert("The booking could not be cancelled; it may already have been removed.");
+                    return;
+                }
+                audit("Booking Cancelled", bookingEntities(selectedBooking),
+                        selectedBooking.getStartDate().toString(), selectedBooking.getEndDate().toString());
+                changeFeed.pollNow();
             } else {
                 showAlert("Please select a booking to cancel.");
             }
         });
 
+        Button returnButton = new Button("Return Vehicle");
+        returnButton.setOnAction(e -> {
+            Booking selectedBooking = bookingListView.getSelectionModel().getSelectedItem();
+            if (selectedBooking != null) {
+                WriteResult result = dbConnector.returnVehicle(Integer.parseInt(selectedBooking.getBookingId()), LocalDate.now());
+                if (result != WriteResult.FAILED) {
+                    audit("Vehicle Returned", bookingEntities(selectedBooking), LocalDate.now().toString(), result.name());
+                }
+                if (result == WriteResult.SAVED) {
+                    showAlert("Vehicle returned. Any remaining days are released to the waitlist.");
+                    changeFeed.pollNow();
+                } else if (result == WriteResult.QUEUED) {
+                    showAlert("The database is unavailable. The return has been queued and will be saved automatically.");
+                } else {
+                    showAlert("The return could not be recorded.");
+                }
+            } else {
+                showAlert("Please select a booking to return.");
+            }
+        });
+
+        Button waitlistButton = new Button("Waitlist");
+        waitlistButton.setOnAction(e -> {
+            List<WaitlistScheduler.Request> requests = dbConnector.getWaitingRequests();
+            StringBuilder message = new StringBuilder(requests.isEmpty() ? "The waitlist is empty." : "Waiting requests:\n");
+            for (WaitlistScheduler.Request request : requests) {
+                message.append(request).append("\n");
+            }
+            showAlert(message.toString());
+        });
+
+        Button calendarButton = new Button("Booking Calendar");
+        calendarButton.setOnAction(e -> showBookingTimeline());
+
         Button backButton = new Button("Back to Dashboard");
-        backButton.setOnAction(e -> primaryStage.setScene(dashboardScene));
+        backButton.setOnAction(e -> switchScene(dashboardScene, "dashboard"));
 
         layout.getChildren().addAll(title, bookingVehicleIdField, bookingCustomerIdField,
                 startDateLabel, startDatePicker, endDateLabel, endDatePicker,
-                bookButton, bookingListView, updateBookingButton, deleteBookingButton, backButton);
+                bookButton, quoteButton, bookingListView, updateBookingButton, deleteBookingButton,
+                returnButton, waitlistButton, calendarButton, backButton);
 
         bookingScene = new Scene(layout, 400, 600);
 
@@ -471,6 +935,110 @@ public class VehicleRentalSystem extends Application {
 
     }
 
+    // Vehicles by day in a separate window; it refetches the bookings in view whenever the change feed
+    // reports booking changes, until it is closed
+    private void showBookingTimeline() {
+        BookingTimeline timeline = new BookingTimeline(dbConnector, new ArrayList<>(vehicleList));
+        ChangeFeed.Listener listener = changes -> {
+            for (ChangeFeed.Change change : changes) {
+                if (change.getTableName().equals("bookings") || change.isReset()) {
+                    Platform.runLater(timeline::invalidate);
+                    return;
+                }
+            }
+        };
+        changeFeed.addListener(listener);
+
+        Stage timelineStage = new Stage();
+        timelineStage.setTitle("Booking Calendar");
+        timelineStage.setScene(new Scene(timeline, 1100, 650));
+        timelineStage.setOnHidden(e -> {
+            changeFeed.removeListener(listener);
+            timeline.close();
+        });
+        timelineStage.show();
+    }
+
+    // The requested vehicle is taken: suggest free vehicles of the same category, or queue the request
+    private void offerAlternatives(int vehicleId, int customerId, LocalDate startDate, LocalDate endDate) {
+        Vehicle requested = dbConnector.getVehicleById(vehicleId);
+        if (requested == null) {
+            showAlert("Vehicle " + vehicleId + " does not exist.");
+            return;
+        }
+        List<Integer> busy = new ArrayList<>();
+        for (Booking booking : dbConnector.getBookingsOverlapping(startDate, endDate)) {
+            busy.add(Integer.parseInt(booking.getVehicleId()));
+        }
+        StringBuilder alternatives = new StringBuilder();
+        for (Vehicle vehicle : dbConnector.getAvailableVehicles()) {
+            if (vehicle.getCategory().equals(requested.getCategory()) && !busy.contains(vehicle.getId())) {
+                alternatives.append(vehicle.getId()).append(" - ").append(vehicle.getBrandModel()).append("\n");
+            }
+        }
+        if (alternatives.length() > 0) {
+            showAlert("Vehicle " + vehicleId + " is not free for those dates. Free " + requested.getCategory() + " vehicles:\n" + alternatives);
+            return;
+        }
+        if (dbConnector.getBranchId() != 0) {
+            String elsewhere = freeAtOtherBranches(requested.getCategory(), startDate, endDate);
+            if (!elsewhere.isEmpty()) {
+                showAlert("No " + requested.getCategory() + " vehicle is free here. Free at other branches:\n" + elsewhere);
+                return;
+            }
+        }
+
+        ButtonType join = new ButtonType("Join Waitlist");
+        Alert alert = new Alert(Alert.AlertType.CONFIRMATION, "", join, ButtonType.CANCEL);
+        alert.setTitle("Fully Booked");
+        alert.setHeaderText("No " + requested.getCategory() + " vehicle is free from " + startDate + " to " + endDate + ".");
+        alert.setContentText("Add the request to the waitlist? It is booked automatically as soon as a vehicle frees up.");
+        if (alert.showAndWait().orElse(ButtonType.CANCEL) == join) {
+            if (dbConnector.addToWaitlist(customerId, requested.getCategory(), startDate, endDate, 0)) {
+                audit("Waitlisted", List.of(AuditLog.entity("customer", customerId), AuditLog.entity("vehicle", vehicleId)),
+                        requested.getCategory(), startDate.toString(), endDate.toString());
+                showAlert("Request added to the " + requested.getCategory() + " waitlist.");
+                waitlistScheduler.requestRun();
+            } else {
+                showAlert("The request could not be added to the waitlist.");
+            }
+        }
+    }
+
+    // Asks every other branch in parallel for free vehicles of the category
+    private String freeAtOtherBranches(String category, LocalDate startDate, LocalDate endDate) {
+        List<DbConnector> others = new ArrayList<>(dbConnector.allBranches());
+        others.removeIf(branch -> branch.getBranchId() == dbConnector.getBranchId());
+        List<String> found = BranchFanOut.merge(others, branch -> {
+            List<Integer> busy = new ArrayList<>();
+            for (Booking booking : branch.getBookingsOverlapping(startDate, endDate)) {
+                busy.add(Integer.parseInt(booking.getVehicleId()));
+            }
+            List<String> free = new ArrayList<>();
+            for (Vehicle vehicle : branch.getAvailableVehicles()) {
+                if (vehicle.getCategory().equals(category) && !busy.contains(vehicle.getId())) {
+                    free.add("Branch " + branch.getBranchId() + ": " + vehicle.getId() + " - " + vehicle.getBrandModel());
+                }
+            }
+            return free;
+        });
+        return String.join("\n", found);
+    }
+
+    // Lists every available vehicle with its dynamic daily rate for the selected dates
+    private void showQuotes(LocalDate startDate, LocalDate endDate) {
+        StringBuilder quotes = new StringBuilder("Daily rates from " + startDate + " to " + endDate + ":\n");
+        for (Vehicle vehicle : vehicleList) {
+            if (vehicle.isAvailable()) {
+                quotes.append(vehicle.getId()).append(" - ").append(vehicle.getBrandModel())
+                        .append(" (").append(vehicle.getCategory()).append("): R")
+                        .append(pricingEngine.quote(vehicle, startDate, endDate))
+                        .append(" (list R").append(vehicle.getRentalPrice()).append(")\n");
+            }
+        }
+        showAlert(quotes.toString());
+    }
+
     // Clear booking fields
     private void clearBookingFields(DatePicker startDatePicker, DatePicker endDatePicker) {
         bookingVehicleIdField.clear();
@@ -494,10 +1062,9 @@ public class VehicleRentalSystem extends Application {
         paymentMethodComboBox.getItems().addAll("Cash", "Credit Card", "Online");
         paymentMethodComboBox.setPromptText("Select Payment Method");
 
-        // Additional services and late fees checkboxes
+        // Additional services checkboxes; late fees are charged automatically by the late fee scheduler
         CheckBox additionalService1CheckBox = new CheckBox("GPS Rental (R50)");
         CheckBox additionalService2CheckBox = new CheckBox("Child Seat (R30)");
-        CheckBox lateFeeCheckBox = new CheckBox("Late Fee (R100)");
 
         Button payButton = new Button("Process Payment");
         payButton.setOnAction(e -> {
@@ -510,29 +1077,35 @@ public class VehicleRentalSystem extends Application {
                     double baseAmount = Double.parseDouble(amountString);
                     double additionalServicesTotal = 0;
 
-                    // Calculate additional services and late fees
+                    // Calculate additional services
                     if (additionalService1CheckBox.isSelected()) {
                         additionalServicesTotal += 50; // Cost for GPS
                     }
                     if (additionalService2CheckBox.isSelected()) {
                         additionalServicesTotal += 30; // Cost for Child Seat
                     }
-                    if (lateFeeCheckBox.isSelected()) {
-                        additionalServicesTotal += 100; // Late fee
-                    }
 
                     double totalAmount = baseAmount + additionalServicesTotal; // Total amount to pay
-                    dbConnector.processPayment(bookingId, totalAmount);
-                    generateInvoice(bookingId, totalAmount, paymentMethod, additionalServicesTotal);
+                    WriteResult result = dbConnector.processPayment(Integer.parseInt(bookingId), totalAmount, additionalServicesTotal);
+                    if (result == WriteResult.FAILED) {
+                        showAlert(failureMessage("The payment could not be saved."));
+                        return;
+                    }
+                    audit("Payment", List.of(AuditLog.entity("booking", bookingId)),
+                            "R" + totalAmount, "extras R" + additionalServicesTotal, paymentMethod, result.name());
+                    if (result == WriteResult.QUEUED) {
+                        showAlert("The database is unavailable. The payment has been queued and will be saved automatically.");
+                    }
+                    generateInvoice(bookingId, totalAmount, paymentMethod, additionalServicesTotal,
+                            dbConnector.getLateFees(Integer.parseInt(bookingId)));
                     paymentBookingIdField.clear();
                     paymentAmountField.clear();
                     paymentMethodComboBox.setValue(null);
                     additionalService1CheckBox.setSelected(false);
                     additionalService2CheckBox.setSelected(false);
-                    lateFeeCheckBox.setSelected(false);
                     showAlert("Payment processed successfully!");
                 } catch (NumberFormatException ex) {
-                    showAlert("Amount must be a valid number.");
+                    showAlert("Booking ID and amount must be valid numbers.");
                 }
             } else {
                 showAlert("Please enter Booking ID, Amount, and select a payment method.");
@@ -540,10 +1113,10 @@ public class VehicleRentalSystem extends Application {
         });
 
         Button backButton = new Button("Back to Dashboard");
-        backButton.setOnAction(e -> primaryStage.setScene(dashboardScene));
+        backButton.setOnAction(e -> switchScene(dashboardScene, "dashboard"));
 
         layout.getChildren().addAll(title, paymentBookingIdField, paymentAmountField, paymentMethodComboBox,
-                additionalService1CheckBox, additionalService2CheckBox, lateFeeCheckBox, payButton, backButton);
+                additionalService1CheckBox, additionalService2CheckBox, payButton, backButton);
         paymentScene = new Scene(layout, 400, 400);
 
         paymentScene.getStylesheets().add(getClass().getResource("/payment.css").toExternalForm());
@@ -551,11 +1124,14 @@ public class VehicleRentalSystem extends Application {
     }
 
     // Generate invoice for payments
-    private void generateInvoice(String bookingId, double amount, String paymentMethod, double additionalServicesTotal) {
+    private void generateInvoice(String bookingId, double amount, String paymentMethod, double additionalServicesTotal, double lateFees) {
         String invoice = "Invoice\n---------\n";
         invoice += "Booking ID: " + bookingId + "\n";
         invoice += "Base Amount: R" + amount + "\n";
         invoice += "Additional Services Total: R" + additionalServicesTotal + "\n";
+        if (lateFees > 0) {
+            invoice += "Late Fees Charged: R" + lateFees + "\n";
+        }
         invoice += "Total Amount Due: R" + (amount + additionalServicesTotal) + "\n";
         invoice += "Payment Method: " + paymentMethod + "\n";
         invoice += "Thank you for your payment!\n";
@@ -592,6 +1168,15 @@ public class VehicleRentalSystem extends Application {
         Button revenueReportButton = new Button("Revenue Report");
         revenueReportButton.setOnAction(e -> generateRevenueReport());
 
+        Button utilisationButton = new Button("Fleet Utilisation");
+        utilisationButton.setOnAction(e -> Profiling.report("utilisation-report", "render", this::generateUtilisationReport));
+
+        Button forecastButton = new Button("Demand Forecast");
+        forecastButton.setOnAction(e -> generateDemandForecast());
+
+        Button auditButton = new Button("Audit Trail");
+        auditButton.setOnAction(e -> showAuditTrail());
+
         Button exportCSVButton = new Button("Export Report to CSV");
         exportCSVButton.setOnAction(e -> {
             try {
@@ -602,11 +1187,17 @@ public class VehicleRentalSystem extends Application {
             }
         });
 
+        Button analyticsExportButton = new Button("Export Analytics Files");
+        analyticsExportButton.setOnAction(e -> exportAnalyticsFiles());
+
         Button backButton = new Button("Back to Dashboard");
-        backButton.setOnAction(e -> primaryStage.setScene(dashboardScene));
+        backButton.setOnAction(e -> switchScene(dashboardScene, "dashboard"));
+
+        reportCacheLabel = new Label(reportCache.stats());
+        reportCacheLabel.setWrapText(true);
 
         layout.getChildren().addAll(title, availableVehiclesButton, customerHistoryButton,
-                revenueReportButton, exportCSVButton, backButton);
+                revenueReportButton, utilisationButton, forecastButton, auditButton, exportCSVButton, analyticsExportButton, backButton, reportCacheLabel);
 
         reportScene = new Scene(layout, 600, 400);
 
@@ -614,58 +1205,100 @@ public class VehicleRentalSystem extends Application {
 
     }
 
-    // Generate available vehicles report
+    // Runs report work on a background thread so that aggregating a large fleet or booking history never
+    // freezes the report scene; the task hands its (already reduced) chart data back with Platform.runLater
+    private void runReport(String name, Runnable task) {
+        Thread worker = new Thread(() -> Profiling.report(name, "compute", task), name);
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    // Generate available vehicles report. It is computed from the vehicle list, which the change feed keeps
+    // current from the primary and which is what invalidates the cache; a replica read could cache rows older
+    // than the invalidation and keep them until the next vehicle change.
     private void generateAvailableVehiclesReport() {
-        ObservableList<Vehicle> availableVehicles = dbConnector.getAvailableVehicles();
+        ReportCache.Lookup<ReportEngine.AvailabilitySummary> cached =
+                reportCache.lookup(ReportCache.key("available-vehicles", List.of(), "vehicles"));
+        if (cached.isHit()) {
+            Profiling.report("available-vehicles-report", "render", () -> showAvailableVehiclesReport(cached.getValue()));
+            return;
+        }
+        // Copied on the FX thread, in the same step as the lookup, like the other reports
+        List<Vehicle> available = new ArrayList<>();
+        for (Vehicle vehicle : vehicleList) {
+            if (vehicle.isAvailable()) {
+                available.add(vehicle);
+            }
+        }
+        runReport("available-vehicles-report", () -> {
+            ReportEngine.AvailabilitySummary summary = ReportEngine.availabilitySummary(available);
+            cached.store(summary, summary.estimatedBytes());
+            Platform.runLater(() -> Profiling.report("available-vehicles-report", "render", () -> showAvailableVehiclesReport(summary)));
+        });
+    }
 
+    private void showAvailableVehiclesReport(ReportEngine.AvailabilitySummary summary) {
         // Create pie chart
-        PieChart pieChart = createPieChart();
+        PieChart pieChart = createPieChart(summary.getSlices());
         Stage pieStage = new Stage();
         pieStage.setTitle("Available Vehicles Report");
         pieStage.setScene(new Scene(pieChart, 600, 400));
         pieStage.show();
-
-        StringBuilder report = new StringBuilder("Available Vehicles:\n");
-        for (Vehicle vehicle : availableVehicles) {
-            report.append(vehicle.toString()).append("\n");
-        }
+        reportCacheLabel.setText(reportCache.stats());
 
         // Show report in alert
-        showAlert(report.toString());
+        showAlert(summary.getReport());
     }
 
     // Generate customer rental history report
     private void generateCustomerRentalHistory() {
-        ObservableList<Booking> allBookings = dbConnector.getAllBookings();
-
-        if (allBookings.isEmpty()) {
-            showAlert("No booking history available.");
+        // Copies taken on the FX thread; the lists themselves are only ever touched there
+        List<Customer> customers = new ArrayList<>(customerList);
+        List<Booking> bookings = new ArrayList<>(bookingList);
+
+        ReportCache.Lookup<List<ChartData.Entry>> cached =
+                reportCache.lookup(ReportCache.key("customer-history", List.of(), "customers", "bookings"));
+        if (cached.isHit()) {
+            Profiling.report("customer-history-report", "render", () -> showCustomerRentalHistory(cached.getValue()));
             return;
         }
+        runReport("customer-history-report", () -> {
+            // Archived rentals still count towards a customer's history
+            Map<String, Integer> archived = dbConnector.getArchivedRentalCounts();
+            if (bookings.isEmpty() && archived.isEmpty()) {
+                Platform.runLater(() -> showAlert("No booking history available."));
+                return;
+            }
+            List<ChartData.Entry> bars = ReportEngine.rentalsByCustomer(customers, bookings, archived);
+            cached.store(bars, ReportEngine.estimatedBytes(bars));
+            Platform.runLater(() -> Profiling.report("customer-history-report", "render", () -> showCustomerRentalHistory(bars)));
+        });
+    }
 
+    private void showCustomerRentalHistory(List<ChartData.Entry> bars) {
         // Create bar chart
-        BarChart<String, Number> barChart = createCustomerRentalHistoryChart();
+        BarChart<String, Number> barChart = createCustomerRentalHistoryChart(bars);
         Stage barStage = new Stage();
         barStage.setTitle("Customer Rental History");
         barStage.setScene(new Scene(barChart, 800, 600));
         barStage.show();
+        reportCacheLabel.setText(reportCache.stats());
     }
 
-    // Create bar chart for customer rental history
-    private BarChart<String, Number> createCustomerRentalHistoryChart() {
+    // Create bar chart for customer rental history: the busiest customers, the rest summed into one bar
+    private BarChart<String, Number> createCustomerRentalHistoryChart(List<ChartData.Entry> bars) {
         CategoryAxis xAxis = new CategoryAxis();
         NumberAxis yAxis = new NumberAxis();
         BarChart<String, Number> barChart = new BarChart<>(xAxis, yAxis);
+        barChart.setAnimated(false);
         xAxis.setLabel("Customer");
         yAxis.setLabel("Number of Rentals");
 
         XYChart.Series<String, Number> series = new XYChart.Series<>();
         series.setName("Rentals by Customer");
 
-        for (Customer customer : customerList) {
-            int rentalCount = (int) bookingList.stream()
-                    .filter(b -> b.getCustomerId().equals(String.valueOf(customer.getCustomerId()))).count();
-            series.getData().add(new XYChart.Data<>(customer.getCustomerName(), rentalCount));
+        for (ChartData.Entry bar : bars) {
+            series.getData().add(new XYChart.Data<>(bar.getLabel(), bar.getValue()));
         }
 
         barChart.getData().add(series);
@@ -674,30 +1307,40 @@ public class VehicleRentalSystem extends Application {
 
     // Generate revenue report
     private void generateRevenueReport() {
-        double totalRevenue = 0.0;
-        for (Booking booking : bookingList) {
-            Vehicle vehicle = dbConnector.getVehicleById(Integer.parseInt(booking.getVehicleId()));
-            if (vehicle != null) {
-                long duration = ChronoUnit.DAYS.between(booking.getStartDate(), booking.getEndDate());
-                totalRevenue += vehicle.getRentalPrice() * duration;
-            }
+        List<Booking> bookings = new ArrayList<>(bookingList);
+
+        // Prices come from vehicles; archiving shows up as booking deletes, so the archive needs no tag
+        ReportCache.Lookup<ReportEngine.RevenueSummary> cached =
+                reportCache.lookup(ReportCache.key("revenue", List.of(), "bookings", "vehicles"));
+        if (cached.isHit()) {
+            Profiling.report("revenue-report", "render", () -> showRevenueReport(cached.getValue()));
+            return;
         }
+        runReport("revenue-report", () -> {
+            ReportEngine.RevenueSummary summary = reportEngine.revenueSummary(bookings);
+            cached.store(summary, summary.estimatedBytes());
+            Platform.runLater(() -> Profiling.report("revenue-report", "render", () -> showRevenueReport(summary)));
+        });
+    }
 
-        // Create line chart
-        LineChart<Number, Number> lineChart = createRevenueLineChart();
+    private void showRevenueReport(ReportEngine.RevenueSummary summary) {
+        // Create line charts
+        VBox charts = new VBox(10, createRevenueLineChart(summary.getMonthly()), createDailyRevenueChart(summary.getDaily()));
         Stage lineStage = new Stage();
         lineStage.setTitle("Revenue Report");
-        lineStage.setScene(new Scene(lineChart, 800, 600));
+        lineStage.setScene(new Scene(charts, 800, 800));
         lineStage.show();
+        reportCacheLabel.setText(reportCache.stats());
 
-        showAlert("Total Revenue: R" + totalRevenue);
+        showAlert("Total Revenue: R" + summary.getTotal());
     }
 
     // Create line chart for revenue visualization
-    private LineChart<Number, Number> createRevenueLineChart() {
+    private LineChart<Number, Number> createRevenueLineChart(double[] monthlyRevenue) {
         NumberAxis xAxis = new NumberAxis();
         NumberAxis yAxis = new NumberAxis();
         LineChart<Number, Number> lineChart = new LineChart<>(xAxis, yAxis);
+        lineChart.setAnimated(false);
         xAxis.setLabel("Rental Period (Month)");
         yAxis.setLabel("Total Revenue (R)");
 
@@ -705,122 +1348,670 @@ public class VehicleRentalSystem extends Application {
         series.setName("Monthly Revenue");
 
         for (int month = 1; month <= 12; month++) {
-            double monthlyRevenue = 0;
-
-            for (Booking booking : bookingList) {
-                if (booking.getStartDate().getMonthValue() == month) {
-                    Vehicle vehicle = dbConnector.getVehicleById(Integer.parseInt(booking.getVehicleId()));
-                    long duration = ChronoUnit.DAYS.between(booking.getStartDate(), booking.getEndDate());
-                    if (vehicle != null) {
-                        monthlyRevenue += vehicle.getRentalPrice() * duration;
-                    }
-                }
-            }
-            series.getData().add(new XYChart.Data<>(month, monthlyRevenue));
+            series.getData().add(new XYChart.Data<>(month, monthlyRevenue[month - 1]));
         }
 
         lineChart.getData().add(series);
         return lineChart;
     }
 
-    // Export report to CSV
-    private void exportReportToCSV() throws IOException {
-        String csvFile = "report.csv";
+    // Create line chart of revenue per start date from the downsampled {epoch days, amounts} series
+    private LineChart<Number, Number> createDailyRevenueChart(double[][] dailyRevenue) {
+        NumberAxis xAxis = createDateAxis();
+        NumberAxis yAxis = new NumberAxis();
+        LineChart<Number, Number> lineChart = new LineChart<>(xAxis, yAxis);
+        lineChart.setAnimated(false);
+        lineChart.setCreateSymbols(false);
+        xAxis.setLabel("Start Date");
+        yAxis.setLabel("Revenue (R)");
 
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(csvFile))) {
-            writer.write("Report,Details\n");
-            for (Vehicle vehicle : vehicleList) {
-                writer.write("Vehicle Added," + vehicle.toString() + "\n");
+        XYChart.Series<Number, Number> series = new XYChart.Series<>();
+        series.setName("Daily Revenue");
+
+        for (int i = 0; i < dailyRevenue[0].length; i++) {
+            series.getData().add(new XYChart.Data<>(dailyRevenue[0][i], dailyRevenue[1][i]));
+        }
+
+        lineChart.getData().add(series);
+        return lineChart;
+    }
+
+    // Axis over epoch days, labelled with dates
+    private NumberAxis createDateAxis() {
+        NumberAxis axis = new NumberAxis();
+        axis.setForceZeroInRange(false);
+        axis.setTickLabelFormatter(new StringConverter<>() {
+            @Override
+            public String toString(Number epochDay) {
+                return LocalDate.ofEpochDay(epochDay.longValue()).toString();
+            }
+
+            @Override
+            public Number fromString(String date) {
+                return LocalDate.parse(date).toEpochDay();
             }
-            for (Customer customer : customerList) {
-                writer.write("Customer Added," + customer.toString() + "\n");
+        });
+        return axis;
+    }
+
+    // Generate the demand forecast for every category from the in-memory models; nothing is read from the database
+    private void generateDemandForecast() {
+        runReport("demand-forecast", () -> {
+            List<DemandForecaster.Forecast> forecasts = new ArrayList<>();
+            for (String category : demandForecaster.getCategories()) {
+                DemandForecaster.Forecast forecast = demandForecaster.forecast(category, FORECAST_HISTORY_DAYS);
+                if (forecast != null) {
+                    forecasts.add(forecast);
+                }
             }
-            for (Booking booking : bookingList) {
-                writer.write("Vehicle Booked," + booking.toString() + "\n");
+            Platform.runLater(() -> Profiling.report("demand-forecast", "render", () -> showDemandForecast(forecasts)));
+        });
+    }
+
+    private void showDemandForecast(List<DemandForecaster.Forecast> forecasts) {
+        if (forecasts.isEmpty()) {
+            showAlert("No vehicles to forecast demand for yet.");
+            return;
+        }
+        ComboBox<String> categoryPicker = new ComboBox<>();
+        BorderPane layout = new BorderPane();
+        StringBuilder summary = new StringBuilder("Next " + DemandForecaster.HORIZON_DAYS + " days:\n");
+        for (DemandForecaster.Forecast forecast : forecasts) {
+            categoryPicker.getItems().add(forecast.getCategory());
+            summary.append(forecast).append("\n");
+        }
+        categoryPicker.setOnAction(e -> {
+            for (DemandForecaster.Forecast forecast : forecasts) {
+                if (forecast.getCategory().equals(categoryPicker.getValue())) {
+                    layout.setCenter(createForecastChart(forecast));
+                }
             }
-            showAlert("Report exported to " + csvFile);
+        });
+        categoryPicker.setValue(forecasts.get(0).getCategory());
+        layout.setCenter(createForecastChart(forecasts.get(0)));
+        layout.setTop(categoryPicker);
+        Label summaryLabel = new Label(summary.toString());
+        summaryLabel.setWrapText(true);
+        layout.setBottom(summaryLabel);
+
+        Stage forecastStage = new Stage();
+        forecastStage.setTitle("Demand Forecast");
+        forecastStage.setScene(new Scene(layout, 900, 650));
+        forecastStage.show();
+    }
+
+    // Vehicles on rent per day: recent history, the forecast, what is already booked and the fleet size
+    private LineChart<Number, Number> createForecastChart(DemandForecaster.Forecast forecast) {
+        NumberAxis xAxis = createDateAxis();
+        NumberAxis yAxis = new NumberAxis();
+        LineChart<Number, Number> lineChart = new LineChart<>(xAxis, yAxis);
+        lineChart.setAnimated(false);
+        lineChart.setCreateSymbols(false);
+        lineChart.setTitle(forecast.getCategory() + " demand");
+        xAxis.setLabel("Date");
+        yAxis.setLabel("Vehicles on Rent");
+
+        long today = forecast.getToday().toEpochDay();
+        double[] actual = forecast.getActual();
+        XYChart.Series<Number, Number> actualSeries = new XYChart.Series<>();
+        actualSeries.setName("On Rent");
+        for (int i = 0; i < actual.length; i++) {
+            actualSeries.getData().add(new XYChart.Data<>(today - actual.length + i, actual[i]));
+        }
+        XYChart.Series<Number, Number> forecastSeries = new XYChart.Series<>();
+        forecastSeries.setName("Forecast");
+        XYChart.Series<Number, Number> bookedSeries = new XYChart.Series<>();
+        bookedSeries.setName("Already Booked");
+        for (int h = 0; h < forecast.getPredicted().length; h++) {
+            forecastSeries.getData().add(new XYChart.Data<>(today + h, forecast.getPredicted()[h]));
+            bookedSeries.getData().add(new XYChart.Data<>(today + h, forecast.getBooked()[h]));
+        }
+        XYChart.Series<Number, Number> fleetSeries = new XYChart.Series<>();
+        fleetSeries.setName("Fleet Size");
+        fleetSeries.getData().add(new XYChart.Data<>(today - actual.length, forecast.getFleetSize()));
+        fleetSeries.getData().add(new XYChart.Data<>(today + forecast.getPredicted().length - 1, forecast.getFleetSize()));
+
+        lineChart.getData().add(actualSeries);
+        lineChart.getData().add(forecastSeries);
+        lineChart.getData().add(bookedSeries);
+        lineChart.getData().add(fleetSeries);
+        return lineChart;
+    }
+
+    // Generate fleet utilisation report for the last 365 days
+    private void generateUtilisationReport() {
+        LocalDate to = LocalDate.now().plusDays(1);
+        LocalDate from = to.minusDays(365);
+        // Copied on the FX thread, like the other reports
+        List<Vehicle> vehicles = new ArrayList<>(vehicleList);
+        ReportCache.Lookup<FleetUtilisation> cached =
+                reportCache.lookup(ReportCache.key("utilisation", List.of(from, to), "vehicles", "bookings"));
+        if (cached.isHit()) {
+            String report = utilisationReport(cached.getValue(), vehicles);
+            Profiling.report("utilisation-report", "render", () -> showUtilisationReport(cached.getValue(), report));
+            return;
+        }
+        runReport("utilisation-report", () -> {
+            FleetUtilisation utilisation = FleetUtilisation.build(vehicles, dbConnector.getBookingsOverlapping(from, to), from, to);
+            cached.store(utilisation, utilisation.estimatedBytes());
+            String report = utilisationReport(utilisation, vehicles);
+            Platform.runLater(() -> Profiling.report("utilisation-report", "render", () -> showUtilisationReport(utilisation, report)));
+        });
+    }
+
+    private void showUtilisationReport(FleetUtilisation utilisation, String report) {
+        BarChart<String, Number> barChart = createUtilisationChart(utilisation);
+        Stage barStage = new Stage();
+        barStage.setTitle("Fleet Utilisation");
+        barStage.setScene(new Scene(barChart, 800, 600));
+        barStage.show();
+        reportCacheLabel.setText(reportCache.stats());
+        showAlert(report);
+    }
+
+    // One line per category, then only the LEAST_USED_SHOWN least occupied vehicles, so the alert stays short
+    // however big the fleet is
+    private static String utilisationReport(FleetUtilisation utilisation, List<Vehicle> vehicles) {
+        StringBuilder report = new StringBuilder("Fleet Utilisation (last " + utilisation.getDays() + " days):\n");
+        for (String category : utilisation.getCategories()) {
+            report.append(String.format("%s: %d vehicles, %.1f%% occupied, peak %d out at once, %d days fully booked, %d days idle%n",
+                    category, utilisation.getFleetSize(category), utilisation.categoryOccupancy(category) * 100,
+                    utilisation.peakDemand(category), utilisation.fullyBookedDays(category), utilisation.idleDays(category)));
+        }
+        List<Vehicle> leastUsed = new ArrayList<>(vehicles);
+        leastUsed.sort(Comparator.comparingDouble((Vehicle vehicle) -> utilisation.occupancy(vehicle.getId())).thenComparingInt(Vehicle::getId));
+        if (!leastUsed.isEmpty()) {
+            report.append("\nLeast used vehicles:\n");
         }
+        for (Vehicle vehicle : leastUsed.subList(0, Math.min(LEAST_USED_SHOWN, leastUsed.size()))) {
+            report.append(String.format("%d - %s: %.1f%% occupied, longest idle streak %d days%n",
+                    vehicle.getId(), vehicle.getBrandModel(), utilisation.occupancy(vehicle.getId()) * 100,
+                    utilisation.longestIdleStreak(vehicle.getId())));
+        }
+        return report.toString();
     }
 
-    private void refreshVehicleList() {
-        vehicleList.clear();
-        vehicleList.addAll(dbConnector.getAllVehicles());
+    // Create bar chart of occupancy and peak demand per category
+    private BarChart<String, Number> createUtilisationChart(FleetUtilisation utilisation) {
+        CategoryAxis xAxis = new CategoryAxis();
+        NumberAxis yAxis = new NumberAxis(0, 100, 10);
+        BarChart<String, Number> barChart = new BarChart<>(xAxis, yAxis);
+        xAxis.setLabel("Category");
+        yAxis.setLabel("Percent of Fleet");
+
+        XYChart.Series<String, Number> occupancySeries = new XYChart.Series<>();
+        occupancySeries.setName("Average Occupancy");
+        XYChart.Series<String, Number> peakSeries = new XYChart.Series<>();
+        peakSeries.setName("Peak Day Demand");
+
+        for (String category : utilisation.getCategories()) {
+            int fleetSize = utilisation.getFleetSize(category);
+            occupancySeries.getData().add(new XYChart.Data<>(category, utilisation.categoryOccupancy(category) * 100));
+            peakSeries.getData().add(new XYChart.Data<>(category, fleetSize == 0 ? 0 : utilisation.peakDemand(category) * 100.0 / fleetSize));
+        }
+
+        barChart.getData().add(occupancySeries);
+        barChart.getData().add(peakSeries);
+        return barChart;
     }
 
-    private void refreshCustomerList() {
-        customerList.clear();
-        customerList.addAll(dbConnector.getAllCustomers());
+    // Export report to CSV
+    private void exportReportToCSV() throws IOException {
+        String csvFile = "report.csv";
+
+        Profiling.CsvWriteEvent event = new Profiling.CsvWriteEvent();
+        event.begin();
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(csvFile))) {
+            ReportEngine.writeExport(writer, vehicleList, customerList, bookingList);
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.file = csvFile;
+            event.commit();
+        }
+        showAlert("Report exported to " + csvFile);
     }
 
-    private void refreshBookingList() {
-        bookingList.clear();
-        bookingList.addAll(dbConnector.getAllBookings());
+    // Writes the typed, compressed per-table files for analysts; streamed from the database, so it runs in the
+    // background and covers the full tables rather than the lists loaded in this window
+    private void exportAnalyticsFiles() {
+        Path directory = Paths.get(System.getProperty("vrs.analytics.dir", "analytics"));
+        runReport("analytics-export", () -> {
+            try {
+                List<String> summary = new ColumnarExport(dbConnector).exportAll(directory);
+                Platform.runLater(() -> showAlert("Analytics files exported:\n" + String.join("\n", summary)));
+            } catch (IOException | SQLException ex) {
+                ex.printStackTrace();
+                Platform.runLater(() -> showAlert("Failed to export analytics files."));
+            }
+        });
     }
 
-    // Create pie chart for available vehicles
-    private PieChart createPieChart() {
+    // Create pie chart for available vehicles: one slice per category, small categories folded into "Other"
+    private PieChart createPieChart(List<ChartData.Entry> slices) {
         ObservableList<PieChart.Data> pieChartData = FXCollections.observableArrayList();
-        ObservableList<Vehicle> availableVehicles = dbConnector.getAvailableVehicles();
 
-        for (Vehicle vehicle : availableVehicles) {
-            pieChartData.add(new PieChart.Data(vehicle.getBrandModel(), 1)); // Assuming each vehicle counts as 1
+        for (ChartData.Entry slice : slices) {
+            pieChartData.add(new PieChart.Data(slice.getLabel() + " (" + (int) slice.getValue() + ")", slice.getValue()));
         }
 
         PieChart pieChart = new PieChart(pieChartData);
-        pieChart.setTitle("Available Vehicles");
+        pieChart.setAnimated(false);
+        pieChart.setTitle("Available Vehicles by Category");
         return pieChart;
     }
 
+    // Asks whether to keep the user's edit over a newer saved version (true) or reload the saved one (false)
+    private boolean confirmOverwrite(String what, String saved, String edited) {
+        ButtonType overwrite = new ButtonType("Overwrite");
+        ButtonType reload = new ButtonType("Reload");
+        Alert alert = new Alert(Alert.AlertType.CONFIRMATION, "", overwrite, reload);
+        alert.setTitle("Edit Conflict");
+        alert.setHeaderText(what + " was changed by someone else while you were editing.");
+        alert.setContentText("Saved now:\n" + saved + "\n\nYour edit:\n" + edited);
+        return alert.showAndWait().orElse(reload) == overwrite;
+    }
+
+    // Tells the clerk when a failure is an outage rather than a problem with what they entered
+    private String failureMessage(String message) {
+        return dbConnector.isDatabaseAvailable() ? message : message + " The database is unavailable; try again in a few seconds.";
+    }
+
     // Show alert messages
     private void showAlert(String message) {
+        Profiling.DialogEvent event = new Profiling.DialogEvent();
+        event.begin();
         Alert alert = new Alert(Alert.AlertType.WARNING);
         alert.setTitle("Notification");
         alert.setHeaderText(null);
         alert.setContentText(message);
         alert.showAndWait();
+        event.end();
+        if (event.shouldCommit()) {
+            event.message = message.length() > 200 ? message.substring(0, 200) : message;
+            event.commit();
+        }
     }
 
-    // Method to log actions in the CSV file
-    private void saveToCSV(String action, String... details) {
-        String csvFile = "actions_log.csv";
+    // Shows a scene and lays it out straight away, so the SceneSwitch event covers the CSS and layout pass
+    // that would otherwise happen unmeasured in the next pulse
+    private void switchScene(Scene scene, String name) {
+        Profiling.SceneSwitchEvent event = new Profiling.SceneSwitchEvent();
+        event.begin();
+        primaryStage.setScene(scene);
+        scene.getRoot().applyCss();
+        scene.getRoot().layout();
+        event.end();
+        if (event.shouldCommit()) {
+            event.scene = name;
+            event.commit();
+        }
+    }
 
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(csvFile, true))) {
-            writer.write(action + "," + String.join(",", details) + "\n");
+    // Opens the audit trail (imported once from the old actions_log.csv) and compacts old segments in the
+    // background. Without it the application still runs, it just records nothing.
+    private void openAuditLog() {
+        try {
+            auditLog = AuditLog.open(Paths.get(System.getProperty("vrs.audit.dir", "audit")), Paths.get("actions_log.csv"),
+                    Integer.getInteger("vrs.audit.retentionDays", 0));
         } catch (IOException e) {
             e.printStackTrace();
+            return;
+        }
+        runReport("audit-compaction", () -> {
+            try {
+                auditLog.compact();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        });
+    }
+
+    // Records what the logged-in user did, filed under every entity it touched so the audit trail can find it
+    private void audit(String action, List<String> entities, String... details) {
+        if (auditLog != null) {
+            auditLog.record(currentUser, action, entities, String.join(", ", details));
+        }
+    }
+
+    private List<String> bookingEntities(Booking booking) {
+        return List.of(AuditLog.entity("booking", booking.getBookingId()), AuditLog.entity("vehicle", booking.getVehicleId()),
+                AuditLog.entity("customer", booking.getCustomerId()));
+    }
+
+    // Audit trail viewer: finds events by entity and/or period through the audit indexes, e.g. who booked
+    // vehicle 12 last March, without reading the whole trail
+    private void showAuditTrail() {
+        if (auditLog == null) {
+            showAlert("The audit trail is not available on this terminal.");
+            return;
         }
+        ComboBox<String> entityTypeComboBox = new ComboBox<>();
+        entityTypeComboBox.getItems().addAll("vehicle", "customer", "booking", "user");
+        entityTypeComboBox.setPromptText("Any entity");
+        TextField entityIdField = new TextField();
+        entityIdField.setPromptText("ID or username");
+        DatePicker fromDatePicker = new DatePicker(LocalDate.now().minusDays(30));
+        DatePicker toDatePicker = new DatePicker(LocalDate.now());
+        ListView<String> resultsListView = new ListView<>();
+        Label statusLabel = new Label();
+
+        Button searchButton = new Button("Search");
+        searchButton.setOnAction(e -> {
+            String entityType = entityTypeComboBox.getValue();
+            String entityId = entityIdField.getText().trim();
+            if (entityType != null && entityId.isEmpty()) {
+                showAlert("Enter the " + entityType + " to look up.");
+                return;
+            }
+            String entity = entityType == null ? null : AuditLog.entity(entityType, entityId);
+            LocalDate from = fromDatePicker.getValue();
+            LocalDate to = toDatePicker.getValue();
+            long fromMillis = from == null ? Long.MIN_VALUE : from.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+            long toMillis = to == null ? Long.MAX_VALUE : to.plusDays(1).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+
+            runReport("audit-search", () -> {
+                long startedAt = System.nanoTime();
+                try {
+                    List<String> lines = new ArrayList<>();
+                    for (AuditLog.Event event : auditLog.query(entity, fromMillis, toMillis, AUDIT_VIEW_LIMIT)) {
+                        lines.add(event.toString());
+                    }
+                    long millis = (System.nanoTime() - startedAt) / 1_000_000;
+                    Platform.runLater(() -> {
+                        resultsListView.getItems().setAll(lines);
+                        statusLabel.setText(lines.size() + (lines.size() == AUDIT_VIEW_LIMIT ? "+ events (first " + AUDIT_VIEW_LIMIT + " shown)" : " events")
+                                + " in " + millis + " ms");
+                    });
+                } catch (IOException ex) {
+                    ex.printStackTrace();
+                    Platform.runLater(() -> showAlert("The audit trail could not be read."));
+                }
+            });
+        });
+
+        Button compactButton = new Button("Compact Old Segments");
+        compactButton.setOnAction(e -> runReport("audit-compaction", () -> {
+            try {
+                int folded = auditLog.compact();
+                Platform.runLater(() -> showAlert(folded == 0 ? "Nothing to compact." : folded + " old segments merged."));
+            } catch (IOException ex) {
+                ex.printStackTrace();
+                Platform.runLater(() -> showAlert("Compaction failed."));
+            }
+        }));
+
+        VBox layout = new VBox(10, new HBox(10, entityTypeComboBox, entityIdField), new HBox(10, fromDatePicker, toDatePicker, searchButton),
+                statusLabel, resultsListView, compactButton);
+        layout.setPadding(new Insets(20));
+        Stage auditStage = new Stage();
+        auditStage.setTitle("Audit Trail");
+        auditStage.setScene(new Scene(layout, 800, 600));
+        auditStage.show();
     }
 
-    // Main method to launch the application
+    // Main method to launch the application; --batch runs ReportCli headless instead
     public static void main(String[] args) {
+        if (args.length > 0 && "--batch".equals(args[0])) {
+            ReportCli.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
         launch(args);
     }
 }
 
 /// Database connector class for database operations
 class DbConnector {
-    private static final String DB_URL = "jdbc:mysql://localhost:3306/vehicle_rental_system?useSSL=false";
-    private static final String DB_USERNAME = "root"; // Update with your DB username
-    private static final String DB_PASSWORD = "Katleho@0210"; // Update with your DB password
+    private static final int LATE_FEE_BATCH_SIZE = 500;
+
+    private final DbConfig config;
+    private final int branchId; // 0 = every branch in the database
+    private final DbResilience home; // Home database: the branch list and every branch without a shard
+    private final DbResilience resilience; // This branch's database, the home one or its shard
+    private final DbResilience replica; // Null without a read replica
+    private final AtomicLong lastWriteAt;
+    private final boolean failReads; // See failingReads
+
+    DbConnector() {
+        this(DbConfig.fromSystemProperties());
+    }
+
+    DbConnector(DbConfig config) {
+        this.config = config;
+        this.branchId = config.getBranchId();
+        this.home = new DbResilience(() -> open(config.getPrimaryUrl()));
+        String shardUrl = config.getShardUrl();
+        if (shardUrl == null) {
+            this.resilience = home;
+            this.replica = config.getReplicaUrl() == null ? null : new DbResilience(() -> open(config.getReplicaUrl()));
+        } else {
+            this.resilience = new DbResilience(() -> openShard(shardUrl));
+            this.replica = null; // Shards serve their own reads
+        }
+        this.lastWriteAt = new AtomicLong();
+        this.failReads = false;
+    }
+
+    private DbConnector(DbConnector other, DbResilience replica, boolean failReads) {
+        this.config = other.config;
+        this.branchId = other.branchId;
+        this.home = other.home;
+        this.resilience = other.resilience;
+        this.replica = replica;
+        this.lastWriteAt = other.lastWriteAt;
+        this.failReads = failReads;
+    }
+
+    // The same connector with every read on the primary, for code that must act on the latest committed state
+    DbConnector primaryOnly() {
+        return new DbConnector(this, null, failReads);
+    }
 
-    // Initializes the database and creates the necessary tables
+    // The same connector, but a failed read throws instead of returning an empty list, zero or null. A
+    // terminal shows whatever it could load; a headless report must not pass an empty result off as real.
+    DbConnector failingReads() {
+        return new DbConnector(this, replica, true);
+    }
+
+    boolean failsReads() {
+        return failReads;
+    }
+
+    private void readFailed(SQLException ex) {
+        if (failReads) {
+            throw new IllegalStateException("Database read failed on branch " + branchId, ex);
+        }
+        ex.printStackTrace();
+    }
+
+    int getBranchId() {
+        return branchId;
+    }
+
+    // A connector for another branch, routed to that branch's shard or partition
+    DbConnector forBranch(int otherBranchId) {
+        DbConnector branch = new DbConnector(config.withBranch(otherBranchId));
+        return failReads ? branch.failingReads() : branch;
+    }
+
+    // The database this connector's rows live in; branches without a shard share the home one
+    String getDatabaseUrl() {
+        return config.getShardUrl() != null ? config.getShardUrl() : config.getPrimaryUrl();
+    }
+
+    // Adds a branch to the company's branch list in the home database, or renames it
+    boolean registerBranch(int id, String name) {
+        if (id < 1 || id >= DbConfig.BRANCH_ID_STRIDE) {
+            throw new IllegalArgumentException("Branch id must be between 1 and " + (DbConfig.BRANCH_ID_STRIDE - 1));
+        }
+        try (Connection connection = home.connect();
+             PreparedStatement stmt = connection.prepareStatement("INSERT INTO branches (branch_id, name) VALUES (?, ?) ON DUPLICATE KEY UPDATE name = VALUES(name)")) {
+            stmt.setInt(1, id);
+            stmt.setString(2, name);
+            stmt.executeUpdate();
+            return true;
+        } catch (SQLException ex) {
+            ex.printStackTrace();
+            return false;
+        }
+    }
+
+    // One connector per branch in the company, for cross-branch queries through BranchFanOut
+    List<DbConnector> allBranches() {
+        List<DbConnector> branches = new ArrayList<>();
+        try (Connection connection = home.connect();
+             PreparedStatement stmt = connection.prepareStatement("SELECT branch_id FROM branches ORDER BY branch_id")) {
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                branches.add(rs.getInt("branch_id") == branchId ? this : forBranch(rs.getInt("branch_id")));
+            }
+        } catch (SQLException ex) {
+            readFailed(ex);
+        }
+        return branches;
+    }
+
+    private Connection open(String url) throws SQLException {
+        return DriverManager.getConnection(url, config.getUsername(), config.getPassword());
+    }
+
+    // Change ids this connector's outbox hands out: a shard session takes every BRANCH_ID_STRIDE-th id, change_log
+    // included, so ChangeFeed only waits for ids with id % stride == getChangeIdOffset()
+    int getChangeIdStride() {
+        return config.getShardUrl() != null ? DbConfig.BRANCH_ID_STRIDE : 1;
+    }
+
+    int getChangeIdOffset() {
+        return branchId % getChangeIdStride();
+    }
+
+    // Rows created on a shard get ids with id % BRANCH_ID_STRIDE == branch, so merged results never collide
+    private Connection openShard(String url) throws SQLException {
+        Connection connection = open(url);
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("SET SESSION auto_increment_increment = " + DbConfig.BRANCH_ID_STRIDE + ", auto_increment_offset = " + branchId);
+        } catch (SQLException ex) {
+            connection.close();
+            throw ex;
+        }
+        return connection;
+    }
+
+    // Every vehicles, bookings, waitlist and summary query carries its own "branch_id BETWEEN ? AND ?" predicate;
+    // this binds it at the given position to this connector's branch, or to every branch for branch 0
+    private void bindBranch(PreparedStatement stmt, int index) throws SQLException {
+        stmt.setInt(index, branchId == 0 ? 1 : branchId);
+        stmt.setInt(index + 1, branchId == 0 ? DbConfig.BRANCH_ID_STRIDE - 1 : branchId);
+    }
+
+    // Branch new vehicles and waitlist entries are filed under; the home branch for an all-branch terminal
+    private int ownBranch() {
+        return branchId == 0 ? 1 : branchId;
+    }
+
+    // Hot queries; QueryPlanCheckTest runs EXPLAIN on each of these and fails on a full table scan
+    static final String VEHICLE_BY_ID_QUERY = "SELECT * FROM vehicles WHERE vehicle_id = ? AND branch_id BETWEEN ? AND ?";
+    static final String CUSTOMER_BY_ID_QUERY = "SELECT * FROM customers WHERE customer_id = ?";
+    static final String BOOKING_BY_ID_QUERY = "SELECT * FROM bookings WHERE booking_id = ? AND branch_id BETWEEN ? AND ?";
+    static final String AVAILABLE_VEHICLES_QUERY = "SELECT * FROM vehicles WHERE branch_id BETWEEN ? AND ? AND availability_status = 'Available'";
+    static final String BOOKINGS_STARTING_BETWEEN_QUERY = "SELECT * FROM bookings WHERE start_date BETWEEN ? AND ? AND branch_id BETWEEN ? AND ?";
+    static final String BOOKINGS_OVERLAPPING_QUERY = "SELECT * FROM bookings WHERE start_date < ? AND end_date > ? AND branch_id BETWEEN ? AND ?";
+    // One calendar tile: the vehicles' bookings overlapping a date range, read per vehicle from the
+    // (vehicle_id, end_date) index. end_date > from is the bound that stays narrow: the calendar mostly shows
+    // the weeks around today, and per vehicle only bookings ending after the tile starts are read, however
+    // long its history.
+    static String timelineBookingsQuery(int vehicles) {
+        return "SELECT * FROM bookings WHERE vehicle_id IN (" + "?, ".repeat(vehicles - 1) + "?) AND end_date > ? AND start_date < ? AND branch_id BETWEEN ? AND ?";
+    }
+    static final String VEHICLE_OVERLAP_QUERY = "SELECT 1 FROM bookings WHERE vehicle_id = ? AND start_date < ? AND end_date > ? AND booking_id <> ? LIMIT 1";
+    // Open bookings with fees due: charged through an earlier day, or never charged and overdue since charge_from.
+    // Both are ranges of idx_bookings_late_fees, so bookings already charged through today are never read.
+    static final String OVERDUE_BOOKINGS_QUERY = "SELECT b.booking_id, b.customer_id, b.vehicle_id, b.end_date, b.late_fees_through, v.category "
+            + "FROM bookings b JOIN vehicles v ON v.vehicle_id = b.vehicle_id "
+            + "WHERE b.returned_date IS NULL AND (b.late_fees_through < ? OR (b.late_fees_through IS NULL AND b.end_date >= ? AND b.end_date <= ?)) "
+            + "AND b.booking_id > ? AND b.branch_id BETWEEN ? AND ? ORDER BY b.booking_id LIMIT ?";
+    static final String CHANGES_SINCE_QUERY = "SELECT change_id, table_name, entity_id, operation FROM change_log WHERE change_id > ? ORDER BY change_id LIMIT ?";
+
+    // Creates the database if needed and brings the schema up to the latest migration
     public void initializeDatabase() {
-        try (Connection connection = DriverManager.getConnection(DB_URL, DB_USERNAME, DB_PASSWORD)) {
+        try (Connection connection = open(config.getShardUrl() != null ? config.getShardUrl() : config.getPrimaryUrl())) {
             Statement stmt = connection.createStatement();
             stmt.executeUpdate("CREATE DATABASE IF NOT EXISTS vehicle_rental_system");
             stmt.executeUpdate("USE vehicle_rental_system");
-            stmt.executeUpdate("CREATE TABLE IF NOT EXISTS users (id INT AUTO_INCREMENT PRIMARY KEY, username VARCHAR(50) NOT NULL UNIQUE, password VARCHAR(255) NOT NULL, role ENUM('Admin', 'Employee') NOT NULL)");
-            stmt.executeUpdate("CREATE TABLE IF NOT EXISTS vehicles (vehicle_id INT AUTO_INCREMENT PRIMARY KEY, brand VARCHAR(50) NOT NULL, model VARCHAR(50) NOT NULL, category VARCHAR(50) NOT NULL, rental_price DECIMAL(10, 2) NOT NULL, availability_status ENUM('Available', 'Not Available') NOT NULL)");
-            stmt.executeUpdate("CREATE TABLE IF NOT EXISTS customers (customer_id INT AUTO_INCREMENT PRIMARY KEY, customer_name VARCHAR(100) NOT NULL, contact_info VARCHAR(150) NOT NULL, license_number VARCHAR(50) NOT NULL UNIQUE)");
-            stmt.executeUpdate("CREATE TABLE IF NOT EXISTS bookings (booking_id INT AUTO_INCREMENT PRIMARY KEY, vehicle_id INT NOT NULL, customer_id INT NOT NULL, start_date DATE NOT NULL, end_date DATE NOT NULL, booking_date DATETIME DEFAULT CURRENT_TIMESTAMP, FOREIGN KEY (vehicle_id) REFERENCES vehicles(vehicle_id) ON DELETE CASCADE, FOREIGN KEY (customer_id) REFERENCES customers(customer_id) ON DELETE CASCADE)");
-            stmt.executeUpdate("CREATE TABLE IF NOT EXISTS payments (payment_id INT AUTO_INCREMENT PRIMARY KEY, booking_id INT NOT NULL, amount DECIMAL(10, 2) NOT NULL, payment_date DATETIME DEFAULT CURRENT_TIMESTAMP, FOREIGN KEY (booking_id) REFERENCES bookings(booking_id) ON DELETE CASCADE)");
+            SchemaMigrator.migrate(connection);
         } catch (SQLException e) {
             e.printStackTrace();
         }
+        // A branch terminal makes sure the home database's branch list knows its branch, keeping any name given
+        if (branchId != 0) {
+            try (Connection connection = home.connect();
+                 PreparedStatement stmt = connection.prepareStatement("INSERT IGNORE INTO branches (branch_id, name) VALUES (?, ?)")) {
+                stmt.setInt(1, branchId);
+                stmt.setString(2, "Branch " + branchId);
+                stmt.executeUpdate();
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        }
     }
 
+    // Connections come through the resilience layer: statements time out and calls fail fast during an outage
     public Connection connect() throws SQLException {
-        return DriverManager.getConnection(DB_URL, DB_USERNAME, DB_PASSWORD);
+        return resilience.connect();
+    }
+
+    // Report and list reads go to the replica, except for a short window after this terminal's own write
+    // (so the clerk sees what they just saved) and whenever the replica is unreachable
+    Connection connectForRead() throws SQLException {
+        if (!readsFromReplica() || !replica.isAvailable()) {
+            return connect();
+        }
+        try {
+            Connection connection = replica.connect();
+            connection.setReadOnly(true);
+            return connection;
+        } catch (SQLException ex) {
+            return connect();
+        }
+    }
+
+    boolean readsFromReplica() {
+        return replica != null && System.currentTimeMillis() - lastWriteAt.get() >= config.getReadYourWritesMillis();
+    }
+
+    public boolean isDatabaseAvailable() {
+        return resilience.isAvailable();
+    }
+
+    public int getPendingWrites() {
+        return resilience.getPendingWrites();
+    }
+
+    // Last chance for queued writes before exit; see DbResilience.flushOnExit. Returns the writes dropped.
+    public int flushPendingWrites(long timeoutMillis) {
+        return resilience.flushOnExit(timeoutMillis);
+    }
+
+    // Runs a counter-side write, or queues it when no connection can be had. Only a failed connect is queued:
+    // nothing reached the database then, so the replay cannot apply the write twice.
+    private WriteResult writeOrQueue(String description, DbResilience.Write write) {
+        Connection connection;
+        try {
+            connection = connect();
+        } catch (SQLException ex) {
+            if (DbResilience.isTransient(ex) && resilience.enqueue(description, write)) {
+                return WriteResult.QUEUED;
+            }
+            ex.printStackTrace();
+            return WriteResult.FAILED;
+        }
+        try (connection) {
+            write.apply(connection);
+            return WriteResult.SAVED;
+        } catch (SQLException ex) {
+            ex.printStackTrace();
+            return WriteResult.FAILED;
+        }
     }
 
     public boolean isUsernameAvailable(String username) {
@@ -860,27 +2051,37 @@ class DbConnector {
         }
     }
 
-    public void addVehicle(String brandModel, double rentalPrice, boolean availability, String category) {
+    // Returns the new vehicle's id, or 0 if it was not saved
+    public int addVehicle(String brandModel, double rentalPrice, boolean availability, String category) {
         try (Connection connection = connect()) {
+            connection.setAutoCommit(false);
             String[] parts = brandModel.split(" ", 2);
-            String query = "INSERT INTO vehicles (brand, model, category, rental_price, availability_status) VALUES (?, ?, ?, ?, ?)";
-            try (PreparedStatement stmt = connection.prepareStatement(query)) {
+            String query = "INSERT INTO vehicles (brand, model, category, rental_price, availability_status, branch_id) VALUES (?, ?, ?, ?, ?, ?)";
+            try (PreparedStatement stmt = connection.prepareStatement(query, Statement.RETURN_GENERATED_KEYS)) {
                 stmt.setString(1, parts[0]);
                 stmt.setString(2, parts.length > 1 ? parts[1] : "");
                 stmt.setString(3, category); // Set the category here
                 stmt.setDouble(4, rentalPrice);
                 stmt.setString(5, availability ? "Available" : "Not Available");
+                stmt.setInt(6, ownBranch());
                 stmt.executeUpdate();
+                int vehicleId = generatedKey(stmt);
+                recordChange(connection, "vehicles", vehicleId, "INSERT");
+                connection.commit();
+                return vehicleId;
             }
         } catch (SQLException ex) {
             ex.printStackTrace();
+            return 0;
         }
     }
 
-    public void updateVehicle(int vehicleId, String brandModel, double rentalPrice, boolean availability, String category) {
+    // Compare-and-set update: only applies if the row still has the version the caller read
+    public UpdateResult updateVehicle(int vehicleId, int expectedVersion, String brandModel, double rentalPrice, boolean availability, String category) {
         try (Connection connection = connect()) {
+            connection.setAutoCommit(false);
             String[] parts = brandModel.split(" ", 2);
-            String query = "UPDATE vehicles SET brand = ?, model = ?, category = ?, rental_price = ?, availability_status = ? WHERE vehicle_id = ?";
+            String query = "UPDATE vehicles SET brand = ?, model = ?, category = ?, rental_price = ?, availability_status = ?, version = version + 1 WHERE vehicle_id = ? AND version = ?";
             try (PreparedStatement stmt = connection.prepareStatement(query)) {
                 stmt.setString(1, parts[0]);
                 stmt.setString(2, parts.length > 1 ? parts[1] : "");
@@ -888,18 +2089,26 @@ class DbConnector {
                 stmt.setDouble(4, rentalPrice);
                 stmt.setString(5, availability ? "Available" : "Not Available");
                 stmt.setInt(6, vehicleId); // Correctly setting vehicleId here
-                stmt.executeUpdate();
+                stmt.setInt(7, expectedVersion);
+                if (stmt.executeUpdate() == 0) {
+                    return UpdateResult.CONFLICT;
+                }
+                recordChange(connection, "vehicles", vehicleId, "UPDATE");
             }
+            connection.commit();
+            return UpdateResult.UPDATED;
         } catch (SQLException ex) {
             ex.printStackTrace();
+            return UpdateResult.FAILED;
         }
     }
 
     public Vehicle getVehicleById(int id) {
         try (Connection connection = connect()) {
-            String query = "SELECT * FROM vehicles WHERE vehicle_id = ?";
+            String query = VEHICLE_BY_ID_QUERY;
             try (PreparedStatement stmt = connection.prepareStatement(query)) {
                 stmt.setInt(1, id);
+                bindBranch(stmt, 2);
                 ResultSet rs = stmt.executeQuery();
                 if (rs.next()) {
                     return new Vehicle(
@@ -908,174 +2117,809 @@ class DbConnector {
                             rs.getString("model"),
                             rs.getString("category"),
                             rs.getDouble("rental_price"),
-                            rs.getString("availability_status")
+                            rs.getString("availability_status"),
+                            rs.getInt("version")
                     );
                 }
             }
         } catch (SQLException ex) {
-            ex.printStackTrace();
+            readFailed(ex);
         }
         return null;
     }
 
-    public void deleteVehicle(Vehicle vehicle) {
+    // False if the vehicle was not deleted, including when it was already gone
+    public boolean deleteVehicle(Vehicle vehicle) {
         try (Connection connection = connect()) {
+            connection.setAutoCommit(false);
+            recordCascadedDeletes(connection, "vehicle_id", vehicle.getId());
             String query = "DELETE FROM vehicles WHERE vehicle_id = ?";
             try (PreparedStatement stmt = connection.prepareStatement(query)) {
                 stmt.setInt(1, vehicle.getId());
-                stmt.executeUpdate();
+                if (stmt.executeUpdate() == 0) {
+                    connection.rollback();
+                    return false;
+                }
+                recordChange(connection, "vehicles", vehicle.getId(), "DELETE");
             }
+            connection.commit();
+            return true;
         } catch (SQLException ex) {
             ex.printStackTrace();
+            return false;
         }
     }
 
-    public void addCustomer(String customerName, String contactInfo, String licenseNumber) {
+    // Returns the new customer's id, or 0 if they were not saved (e.g. the licence number is taken)
+    public int addCustomer(String customerName, String contactInfo, String licenseNumber) {
         try (Connection connection = connect()) {
+            connection.setAutoCommit(false);
             String query = "INSERT INTO customers (customer_name, contact_info, license_number) VALUES (?, ?, ?)";
-            try (PreparedStatement stmt = connection.prepareStatement(query)) {
+            try (PreparedStatement stmt = connection.prepareStatement(query, Statement.RETURN_GENERATED_KEYS)) {
                 stmt.setString(1, customerName);
                 stmt.setString(2, contactInfo);
                 stmt.setString(3, licenseNumber);
                 stmt.executeUpdate();
+                int customerId = generatedKey(stmt);
+                recordChange(connection, "customers", customerId, "INSERT");
+                connection.commit();
+                return customerId;
             }
         } catch (SQLException ex) {
             ex.printStackTrace();
+            return 0;
         }
     }
 
-    public void updateCustomer(int customerId, String customerName, String contactInfo, String licenseNumber) {
+    // Compare-and-set update: only applies if the row still has the version the caller read
+    public UpdateResult updateCustomer(int customerId, int expectedVersion, String customerName, String contactInfo, String licenseNumber) {
         try (Connection connection = connect()) {
-            String query = "UPDATE customers SET customer_name = ?, contact_info = ?, license_number = ? WHERE customer_id = ?";
+            connection.setAutoCommit(false);
+            String query = "UPDATE customers SET customer_name = ?, contact_info = ?, license_number = ?, version = version + 1 WHERE customer_id = ? AND version = ?";
             try (PreparedStatement stmt = connection.prepareStatement(query)) {
                 stmt.setString(1, customerName);
                 stmt.setString(2, contactInfo);
                 stmt.setString(3, licenseNumber);
                 stmt.setInt(4, customerId);
-                stmt.executeUpdate();
+                stmt.setInt(5, expectedVersion);
+                if (stmt.executeUpdate() == 0) {
+                    return UpdateResult.CONFLICT;
+                }
+                recordChange(connection, "customers", customerId, "UPDATE");
             }
+            connection.commit();
+            return UpdateResult.UPDATED;
         } catch (SQLException ex) {
             ex.printStackTrace();
+            return UpdateResult.FAILED;
+        }
+    }
+
+    public Customer getCustomerById(int id) {
+        try (Connection connection = connect()) {
+            String query = CUSTOMER_BY_ID_QUERY;
+            try (PreparedStatement stmt = connection.prepareStatement(query)) {
+                stmt.setInt(1, id);
+                ResultSet rs = stmt.executeQuery();
+                if (rs.next()) {
+                    return new Customer(
+                            rs.getInt("customer_id"),
+                            rs.getString("customer_name"),
+                            rs.getString("contact_info"),
+                            rs.getString("license_number"),
+                            rs.getInt("version")
+                    );
+                }
+            }
+        } catch (SQLException ex) {
+            readFailed(ex);
         }
+        return null;
     }
 
-    public void deleteCustomer(Customer customer) {
+    // False if the customer was not deleted, including when they were already gone
+    public boolean deleteCustomer(Customer customer) {
         try (Connection connection = connect()) {
+            connection.setAutoCommit(false);
+            recordCascadedDeletes(connection, "customer_id", customer.getCustomerId());
             String query = "DELETE FROM customers WHERE customer_id = ?";
             try (PreparedStatement stmt = connection.prepareStatement(query)) {
                 stmt.setInt(1, customer.getCustomerId());
-                stmt.executeUpdate();
+                if (stmt.executeUpdate() == 0) {
+                    connection.rollback();
+                    return false;
+                }
+                recordChange(connection, "customers", customer.getCustomerId(), "DELETE");
             }
+            connection.commit();
+            return true;
         } catch (SQLException ex) {
             ex.printStackTrace();
+            return false;
         }
     }
 
-    public void bookVehicle(String vehicleId, String customerId, LocalDate startDate, LocalDate endDate) {
+    // Folds duplicate customer records into the one being kept: their bookings (live and archived) and
+    // waitlist requests move to keepId before the duplicates are deleted, so the ON DELETE CASCADE on bookings
+    // never fires. All in one transaction; returns the number of bookings moved, or -1 on failure.
+    public int mergeCustomers(int keepId, List<Integer> duplicateIds) {
         try (Connection connection = connect()) {
-            String query = "INSERT INTO bookings (vehicle_id, customer_id, start_date, end_date, booking_date) VALUES (?, ?, ?, ?, NOW())";
-            try (PreparedStatement stmt = connection.prepareStatement(query)) {
-                stmt.setString(1, vehicleId);
-                stmt.setString(2, customerId);
-                stmt.setDate(3, Date.valueOf(startDate));
-                stmt.setDate(4, Date.valueOf(endDate));
-                stmt.executeUpdate();
+            connection.setAutoCommit(false);
+            int moved = 0;
+            for (int duplicateId : duplicateIds) {
+                if (duplicateId == keepId) {
+                    continue;
+                }
+                try (PreparedStatement stmt = connection.prepareStatement(
+                        "INSERT INTO change_log (table_name, entity_id, operation) SELECT 'bookings', booking_id, 'UPDATE' FROM bookings WHERE customer_id = ?")) {
+                    stmt.setInt(1, duplicateId);
+                    stmt.executeUpdate();
+                }
+                for (String table : List.of("bookings", "bookings_archive", "waitlist")) {
+                    try (PreparedStatement stmt = connection.prepareStatement("UPDATE " + table + " SET customer_id = ? WHERE customer_id = ?")) {
+                        stmt.setInt(1, keepId);
+                        stmt.setInt(2, duplicateId);
+                        int updated = stmt.executeUpdate();
+                        if (!table.equals("waitlist")) {
+                            moved += updated;
+                        }
+                    }
+                }
+                try (PreparedStatement stmt = connection.prepareStatement("DELETE FROM customers WHERE customer_id = ?")) {
+                    stmt.setInt(1, duplicateId);
+                    stmt.executeUpdate();
+                }
+                recordChange(connection, "customers", duplicateId, "DELETE");
+            }
+            connection.commit();
+            return moved;
+        } catch (SQLException ex) {
+            ex.printStackTrace();
+            return -1;
+        }
+    }
+
+    // Books the vehicle only if it is rentable and has no overlapping booking; the vehicle row stays locked
+    // until commit so two clerks cannot book the same dates at once
+    public BookingResult bookVehicle(int vehicleId, int customerId, LocalDate startDate, LocalDate endDate) {
+        try (Connection connection = connect()) {
+            connection.setAutoCommit(false);
+            if (!lockIfFree(connection, vehicleId, startDate, endDate, 0)) {
+                connection.rollback();
+                return BookingResult.UNAVAILABLE;
             }
+            insertBooking(connection, vehicleId, customerId, startDate, endDate);
+            connection.commit();
+            return BookingResult.BOOKED;
         } catch (SQLException ex) {
             ex.printStackTrace();
+            return BookingResult.FAILED;
         }
     }
 
-    public void updateBooking(String bookingId, LocalDate startDate, LocalDate endDate) {
+    public BookingResult updateBooking(int bookingId, LocalDate startDate, LocalDate endDate) {
         try (Connection connection = connect()) {
+            connection.setAutoCommit(false);
+            // The booking row stays locked until commit, so it cannot be cancelled or archived under us
+            int vehicleId;
+            try (PreparedStatement stmt = connection.prepareStatement(
+                    "SELECT vehicle_id FROM bookings WHERE booking_id = ? AND branch_id BETWEEN ? AND ? FOR UPDATE")) {
+                stmt.setInt(1, bookingId);
+                bindBranch(stmt, 2);
+                ResultSet rs = stmt.executeQuery();
+                if (!rs.next()) {
+                    connection.rollback();
+                    return BookingResult.NOT_FOUND;
+                }
+                vehicleId = rs.getInt("vehicle_id");
+            }
+            if (!lockIfFree(connection, vehicleId, startDate, endDate, bookingId)) {
+                connection.rollback();
+                return BookingResult.UNAVAILABLE;
+            }
             String query = "UPDATE bookings SET start_date = ?, end_date = ? WHERE booking_id = ?";
             try (PreparedStatement stmt = connection.prepareStatement(query)) {
                 stmt.setDate(1, Date.valueOf(startDate));
                 stmt.setDate(2, Date.valueOf(endDate));
-                stmt.setString(3, bookingId);
+                stmt.setInt(3, bookingId);
                 stmt.executeUpdate();
+                recordChange(connection, "bookings", bookingId, "UPDATE");
             }
+            connection.commit();
+            return BookingResult.BOOKED;
         } catch (SQLException ex) {
             ex.printStackTrace();
+            return BookingResult.FAILED;
         }
     }
 
-    public void deleteBooking(Booking booking) {
-        try (Connection connection = connect()) {
-            String query = "DELETE FROM bookings WHERE booking_id = ?";
+    // Records an early return: the booking ends on the return date, freeing the rest of it for the waitlist.
+    // Setting the same dates again is harmless, so a replay needs no request id.
+    public WriteResult returnVehicle(int bookingId, LocalDate returnedDate) {
+        return writeOrQueue("return of booking " + bookingId + " on " + returnedDate, connection -> {
+            connection.setAutoCommit(false);
+            String query = "UPDATE bookings SET returned_date = ?, end_date = LEAST(end_date, GREATEST(start_date + INTERVAL 1 DAY, ?)) WHERE booking_id = ?";
             try (PreparedStatement stmt = connection.prepareStatement(query)) {
-                stmt.setString(1, booking.getBookingId());
-                stmt.executeUpdate();
+                stmt.setDate(1, Date.valueOf(returnedDate));
+                stmt.setDate(2, Date.valueOf(returnedDate));
+                stmt.setInt(3, bookingId);
+                if (stmt.executeUpdate() == 0) {
+                    connection.rollback();
+                    throw new SQLException("Booking " + bookingId + " does not exist");
+                }
+                recordChange(connection, "bookings", bookingId, "UPDATE");
+            }
+            connection.commit();
+        });
+    }
+
+    // Charges every overdue rental for the days since it was last charged (see LateFeeScheduler) and returns
+    // the fees that were committed. Works through LATE_FEE_BATCH_SIZE bookings per transaction; each booking's
+    // late_fees_through moves to today with its fees, so later runs the same day read nothing.
+    List<LateFeeScheduler.LateFee> chargeLateFees(LocalDate today) {
+        List<LateFeeScheduler.LateFee> charged = new ArrayList<>();
+        LocalDate cutoff = today.minusDays(LateFeeScheduler.GRACE_DAYS);
+        try (Connection connection = connect()) {
+            connection.setAutoCommit(false);
+            Map<String, Double> rates = new HashMap<>();
+            try (PreparedStatement stmt = connection.prepareStatement("SELECT category, daily_rate FROM late_fee_rates")) {
+                ResultSet rs = stmt.executeQuery();
+                while (rs.next()) {
+                    rates.put(rs.getString("category"), rs.getDouble("daily_rate"));
+                }
+            }
+            LocalDate chargeFrom;
+            try (PreparedStatement stmt = connection.prepareStatement("SELECT charge_from FROM late_fee_settings WHERE id = 1")) {
+                ResultSet rs = stmt.executeQuery();
+                chargeFrom = rs.next() ? rs.getDate(1).toLocalDate() : today;
+            }
+            connection.commit();
+            int afterId = 0;
+            boolean retried = false;
+            List<LateFeeScheduler.LateFee> batch = new ArrayList<>();
+            while (true) {
+                batch.clear();
+                int lastId = chargeLateFeeBatch(connection, today, chargeFrom, cutoff, afterId, rates, batch);
+                try {
+                    if (!batch.isEmpty()) {
+                        insertLateFees(connection, batch, today);
+                    }
+                    connection.commit();
+                    charged.addAll(batch);
+                } catch (SQLException ex) {
+                    connection.rollback();
+                    if (ex.getErrorCode() != 1062) {
+                        throw ex;
+                    }
+                    // Another terminal charged some of these days first. Read the batch again, which now skips
+                    // those days; if it conflicts twice, leave it to the next run and go on with the rest.
+                    if (!retried) {
+                        retried = true;
+                        continue;
+                    }
+                }
+                retried = false;
+                if (lastId == afterId) {
+                    break;
+                }
+                afterId = lastId;
             }
         } catch (SQLException ex) {
             ex.printStackTrace();
         }
+        return charged;
+    }
+
+    // Adds the fees owed by the next LATE_FEE_BATCH_SIZE open bookings after afterId to fees, and returns the
+    // last booking id read (afterId when there were none left)
+    private int chargeLateFeeBatch(Connection connection, LocalDate today, LocalDate chargeFrom, LocalDate cutoff, int afterId,
+                                   Map<String, Double> rates, List<LateFeeScheduler.LateFee> fees) throws SQLException {
+        int lastId = afterId;
+        try (PreparedStatement stmt = connection.prepareStatement(OVERDUE_BOOKINGS_QUERY)) {
+            stmt.setDate(1, Date.valueOf(today));
+            stmt.setDate(2, Date.valueOf(chargeFrom));
+            stmt.setDate(3, Date.valueOf(cutoff));
+            stmt.setInt(4, afterId);
+            bindBranch(stmt, 5);
+            stmt.setInt(7, LATE_FEE_BATCH_SIZE);
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                lastId = rs.getInt("booking_id");
+                LocalDate endDate = rs.getDate("end_date").toLocalDate();
+                Date chargedThrough = rs.getDate("late_fees_through");
+                LocalDate firstDay = (chargedThrough == null ? endDate : chargedThrough.toLocalDate()).plusDays(1);
+                if (firstDay.isAfter(today)) {
+                    continue;
+                }
+                double rate = rates.getOrDefault(rs.getString("category"), LateFeeScheduler.DEFAULT_DAILY_RATE);
+                fees.add(new LateFeeScheduler.LateFee(lastId, rs.getInt("customer_id"), rs.getInt("vehicle_id"),
+                        endDate, firstDay, today, rate));
+            }
+        }
+        return lastId;
+    }
+
+    // Late fees go into payments as one LATE_FEE row per overdue day, one batched INSERT for the rows and one for
+    // their outbox entries. The unique (booking_id, fee_date) index fails the batch if another terminal got to
+    // a day first, so no day is ever charged twice. The bookings' high-water mark moves to today in the same
+    // transaction.
+    private void insertLateFees(Connection connection, List<LateFeeScheduler.LateFee> fees, LocalDate today) throws SQLException {
+        Timestamp chargedAt = new Timestamp(System.currentTimeMillis());
+        List<Integer> paymentIds = new ArrayList<>();
+        String query = "INSERT INTO payments (booking_id, amount, payment_type, payment_date, fee_date) VALUES (?, ?, 'LATE_FEE', ?, ?)";
+        try (PreparedStatement stmt = connection.prepareStatement(query, Statement.RETURN_GENERATED_KEYS)) {
+            for (LateFeeScheduler.LateFee fee : fees) {
+                for (LocalDate day = fee.getFirstDay(); !day.isAfter(fee.getLastDay()); day = day.plusDays(1)) {
+                    stmt.setInt(1, fee.getBookingId());
+                    stmt.setDouble(2, fee.getDailyRate());
+                    stmt.setTimestamp(3, chargedAt);
+                    stmt.setDate(4, Date.valueOf(day));
+                    stmt.addBatch();
+                }
+            }
+            stmt.executeBatch();
+            try (ResultSet keys = stmt.getGeneratedKeys()) {
+                while (keys.next()) {
+                    paymentIds.add(keys.getInt(1));
+                }
+            }
+        }
+        try (PreparedStatement stmt = connection.prepareStatement("UPDATE bookings SET late_fees_through = ? WHERE booking_id = ?")) {
+            for (LateFeeScheduler.LateFee fee : fees) {
+                stmt.setDate(1, Date.valueOf(today));
+                stmt.setInt(2, fee.getBookingId());
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+        try (PreparedStatement stmt = connection.prepareStatement("INSERT INTO change_log (table_name, entity_id, operation) VALUES ('payments', ?, 'INSERT')")) {
+            for (int paymentId : paymentIds) {
+                stmt.setInt(1, paymentId);
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+        lastWriteAt.set(System.currentTimeMillis());
     }
 
-    public void processPayment(String bookingId, double amount) {
+    // Total of the late fees charged on a booking, for the invoice
+    public double getLateFees(int bookingId) {
         try (Connection connection = connect()) {
-            String query = "INSERT INTO payments (booking_id, amount, payment_date) VALUES (?, ?, NOW())";
+            String query = "SELECT COALESCE(SUM(amount), 0) FROM payments WHERE booking_id = ? AND payment_type = 'LATE_FEE'";
             try (PreparedStatement stmt = connection.prepareStatement(query)) {
-                stmt.setString(1, bookingId);
-                stmt.setDouble(2, amount);
+                stmt.setInt(1, bookingId);
+                ResultSet rs = stmt.executeQuery();
+                rs.next();
+                return rs.getDouble(1);
+            }
+        } catch (SQLException ex) {
+            readFailed(ex);
+            return 0;
+        }
+    }
+
+    public boolean addToWaitlist(int customerId, String category, LocalDate startDate, LocalDate endDate, int priority) {
+        try (Connection connection = connect()) {
+            String query = "INSERT INTO waitlist (customer_id, category, start_date, end_date, priority, branch_id) VALUES (?, ?, ?, ?, ?, ?)";
+            try (PreparedStatement stmt = connection.prepareStatement(query)) {
+                stmt.setInt(1, customerId);
+                stmt.setString(2, category);
+                stmt.setDate(3, Date.valueOf(startDate));
+                stmt.setDate(4, Date.valueOf(endDate));
+                stmt.setInt(5, priority);
+                stmt.setInt(6, ownBranch());
                 stmt.executeUpdate();
             }
+            return true;
         } catch (SQLException ex) {
             ex.printStackTrace();
+            return false;
         }
     }
 
-    public ObservableList<Vehicle> getAllVehicles() {
-        ObservableList<Vehicle> vehicleList = FXCollections.observableArrayList();
+    // Open requests in the order they are served: highest priority first, then first come first served
+    public List<WaitlistScheduler.Request> getWaitingRequests() {
+        List<WaitlistScheduler.Request> requests = new ArrayList<>();
         try (Connection connection = connect()) {
-            String query = "SELECT * FROM vehicles";
+            String query = "SELECT * FROM waitlist WHERE status = 'WAITING' AND end_date > CURDATE() AND branch_id BETWEEN ? AND ? ORDER BY priority DESC, requested_at, request_id";
             try (PreparedStatement stmt = connection.prepareStatement(query)) {
+                bindBranch(stmt, 1);
                 ResultSet rs = stmt.executeQuery();
                 while (rs.next()) {
-                    Vehicle vehicle = new Vehicle(
-                            rs.getInt("vehicle_id"),
-                            rs.getString("brand"),
-                            rs.getString("model"),
+                    requests.add(new WaitlistScheduler.Request(
+                            rs.getInt("request_id"),
+                            rs.getInt("customer_id"),
                             rs.getString("category"),
-                            rs.getDouble("rental_price"),
-                            rs.getString("availability_status")
-                    );
-                    vehicleList.add(vehicle);
+                            rs.getDate("start_date").toLocalDate(),
+                            rs.getDate("end_date").toLocalDate(),
+                            rs.getInt("priority")
+                    ));
                 }
             }
+        } catch (SQLException ex) {
+            readFailed(ex);
+        }
+        return requests;
+    }
+
+    public void cancelWaitlistRequest(int requestId) {
+        try (Connection connection = connect()) {
+            String query = "UPDATE waitlist SET status = 'CANCELLED' WHERE request_id = ? AND status = 'WAITING'";
+            try (PreparedStatement stmt = connection.prepareStatement(query)) {
+                stmt.setInt(1, requestId);
+                stmt.executeUpdate();
+            }
         } catch (SQLException ex) {
             ex.printStackTrace();
         }
-        return vehicleList;
     }
 
-    public ObservableList<Customer> getAllCustomers() {
-        ObservableList<Customer> customerList = FXCollections.observableArrayList();
+    // Turns a waiting request into a booking on the given vehicle. Claiming the request and booking the
+    // vehicle happen in one transaction, so concurrent schedulers cannot assign it twice or double-book.
+    public boolean assignWaitlistRequest(WaitlistScheduler.Request request, int vehicleId) {
+        try (Connection connection = connect()) {
+            connection.setAutoCommit(false);
+            String query = "UPDATE waitlist SET status = 'ASSIGNED' WHERE request_id = ? AND status = 'WAITING'";
+            try (PreparedStatement stmt = connection.prepareStatement(query)) {
+                stmt.setInt(1, request.getRequestId());
+                if (stmt.executeUpdate() == 0) {
+                    connection.rollback();
+                    return false;
+                }
+            }
+            if (!lockIfFree(connection, vehicleId, request.getStartDate(), request.getEndDate(), 0)) {
+                connection.rollback();
+                return false;
+            }
+            int bookingId = insertBooking(connection, vehicleId, request.getCustomerId(), request.getStartDate(), request.getEndDate());
+            try (PreparedStatement stmt = connection.prepareStatement("UPDATE waitlist SET booking_id = ? WHERE request_id = ?")) {
+                stmt.setInt(1, bookingId);
+                stmt.setInt(2, request.getRequestId());
+                stmt.executeUpdate();
+            }
+            connection.commit();
+            return true;
+        } catch (SQLException ex) {
+            ex.printStackTrace();
+            return false;
+        }
+    }
+
+    // Locks the vehicle row and reports whether it is rentable and free over [startDate, endDate),
+    // ignoring the booking being edited
+    private boolean lockIfFree(Connection connection, int vehicleId, LocalDate startDate, LocalDate endDate, int ignoredBookingId) throws SQLException {
+        String lockQuery = "SELECT availability_status FROM vehicles WHERE vehicle_id = ? AND branch_id BETWEEN ? AND ? FOR UPDATE";
+        try (PreparedStatement stmt = connection.prepareStatement(lockQuery)) {
+            stmt.setInt(1, vehicleId);
+            bindBranch(stmt, 2);
+            ResultSet rs = stmt.executeQuery();
+            if (!rs.next() || !"Available".equals(rs.getString("availability_status"))) {
+                return false;
+            }
+        }
+        try (PreparedStatement stmt = connection.prepareStatement(VEHICLE_OVERLAP_QUERY)) {
+            stmt.setInt(1, vehicleId);
+            stmt.setDate(2, Date.valueOf(endDate));
+            stmt.setDate(3, Date.valueOf(startDate));
+            stmt.setInt(4, ignoredBookingId);
+            return !stmt.executeQuery().next();
+        }
+    }
+
+    private int insertBooking(Connection connection, int vehicleId, int customerId, LocalDate startDate, LocalDate endDate) throws SQLException {
+        // The booking belongs to the branch the vehicle is kept at
+        String query = "INSERT INTO bookings (vehicle_id, customer_id, start_date, end_date, booking_date, branch_id) "
+                + "SELECT ?, ?, ?, ?, NOW(), branch_id FROM vehicles WHERE vehicle_id = ?";
+        try (PreparedStatement stmt = connection.prepareStatement(query, Statement.RETURN_GENERATED_KEYS)) {
+            stmt.setInt(1, vehicleId);
+            stmt.setInt(2, customerId);
+            stmt.setDate(3, Date.valueOf(startDate));
+            stmt.setDate(4, Date.valueOf(endDate));
+            stmt.setInt(5, vehicleId);
+            stmt.executeUpdate();
+            int bookingId = generatedKey(stmt);
+            recordChange(connection, "bookings", bookingId, "INSERT");
+            return bookingId;
+        }
+    }
+
+    public Booking getBookingById(int id) {
         try (Connection connection = connect()) {
-            String query = "SELECT * FROM customers";
+            String query = BOOKING_BY_ID_QUERY;
             try (PreparedStatement stmt = connection.prepareStatement(query)) {
+                stmt.setInt(1, id);
+                bindBranch(stmt, 2);
                 ResultSet rs = stmt.executeQuery();
-                while (rs.next()) {
-                    Customer customer = new Customer(
-                            rs.getInt("customer_id"),
-                            rs.getString("customer_name"),
-                            rs.getString("contact_info"),
-                            rs.getString("license_number")
+                if (rs.next()) {
+                    return new Booking(
+                            rs.getString("booking_id"),
+                            rs.getString("vehicle_id"),
+                            rs.getString("customer_id"),
+                            rs.getDate("start_date").toLocalDate(),
+                            rs.getDate("end_date").toLocalDate(),
+                            rs.getDate("booking_date")
                     );
-                    customerList.add(customer);
                 }
             }
+        } catch (SQLException ex) {
+            readFailed(ex);
+        }
+        return null;
+    }
+
+    // False if the booking was not deleted, including when it was already gone
+    public boolean deleteBooking(Booking booking) {
+        try (Connection connection = connect()) {
+            connection.setAutoCommit(false);
+            int bookingId = Integer.parseInt(booking.getBookingId());
+            recordCascadedDeletes(connection, "booking_id", bookingId);
+            String query = "DELETE FROM bookings WHERE booking_id = ?";
+            try (PreparedStatement stmt = connection.prepareStatement(query)) {
+                stmt.setInt(1, bookingId);
+                if (stmt.executeUpdate() == 0) {
+                    connection.rollback();
+                    return false;
+                }
+                recordChange(connection, "bookings", bookingId, "DELETE");
+            }
+            connection.commit();
+            return true;
         } catch (SQLException ex) {
             ex.printStackTrace();
+            return false;
+        }
+    }
+
+    public WriteResult processPayment(int bookingId, double amount) {
+        return processPayment(bookingId, amount, 0);
+    }
+
+    // amount is what the customer paid in total; extras is the part of it for services on top of the rental,
+    // which reconciliation adds to the booking's expected cost
+    public WriteResult processPayment(int bookingId, double amount, double extras) {
+        // The payment date and request id are taken now, not when a queued payment is finally written; the
+        // request id makes a replay of a payment that already landed a no-op
+        Timestamp paidAt = new Timestamp(System.currentTimeMillis());
+        String requestId = UUID.randomUUID().toString();
+        return writeOrQueue("payment of R" + amount + " for booking " + bookingId, connection -> {
+            connection.setAutoCommit(false);
+            try (PreparedStatement stmt = connection.prepareStatement("SELECT 1 FROM payments WHERE request_id = ? FOR UPDATE")) {
+                stmt.setString(1, requestId);
+                if (stmt.executeQuery().next()) {
+                    connection.rollback();
+                    return;
+                }
+            }
+            String query = "INSERT INTO payments (booking_id, amount, extras, payment_date, request_id) VALUES (?, ?, ?, ?, ?)";
+            try (PreparedStatement stmt = connection.prepareStatement(query, Statement.RETURN_GENERATED_KEYS)) {
+                stmt.setInt(1, bookingId);
+                stmt.setDouble(2, amount);
+                stmt.setDouble(3, extras);
+                stmt.setTimestamp(4, paidAt);
+                stmt.setString(5, requestId);
+                stmt.executeUpdate();
+                recordChange(connection, "payments", generatedKey(stmt), "INSERT");
+            }
+            connection.commit();
+        });
+    }
+
+    // Writes the outbox row for a mutation on the mutation's own connection, so both commit together
+    private void recordChange(Connection connection, String tableName, int entityId, String operation) throws SQLException {
+        lastWriteAt.set(System.currentTimeMillis());
+        String query = "INSERT INTO change_log (table_name, entity_id, operation) VALUES (?, ?, ?)";
+        try (PreparedStatement stmt = connection.prepareStatement(query)) {
+            stmt.setString(1, tableName);
+            stmt.setInt(2, entityId);
+            stmt.setString(3, operation);
+            stmt.executeUpdate();
+        }
+    }
+
+    // ON DELETE CASCADE removes a vehicle's or customer's bookings and every booking's payments without
+    // outbox rows of their own, so they are written here, before the parent row is deleted
+    private void recordCascadedDeletes(Connection connection, String parentColumn, int parentId) throws SQLException {
+        List<String> queries = new ArrayList<>();
+        queries.add("INSERT INTO change_log (table_name, entity_id, operation) SELECT 'payments', p.payment_id, 'DELETE' "
+                + "FROM payments p JOIN bookings b ON b.booking_id = p.booking_id WHERE b." + parentColumn + " = ?");
+        if (!parentColumn.equals("booking_id")) {
+            queries.add("INSERT INTO change_log (table_name, entity_id, operation) SELECT 'bookings', booking_id, 'DELETE' "
+                    + "FROM bookings WHERE " + parentColumn + " = ?");
+        }
+        for (String query : queries) {
+            try (PreparedStatement stmt = connection.prepareStatement(query)) {
+                stmt.setInt(1, parentId);
+                stmt.executeUpdate();
+            }
+        }
+    }
+
+    private int generatedKey(PreparedStatement stmt) throws SQLException {
+        try (ResultSet keys = stmt.getGeneratedKeys()) {
+            return keys.next() ? keys.getInt(1) : 0;
+        }
+    }
+
+    // Highest change id at the time of the call, used as the starting point of a change feed. It is read on
+    // the same side as the list loads that follow it, so a lagging replica only means a longer replay.
+    public long getLatestChangeId() {
+        try (Connection connection = connectForRead()) {
+            String query = "SELECT COALESCE(MAX(change_id), 0) FROM change_log";
+            try (PreparedStatement stmt = connection.prepareStatement(query)) {
+                ResultSet rs = stmt.executeQuery();
+                if (rs.next()) {
+                    return rs.getLong(1);
+                }
+            }
+        } catch (SQLException ex) {
+            readFailed(ex);
+        }
+        return 0;
+    }
+
+    // Outbox rows written after the given change id, oldest first
+    public List<ChangeFeed.Change> getChangesSince(long changeId, int limit) {
+        List<ChangeFeed.Change> changes = new ArrayList<>();
+        try (Connection connection = connect()) {
+            String query = CHANGES_SINCE_QUERY;
+            try (PreparedStatement stmt = connection.prepareStatement(query)) {
+                stmt.setLong(1, changeId);
+                stmt.setInt(2, limit);
+                readChanges(stmt, changes);
+            }
+        } catch (SQLException ex) {
+            readFailed(ex);
+        }
+        return changes;
+    }
+
+    // Outbox rows with the given change ids that exist by now, oldest first; the feed's gap check
+    public List<ChangeFeed.Change> getChangesIn(List<Long> changeIds) {
+        List<ChangeFeed.Change> changes = new ArrayList<>();
+        try (Connection connection = connect()) {
+            for (int from = 0; from < changeIds.size(); from += 500) {
+                List<Long> ids = changeIds.subList(from, Math.min(changeIds.size(), from + 500));
+                String query = "SELECT change_id, table_name, entity_id, operation FROM change_log WHERE change_id IN ("
+                        + "?, ".repeat(ids.size() - 1) + "?) ORDER BY change_id";
+                try (PreparedStatement stmt = connection.prepareStatement(query)) {
+                    for (int i = 0; i < ids.size(); i++) {
+                        stmt.setLong(i + 1, ids.get(i));
+                    }
+                    readChanges(stmt, changes);
+                }
+            }
+        } catch (SQLException ex) {
+            readFailed(ex);
+        }
+        return changes;
+    }
+
+    private void readChanges(PreparedStatement stmt, List<ChangeFeed.Change> changes) throws SQLException {
+        ResultSet rs = stmt.executeQuery();
+        while (rs.next()) {
+            changes.add(new ChangeFeed.Change(
+                    rs.getLong("change_id"),
+                    rs.getString("table_name"),
+                    rs.getInt("entity_id"),
+                    rs.getString("operation")
+            ));
+        }
+    }
+
+    public ObservableList<Vehicle> getAllVehicles() {
+        ObservableList<Vehicle> vehicleList = FXCollections.observableArrayList();
+        try (Connection connection = connectForRead()) {
+            readAllVehicles(connection, vehicleList);
+        } catch (SQLException ex) {
+            readFailed(ex);
+        }
+        return vehicleList;
+    }
+
+    private void readAllVehicles(Connection connection, List<Vehicle> vehicleList) throws SQLException {
+        String query = "SELECT * FROM vehicles WHERE branch_id BETWEEN ? AND ?";
+        try (PreparedStatement stmt = connection.prepareStatement(query)) {
+            bindBranch(stmt, 1);
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                Vehicle vehicle = new Vehicle(
+                        rs.getInt("vehicle_id"),
+                        rs.getString("brand"),
+                        rs.getString("model"),
+                        rs.getString("category"),
+                        rs.getDouble("rental_price"),
+                        rs.getString("availability_status"),
+                        rs.getInt("version")
+                );
+                vehicleList.add(vehicle);
+            }
+        }
+    }
+
+    public ObservableList<Customer> getAllCustomers() {
+        ObservableList<Customer> customerList = FXCollections.observableArrayList();
+        try (Connection connection = connectForRead()) {
+            readAllCustomers(connection, customerList);
+        } catch (SQLException ex) {
+            readFailed(ex);
         }
         return customerList;
     }
 
+    private void readAllCustomers(Connection connection, List<Customer> customerList) throws SQLException {
+        String query = "SELECT * FROM customers";
+        try (PreparedStatement stmt = connection.prepareStatement(query)) {
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                Customer customer = new Customer(
+                        rs.getInt("customer_id"),
+                        rs.getString("customer_name"),
+                        rs.getString("contact_info"),
+                        rs.getString("license_number"),
+                        rs.getInt("version")
+                );
+                customerList.add(customer);
+            }
+        }
+    }
+
+    // Vehicles and customers from the primary in one consistent snapshot, for repairing lists that the
+    // reconcile found out of step; null when the read fails, so a failure never replaces them with nothing
+    public ReferenceSnapshot readReference() {
+        try (Connection connection = connect()) {
+            connection.setAutoCommit(false);
+            try (Statement stmt = connection.createStatement()) {
+                stmt.execute("START TRANSACTION WITH CONSISTENT SNAPSHOT");
+            }
+            List<Vehicle> vehicles = new ArrayList<>();
+            List<Customer> customers = new ArrayList<>();
+            readAllVehicles(connection, vehicles);
+            readAllCustomers(connection, customers);
+            connection.commit();
+            return new ReferenceSnapshot(0, vehicles, customers);
+        } catch (SQLException ex) {
+            ex.printStackTrace();
+            return null;
+        }
+    }
+
+    // The database side of ReferenceSnapshot.checksum, read from the primary; null when the read fails
+    public ReferenceSnapshot.Checksum getReferenceChecksum() {
+        try (Connection connection = connect()) {
+            connection.setAutoCommit(false);
+            try (Statement stmt = connection.createStatement()) {
+                stmt.execute("START TRANSACTION WITH CONSISTENT SNAPSHOT");
+            }
+            long[] vehicles;
+            long[] customers;
+            try (PreparedStatement stmt = connection.prepareStatement(
+                    "SELECT COUNT(*), COALESCE(BIT_XOR(CRC32(CONCAT(vehicle_id, ':', version))), 0) FROM vehicles WHERE branch_id BETWEEN ? AND ?")) {
+                bindBranch(stmt, 1);
+                vehicles = countAndHash(stmt.executeQuery());
+            }
+            try (PreparedStatement stmt = connection.prepareStatement(
+                    "SELECT COUNT(*), COALESCE(BIT_XOR(CRC32(CONCAT(customer_id, ':', version))), 0) FROM customers")) {
+                customers = countAndHash(stmt.executeQuery());
+            }
+            connection.commit();
+            return new ReferenceSnapshot.Checksum(vehicles[0], vehicles[1], customers[0], customers[1]);
+        } catch (SQLException ex) {
+            ex.printStackTrace();
+            return null;
+        }
+    }
+
+    private static long[] countAndHash(ResultSet rs) throws SQLException {
+        rs.next();
+        return new long[]{rs.getLong(1), rs.getLong(2)};
+    }
+
     public ObservableList<Booking> getAllBookings() {
         ObservableList<Booking> bookingList = FXCollections.observableArrayList();
-        try (Connection connection = connect()) {
-            String query = "SELECT * FROM bookings";
+        try (Connection connection = connectForRead()) {
+            String query = "SELECT * FROM bookings WHERE branch_id BETWEEN ? AND ?";
             try (PreparedStatement stmt = connection.prepareStatement(query)) {
+                bindBranch(stmt, 1);
                 ResultSet rs = stmt.executeQuery();
                 while (rs.next()) {
                     Booking booking = new Booking(
@@ -1090,16 +2934,221 @@ class DbConnector {
                 }
             }
         } catch (SQLException ex) {
-            ex.printStackTrace();
+            readFailed(ex);
         }
         return bookingList;
     }
 
+    // Daily rental price per vehicle id, loaded once per report instead of once per booking
+    public Map<Integer, Double> getVehiclePrices() {
+        Map<Integer, Double> prices = new HashMap<>();
+        try (Connection connection = connectForRead()) {
+            String query = "SELECT vehicle_id, rental_price FROM vehicles WHERE branch_id BETWEEN ? AND ?";
+            try (PreparedStatement stmt = connection.prepareStatement(query)) {
+                bindBranch(stmt, 1);
+                ResultSet rs = stmt.executeQuery();
+                while (rs.next()) {
+                    prices.put(rs.getInt("vehicle_id"), rs.getDouble("rental_price"));
+                }
+            }
+        } catch (SQLException ex) {
+            readFailed(ex);
+        }
+        return prices;
+    }
+
+    // Bookings whose start date falls between from and to (both inclusive)
+    public List<Booking> getBookingsStartingBetween(LocalDate from, LocalDate to) {
+        List<Booking> bookings = new ArrayList<>();
+        try (Connection connection = connectForRead()) {
+            String query = BOOKINGS_STARTING_BETWEEN_QUERY;
+            try (PreparedStatement stmt = connection.prepareStatement(query)) {
+                stmt.setDate(1, Date.valueOf(from));
+                stmt.setDate(2, Date.valueOf(to));
+                bindBranch(stmt, 3);
+                ResultSet rs = stmt.executeQuery();
+                while (rs.next()) {
+                    bookings.add(new Booking(
+                            rs.getString("booking_id"),
+                            rs.getString("vehicle_id"),
+                            rs.getString("customer_id"),
+                            rs.getDate("start_date").toLocalDate(),
+                            rs.getDate("end_date").toLocalDate(),
+                            rs.getDate("booking_date")
+                    ));
+                }
+            }
+        } catch (SQLException ex) {
+            readFailed(ex);
+        }
+        return bookings;
+    }
+
+    // Bookings that overlap the window [from, to)
+    public List<Booking> getBookingsOverlapping(LocalDate from, LocalDate to) {
+        List<Booking> bookings = new ArrayList<>();
+        try (Connection connection = connectForRead()) {
+            String query = BOOKINGS_OVERLAPPING_QUERY;
+            try (PreparedStatement stmt = connection.prepareStatement(query)) {
+                stmt.setDate(1, Date.valueOf(to));
+                stmt.setDate(2, Date.valueOf(from));
+                bindBranch(stmt, 3);
+                ResultSet rs = stmt.executeQuery();
+                while (rs.next()) {
+                    bookings.add(new Booking(
+                            rs.getString("booking_id"),
+                            rs.getString("vehicle_id"),
+                            rs.getString("customer_id"),
+                            rs.getDate("start_date").toLocalDate(),
+                            rs.getDate("end_date").toLocalDate(),
+                            rs.getDate("booking_date")
+                    ));
+                }
+            }
+        } catch (SQLException ex) {
+            readFailed(ex);
+        }
+        return bookings;
+    }
+
+    // Bookings of the given vehicles that overlap [from, to): one tile of the booking calendar
+    public List<Booking> getBookingsForTimeline(List<Integer> vehicleIds, LocalDate from, LocalDate to) {
+        List<Booking> bookings = new ArrayList<>();
+        if (vehicleIds.isEmpty()) {
+            return bookings;
+        }
+        try (Connection connection = connectForRead()) {
+            String query = timelineBookingsQuery(vehicleIds.size());
+            try (PreparedStatement stmt = connection.prepareStatement(query)) {
+                int index = 1;
+                for (int vehicleId : vehicleIds) {
+                    stmt.setInt(index++, vehicleId);
+                }
+                stmt.setDate(index++, Date.valueOf(from));
+                stmt.setDate(index++, Date.valueOf(to));
+                bindBranch(stmt, index);
+                ResultSet rs = stmt.executeQuery();
+                while (rs.next()) {
+                    bookings.add(new Booking(
+                            rs.getString("booking_id"),
+                            rs.getString("vehicle_id"),
+                            rs.getString("customer_id"),
+                            rs.getDate("start_date").toLocalDate(),
+                            rs.getDate("end_date").toLocalDate(),
+                            rs.getDate("booking_date")
+                    ));
+                }
+            }
+        } catch (SQLException ex) {
+            readFailed(ex);
+        }
+        return bookings;
+    }
+
+    // {earliest start_date, latest end_date} over all bookings, or null when there are none
+    public LocalDate[] getBookingDateRange() {
+        try (Connection connection = connectForRead()) {
+            String query = "SELECT MIN(start_date), MAX(end_date) FROM bookings WHERE branch_id BETWEEN ? AND ?";
+            try (PreparedStatement stmt = connection.prepareStatement(query)) {
+                bindBranch(stmt, 1);
+                ResultSet rs = stmt.executeQuery();
+                if (rs.next() && rs.getDate(1) != null) {
+                    return new LocalDate[]{rs.getDate(1).toLocalDate(), rs.getDate(2).toLocalDate()};
+                }
+            }
+        } catch (SQLException ex) {
+            readFailed(ex);
+        }
+        return null;
+    }
+
+    // Date before which every closed booking has been moved to the archive, or null if nothing was archived
+    public LocalDate getArchiveHorizon() {
+        try (Connection connection = connectForRead()) {
+            String query = "SELECT archived_before FROM archive_state WHERE id = 1";
+            try (PreparedStatement stmt = connection.prepareStatement(query)) {
+                ResultSet rs = stmt.executeQuery();
+                if (rs.next()) {
+                    return rs.getDate("archived_before").toLocalDate();
+                }
+            }
+        } catch (SQLException ex) {
+            readFailed(ex);
+        }
+        return null;
+    }
+
+    // Archived bookings that start between from and to (inclusive)
+    public List<Booking> getArchivedBookingsStartingBetween(LocalDate from, LocalDate to) {
+        List<Booking> bookings = new ArrayList<>();
+        try (Connection connection = connectForRead()) {
+            String query = "SELECT * FROM bookings_archive WHERE start_date BETWEEN ? AND ? AND branch_id BETWEEN ? AND ?";
+            try (PreparedStatement stmt = connection.prepareStatement(query)) {
+                stmt.setDate(1, Date.valueOf(from));
+                stmt.setDate(2, Date.valueOf(to));
+                bindBranch(stmt, 3);
+                ResultSet rs = stmt.executeQuery();
+                while (rs.next()) {
+                    bookings.add(new Booking(
+                            rs.getString("booking_id"),
+                            rs.getString("vehicle_id"),
+                            rs.getString("customer_id"),
+                            rs.getDate("start_date").toLocalDate(),
+                            rs.getDate("end_date").toLocalDate(),
+                            rs.getDate("booking_date")
+                    ));
+                }
+            }
+        } catch (SQLException ex) {
+            readFailed(ex);
+        }
+        return bookings;
+    }
+
+    // Number of archived bookings per customer id
+    public Map<String, Integer> getArchivedRentalCounts() {
+        Map<String, Integer> counts = new HashMap<>();
+        try (Connection connection = connectForRead()) {
+            String query = "SELECT customer_id, COUNT(*) AS rentals FROM bookings_archive WHERE branch_id BETWEEN ? AND ? GROUP BY customer_id";
+            try (PreparedStatement stmt = connection.prepareStatement(query)) {
+                bindBranch(stmt, 1);
+                ResultSet rs = stmt.executeQuery();
+                while (rs.next()) {
+                    counts.put(rs.getString("customer_id"), rs.getInt("rentals"));
+                }
+            }
+        } catch (SQLException ex) {
+            readFailed(ex);
+        }
+        return counts;
+    }
+
+    // Revenue of archived bookings per start month between from and to, read from the monthly summaries
+    public Map<YearMonth, Double> getArchivedRevenueByMonth(LocalDate from, LocalDate to) {
+        Map<YearMonth, Double> revenue = new HashMap<>();
+        try (Connection connection = connectForRead()) {
+            String query = "SELECT month, SUM(revenue) AS revenue FROM booking_month_summary WHERE month BETWEEN ? AND ? AND branch_id BETWEEN ? AND ? GROUP BY month";
+            try (PreparedStatement stmt = connection.prepareStatement(query)) {
+                stmt.setDate(1, Date.valueOf(from.withDayOfMonth(1)));
+                stmt.setDate(2, Date.valueOf(to));
+                bindBranch(stmt, 3);
+                ResultSet rs = stmt.executeQuery();
+                while (rs.next()) {
+                    revenue.put(YearMonth.from(rs.getDate("month").toLocalDate()), rs.getDouble("revenue"));
+                }
+            }
+        } catch (SQLException ex) {
+            readFailed(ex);
+        }
+        return revenue;
+    }
+
     public ObservableList<Vehicle> getAvailableVehicles() {
         ObservableList<Vehicle> availableVehicles = FXCollections.observableArrayList();
-        try (Connection connection = connect()) {
-            String query = "SELECT * FROM vehicles WHERE availability_status = 'Available'";
+        try (Connection connection = connectForRead()) {
+            String query = AVAILABLE_VEHICLES_QUERY;
             try (PreparedStatement stmt = connection.prepareStatement(query)) {
+                bindBranch(stmt, 1);
                 ResultSet rs = stmt.executeQuery();
                 while (rs.next()) {
                     Vehicle vehicle = new Vehicle(
@@ -1108,13 +3157,14 @@ class DbConnector {
                             rs.getString("model"),
                             rs.getString("category"),
                             rs.getDouble("rental_price"),
-                            rs.getString("availability_status")
+                            rs.getString("availability_status"),
+                            rs.getInt("version")
                     );
                     availableVehicles.add(vehicle);
                 }
             }
         } catch (SQLException ex) {
-            ex.printStackTrace();
+            readFailed(ex);
         }
         return availableVehicles;
     }
@@ -1128,20 +3178,34 @@ class Vehicle {
     private String category; // Ensure category is included here
     private double rentalPrice;
     private boolean available;
+    private int version; // Row version for optimistic concurrency
 
     public Vehicle(int id, String brand, String model, String category, double rentalPrice, String availabilityStatus) {
+        this(id, brand, model, category, rentalPrice, availabilityStatus, 0);
+    }
+
+    public Vehicle(int id, String brand, String model, String category, double rentalPrice, String availabilityStatus, int version) {
         this.vehicle_id = id;
         this.brand = brand;
         this.model = model;
         this.category = category; // Initialize category
         this.rentalPrice = rentalPrice;
         this.available = "Available".equals(availabilityStatus);
+        this.version = version;
     }
 
     public int getId() {
         return vehicle_id;
     }
 
+    public String getBrand() {
+        return brand;
+    }
+
+    public String getModel() {
+        return model;
+    }
+
     public String getBrandModel() {
         return brand + " " + model;
     }
@@ -1158,6 +3222,10 @@ class Vehicle {
         return available;
     }
 
+    public int getVersion() {
+        return version;
+    }
+
     @Override
     public String toString() {
         return vehicle_id + " - " + getBrandModel() + " - " + category + " - R" + rentalPrice + (available ? " (Available)" : " (Not Available)");
@@ -1170,12 +3238,18 @@ class Customer {
     private String customerName;
     private String contactInfo;
     private String licenseNumber;
+    private int version; // Row version for optimistic concurrency
 
     public Customer(int customerId, String customerName, String contactInfo, String licenseNumber) {
+        this(customerId, customerName, contactInfo, licenseNumber, 0);
+    }
+
+    public Customer(int customerId, String customerName, String contactInfo, String licenseNumber, int version) {
         this.customerId = customerId;
         this.customerName = customerName;
         this.contactInfo = contactInfo;
         this.licenseNumber = licenseNumber;
+        this.version = version;
     }
 
     public int getCustomerId() {
@@ -1194,6 +3268,10 @@ class Customer {
         return licenseNumber;
     }
 
+    public int getVersion() {
+        return version;
+    }
+
     @Override
     public String toString() {
         return customerName + " - " + contactInfo + " (License: " + licenseNumber + ")";
@@ -1247,4 +3325,26 @@ class Booking {
         return "Booking ID: " + bookingId + ", Vehicle ID: " + vehicleId + ", Customer ID: " + customerId +
                 ", Dates: " + startDate + " to " + endDate + ", Booking Date: " + bookingDate;
     }
-}
\ No newline at end of file
+}
+
+// Outcome of a write that may be held back while the database is unreachable
+enum WriteResult {
+    SAVED,
+    QUEUED, // Held in the write-behind queue and saved automatically once the database is back
+    FAILED
+}
+
+// Outcome of booking or re-dating a vehicle
+enum BookingResult {
+    BOOKED,
+    UNAVAILABLE, // Not rentable, or already booked for part of the requested dates
+    NOT_FOUND, // The booking to update no longer exists
+    FAILED
+}
+
+// Outcome of a compare-and-set update
+enum UpdateResult {
+    UPDATED,
+    CONFLICT, // The row was changed or deleted since the caller read it
+    FAILED
+}
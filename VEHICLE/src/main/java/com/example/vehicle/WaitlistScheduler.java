@@ -0,0 +1,215 @@
+package com.example.vehicle;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+// Assigns freed vehicles to waitlisted requests. A run is triggered from the change feed whenever a booking
+// is cancelled or shortened (including early returns) or a vehicle is added or changed, and walks the whole
+// queue in priority order in one pass over an in-memory availability index.
+//
+// Several terminals may run the scheduler at once: DbConnector.assignWaitlistRequest re-checks the request
+// status and the vehicle's bookings under a row lock, so a request is only ever assigned once.
+class WaitlistScheduler implements ChangeFeed.Listener {
+    private static final long DEBOUNCE_MILLIS = 500;
+
+    private final DbConnector dbConnector;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "waitlist-scheduler");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private ScheduledFuture<?> pendingRun;
+
+    WaitlistScheduler(DbConnector dbConnector) {
+        this.dbConnector = dbConnector;
+    }
+
+    interface Listener {
+        // Called on the scheduler thread after a run that assigned at least one request
+        void onAssigned(List<Assignment> assignments);
+    }
+
+    void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void onChanges(List<ChangeFeed.Change> changes) {
+        for (ChangeFeed.Change change : changes) {
+            boolean bookingFreed = "bookings".equals(change.getTableName()) && !"INSERT".equals(change.getOperation());
+            boolean vehicleChanged = "vehicles".equals(change.getTableName()) && !change.isDelete();
+            if (bookingFreed || vehicleChanged || change.isReset()) {
+                requestRun();
+                return;
+            }
+        }
+    }
+
+    // Coalesces bursts of changes into a single run shortly afterwards
+    synchronized void requestRun() {
+        if (pendingRun == null || pendingRun.isDone()) {
+            pendingRun = executor.schedule(this::runOnce, DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    void stop() {
+        executor.shutdownNow();
+    }
+
+    private void runOnce() {
+        try {
+            List<Assignment> assignments = reallocate();
+            if (!assignments.isEmpty()) {
+                for (Listener listener : listeners) {
+                    listener.onAssigned(assignments);
+                }
+            }
+        } catch (RuntimeException ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    // One pass over the whole queue. Requests are taken in priority order; each gets the free vehicle of its
+    // category whose previous booking ends closest before the requested start (best fit), which keeps long
+    // free stretches open for the requests further down the queue.
+    List<Assignment> reallocate() {
+        List<Request> queue = dbConnector.getWaitingRequests();
+        List<Assignment> assignments = new ArrayList<>();
+        if (queue.isEmpty()) {
+            return assignments;
+        }
+
+        LocalDate from = queue.get(0).getStartDate();
+        LocalDate to = queue.get(0).getEndDate();
+        for (Request request : queue) {
+            from = request.getStartDate().isBefore(from) ? request.getStartDate() : from;
+            to = request.getEndDate().isAfter(to) ? request.getEndDate() : to;
+        }
+
+        // Availability index: category -> vehicle -> busy intervals (start epoch day -> end epoch day).
+        // Bookings on one vehicle never overlap, so the interval starting before a request's end is the
+        // only one that can collide with it.
+        Map<String, Map<Integer, TreeMap<Long, Long>>> index = new HashMap<>();
+        Map<Integer, TreeMap<Long, Long>> busyByVehicle = new HashMap<>();
+        for (Vehicle vehicle : dbConnector.getAvailableVehicles()) {
+            TreeMap<Long, Long> busy = new TreeMap<>();
+            busyByVehicle.put(vehicle.getId(), busy);
+            index.computeIfAbsent(vehicle.getCategory(), c -> new HashMap<>()).put(vehicle.getId(), busy);
+        }
+        for (Booking booking : dbConnector.getBookingsOverlapping(from, to)) {
+            TreeMap<Long, Long> busy = busyByVehicle.get(Integer.parseInt(booking.getVehicleId()));
+            if (busy != null) {
+                busy.put(booking.getStartDate().toEpochDay(), booking.getEndDate().toEpochDay());
+            }
+        }
+
+        for (Request request : queue) {
+            Map<Integer, TreeMap<Long, Long>> vehicles = index.get(request.getCategory());
+            if (vehicles == null) {
+                continue;
+            }
+            long start = request.getStartDate().toEpochDay();
+            long end = request.getEndDate().toEpochDay();
+            int bestVehicle = -1;
+            long bestGap = Long.MAX_VALUE;
+            for (Map.Entry<Integer, TreeMap<Long, Long>> vehicle : vehicles.entrySet()) {
+                TreeMap<Long, Long> busy = vehicle.getValue();
+                Map.Entry<Long, Long> before = busy.lowerEntry(end);
+                if (before != null && before.getValue() > start) {
+                    continue; // Overlaps an existing booking
+                }
+                long gap = before == null ? Long.MAX_VALUE - 1 : start - before.getValue();
+                if (gap < bestGap) {
+                    bestGap = gap;
+                    bestVehicle = vehicle.getKey();
+                }
+            }
+            if (bestVehicle >= 0 && dbConnector.assignWaitlistRequest(request, bestVehicle)) {
+                vehicles.get(bestVehicle).put(start, end);
+                assignments.add(new Assignment(request, bestVehicle));
+            }
+        }
+        return assignments;
+    }
+
+    // A queued booking request
+    static class Request {
+        private final int requestId;
+        private final int customerId;
+        private final String category;
+        private final LocalDate startDate;
+        private final LocalDate endDate;
+        private final int priority;
+
+        Request(int requestId, int customerId, String category, LocalDate startDate, LocalDate endDate, int priority) {
+            this.requestId = requestId;
+            this.customerId = customerId;
+            this.category = category;
+            this.startDate = startDate;
+            this.endDate = endDate;
+            this.priority = priority;
+        }
+
+        public int getRequestId() {
+            return requestId;
+        }
+
+        public int getCustomerId() {
+            return customerId;
+        }
+
+        public String getCategory() {
+            return category;
+        }
+
+        public LocalDate getStartDate() {
+            return startDate;
+        }
+
+        public LocalDate getEndDate() {
+            return endDate;
+        }
+
+        public int getPriority() {
+            return priority;
+        }
+
+        @Override
+        public String toString() {
+            return "Request " + requestId + ": Customer " + customerId + ", " + category + ", " + startDate + " to " + endDate + " (priority " + priority + ")";
+        }
+    }
+
+    static class Assignment {
+        private final Request request;
+        private final int vehicleId;
+
+        Assignment(Request request, int vehicleId) {
+            this.request = request;
+            this.vehicleId = vehicleId;
+        }
+
+        public Request getRequest() {
+            return request;
+        }
+
+        public int getVehicleId() {
+            return vehicleId;
+        }
+
+        @Override
+        public String toString() {
+            return request + " -> Vehicle " + vehicleId;
+        }
+    }
+}
@@ -2,6 +2,9 @@ module com.example.vehicle {
     requires javafx.controls;
     requires javafx.fxml;
     requires java.sql; // Add this line
+    requires java.net.http;
+    requires jdk.httpserver;
+    requires jdk.jfr;
     opens com.example.vehicle to javafx.fxml;
     exports com.example.vehicle;
 }
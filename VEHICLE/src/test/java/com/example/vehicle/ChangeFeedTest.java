@@ -0,0 +1,113 @@
+package com.example.vehicle;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+// Gap tracking against an in-memory outbox; no database needed
+class ChangeFeedTest {
+    private static final int BRANCH = 5;
+
+    @Test
+    void consecutiveChangesOnAShardLeaveNoGaps() throws Exception {
+        // Two consecutive changes on a branch-5 shard session are BRANCH_ID_STRIDE ids apart
+        long first = BRANCH;
+        long second = BRANCH + DbConfig.BRANCH_ID_STRIDE;
+        FakeOutbox outbox = new FakeOutbox(Map.of(BRANCH, "jdbc:mysql://shard5/vehicle_rental_system"),
+                List.of(change(first), change(second)));
+        ChangeFeed feed = new ChangeFeed(outbox);
+        CountDownLatch delivered = new CountDownLatch(1);
+        long[] seen = new long[3];
+        feed.addListener(changes -> {
+            seen[0] = changes.get(changes.size() - 1).getChangeId();
+            seen[1] = feed.getGapCount();
+            seen[2] = feed.getResumeId();
+            delivered.countDown();
+        });
+        feed.startFrom(first);
+        try {
+            assertTrue(delivered.await(5, TimeUnit.SECONDS), "second change was not delivered");
+        } finally {
+            feed.stop();
+        }
+
+        assertEquals(second, seen[0]);
+        assertEquals(0, seen[1], "gaps recorded between shard change ids");
+        assertEquals(second, seen[2]);
+        assertTrue(outbox.gapLookups.isEmpty(), "gap ids looked up: " + outbox.gapLookups);
+    }
+
+    @Test
+    void skippedIdOnTheHomeDatabaseIsAGap() throws Exception {
+        FakeOutbox outbox = new FakeOutbox(Map.of(), List.of(change(1), change(3)));
+        ChangeFeed feed = new ChangeFeed(outbox);
+        CountDownLatch delivered = new CountDownLatch(1);
+        long[] seen = new long[2];
+        feed.addListener(changes -> {
+            seen[0] = feed.getGapCount();
+            seen[1] = feed.getResumeId();
+            delivered.countDown();
+        });
+        feed.startFrom(1);
+        try {
+            assertTrue(delivered.await(5, TimeUnit.SECONDS), "change 3 was not delivered");
+        } finally {
+            feed.stop();
+        }
+
+        assertEquals(1, seen[0]);
+        assertEquals(1, seen[1], "resume id must stay below the open gap");
+    }
+
+    private static ChangeFeed.Change change(long changeId) {
+        return new ChangeFeed.Change(changeId, "vehicles", 1, "UPDATE");
+    }
+
+    // Serves getChangesSince/getChangesIn from a fixed list instead of change_log
+    private static class FakeOutbox extends DbConnector {
+        private final List<ChangeFeed.Change> changes;
+        private final List<Long> gapLookups = new CopyOnWriteArrayList<>();
+
+        FakeOutbox(Map<Integer, String> shardUrls, List<ChangeFeed.Change> changes) {
+            super(new DbConfig("jdbc:mysql://home/vehicle_rental_system", null, "test", "test", 0,
+                    shardUrls.isEmpty() ? 1 : BRANCH, shardUrls));
+            this.changes = changes;
+        }
+
+        @Override
+        public long getLatestChangeId() {
+            return changes.get(changes.size() - 1).getChangeId();
+        }
+
+        @Override
+        public List<ChangeFeed.Change> getChangesSince(long changeId, int limit) {
+            List<ChangeFeed.Change> since = new ArrayList<>();
+            for (ChangeFeed.Change change : changes) {
+                if (change.getChangeId() > changeId && since.size() < limit) {
+                    since.add(change);
+                }
+            }
+            return since;
+        }
+
+        @Override
+        public List<ChangeFeed.Change> getChangesIn(List<Long> changeIds) {
+            gapLookups.addAll(changeIds);
+            List<ChangeFeed.Change> found = new ArrayList<>();
+            for (ChangeFeed.Change change : changes) {
+                if (changeIds.contains(change.getChangeId())) {
+                    found.add(change);
+                }
+            }
+            return found;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.vehicle;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+// Concurrent-editor stress run for the compare-and-set update paths. Every editor repeatedly reads a shared
+// test vehicle and raises its price by 1 through updateVehicle, retrying on CONFLICT. With no lost updates
+// the final price is exactly the start price plus editors x edits.
+//
+// Needs the MySQL database from DbConfig, so it only runs in the integration profile:
+//   mvn test -Pintegration -Dvrs.stress.editors=16 -Dvrs.stress.edits=50
+@Tag("integration")
+class ConcurrencyStressTest {
+
+    @Test
+    void concurrentEditorsLoseNoUpdates() throws Exception {
+        int editors = Integer.getInteger("vrs.stress.editors", 16);
+        int edits = Integer.getInteger("vrs.stress.edits", 50);
+
+        DbConnector dbConnector = new DbConnector();
+        dbConnector.initializeDatabase();
+        int vehicleId = dbConnector.addVehicle("STRESS TEST-" + System.currentTimeMillis(), 0, false, "Car");
+        if (vehicleId == 0) {
+            throw new IllegalStateException("Test vehicle was not created");
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(editors);
+        long conflicts = 0;
+        long startedAt = System.nanoTime();
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int i = 0; i < editors; i++) {
+                results.add(executor.submit(() -> {
+                    int editorConflicts = 0;
+                    for (int n = 0; n < edits; n++) {
+                        while (true) {
+                            Vehicle current = dbConnector.getVehicleById(vehicleId);
+                            UpdateResult result = dbConnector.updateVehicle(vehicleId, current.getVersion(), current.getBrandModel(),
+                                    current.getRentalPrice() + 1, current.isAvailable(), current.getCategory());
+                            if (result == UpdateResult.UPDATED) {
+                                break;
+                            }
+                            if (result == UpdateResult.FAILED) {
+                                throw new IllegalStateException("Update failed");
+                            }
+                            editorConflicts++;
+                        }
+                    }
+                    return editorConflicts;
+                }));
+            }
+            for (Future<Integer> result : results) {
+                conflicts += result.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        long elapsedMillis = (System.nanoTime() - startedAt) / 1_000_000;
+
+        Vehicle finalVehicle = dbConnector.getVehicleById(vehicleId);
+        dbConnector.deleteVehicle(finalVehicle);
+
+        System.out.println(editors + " editors x " + edits + " edits in " + elapsedMillis + " ms: "
+                + conflicts + " conflicts retried, final version " + finalVehicle.getVersion());
+        assertEquals((long) editors * edits, Math.round(finalVehicle.getRentalPrice()), "lost updates");
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.vehicle;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+// Runs EXPLAIN on every hot DbConnector query and fails when MySQL plans a full table scan (type ALL).
+// Run it against a database with realistic row counts (see DataGenerator); on near-empty tables the
+// optimizer may legitimately prefer a scan. Needs the MySQL database from DbConfig, so it only runs in the
+// integration profile:
+//   mvn test -Pintegration
+@Tag("integration")
+class QueryPlanCheckTest {
+
+    // Hot query -> sample parameters to bind
+    static Map<String, Object[]> hotQueries() {
+        LocalDate today = LocalDate.now();
+        Map<String, Object[]> queries = new LinkedHashMap<>();
+        int lastBranch = DbConfig.BRANCH_ID_STRIDE - 1; // The branch range bound by an all-branch terminal
+        queries.put(DbConnector.VEHICLE_BY_ID_QUERY, new Object[]{1, 1, lastBranch});
+        queries.put(DbConnector.CUSTOMER_BY_ID_QUERY, new Object[]{1});
+        queries.put(DbConnector.BOOKING_BY_ID_QUERY, new Object[]{1, 1, lastBranch});
+        queries.put(DbConnector.AVAILABLE_VEHICLES_QUERY, new Object[]{1, lastBranch});
+        queries.put(DbConnector.BOOKINGS_STARTING_BETWEEN_QUERY, new Object[]{Date.valueOf(today.withDayOfMonth(1)), Date.valueOf(today), 1, lastBranch});
+        queries.put(DbConnector.BOOKINGS_OVERLAPPING_QUERY, new Object[]{Date.valueOf(today.plusDays(7)), Date.valueOf(today), 1, lastBranch});
+        queries.put(DbConnector.timelineBookingsQuery(3), new Object[]{1, 2, 3, Date.valueOf(today), Date.valueOf(today.plusDays(64)), 1, lastBranch});
+        queries.put(DbConnector.VEHICLE_OVERLAP_QUERY, new Object[]{1, Date.valueOf(today.plusDays(7)), Date.valueOf(today), 0});
+        // A branch terminal's working set; the comment only keeps the map keys apart
+        queries.put(DbConnector.AVAILABLE_VEHICLES_QUERY + " /* branch 1 */", new Object[]{1, 1});
+        queries.put(DbConnector.BOOKINGS_OVERLAPPING_QUERY + " /* branch 1 */", new Object[]{Date.valueOf(today.plusDays(7)), Date.valueOf(today), 1, 1});
+        queries.put(DbConnector.OVERDUE_BOOKINGS_QUERY, new Object[]{Date.valueOf(today), Date.valueOf(today.minusDays(30)), Date.valueOf(today.minusDays(1)), 0, 1, lastBranch, 500});
+        queries.put(DbConnector.CHANGES_SINCE_QUERY, new Object[]{0L, 500});
+        return queries;
+    }
+
+    // Returns one line per table access that is planned as a full scan
+    static List<String> findFullScans(Connection connection) throws SQLException {
+        List<String> violations = new ArrayList<>();
+        for (Map.Entry<String, Object[]> entry : hotQueries().entrySet()) {
+            try (PreparedStatement stmt = connection.prepareStatement("EXPLAIN " + entry.getKey())) {
+                Object[] params = entry.getValue();
+                for (int i = 0; i < params.length; i++) {
+                    stmt.setObject(i + 1, params[i]);
+                }
+                ResultSet rs = stmt.executeQuery();
+                while (rs.next()) {
+                    if ("ALL".equals(rs.getString("type"))) {
+                        violations.add(rs.getString("table") + " full scan (" + rs.getLong("rows") + " rows): " + entry.getKey());
+                    }
+                }
+            }
+        }
+        return violations;
+    }
+
+    @Test
+    void hotQueriesUseAnIndex() throws SQLException {
+        DbConnector dbConnector = new DbConnector();
+        dbConnector.initializeDatabase();
+        try (Connection connection = dbConnector.connect()) {
+            assertEquals(List.of(), findFullScans(connection), "hot queries planned as full table scans");
+        }
+    }
+}
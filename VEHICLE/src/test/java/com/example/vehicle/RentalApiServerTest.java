@@ -0,0 +1,16 @@
+package com.example.vehicle;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+class RentalApiServerTest {
+
+    @Test
+    void escapeProducesValidJsonStrings() {
+        assertEquals("say \\\"hi\\\" \\\\ bye", RentalApiServer.escape("say \"hi\" \\ bye"));
+        assertEquals("line\\nnext\\ttab\\r", RentalApiServer.escape("line\nnext\ttab\r"));
+        assertEquals("nul\\u0000 bell\\u0007 esc\\u001b", RentalApiServer.escape("nul\u0000 bell\u0007 esc\u001b"));
+        assertEquals("Škoda Octavia", RentalApiServer.escape("Škoda Octavia"));
+    }
+}
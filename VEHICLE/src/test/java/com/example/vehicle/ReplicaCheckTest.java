@@ -0,0 +1,76 @@
+package com.example.vehicle;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+// Checks replica routing against two local MySQL instances (primary replicating to the replica):
+//   1. a customer added through DbConnector is visible at once, because reads stay on the primary
+//      for the read-your-writes window
+//   2. prints how long the replica took to apply the write
+//   3. once the window is over, reads come from the replica and still see the customer
+// The test customer is deleted again at the end. Skipped unless a replica is configured:
+//   mvn test -Pintegration -Dvrs.db.replicaUrl=jdbc:mysql://localhost:3307/vehicle_rental_system
+@Tag("integration")
+class ReplicaCheckTest {
+
+    @Test
+    void readsFollowTheWriteThenMoveToTheReplica() throws Exception {
+        DbConfig config = DbConfig.fromSystemProperties();
+        assumeTrue(config.getReplicaUrl() != null, "Set -Dvrs.db.replicaUrl to the replica's JDBC URL");
+        DbConnector dbConnector = new DbConnector(config);
+        dbConnector.initializeDatabase();
+
+        String license = "REPLICA-CHECK-" + System.currentTimeMillis();
+        dbConnector.addCustomer("Replica Check", "-", license);
+        long writtenAt = System.currentTimeMillis();
+        long changeId = dbConnector.primaryOnly().getLatestChangeId();
+        try {
+            assertNotNull(findCustomer(dbConnector, license), "customer missing right after the write");
+
+            try (Connection replica = DriverManager.getConnection(config.getReplicaUrl(), config.getUsername(), config.getPassword())) {
+                while (replicaChangeId(replica) < changeId) {
+                    if (System.currentTimeMillis() - writtenAt > 60_000) {
+                        throw new IllegalStateException("Replica has not applied change " + changeId + " after 60s");
+                    }
+                    Thread.sleep(10);
+                }
+            }
+            System.out.println("Replica lag: " + (System.currentTimeMillis() - writtenAt) + " ms");
+
+            Thread.sleep(Math.max(0, writtenAt + config.getReadYourWritesMillis() - System.currentTimeMillis()) + 100);
+            assertNotNull(findCustomer(dbConnector, license), "customer missing after the read-your-writes window");
+            assertTrue(dbConnector.readsFromReplica(), "reads did not move to the replica after the window");
+        } finally {
+            Customer customer = findCustomer(dbConnector.primaryOnly(), license);
+            if (customer != null) {
+                dbConnector.deleteCustomer(customer);
+            }
+        }
+    }
+
+    private static Customer findCustomer(DbConnector dbConnector, String license) {
+        for (Customer customer : dbConnector.getAllCustomers()) {
+            if (license.equals(customer.getLicenseNumber())) {
+                return customer;
+            }
+        }
+        return null;
+    }
+
+    private static long replicaChangeId(Connection replica) throws SQLException {
+        try (Statement stmt = replica.createStatement(); ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(change_id), 0) FROM change_log")) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+}